@@ -1,5 +1,8 @@
 package ch.mazluc.game;
 
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
 /*
  * MIT License
  * 
@@ -49,6 +52,12 @@ package ch.mazluc.game;
  * }
  * </pre>
  * 
+ * <p>
+ * Every method also has a variant appending to a {@link FrameBuffer}:
+ * the escapes of all the color codes and the box-drawing glyphs are
+ * encoded once, when the class is loaded, so a whole frame can be
+ * assembled without building or encoding a single string.
+ * 
  * @author Luca Mazza
  * @version 1.0
  */
@@ -184,11 +193,125 @@ public class ANSIUtils {
      */
     public static final String REVERSE_OFF = "\u001B[27m";
 
+    /**
+     * ANSI save cursor position escape ({@value})
+     */
+    public static final String SAVE_CURSOR = "\u001B7";
+
+    /**
+     * ANSI restore cursor position escape ({@value})
+     */
+    public static final String RESTORE_CURSOR = "\u001B8";
+
     /**
      * ANSI Standard Escape Sequence ({@value})
      */
     private static final String ESC = "\u001B[";
 
+    /**
+     * The first box-drawing glyph ({@value}).
+     */
+    private static final char FIRST_GLYPH = '\u2500';
+
+    /**
+     * The last box-drawing glyph ({@value}).
+     */
+    private static final char LAST_GLYPH = '\u257F';
+
+    /**
+     * The encoded escape sequence start.
+     */
+    private static final byte[] ESC_BYTES = bytes(ESC);
+
+    /**
+     * The encoded reset escape.
+     */
+    private static final byte[] RESET_BYTES = bytes(RESET);
+
+    /**
+     * The encoded clear screen escape.
+     */
+    private static final byte[] CLS_BYTES = bytes(CLS);
+
+    /**
+     * The encoded home escape.
+     */
+    private static final byte[] HOME_BYTES = bytes(HOME);
+
+    /**
+     * The encoded bold escape.
+     */
+    private static final byte[] BOLD_BYTES = bytes(BOLD);
+
+    /**
+     * The encoded normal escape.
+     */
+    private static final byte[] NORMAL_BYTES = bytes(NORMAL);
+
+    /**
+     * The encoded save cursor position escape.
+     */
+    private static final byte[] SAVE_CURSOR_BYTES = bytes(SAVE_CURSOR);
+
+    /**
+     * The encoded restore cursor position escape.
+     */
+    private static final byte[] RESTORE_CURSOR_BYTES = bytes(RESTORE_CURSOR);
+
+    /**
+     * The foreground escapes, by color index.
+     */
+    private static final String[] FOREGROUND = new String[16];
+
+    /**
+     * The background escapes, by color index.
+     */
+    private static final String[] BACKGROUND = new String[16];
+
+    /**
+     * The foreground and background escapes, by
+     * `16 * background index + foreground index`.
+     */
+    private static final String[] COLOR = new String[256];
+
+    /**
+     * The encoded foreground escapes, by color index.
+     */
+    private static final byte[][] FOREGROUND_BYTES = new byte[16][];
+
+    /**
+     * The encoded background escapes, by color index.
+     */
+    private static final byte[][] BACKGROUND_BYTES = new byte[16][];
+
+    /**
+     * The encoded foreground and background escapes, by
+     * `16 * background index + foreground index`.
+     */
+    private static final byte[][] COLOR_BYTES = new byte[256][];
+
+    /**
+     * The encoded box-drawing glyphs, from {@link #FIRST_GLYPH}.
+     */
+    private static final byte[][] GLYPH_BYTES = new byte[LAST_GLYPH - FIRST_GLYPH + 1][];
+
+    static {
+        for (int i = 0; i < 16; i++) {
+            int code = colorCode(i);
+            FOREGROUND[i] = selectGraphicRendition(code, -1);
+            BACKGROUND[i] = selectGraphicRendition(code + 10, -1);
+            FOREGROUND_BYTES[i] = bytes(FOREGROUND[i]);
+            BACKGROUND_BYTES[i] = bytes(BACKGROUND[i]);
+            for (int j = 0; j < 16; j++) {
+                COLOR[16 * i + j] = selectGraphicRendition(colorCode(j), code + 10);
+                COLOR_BYTES[16 * i + j] = bytes(COLOR[16 * i + j]);
+            }
+        }
+        for (char glyph = FIRST_GLYPH; glyph <= LAST_GLYPH; glyph++) {
+            GLYPH_BYTES[glyph - FIRST_GLYPH] = bytes(String.valueOf(glyph));
+        }
+    }
+
     /**
      * Private constructor to prevent instantiation,
      * as the class is a utility class and its use is
@@ -204,29 +327,101 @@ public class ANSIUtils {
      * Resets the output format to the default.
      */
     public static void reset() {
-        System.out.print(RESET);
+        reset(System.out);
+    }
+
+    /**
+     * Resets the output format to the default on the given stream.
+     *
+     * @param out the output stream
+     */
+    public static void reset(PrintStream out) {
+        out.print(RESET);
+    }
+
+    /**
+     * Resets the output format to the default in the given frame.
+     *
+     * @param frame the frame
+     */
+    public static void reset(FrameBuffer frame) {
+        frame.append(RESET_BYTES);
     }
 
     /**
      * Clears the screen
      */
     public static void clearScreen() {
-        System.out.print(CLS);
-        System.out.println(HOME);
+        clearScreen(System.out);
+    }
+
+    /**
+     * Clears the screen on the given stream.
+     *
+     * @param out the output stream
+     */
+    public static void clearScreen(PrintStream out) {
+        out.print(CLS);
+        out.println(HOME);
+    }
+
+    /**
+     * Clears the screen in the given frame.
+     *
+     * @param frame the frame
+     */
+    public static void clearScreen(FrameBuffer frame) {
+        frame.append(CLS_BYTES).append(HOME_BYTES).newLine();
     }
 
     /**
      * Sets the output format to bold.
      */
     public static void setBold() {
-        System.out.print(BOLD);
+        setBold(System.out);
+    }
+
+    /**
+     * Sets the output format to bold on the given stream.
+     *
+     * @param out the output stream
+     */
+    public static void setBold(PrintStream out) {
+        out.print(BOLD);
+    }
+
+    /**
+     * Sets the output format to bold in the given frame.
+     *
+     * @param frame the frame
+     */
+    public static void setBold(FrameBuffer frame) {
+        frame.append(BOLD_BYTES);
     }
 
     /**
      * Sets the output format to normal.
      */
     public static void setNormal() {
-        System.out.print(NORMAL);
+        setNormal(System.out);
+    }
+
+    /**
+     * Sets the output format to normal on the given stream.
+     *
+     * @param out the output stream
+     */
+    public static void setNormal(PrintStream out) {
+        out.print(NORMAL);
+    }
+
+    /**
+     * Sets the output format to normal in the given frame.
+     *
+     * @param frame the frame
+     */
+    public static void setNormal(FrameBuffer frame) {
+        frame.append(NORMAL_BYTES);
     }
 
     /**
@@ -239,11 +434,74 @@ public class ANSIUtils {
      * @param col the horizontal coordinate
      */
     public static void moveTo(int row, int col) {
+        moveTo(System.out, row, col);
+    }
+
+    /**
+     * Moves the cursor to the specified position on the given stream.
+     *
+     * @param out the output stream
+     * @param row the vertical coordinate
+     * @param col the horizontal coordinate
+     * @see #moveTo(int, int)
+     */
+    public static void moveTo(PrintStream out, int row, int col) {
+        if (row > 0 && col > 0) {
+            out.print(ESC + row + ";" + col + "H");
+        }
+    }
+
+    /**
+     * Moves the cursor to the specified position in the given frame.
+     *
+     * @param frame the frame
+     * @param row   the vertical coordinate
+     * @param col   the horizontal coordinate
+     * @see #moveTo(int, int)
+     */
+    public static void moveTo(FrameBuffer frame, int row, int col) {
         if (row > 0 && col > 0) {
-            System.out.print(ESC + row + ";" + col + "H");
+            frame.append(ESC_BYTES).append(row).append(';').append(col).append('H');
         }
     }
 
+    /**
+     * Saves the position of the cursor on the given stream,
+     * to go back to it with {@link #restoreCursor(PrintStream)}.
+     *
+     * @param out the output stream
+     */
+    public static void saveCursor(PrintStream out) {
+        out.print(SAVE_CURSOR);
+    }
+
+    /**
+     * Saves the position of the cursor in the given frame.
+     *
+     * @param frame the frame
+     */
+    public static void saveCursor(FrameBuffer frame) {
+        frame.append(SAVE_CURSOR_BYTES);
+    }
+
+    /**
+     * Moves the cursor back to the position saved on the given stream.
+     *
+     * @param out the output stream
+     */
+    public static void restoreCursor(PrintStream out) {
+        out.print(RESTORE_CURSOR);
+    }
+
+    /**
+     * Moves the cursor back to the position saved in the given frame.
+     *
+     * @param frame the frame
+     */
+    public static void restoreCursor(FrameBuffer frame) {
+        frame.append(RESTORE_CURSOR_BYTES);
+    }
+
     /**
      * Define the foreground color at the next prints.
      * The parameter code must be a valid color code (i.e. one of the constants
@@ -253,8 +511,32 @@ public class ANSIUtils {
      * @param code the color code
      */
     public static void setForegroundColor(int code) {
+        setForegroundColor(System.out, code);
+    }
+
+    /**
+     * Define the foreground color at the next prints on the given stream.
+     *
+     * @param out  the output stream
+     * @param code the color code
+     * @see #setForegroundColor(int)
+     */
+    public static void setForegroundColor(PrintStream out, int code) {
+        if (isColorCodeValid(code)) {
+            out.print(FOREGROUND[colorIndex(code)]);
+        }
+    }
+
+    /**
+     * Define the foreground color at the next prints in the given frame.
+     *
+     * @param frame the frame
+     * @param code  the color code
+     * @see #setForegroundColor(int)
+     */
+    public static void setForegroundColor(FrameBuffer frame, int code) {
         if (isColorCodeValid(code)) {
-            System.out.print(ESC + code + "m");
+            frame.append(FOREGROUND_BYTES[colorIndex(code)]);
         }
     }
 
@@ -264,8 +546,30 @@ public class ANSIUtils {
      * @param code the color
      */
     public static void setBackgroundColor(int code) {
+        setBackgroundColor(System.out, code);
+    }
+
+    /**
+     * Sets the background color on the given stream.
+     *
+     * @param out  the output stream
+     * @param code the color
+     */
+    public static void setBackgroundColor(PrintStream out, int code) {
         if (isColorCodeValid(code)) {
-            System.out.print(ESC + (code + 10) + "m");
+            out.print(BACKGROUND[colorIndex(code)]);
+        }
+    }
+
+    /**
+     * Sets the background color in the given frame.
+     *
+     * @param frame the frame
+     * @param code  the color
+     */
+    public static void setBackgroundColor(FrameBuffer frame, int code) {
+        if (isColorCodeValid(code)) {
+            frame.append(BACKGROUND_BYTES[colorIndex(code)]);
         }
     }
 
@@ -279,8 +583,49 @@ public class ANSIUtils {
      * @param fg the foreground color
      */
     public static void setColor(int bg, int fg) {
+        setColor(System.out, bg, fg);
+    }
+
+    /**
+     * Sets the foreground and background color on the given stream.
+     *
+     * @param out the output stream
+     * @param bg  the background color
+     * @param fg  the foreground color
+     * @see #setColor(int, int)
+     */
+    public static void setColor(PrintStream out, int bg, int fg) {
+        if (isColorCodeValid(bg) && isColorCodeValid(fg)) {
+            out.print(COLOR[16 * colorIndex(bg) + colorIndex(fg)]);
+        }
+    }
+
+    /**
+     * Sets the foreground and background color in the given frame.
+     *
+     * @param frame the frame
+     * @param bg    the background color
+     * @param fg    the foreground color
+     * @see #setColor(int, int)
+     */
+    public static void setColor(FrameBuffer frame, int bg, int fg) {
         if (isColorCodeValid(bg) && isColorCodeValid(fg)) {
-            System.out.print(ESC + fg + ";" + (bg + 10) + "m");
+            frame.append(COLOR_BYTES[16 * colorIndex(bg) + colorIndex(fg)]);
+        }
+    }
+
+    /**
+     * Appends a character to the given frame, taking the box-drawing
+     * glyphs (U+2500 to U+257F) already encoded.
+     *
+     * @param frame the frame
+     * @param glyph the character
+     */
+    public static void appendGlyph(FrameBuffer frame, char glyph) {
+        if (glyph >= FIRST_GLYPH && glyph <= LAST_GLYPH) {
+            frame.append(GLYPH_BYTES[glyph - FIRST_GLYPH]);
+        } else {
+            frame.append(glyph);
         }
     }
 
@@ -293,4 +638,51 @@ public class ANSIUtils {
     private static boolean isColorCodeValid(int code) {
         return code >= 30 && code <= 37 || code >= 90 && code <= 97;
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the index of a valid color code, from 0 to 15.
+     *
+     * @param code the color code
+     * @return the index
+     */
+    private static int colorIndex(int code) {
+        return code < 90 ? code - 30 : code - 82;
+    }
+
+    /**
+     * Get the color code of an index.
+     *
+     * @param index the index, from 0 to 15
+     * @return the color code
+     */
+    private static int colorCode(int index) {
+        return index < 8 ? index + 30 : index + 82;
+    }
+
+    /**
+     * Build a select graphic rendition escape.
+     * Built without string concatenation, which costs a bootstrap on
+     * its first use, as the escapes are needed by the first frame.
+     *
+     * @param first  the first parameter
+     * @param second the second parameter, -1 for none
+     * @return the escape
+     */
+    private static String selectGraphicRendition(int first, int second) {
+        StringBuilder escape = new StringBuilder(ESC).append(first);
+        if (second >= 0) {
+            escape.append(';').append(second);
+        }
+        return escape.append('m').toString();
+    }
+
+    /**
+     * Encode an escape sequence or a glyph.
+     *
+     * @param text the text
+     * @return the UTF-8 bytes
+     */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,164 @@
+package ch.mazluc.game;
+
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>
+ * How a grid is filled by `Grid.fill`.
+ *
+ * <p>
+ * A layout defines the size of the sets of equal cards (2 for pairs,
+ * 3 for triples, ...), how many bombs and jollies are placed and how the
+ * points of every set are drawn. The cells left over when the free cells
+ * are not a multiple of the set size stay empty.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * BoardLayout triples = new BoardLayout(3, 2, 1, BoardLayout.uniformPoints(1, 5));
+ * grid.fill(triples);
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class BoardLayout {
+
+    /**
+     * The classic layout: pairs, one bomb, one jolly
+     * and from 1 to 9 points per pair.
+     */
+    public static final BoardLayout DEFAULT = new BoardLayout(2, 1, 1, uniformPoints(1, 9));
+
+    /**
+     * The number of equal cards in a set.
+     */
+    private final int setSize;
+
+    /**
+     * The number of bombs.
+     */
+    private final int bombs;
+
+    /**
+     * The number of jollies.
+     */
+    private final int jollies;
+
+    /**
+     * The distribution of the points of a set.
+     */
+    private final ToIntFunction<Random> points;
+
+    /**
+     * Constructor.
+     *
+     * @param setSize the number of equal cards in a set, at least 2
+     * @param bombs   the number of bombs
+     * @param jollies the number of jollies
+     * @param points  the distribution of the points of a set
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public BoardLayout(int setSize, int bombs, int jollies, ToIntFunction<Random> points) {
+        if (setSize < 2 || bombs < 0 || jollies < 0 || points == null) {
+            throw new IllegalArgumentException("Invalid layout");
+        }
+        this.setSize = setSize;
+        this.bombs = bombs;
+        this.jollies = jollies;
+        this.points = points;
+    }
+
+    /**
+     * Get the number of equal cards in a set.
+     *
+     * @return the set size
+     */
+    public int getSetSize() {
+        return this.setSize;
+    }
+
+    /**
+     * Get the number of bombs.
+     *
+     * @return the number of bombs
+     */
+    public int getBombs() {
+        return this.bombs;
+    }
+
+    /**
+     * Get the number of jollies.
+     *
+     * @return the number of jollies
+     */
+    public int getJollies() {
+        return this.jollies;
+    }
+
+    /**
+     * Get the number of sets that fit in a grid.
+     *
+     * @param cells the number of cells of the grid
+     * @return the number of sets
+     */
+    public int getSetCount(int cells) {
+        return Math.max(0, (cells - this.bombs - this.jollies) / this.setSize);
+    }
+
+    /**
+     * Draw the points of a set.
+     *
+     * @param random the random number generator
+     * @return the points
+     */
+    public int drawPoints(Random random) {
+        return this.points.applyAsInt(random);
+    }
+
+    /**
+     * Points drawn uniformly in a range.
+     *
+     * @param min the minimum points
+     * @param max the maximum points
+     * @return the distribution
+     */
+    public static ToIntFunction<Random> uniformPoints(int min, int max) {
+        int span = Math.max(max - min, 0) + 1;
+        return random -> random.nextInt(span) + min;
+    }
+
+    /**
+     * Points drawn with the given weights: `weights[i]` is the weight of
+     * `i + 1` points.
+     *
+     * @param weights the weights, not all zero
+     * @return the distribution
+     * @throws IllegalArgumentException if the weights are all zero or
+     *                                  negative
+     */
+    public static ToIntFunction<Random> weightedPoints(int... weights) {
+        int[] cumulative = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += Math.max(weights[i], 0);
+            cumulative[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Weights must not be all zero");
+        }
+        int sum = total;
+        return random -> {
+            int draw = random.nextInt(sum);
+            int i = 0;
+            while (cumulative[i] <= draw) {
+                i++;
+            }
+            return i + 1;
+        };
+    }
+}
@@ -0,0 +1,491 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A pool of grids filled in advance, so that a new game does not wait
+ * for {@link Grid#fill(BoardLayout)}.
+ *
+ * <p>
+ * The boards are kept on a shelf for every size asked for, filled by
+ * background threads. Every tick the pool measures how many boards each
+ * shelf gave away and sets its target to twice that rate (a burst of
+ * twice the usual demand is still served from the shelf), plus the boards
+ * it missed; boards above the target are dropped, and a shelf not used for
+ * a while is evicted with its boards. The total number of boards is
+ * bounded. When a shelf is empty the board is filled on the spot, as
+ * without the pool.
+ *
+ * <p>
+ * With a {@link FairnessAnalyzer} (see {@link #setFairness}), the boards
+ * filled in advance are screened for fairness: the rollouts run in the
+ * background, not while a game waits for its board. The boards filled on
+ * the spot are not screened.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (BoardPool pool = new BoardPool()) {
+ *     pool.prewarm(4, 4, 8);
+ *     Grid grid = pool.take(4, 4);
+ * }
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class BoardPool implements Closeable {
+
+    /**
+     * The boards of a size.
+     */
+    private static final class Shelf {
+
+        /**
+         * The number of rows.
+         */
+        private final int rows;
+
+        /**
+         * The number of columns.
+         */
+        private final int cols;
+
+        /**
+         * The boards ready to be taken.
+         */
+        private final Queue<Grid> boards = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The number of boards ready.
+         */
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * The boards taken since the last tick.
+         */
+        private final AtomicInteger takes = new AtomicInteger();
+
+        /**
+         * The boards missed since the last tick.
+         */
+        private final AtomicInteger misses = new AtomicInteger();
+
+        /**
+         * The number of boards being filled, guarded by the shelf.
+         */
+        private int pending;
+
+        /**
+         * The number of boards to keep ready.
+         */
+        private volatile int target = 1;
+
+        /**
+         * The least number of boards to keep ready, 0 if the shelf can be
+         * evicted.
+         */
+        private volatile int floor;
+
+        /**
+         * The boards taken by tick, smoothed; only the ticks change it.
+         */
+        private double rate;
+
+        /**
+         * The number of ticks since the last take; only the ticks change it.
+         */
+        private int idleTicks;
+
+        /**
+         * Whether the shelf has been evicted or cannot be filled.
+         */
+        private volatile boolean closed;
+
+        /**
+         * Constructor.
+         *
+         * @param rows the number of rows
+         * @param cols the number of columns
+         */
+        private Shelf(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+        }
+    }
+
+    /**
+     * The default bound of the number of boards ({@value}).
+     */
+    public static final int DEFAULT_MAX_BOARDS = 256;
+
+    /**
+     * The default period of the ticks ({@value} ms).
+     */
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+
+    /**
+     * The most boards kept ready of a size ({@value}).
+     */
+    private static final int MAX_SHELF_SIZE = 64;
+
+    /**
+     * The ticks without a take before a shelf is evicted ({@value}).
+     */
+    private static final int IDLE_TICKS = 60;
+
+    /**
+     * The target of a shelf, in boards taken by tick ({@value}).
+     */
+    private static final double HEADROOM = 2.0;
+
+    /**
+     * The weight of the last tick in the rate of a shelf ({@value}).
+     */
+    private static final double RATE_SMOOTHING = 0.5;
+
+    /**
+     * The layout of the boards.
+     */
+    private final BoardLayout layout;
+
+    /**
+     * The most boards ready or being filled, all sizes together.
+     */
+    private final int maxBoards;
+
+    /**
+     * The shelves, by size.
+     */
+    private final Map<Integer, Shelf> shelves = new ConcurrentHashMap<>();
+
+    /**
+     * The number of boards ready or being filled, all sizes together.
+     */
+    private final AtomicInteger boards = new AtomicInteger();
+
+    /**
+     * The boards taken from a shelf.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * The boards filled on the spot.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The threads filling the boards and ticking.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Whether the pool is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The analyzer screening the boards filled in advance, null for none.
+     */
+    private volatile FairnessAnalyzer fairness;
+
+    /**
+     * The most boards filled to find a fair one.
+     */
+    private volatile int fairnessAttempts = 1;
+
+    /**
+     * Constructor.
+     * Fills boards of the default layout, up to
+     * {@value #DEFAULT_MAX_BOARDS}.
+     */
+    public BoardPool() {
+        this(BoardLayout.DEFAULT, DEFAULT_MAX_BOARDS, DEFAULT_TICK_MILLIS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param layout     the layout of the boards
+     * @param maxBoards  the most boards ready or being filled, all sizes
+     *                   together, at least 1
+     * @param tickMillis the period the shelves are resized with, in
+     *                   milliseconds, at least 1
+     */
+    public BoardPool(BoardLayout layout, int maxBoards, long tickMillis) {
+        this.layout = layout == null ? BoardLayout.DEFAULT : layout;
+        this.maxBoards = Math.max(maxBoards, 1);
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(
+                Runtime.getRuntime().availableProcessors(), task -> {
+                    Thread thread = new Thread(task, "board-pool");
+                    thread.setDaemon(true);
+                    // filling must not slow down the games being played
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        pool.setRemoveOnCancelPolicy(true);
+        this.executor = pool;
+        long period = Math.max(tickMillis, 1);
+        this.executor.scheduleAtFixedRate(this::tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the layout of the boards.
+     *
+     * @return the layout
+     */
+    public BoardLayout getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * Screen the boards filled in advance for fairness, with
+     * {@link FairnessAnalyzer#generateFair}. The boards already ready are
+     * kept. The analyzer is not shut down by {@link #close()}.
+     *
+     * @param fairness    the analyzer, null to stop screening
+     * @param maxAttempts the most boards filled to find a fair one
+     */
+    public void setFairness(FairnessAnalyzer fairness, int maxAttempts) {
+        this.fairnessAttempts = Math.max(maxAttempts, 1);
+        this.fairness = fairness;
+    }
+
+    /**
+     * Take a filled board, filling it on the spot if none is ready.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the board
+     * @throws IllegalArgumentException if the layout does not fit in the
+     *                                  board
+     */
+    public Grid take(int rows, int cols) {
+        if (this.closed) {
+            return this.newBoard(rows, cols);
+        }
+        Shelf shelf = this.shelves.computeIfAbsent(key(rows, cols), k -> new Shelf(rows, cols));
+        shelf.takes.incrementAndGet();
+        Grid grid = shelf.boards.poll();
+        if (grid != null) {
+            shelf.size.decrementAndGet();
+            this.boards.decrementAndGet();
+            this.hits.increment();
+        } else {
+            shelf.misses.incrementAndGet();
+            this.misses.increment();
+            grid = this.newBoard(rows, cols);
+        }
+        this.refill(shelf);
+        return grid;
+    }
+
+    /**
+     * Keep boards of a size always ready, even when not used.
+     *
+     * @param rows  the number of rows
+     * @param cols  the number of columns
+     * @param count the least number of boards ready
+     */
+    public void prewarm(int rows, int cols, int count) {
+        if (this.closed) {
+            return;
+        }
+        Shelf shelf = this.shelves.computeIfAbsent(key(rows, cols), k -> new Shelf(rows, cols));
+        shelf.floor = Math.max(Math.min(count, MAX_SHELF_SIZE), 0);
+        shelf.target = Math.max(shelf.target, shelf.floor);
+        this.refill(shelf);
+    }
+
+    /**
+     * Get the number of boards ready, all sizes together.
+     *
+     * @return the number of boards
+     */
+    public int getReadyBoards() {
+        int ready = 0;
+        for (Shelf shelf : this.shelves.values()) {
+            ready += shelf.size.get();
+        }
+        return ready;
+    }
+
+    /**
+     * Get the number of boards taken from a shelf.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Get the number of boards filled on the spot.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Stop filling boards and drop the ready ones.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.executor.shutdownNow();
+        for (Shelf shelf : this.shelves.values()) {
+            shelf.closed = true;
+            shelf.boards.clear();
+        }
+        this.shelves.clear();
+    }
+
+    /**
+     * Resize the shelves to the demand and evict the unused ones.
+     */
+    private void tick() {
+        for (Iterator<Shelf> it = this.shelves.values().iterator(); it.hasNext();) {
+            Shelf shelf = it.next();
+            int takes = shelf.takes.getAndSet(0);
+            int missed = shelf.misses.getAndSet(0);
+            shelf.rate = RATE_SMOOTHING * takes + (1 - RATE_SMOOTHING) * shelf.rate;
+            shelf.idleTicks = takes == 0 ? shelf.idleTicks + 1 : 0;
+            if (shelf.closed || shelf.floor == 0 && shelf.idleTicks >= IDLE_TICKS) {
+                it.remove();
+                shelf.closed = true;
+                this.drop(shelf, 0);
+                continue;
+            }
+            int target = (int) Math.ceil(shelf.rate * HEADROOM) + missed;
+            shelf.target = Math.max(Math.min(target, MAX_SHELF_SIZE), Math.max(shelf.floor, 1));
+            this.drop(shelf, shelf.target);
+            this.refill(shelf);
+        }
+    }
+
+    /**
+     * Drop the boards of a shelf above a number.
+     *
+     * @param shelf the shelf
+     * @param keep  the number of boards to keep
+     */
+    private void drop(Shelf shelf, int keep) {
+        while (shelf.size.get() > keep && shelf.boards.poll() != null) {
+            shelf.size.decrementAndGet();
+            this.boards.decrementAndGet();
+        }
+    }
+
+    /**
+     * Start filling boards until a shelf reaches its target, within the
+     * bound of the pool.
+     *
+     * @param shelf the shelf
+     */
+    private void refill(Shelf shelf) {
+        synchronized (shelf) {
+            while (!this.closed && !shelf.closed && shelf.size.get() + shelf.pending < shelf.target
+                    && this.boards.get() < this.maxBoards) {
+                shelf.pending++;
+                this.boards.incrementAndGet();
+                try {
+                    this.executor.execute(() -> this.fill(shelf));
+                } catch (RuntimeException e) {
+                    // closed meanwhile
+                    shelf.pending--;
+                    this.boards.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill a board and put it on a shelf.
+     *
+     * @param shelf the shelf
+     */
+    private void fill(Shelf shelf) {
+        Grid grid;
+        try {
+            grid = this.newScreenedBoard(shelf.rows, shelf.cols);
+        } catch (IllegalArgumentException e) {
+            // the layout does not fit, the takes fill and fail on the spot
+            shelf.closed = true;
+            grid = null;
+        }
+        if (grid != null && !shelf.closed) {
+            shelf.boards.add(grid);
+            shelf.size.incrementAndGet();
+        } else {
+            this.boards.decrementAndGet();
+        }
+        synchronized (shelf) {
+            shelf.pending--;
+        }
+    }
+
+    /**
+     * Fill a board, fair if there is an analyzer.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the board
+     */
+    private Grid newScreenedBoard(int rows, int cols) {
+        FairnessAnalyzer analyzer = this.fairness;
+        if (analyzer != null) {
+            try {
+                return analyzer.generateFair(rows, cols, this.layout,
+                        new Random(ThreadLocalRandom.current().nextLong()), this.fairnessAttempts);
+            } catch (IllegalStateException | RejectedExecutionException e) {
+                // the pool is closing or the analyzer is shut down, the board is not screened
+            }
+        }
+        return this.newBoard(rows, cols);
+    }
+
+    /**
+     * Fill a board.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the board
+     */
+    private Grid newBoard(int rows, int cols) {
+        // every board its own generator, not to contend on the shared one
+        Grid grid = new Grid(rows, cols, new Random(ThreadLocalRandom.current().nextLong()));
+        grid.fill(this.layout);
+        return grid;
+    }
+
+    /**
+     * Get the key of a size.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the key
+     */
+    private static Integer key(int rows, int cols) {
+        return rows << 16 | cols & 0xFFFF;
+    }
+}
@@ -0,0 +1,87 @@
+package ch.mazluc.game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>
+ * Latency test of the {@link BoardPool}.
+ *
+ * <p>
+ * Creates games in bursts, of random sizes, filling every board on the
+ * spot and taking one from the pool, and prints the percentiles of both
+ * latencies and how many boards the pool had ready.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.BoardPoolLatencyTest [bursts] [games]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class BoardPoolLatencyTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private BoardPoolLatencyTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of bursts and of games by burst, optional
+     * @throws InterruptedException if interrupted
+     * @throws AssertionError       if a take is not counted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int bursts = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int burst = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int[][] sizes = { { 4, 4 }, { 6, 6 }, { 10, 18 } };
+        long[] direct = new long[bursts * burst];
+        long[] pooled = new long[bursts * burst];
+        try (BoardPool pool = new BoardPool(BoardLayout.DEFAULT, BoardPool.DEFAULT_MAX_BOARDS, 100)) {
+            for (int[] size : sizes) {
+                pool.prewarm(size[0], size[1], 1);
+            }
+            Random random = new Random(42);
+            for (int b = 0; b < bursts; b++) {
+                for (int i = 0; i < burst; i++) {
+                    int[] size = sizes[random.nextInt(sizes.length)];
+                    long start = System.nanoTime();
+                    new Grid(size[0], size[1], new Random(random.nextLong())).fill();
+                    direct[b * burst + i] = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    pool.take(size[0], size[1]);
+                    pooled[b * burst + i] = System.nanoTime() - start;
+                }
+                // the pause between two bursts, where the shelves refill
+                Thread.sleep(200);
+            }
+            System.out.printf("%d bursts of %d games, %d hits, %d misses%n", bursts, burst, pool.getHits(),
+                    pool.getMisses());
+            if (pool.getHits() + pool.getMisses() != (long) bursts * burst) {
+                throw new AssertionError("Takes lost: " + pool.getHits() + " hits, " + pool.getMisses() + " misses");
+            }
+        }
+        report("fill", direct);
+        report("pool", pooled);
+    }
+
+    /**
+     * Print the percentiles of latencies.
+     *
+     * @param label     the name of the latencies
+     * @param latencies the latencies, in nanoseconds
+     */
+    private static void report(String label, long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%s: p50 %6.1f us, p99 %6.1f us, max %7.1f us%n", label,
+                sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3,
+                sorted[sorted.length - 1] / 1e3);
+    }
+}
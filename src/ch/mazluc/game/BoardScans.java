@@ -0,0 +1,155 @@
+package ch.mazluc.game;
+
+/**
+ * <p>
+ * Data-parallel scans of the cells of a board.
+ *
+ * <p>
+ * A board keeps the symbol of every cell in a `short[]`, row by row, 0
+ * for an empty cell (see {@link Grid}): finding a symbol, checking that
+ * the board is empty or listing the cells still holding a card are then
+ * plain loops over a primitive array, which {@link VectorBoardScans} runs
+ * with the SIMD instructions of the CPU through the incubating Vector
+ * API.
+ *
+ * <p>
+ * The Vector API is optional: {@link #get()} returns the vector scans
+ * when the JVM runs with `--add-modules jdk.incubator.vector` (and
+ * `VectorBoardScans` was compiled with it), the scalar ones otherwise, or
+ * when the `memory.scalarScans` system property is true.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * BoardScans scans = BoardScans.get();
+ * int first = scans.indexOf(symbols, (short) 'A', 0, true);
+ * int cards = scans.collect(symbols, (short) 0, false, cells);
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link VectorScansTest} compares the vector scans with the scalar ones.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public abstract class BoardScans {
+
+    /**
+     * The scans used by the grids.
+     */
+    private static final BoardScans INSTANCE = load();
+
+    /**
+     * The scans, one element at a time.
+     */
+    public static final class Scalar extends BoardScans {
+
+        @Override
+        public int indexOf(short[] values, short value, int from, boolean equal) {
+            for (int i = Math.max(from, 0); i < values.length; i++) {
+                if (values[i] == value == equal) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int count(short[] values, short value) {
+            int count = 0;
+            for (short v : values) {
+                if (v == value) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int collect(short[] values, short value, boolean equal, int[] out) {
+            int count = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == value == equal) {
+                    out[count++] = i;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+    }
+
+    /**
+     * Get the fastest scans available.
+     *
+     * @return the scans
+     */
+    public static BoardScans get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load the vector scans, if possible.
+     *
+     * @return the vector scans, the scalar ones if unavailable
+     */
+    private static BoardScans load() {
+        if (Boolean.getBoolean("memory.scalarScans")) {
+            return new Scalar();
+        }
+        try {
+            return (BoardScans) Class.forName("ch.mazluc.game.VectorBoardScans").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // jdk.incubator.vector not in the module graph
+            return new Scalar();
+        }
+    }
+
+    /**
+     * Find the first element equal, or not equal, to a value.
+     *
+     * @param values the elements
+     * @param value  the value
+     * @param from   the index to start from
+     * @param equal  true to find an element equal to the value, false for
+     *               one that is not
+     * @return the index of the element, -1 if none
+     */
+    public abstract int indexOf(short[] values, short value, int from, boolean equal);
+
+    /**
+     * Count the elements equal to a value.
+     *
+     * @param values the elements
+     * @param value  the value
+     * @return the number of elements
+     */
+    public abstract int count(short[] values, short value);
+
+    /**
+     * Collect the indexes of the elements equal, or not equal, to a value,
+     * in increasing order.
+     *
+     * @param values the elements
+     * @param value  the value
+     * @param equal  true to collect the elements equal to the value, false
+     *               the ones that are not
+     * @param out    the indexes, as long as the elements
+     * @return the number of indexes
+     */
+    public abstract int collect(short[] values, short value, boolean equal, int[] out);
+
+    /**
+     * Get the name of the implementation.
+     *
+     * @return the name
+     */
+    public abstract String getName();
+}
@@ -0,0 +1,104 @@
+package ch.mazluc.game;
+
+import java.util.Locale;
+
+/**
+ * <p>
+ * The tunable parameters of a {@link ProbabilisticBot}.
+ *
+ * <p>
+ * Parameters are immutable and can be written to and read from a single
+ * line of text, which is how `BotTuner` saves its progress.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class BotParameters {
+
+    /**
+     * The maximum number of seen cards remembered.
+     */
+    private final int memorySize;
+
+    /**
+     * Tolerance to the risk of the bomb, from 0 to 1.
+     */
+    private final double riskTolerance;
+
+    /**
+     * Weight of the jolly points.
+     */
+    private final double jollyPreference;
+
+    /**
+     * Constructor.
+     *
+     * @param memorySize      the maximum number of seen cards remembered
+     * @param riskTolerance   tolerance to the risk of the bomb, from 0 to 1
+     * @param jollyPreference weight of the jolly points
+     */
+    public BotParameters(int memorySize, double riskTolerance, double jollyPreference) {
+        this.memorySize = memorySize;
+        this.riskTolerance = riskTolerance;
+        this.jollyPreference = jollyPreference;
+    }
+
+    /**
+     * Get the maximum number of seen cards remembered.
+     *
+     * @return the memory size
+     */
+    public int getMemorySize() {
+        return this.memorySize;
+    }
+
+    /**
+     * Get the tolerance to the risk of the bomb.
+     *
+     * @return the risk tolerance
+     */
+    public double getRiskTolerance() {
+        return this.riskTolerance;
+    }
+
+    /**
+     * Get the weight of the jolly points.
+     *
+     * @return the jolly preference
+     */
+    public double getJollyPreference() {
+        return this.jollyPreference;
+    }
+
+    /**
+     * Parse parameters written by {@link #toString()}.
+     *
+     * @param line the line
+     * @return the parameters
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public static BotParameters parse(String line) {
+        String[] fields = line.strip().split("\\s+");
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("Invalid bot parameters: " + line);
+        }
+        try {
+            return new BotParameters(Integer.parseInt(fields[0]), Double.parseDouble(fields[1]),
+                    Double.parseDouble(fields[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid bot parameters: " + line, e);
+        }
+    }
+
+    /**
+     * Get the string representation of the parameters:
+     * memory size, risk tolerance and jolly preference.
+     *
+     * @return the string
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d %.6f %.6f", this.memorySize, this.riskTolerance,
+                this.jollyPreference);
+    }
+}
@@ -0,0 +1,44 @@
+package ch.mazluc.game;
+
+/**
+ * <p>
+ * A computer player.
+ *
+ * <p>
+ * A bot watches every flip of the game it is attached to (its own and
+ * those of the other players, as a human sitting at the table would) and,
+ * when it is its turn, chooses the next card to flip.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * BotStrategy bot = new ProbabilisticBot(0.1, 1.0);
+ * bot.attach(engine);
+ * engine.flip(bot.chooseFlip(engine)); // when it is the bot's turn
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public interface BotStrategy extends GameListener {
+
+    /**
+     * Start playing a game.
+     * Forgets everything about the previous game and registers the bot as
+     * listener of the engine.
+     *
+     * @param engine the engine of the game
+     */
+    void attach(GameEngine engine);
+
+    /**
+     * Choose the next card to flip for the current player.
+     *
+     * @param engine the engine of the game
+     * @return the coordinate of the card
+     */
+    Coordinate chooseFlip(GameEngine engine);
+}
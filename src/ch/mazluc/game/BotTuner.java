@@ -0,0 +1,451 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * <p>
+ * Genetic optimizer of the {@link BotParameters}.
+ *
+ * <p>
+ * Every generation each candidate plays a number of headless games
+ * (see {@link Simulation}) against reference bots, taking every seat in
+ * turn, and its fitness is its average score margin over the opponents.
+ * All the candidates of a generation play the same boards, so that they
+ * are compared on equal terms. Games are split in batches that run in
+ * parallel on all the cores.
+ *
+ * <p>
+ * The best candidates survive unchanged, the others are bred by
+ * tournament selection, uniform crossover and mutation. The population
+ * is saved after every generation, with the seed of the run, and a run
+ * started on an existing checkpoint resumes from it: every generation
+ * draws from a generator seeded by the seed of the run and the number of
+ * the generation, so the resumed run goes on as if it had never stopped.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * BotTuner tuner = new BotTuner(6, 6, 2, 2000, Paths.get("bot-tuner.txt"), System.nanoTime());
+ * try {
+ *     List<BotTuner.Candidate> population = tuner.evolve(20, 24);
+ *     BotParameters best = population.get(0).getParameters();
+ * } finally {
+ *     tuner.shutdown();
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link BotTunerTest} checks that a run resumed from its checkpoint goes
+ * on as the same run never stopped.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class BotTuner {
+
+    /**
+     * A candidate and its fitness.
+     */
+    public static final class Candidate {
+
+        /**
+         * The parameters.
+         */
+        private final BotParameters parameters;
+
+        /**
+         * The fitness.
+         */
+        private final double fitness;
+
+        /**
+         * Constructor.
+         *
+         * @param parameters the parameters
+         * @param fitness    the fitness
+         */
+        private Candidate(BotParameters parameters, double fitness) {
+            this.parameters = parameters;
+            this.fitness = fitness;
+        }
+
+        /**
+         * Get the parameters.
+         *
+         * @return the parameters
+         */
+        public BotParameters getParameters() {
+            return this.parameters;
+        }
+
+        /**
+         * Get the fitness: the average score margin over the opponents.
+         *
+         * @return the fitness
+         */
+        public double getFitness() {
+            return this.fitness;
+        }
+    }
+
+    /**
+     * The parameters of the reference opponents.
+     */
+    public static final BotParameters REFERENCE = new BotParameters(8, 0.5, 1.0);
+
+    /**
+     * The number of games played by a single task ({@value}).
+     */
+    private static final int BATCH_SIZE = 32;
+
+    /**
+     * The number of candidates surviving unchanged ({@value}).
+     */
+    private static final int ELITES = 2;
+
+    /**
+     * The number of candidates in a selection tournament ({@value}).
+     */
+    private static final int TOURNAMENT_SIZE = 3;
+
+    /**
+     * The maximum jolly preference.
+     */
+    private static final double MAX_JOLLY_PREFERENCE = 3.0;
+
+    /**
+     * The number of rows of the boards.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns of the boards.
+     */
+    private final int cols;
+
+    /**
+     * The number of players of every game.
+     */
+    private final int playerCount;
+
+    /**
+     * The number of games played by every candidate.
+     */
+    private final int gamesPerCandidate;
+
+    /**
+     * The file where the population is saved, null for none.
+     */
+    private final Path checkpoint;
+
+    /**
+     * The executor of the batches.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The seed of the evolution.
+     */
+    private long seed;
+
+    /**
+     * The random number generator of the current generation.
+     */
+    private Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param rows              the number of rows of the boards
+     * @param cols              the number of columns of the boards
+     * @param playerCount       the number of players of every game
+     * @param gamesPerCandidate the number of games played by every candidate
+     * @param checkpoint        the file where the population is saved, null
+     *                          for none
+     * @param seed              the seed of the evolution, replaced by the
+     *                          one of the checkpoint when resuming
+     */
+    public BotTuner(int rows, int cols, int playerCount, int gamesPerCandidate, Path checkpoint, long seed) {
+        this.rows = rows;
+        this.cols = cols;
+        this.playerCount = Math.max(Constant.MIN_PLAYERS, Math.min(Constant.MAX_PLAYERS, playerCount));
+        this.gamesPerCandidate = Math.max(gamesPerCandidate, 1);
+        this.checkpoint = checkpoint;
+        this.seed = seed;
+        this.pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Evolve a population.
+     * If the checkpoint exists, evolution resumes from it.
+     *
+     * @param generations    the number of generations to run
+     * @param populationSize the size of the population
+     * @return the last evaluated population, best first
+     * @throws IOException if the checkpoint can not be read or written
+     */
+    public List<Candidate> evolve(int generations, int populationSize) throws IOException {
+        return this.evolve(generations, populationSize, (best, generation) -> {
+        });
+    }
+
+    /**
+     * Evolve a population, reporting the best candidate of every
+     * generation.
+     * If the checkpoint exists, evolution resumes from it: the saved
+     * population is cut to the population size, the elites first, or
+     * filled with random candidates.
+     *
+     * @param generations    the number of generations to run
+     * @param populationSize the size of the population
+     * @param onGeneration   called with the best candidate and the number
+     *                       of every generation evaluated
+     * @return the last evaluated population, best first
+     * @throws IOException if the checkpoint can not be read or written
+     */
+    public List<Candidate> evolve(int generations, int populationSize, ObjIntConsumer<Candidate> onGeneration)
+            throws IOException {
+        int generation = 0;
+        List<BotParameters> population = new ArrayList<>();
+        if (this.checkpoint != null && Files.exists(this.checkpoint)) {
+            List<String> lines = Files.readAllLines(this.checkpoint, StandardCharsets.UTF_8);
+            String[] header = lines.get(0).strip().split("\\s+");
+            generation = Integer.parseInt(header[0]);
+            if (header.length > 1) {
+                this.seed = Long.parseLong(header[1]);
+            }
+            for (String line : lines.subList(1, lines.size())) {
+                if (!line.isBlank() && population.size() < populationSize) {
+                    population.add(BotParameters.parse(line));
+                }
+            }
+        }
+        List<Candidate> scored = new ArrayList<>();
+        for (int i = 0; i < generations; i++, generation++) {
+            this.random = new Random(this.seed + generation * 0x9E3779B97F4A7C15L);
+            while (population.size() < populationSize) {
+                population.add(this.randomParameters());
+            }
+            scored = this.evaluate(population, this.random.nextLong());
+            onGeneration.accept(scored.get(0), generation);
+            population = this.breed(scored, populationSize);
+            this.save(generation + 1, population);
+        }
+        return scored;
+    }
+
+    /**
+     * Stop the executor.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Evaluate every candidate of a population.
+     *
+     * @param population the population
+     * @param seed       the seed of the boards of this generation
+     * @return the candidates, best first
+     */
+    public List<Candidate> evaluate(List<BotParameters> population, long seed) {
+        List<List<Future<Double>>> batches = new ArrayList<>();
+        for (BotParameters parameters : population) {
+            List<Future<Double>> futures = new ArrayList<>();
+            for (int first = 0; first < this.gamesPerCandidate; first += BATCH_SIZE) {
+                int from = first;
+                int to = Math.min(first + BATCH_SIZE, this.gamesPerCandidate);
+                futures.add(this.pool.submit(() -> this.playBatch(parameters, seed, from, to)));
+            }
+            batches.add(futures);
+        }
+        List<Candidate> scored = new ArrayList<>();
+        for (int i = 0; i < population.size(); i++) {
+            double total = 0;
+            for (Future<Double> future : batches.get(i)) {
+                total += join(future);
+            }
+            scored.add(new Candidate(population.get(i), total / this.gamesPerCandidate));
+        }
+        scored.sort(Comparator.comparingDouble(Candidate::getFitness).reversed());
+        return scored;
+    }
+
+    /**
+     * Play a batch of games.
+     *
+     * @param parameters the parameters of the candidate
+     * @param seed       the seed of the generation
+     * @param from       the first game, inclusive
+     * @param to         the last game, exclusive
+     * @return the sum of the score margins
+     */
+    private double playBatch(BotParameters parameters, long seed, int from, int to) {
+        double total = 0;
+        for (int game = from; game < to; game++) {
+            // the board depends on the game only: every candidate plays the same boards
+            long gameSeed = seed + game * 0x9E3779B97F4A7C15L;
+            SplittableRandom botRandom = new SplittableRandom(gameSeed);
+            Grid grid = new Grid(this.rows, this.cols, new Random(gameSeed));
+            grid.fill();
+            int seat = game % this.playerCount;
+            BotStrategy[] bots = new BotStrategy[this.playerCount];
+            for (int i = 0; i < bots.length; i++) {
+                bots[i] = new ProbabilisticBot(i == seat ? parameters : REFERENCE, botRandom.split());
+            }
+            Player[] players = Simulation.players(this.playerCount);
+            Simulation.play(grid, players, bots);
+            double others = 0;
+            for (int i = 0; i < players.length; i++) {
+                if (i != seat) {
+                    others += players[i].getScore();
+                }
+            }
+            total += players[seat].getScore() - others / (players.length - 1);
+        }
+        return total;
+    }
+
+    /**
+     * Breed the next population.
+     *
+     * @param scored         the evaluated population, best first
+     * @param populationSize the size of the population
+     * @return the next population
+     */
+    private List<BotParameters> breed(List<Candidate> scored, int populationSize) {
+        List<BotParameters> next = new ArrayList<>();
+        for (int i = 0; i < Math.min(ELITES, scored.size()); i++) {
+            next.add(scored.get(i).parameters);
+        }
+        while (next.size() < populationSize) {
+            BotParameters a = this.tournament(scored);
+            BotParameters b = this.tournament(scored);
+            next.add(this.mutate(new BotParameters(
+                    this.random.nextBoolean() ? a.getMemorySize() : b.getMemorySize(),
+                    this.random.nextBoolean() ? a.getRiskTolerance() : b.getRiskTolerance(),
+                    this.random.nextBoolean() ? a.getJollyPreference() : b.getJollyPreference())));
+        }
+        return next;
+    }
+
+    /**
+     * Select a parent by tournament.
+     *
+     * @param scored the evaluated population, best first
+     * @return the parent
+     */
+    private BotParameters tournament(List<Candidate> scored) {
+        int best = scored.size();
+        for (int i = 0; i < TOURNAMENT_SIZE; i++) {
+            best = Math.min(best, this.random.nextInt(scored.size()));
+        }
+        return scored.get(best).parameters;
+    }
+
+    /**
+     * Mutate every parameter by a small gaussian step.
+     *
+     * @param parameters the parameters
+     * @return the mutated parameters
+     */
+    private BotParameters mutate(BotParameters parameters) {
+        int cells = this.rows * this.cols;
+        int memory = (int) Math.round(parameters.getMemorySize() + this.random.nextGaussian() * cells / 10.0);
+        double risk = parameters.getRiskTolerance() + this.random.nextGaussian() * 0.1;
+        double jolly = parameters.getJollyPreference() + this.random.nextGaussian() * 0.2;
+        return new BotParameters(clamp(memory, 2, cells), clamp(risk, 0, 1), clamp(jolly, 0, MAX_JOLLY_PREFERENCE));
+    }
+
+    /**
+     * Generate random parameters.
+     *
+     * @return the parameters
+     */
+    private BotParameters randomParameters() {
+        int cells = this.rows * this.cols;
+        return new BotParameters(2 + this.random.nextInt(cells - 1), this.random.nextDouble(),
+                this.random.nextDouble() * MAX_JOLLY_PREFERENCE);
+    }
+
+    /**
+     * Save the population, replacing the checkpoint atomically.
+     *
+     * @param generation the next generation, saved with the seed
+     * @param population the population
+     * @throws IOException if the checkpoint can not be written
+     */
+    private void save(int generation, List<BotParameters> population) throws IOException {
+        if (this.checkpoint == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(generation + " " + this.seed);
+        for (BotParameters parameters : population) {
+            // the exact values, not the rounded ones of toString, so a resumed run plays the same candidates
+            lines.add(parameters.getMemorySize() + " " + parameters.getRiskTolerance() + " "
+                    + parameters.getJollyPreference());
+        }
+        Path tmp = this.checkpoint.resolveSibling(this.checkpoint.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, this.checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Wait for the result of a batch.
+     *
+     * @param future the batch
+     * @return the result
+     */
+    private static double join(Future<Double> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch failed", e.getCause());
+        }
+    }
+
+    /**
+     * Clamp a value in a range.
+     *
+     * @param value the value
+     * @param min   the minimum
+     * @param max   the maximum
+     * @return the clamped value
+     */
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Clamp a value in a range.
+     *
+     * @param value the value
+     * @param min   the minimum
+     * @param max   the maximum
+     * @return the clamped value
+     */
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,108 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>
+ * Test of the checkpoints of the {@link BotTuner}.
+ *
+ * <p>
+ * Runs the optimizer on 6x6 boards with two players twice with the same
+ * seed: once straight through, once stopped halfway and resumed from the
+ * checkpoint by a tuner with another seed. Prints the best candidate of
+ * every generation and checks that both runs found the same ones.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.BotTunerTest [generations] [population]
+ * [games per candidate]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class BotTunerTest {
+
+    /**
+     * The seed of the runs.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private BotTunerTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args generations, population size and games per candidate,
+     *             all optional
+     * @throws IOException    if a checkpoint can not be read or written
+     * @throws AssertionError if the resumed run differs from the run
+     *                        straight through
+     */
+    public static void main(String[] args) throws IOException {
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int populationSize = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        Path straight = Files.createTempFile("bot-tuner", ".txt");
+        Path resumed = Files.createTempFile("bot-tuner", ".txt");
+        try {
+            // an empty checkpoint is a new run
+            Files.delete(straight);
+            Files.delete(resumed);
+            long start = System.nanoTime();
+            List<String> expected = run(straight, SEED, generations, populationSize, games);
+            System.out.printf(Locale.ROOT, "%d generations of %d candidates in %.1f s%n", generations,
+                    populationSize, (System.nanoTime() - start) / 1e9);
+            List<String> actual = run(resumed, SEED, generations / 2, populationSize, games);
+            actual.addAll(run(resumed, SEED + 1, generations - generations / 2, populationSize, games));
+            if (!actual.equals(expected)) {
+                throw new AssertionError("Resumed run " + actual + " differs from " + expected);
+            }
+            System.out.println("resumed run found the same candidates");
+        } finally {
+            Files.deleteIfExists(straight);
+            Files.deleteIfExists(resumed);
+        }
+    }
+
+    /**
+     * Run the optimizer, printing the best candidate of every generation.
+     *
+     * @param checkpoint     the checkpoint
+     * @param seed           the seed of the tuner
+     * @param generations    the number of generations
+     * @param populationSize the size of the population
+     * @param games          the number of games per candidate
+     * @return the best candidate of every generation, with its exact
+     *         parameters and fitness
+     * @throws IOException if the checkpoint can not be read or written
+     */
+    private static List<String> run(Path checkpoint, long seed, int generations, int populationSize, int games)
+            throws IOException {
+        List<String> best = new ArrayList<>();
+        BotTuner tuner = new BotTuner(6, 6, 2, games, checkpoint, seed);
+        try {
+            tuner.evolve(generations, populationSize, (candidate, generation) -> {
+                BotParameters parameters = candidate.getParameters();
+                System.out.printf(Locale.ROOT, "generation %d: best %s (%.3f)%n", generation, parameters,
+                        candidate.getFitness());
+                best.add(generation + ": " + parameters.getMemorySize() + " " + parameters.getRiskTolerance() + " "
+                        + parameters.getJollyPreference() + " " + candidate.getFitness());
+            });
+        } finally {
+            tuner.shutdown();
+        }
+        return best;
+    }
+}
@@ -1,5 +1,7 @@
 package ch.mazluc.game;
 
+import java.io.PrintStream;
+
 /**
  * <p>
  * A card in a card game.
@@ -41,6 +43,11 @@ public class Card {
      */
     private boolean flipped;
 
+    /**
+     * The journal recording the changes, null if none.
+     */
+    private MoveJournal journal;
+
     /**
      * Constructor.
      * Must provide a symbol and a points.
@@ -137,6 +144,9 @@ public class Card {
      * Flip the card.
      */
     public void flip() {
+        if (this.journal != null) {
+            this.journal.recordFlip(this);
+        }
         this.flipped = !this.flipped;
     }
 
@@ -146,6 +156,27 @@ public class Card {
      * @param state the state
      */
     public void flip(boolean state) {
+        if (this.journal != null && this.flipped != state) {
+            this.journal.recordFlip(this);
+        }
+        this.flipped = state;
+    }
+
+    /**
+     * Set the journal recording the changes.
+     *
+     * @param journal the journal, null to stop recording
+     */
+    void setJournal(MoveJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Restore the state of the card, without recording it.
+     *
+     * @param state the state
+     */
+    void restoreFlipped(boolean state) {
         this.flipped = state;
     }
 
@@ -180,10 +211,28 @@ public class Card {
      * Print the card.
      */
     public void print() {
+        this.print(System.out);
+    }
+
+    /**
+     * Print the card on the given stream.
+     *
+     * @param out the output stream
+     */
+    public void print(PrintStream out) {
         if (flipped) {
-            System.out.print(this.symbol);
+            out.print(this.symbol);
         } else {
-            System.out.print("!");
+            out.print("!");
         }
     }
+
+    /**
+     * Append the card to a frame.
+     *
+     * @param frame the frame
+     */
+    public void print(FrameBuffer frame) {
+        frame.append(this.flipped ? this.symbol : '!');
+    }
 }
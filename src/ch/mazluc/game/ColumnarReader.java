@@ -0,0 +1,365 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LongSummaryStatistics;
+import java.util.function.BiConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Reader of the files written by {@link ColumnarWriter}.
+ *
+ * <p>
+ * Every block is memory-mapped, and every column of a block can be
+ * decoded without touching the others, so scanning a column reads only
+ * that column. Scans decode the blocks in parallel, each into its own
+ * buffer, and combine the partial results.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (ColumnarReader reader = new ColumnarReader(path)) {
+ *     double turns = reader.summarize("turns").getAverage();
+ * }
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class ColumnarReader implements Closeable {
+
+    /**
+     * The size of the footer trailer: footer offset, block count, magic.
+     */
+    private static final int TRAILER = 16;
+
+    /**
+     * The maximum size of the header mapped to read the column names.
+     */
+    private static final long MAX_HEADER = 1 << 20;
+
+    /**
+     * The file channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The names of the columns.
+     */
+    private final String[] columns;
+
+    /**
+     * The mapped blocks.
+     */
+    private final MappedByteBuffer[] blocks;
+
+    /**
+     * The row count of every block.
+     */
+    private final int[] blockRows;
+
+    /**
+     * The total number of rows.
+     */
+    private final long rows;
+
+    /**
+     * The buffer every thread decodes a column into.
+     */
+    private final ThreadLocal<long[]> buffers = ThreadLocal
+            .withInitial(() -> new long[ColumnarWriter.BLOCK_ROWS]);
+
+    /**
+     * Constructor.
+     * Reads the header and the footer and maps every block.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public ColumnarReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = this.channel.size();
+            if (size < TRAILER + 12) {
+                throw new IOException("Not a columnar file: " + path);
+            }
+            ByteBuffer trailer = this.channel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER, TRAILER);
+            long footer = trailer.getLong();
+            int blockCount = trailer.getInt();
+            if (trailer.getInt() != ColumnarWriter.MAGIC) {
+                throw new IOException("Not a columnar file: " + path);
+            }
+            ByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(footer, MAX_HEADER));
+            DataInputStream in = new DataInputStream(new InputStream() {
+                @Override
+                public int read() {
+                    return header.hasRemaining() ? header.get() & 0xFF : -1;
+                }
+            });
+            if (in.readInt() != ColumnarWriter.MAGIC || in.readInt() != ColumnarWriter.VERSION) {
+                throw new IOException("Unsupported columnar file: " + path);
+            }
+            this.columns = new String[in.readInt()];
+            for (int i = 0; i < this.columns.length; i++) {
+                this.columns[i] = in.readUTF();
+            }
+            ByteBuffer index = this.channel.map(FileChannel.MapMode.READ_ONLY, footer, blockCount * 12L);
+            this.blocks = new MappedByteBuffer[blockCount];
+            this.blockRows = new int[blockCount];
+            long[] offsets = new long[blockCount + 1];
+            long total = 0;
+            for (int i = 0; i < blockCount; i++) {
+                offsets[i] = index.getLong();
+                this.blockRows[i] = index.getInt();
+                total += this.blockRows[i];
+            }
+            offsets[blockCount] = footer;
+            for (int i = 0; i < blockCount; i++) {
+                this.blocks[i] = this.channel.map(FileChannel.MapMode.READ_ONLY, offsets[i],
+                        offsets[i + 1] - offsets[i]);
+            }
+            this.rows = total;
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the names of the columns.
+     *
+     * @return the names, a copy
+     */
+    public String[] getColumns() {
+        return this.columns.clone();
+    }
+
+    /**
+     * Get the index of a column.
+     *
+     * @param name the name of the column
+     * @return the index
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public int getColumn(String name) {
+        for (int i = 0; i < this.columns.length; i++) {
+            if (this.columns[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No column " + name);
+    }
+
+    /**
+     * Get the total number of rows.
+     *
+     * @return the number of rows
+     */
+    public long getRowCount() {
+        return this.rows;
+    }
+
+    /**
+     * Get the number of blocks.
+     *
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return this.blocks.length;
+    }
+
+    /**
+     * Get the number of rows of a block.
+     *
+     * @param block the block
+     * @return the number of rows
+     */
+    public int getBlockRowCount(int block) {
+        return this.blockRows[block];
+    }
+
+    /**
+     * Decode a column of a block.
+     * Safe to call from several threads at once.
+     *
+     * @param block  the block
+     * @param column the index of the column
+     * @param into   the array the values are decoded into, at least as
+     *               long as the rows of the block
+     * @return the number of values
+     */
+    public int readColumn(int block, int column, long[] into) {
+        ByteBuffer buffer = this.blocks[block];
+        int count = buffer.getInt(0);
+        int offset = 4;
+        for (int i = 0; i < column; i++) {
+            offset += 4 + buffer.getInt(offset);
+        }
+        int position = offset + 4;
+        if (buffer.get(position++) == ColumnarWriter.DICTIONARY) {
+            long size = readVarint(buffer, position);
+            position = varintEnd(buffer, position);
+            long[] dictionary = new long[(int) size];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = unzigzag(readVarint(buffer, position));
+                position = varintEnd(buffer, position);
+            }
+            for (int i = 0; i < count; i++) {
+                into[i] = dictionary[buffer.get(position + i) & 0xFF];
+            }
+        } else {
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += unzigzag(value);
+                into[i] = previous;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Scan a column, decoding the blocks in parallel.
+     * Every thread accumulates into its own container, then the
+     * containers are combined.
+     *
+     * @param <R>         the type of the result
+     * @param name        the name of the column
+     * @param supplier    creates an empty container
+     * @param accumulator adds a value to a container
+     * @param combiner    merges the second container into the first one
+     * @return the result
+     */
+    public <R> R scan(String name, Supplier<R> supplier, ObjLongConsumer<R> accumulator,
+            BiConsumer<R, R> combiner) {
+        int column = this.getColumn(name);
+        return IntStream.range(0, this.blocks.length).parallel().collect(supplier, (result, block) -> {
+            long[] values = this.buffers.get();
+            int count = this.readColumn(block, column, values);
+            for (int i = 0; i < count; i++) {
+                accumulator.accept(result, values[i]);
+            }
+        }, combiner);
+    }
+
+    /**
+     * Count, min, max, sum and average of a column.
+     *
+     * @param name the name of the column
+     * @return the statistics
+     */
+    public LongSummaryStatistics summarize(String name) {
+        return this.scan(name, LongSummaryStatistics::new, LongSummaryStatistics::accept,
+                LongSummaryStatistics::combine);
+    }
+
+    /**
+     * Count the values of a column matching a predicate.
+     *
+     * @param name      the name of the column
+     * @param predicate the predicate
+     * @return the number of matching values
+     */
+    public long count(String name, LongPredicate predicate) {
+        return this.scan(name, () -> new long[1], (count, value) -> {
+            if (predicate.test(value)) {
+                count[0]++;
+            }
+        }, (a, b) -> a[0] += b[0])[0];
+    }
+
+    /**
+     * Count how many times every value from 0 to `size - 1` appears in a
+     * column; other values are ignored.
+     *
+     * @param name the name of the column
+     * @param size the number of values counted
+     * @return the counts
+     */
+    public long[] histogram(String name, int size) {
+        return this.scan(name, () -> new long[size], (counts, value) -> {
+            if (value >= 0 && value < size) {
+                counts[(int) value]++;
+            }
+        }, (a, b) -> {
+            for (int i = 0; i < size; i++) {
+                a[i] += b[i];
+            }
+        });
+    }
+
+    /**
+     * Close the file.
+     * The mapped blocks stay valid until they are garbage collected.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Read an unsigned varint.
+     *
+     * @param buffer   the buffer
+     * @param position the position of the first byte
+     * @return the value
+     */
+    private static long readVarint(ByteBuffer buffer, int position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Find the position after a varint.
+     *
+     * @param buffer   the buffer
+     * @param position the position of the first byte
+     * @return the position after the last byte
+     */
+    private static int varintEnd(ByteBuffer buffer, int position) {
+        while (buffer.get(position++) < 0) {
+            // skip the continuation bytes
+        }
+        return position;
+    }
+
+    /**
+     * Reverse the zigzag encoding of {@link ColumnarWriter}.
+     *
+     * @param value the encoded value
+     * @return the signed value
+     */
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
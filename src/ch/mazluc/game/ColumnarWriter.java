@@ -0,0 +1,361 @@
+package ch.mazluc.game;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Streaming writer of a table of `long` columns in a compact binary
+ * format, read back by {@link ColumnarReader}.
+ *
+ * <p>
+ * Rows are buffered column by column and written in blocks of
+ * {@value #BLOCK_ROWS} rows as the buffer fills, so memory stays
+ * constant however many rows are written. Every column of a block is
+ * encoded on its own:
+ * <ul>
+ * <li>with a dictionary when it holds at most {@value #DICTIONARY_SIZE}
+ * distinct values: the values once, then one byte per row;
+ * <li>otherwise with deltas: the difference from the previous row as a
+ * zigzag varint, one byte for the counters and ids that barely change.
+ * </ul>
+ *
+ * <p>
+ * File layout:
+ *
+ * <pre>
+ * header  magic, version, column count, column names
+ * block   row count, length of every column, columns
+ * ...
+ * footer  offset and row count of every block,
+ *         footer offset, block count, magic
+ * </pre>
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (ColumnarWriter writer = new ColumnarWriter(path, "game", "turns")) {
+ *     writer.writeRow(game, turns);
+ * }
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class ColumnarWriter implements Closeable {
+
+    /**
+     * The magic number at the start and at the end of the file ("MCOL").
+     */
+    static final int MAGIC = 0x4D434F4C;
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Encoding of a column with deltas.
+     */
+    static final byte DELTA = 0;
+
+    /**
+     * Encoding of a column with a dictionary.
+     */
+    static final byte DICTIONARY = 1;
+
+    /**
+     * The number of rows of a full block ({@value}).
+     */
+    public static final int BLOCK_ROWS = 1 << 16;
+
+    /**
+     * The maximum number of values of a dictionary ({@value}).
+     */
+    static final int DICTIONARY_SIZE = 256;
+
+    /**
+     * The output stream.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The rows of the current block, column by column.
+     */
+    private final long[][] columns;
+
+    /**
+     * The number of rows of the current block.
+     */
+    private int rows;
+
+    /**
+     * The number of bytes written so far.
+     */
+    private long position;
+
+    /**
+     * The offset of every block written.
+     */
+    private long[] blockOffsets = new long[16];
+
+    /**
+     * The row count of every block written.
+     */
+    private int[] blockRows = new int[16];
+
+    /**
+     * The number of blocks written.
+     */
+    private int blocks;
+
+    /**
+     * The buffer in which a column is encoded.
+     */
+    private byte[] chunk = new byte[BLOCK_ROWS * 2];
+
+    /**
+     * The length of the encoded column.
+     */
+    private int chunkLength;
+
+    /**
+     * The open-addressing table of the dictionary: values.
+     */
+    private final long[] dictionaryKeys = new long[DICTIONARY_SIZE * 4];
+
+    /**
+     * The open-addressing table of the dictionary: ids plus one, 0 if free.
+     */
+    private final int[] dictionaryIds = new int[DICTIONARY_SIZE * 4];
+
+    /**
+     * The values of the dictionary, in order of id.
+     */
+    private final long[] dictionary = new long[DICTIONARY_SIZE];
+
+    /**
+     * Constructor.
+     * Creates the file, replacing it if it exists, and writes the header.
+     *
+     * @param path    the file
+     * @param columns the names of the columns
+     * @throws IOException if the file cannot be written
+     */
+    public ColumnarWriter(Path path, String... columns) throws IOException {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("At least one column is needed");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.columns = new long[columns.length][BLOCK_ROWS];
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(columns.length);
+        for (String column : columns) {
+            this.out.writeUTF(column);
+        }
+        this.position = this.out.size();
+    }
+
+    /**
+     * Write a row.
+     * The values are copied, so the array can be reused.
+     *
+     * @param values the value of every column
+     * @throws IOException if the file cannot be written
+     */
+    public void writeRow(long... values) throws IOException {
+        if (values.length != this.columns.length) {
+            throw new IllegalArgumentException("Expected " + this.columns.length + " values");
+        }
+        for (int i = 0; i < values.length; i++) {
+            this.columns[i][this.rows] = values[i];
+        }
+        if (++this.rows == BLOCK_ROWS) {
+            this.flushBlock();
+        }
+    }
+
+    /**
+     * Write the last block and the footer, and close the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.rows > 0) {
+                this.flushBlock();
+            }
+            long footer = this.position;
+            for (int i = 0; i < this.blocks; i++) {
+                this.out.writeLong(this.blockOffsets[i]);
+                this.out.writeInt(this.blockRows[i]);
+            }
+            this.out.writeLong(footer);
+            this.out.writeInt(this.blocks);
+            this.out.writeInt(MAGIC);
+        } finally {
+            this.out.close();
+        }
+    }
+
+    /**
+     * Encode and write the current block.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void flushBlock() throws IOException {
+        if (this.blocks == this.blockOffsets.length) {
+            this.blockOffsets = Arrays.copyOf(this.blockOffsets, this.blocks * 2);
+            this.blockRows = Arrays.copyOf(this.blockRows, this.blocks * 2);
+        }
+        this.blockOffsets[this.blocks] = this.position;
+        this.blockRows[this.blocks] = this.rows;
+        this.blocks++;
+        this.out.writeInt(this.rows);
+        this.position += 4;
+        for (long[] column : this.columns) {
+            this.encode(column, this.rows);
+            this.out.writeInt(this.chunkLength);
+            this.out.write(this.chunk, 0, this.chunkLength);
+            this.position += 4 + this.chunkLength;
+        }
+        this.rows = 0;
+    }
+
+    /**
+     * Encode a column into the chunk buffer, with a dictionary if it has
+     * few distinct values, with deltas otherwise.
+     *
+     * @param values the values
+     * @param count  the number of values
+     */
+    private void encode(long[] values, int count) {
+        this.chunkLength = 0;
+        int size = this.buildDictionary(values, count);
+        if (size > 0) {
+            this.put(DICTIONARY);
+            this.putVarint(size);
+            for (int i = 0; i < size; i++) {
+                this.putVarint(zigzag(this.dictionary[i]));
+            }
+            this.ensure(count);
+            for (int i = 0; i < count; i++) {
+                this.chunk[this.chunkLength++] = (byte) this.lookup(values[i]);
+            }
+        } else {
+            this.put(DELTA);
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                this.putVarint(zigzag(values[i] - previous));
+                previous = values[i];
+            }
+        }
+    }
+
+    /**
+     * Build the dictionary of a column.
+     *
+     * @param values the values
+     * @param count  the number of values
+     * @return the number of distinct values, 0 if there are too many
+     */
+    private int buildDictionary(long[] values, int count) {
+        Arrays.fill(this.dictionaryIds, 0);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = this.slot(values[i]);
+            if (this.dictionaryIds[slot] == 0) {
+                if (size == DICTIONARY_SIZE) {
+                    return 0;
+                }
+                this.dictionaryKeys[slot] = values[i];
+                this.dictionaryIds[slot] = ++size;
+                this.dictionary[size - 1] = values[i];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the id of a value of the dictionary.
+     *
+     * @param value the value
+     * @return the id
+     */
+    private int lookup(long value) {
+        return this.dictionaryIds[this.slot(value)] - 1;
+    }
+
+    /**
+     * Find the slot of a value in the dictionary table: the slot holding
+     * it or the free one where it goes.
+     *
+     * @param value the value
+     * @return the slot
+     */
+    private int slot(long value) {
+        int mask = this.dictionaryIds.length - 1;
+        int slot = Long.hashCode(value * 0x9E3779B97F4A7C15L) & mask;
+        while (this.dictionaryIds[slot] != 0 && this.dictionaryKeys[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Append a byte to the chunk.
+     *
+     * @param b the byte
+     */
+    private void put(byte b) {
+        this.ensure(1);
+        this.chunk[this.chunkLength++] = b;
+    }
+
+    /**
+     * Append an unsigned varint to the chunk: 7 bits per byte, the high
+     * bit set on every byte but the last.
+     *
+     * @param value the value
+     */
+    private void putVarint(long value) {
+        this.ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            this.chunk[this.chunkLength++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        this.chunk[this.chunkLength++] = (byte) value;
+    }
+
+    /**
+     * Make room in the chunk buffer.
+     *
+     * @param bytes the number of bytes to append
+     */
+    private void ensure(int bytes) {
+        if (this.chunkLength + bytes > this.chunk.length) {
+            this.chunk = Arrays.copyOf(this.chunk, Math.max(this.chunk.length * 2, this.chunkLength + bytes));
+        }
+    }
+
+    /**
+     * Map a signed value to an unsigned one, small in absolute value
+     * to small: 0, -1, 1, -2, ... to 0, 1, 2, 3, ...
+     *
+     * @param value the value
+     * @return the zigzag encoding
+     */
+    static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+}
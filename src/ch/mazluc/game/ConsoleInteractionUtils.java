@@ -1,6 +1,9 @@
 package ch.mazluc.game;
 
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.Scanner;
+import java.util.function.IntConsumer;
 
 /**
  * <p>
@@ -26,16 +29,39 @@ import java.util.Scanner;
 public class ConsoleInteractionUtils {
 
     /**
-     * The scanner used to read user input.
+     * The stream the user input is read from.
      */
-    private final Scanner in;
+    private final InputStream source;
 
     /**
-     * Creates a new instance of the `ConsoleInteractionUtils` class.
+     * The scanner used to read user input, created at the first read.
+     */
+    private Scanner in;
+
+    /**
+     * The stream prompts and errors are printed on.
+     */
+    private final PrintStream out;
+
+    /**
+     * Creates a new instance of the `ConsoleInteractionUtils` class
+     * reading from `System.in` and printing on `System.out`.
      */
     public ConsoleInteractionUtils() {
-        this.in = new Scanner(System.in);
-        ANSIUtils.clearScreen();
+        this(System.in, System.out);
+    }
+
+    /**
+     * Creates a new instance of the `ConsoleInteractionUtils` class
+     * on the given streams.
+     *
+     * @param in  the stream the user input is read from
+     * @param out the stream prompts and errors are printed on
+     */
+    public ConsoleInteractionUtils(InputStream in, PrintStream out) {
+        this.source = in;
+        this.out = out;
+        ANSIUtils.clearScreen(this.out);
     }
 
     /**
@@ -47,16 +73,20 @@ public class ConsoleInteractionUtils {
      * @return the integer
      */
     public int readInt(String msg) {
-        System.out.print(msg + ": ");
+        this.out.print(msg + ": ");
+        GameEvents.InputWait wait = new GameEvents.InputWait();
+        wait.begin();
         int value;
-        while (!this.in.hasNextInt()) {
-            this.in.nextLine();
-            ANSIUtils.setForegroundColor(ANSIUtils.RED);
-            System.out.println("Error, must be an integer");
-            ANSIUtils.reset();
-            System.out.print(msg + ": ");
+        while (!this.scanner().hasNextInt()) {
+            this.scanner().nextLine();
+            ANSIUtils.setForegroundColor(this.out, ANSIUtils.RED);
+            this.out.println("Error, must be an integer");
+            ANSIUtils.reset(this.out);
+            this.out.print(msg + ": ");
         }
-        value = this.in.nextInt();
+        value = this.scanner().nextInt();
+        wait.prompt = msg;
+        wait.commit();
         return value;
     }
 
@@ -72,14 +102,55 @@ public class ConsoleInteractionUtils {
     public int readIntInRange(int min, int max) {
         int value = this.readInt("Insert a number [" + min + "-" + max + "]");
         while (value < min || value > max) {
-            ANSIUtils.setForegroundColor(ANSIUtils.RED);
-            System.out.println("Number out of range");
-            ANSIUtils.reset();
+            ANSIUtils.setForegroundColor(this.out, ANSIUtils.RED);
+            this.out.println("Number out of range");
+            ANSIUtils.reset(this.out);
             value = this.readInt("Insert a number [" + min + "-" + max + "]");
         }
         return value;
     }
 
+    /**
+     * Reads an integer in a range, or a command: one of the given letters.
+     * Prints an error message if the input is neither.
+     * Prints a prompt message before reading the input.
+     *
+     * @param min      minimum value
+     * @param max      maximum value
+     * @param commands the letters of the commands
+     * @return the integer, or the letter of the command
+     */
+    public String readIntInRangeOrCommand(int min, int max, String commands) {
+        String msg = "Insert a number [" + min + "-" + max + "]";
+        GameEvents.InputWait wait = new GameEvents.InputWait();
+        wait.begin();
+        while (true) {
+            this.out.print(msg + ": ");
+            String token = this.scanner().next();
+            if (token.length() == 1 && commands.indexOf(token.charAt(0)) >= 0) {
+                this.scanner().nextLine();
+                wait.prompt = msg;
+                wait.commit();
+                return token;
+            }
+            ANSIUtils.setForegroundColor(this.out, ANSIUtils.RED);
+            try {
+                int value = Integer.parseInt(token);
+                if (value >= min && value <= max) {
+                    ANSIUtils.reset(this.out);
+                    wait.prompt = msg;
+                    wait.commit();
+                    return token;
+                }
+                this.out.println("Number out of range");
+            } catch (NumberFormatException e) {
+                this.scanner().nextLine();
+                this.out.println("Error, must be an integer");
+            }
+            ANSIUtils.reset(this.out);
+        }
+    }
+
     /**
      * Reads a non-blank or empty string from the user.
      * Prints an error message if the input is empty or contains only
@@ -90,19 +161,23 @@ public class ConsoleInteractionUtils {
      * @return the string
      */
     public String readNonBlankOrEmptyString(String msg) {
+        GameEvents.InputWait wait = new GameEvents.InputWait();
+        wait.begin();
         String value = "";
         boolean correctInput = false;
         while (!correctInput) {
-            System.out.print(msg + ": ");
-            value = this.in.nextLine().strip().trim();
+            this.out.print(msg + ": ");
+            value = this.scanner().nextLine().strip().trim();
             if (value.isBlank() || value.isEmpty()) {
-                ANSIUtils.setForegroundColor(ANSIUtils.RED);
-                System.out.println("Error: string is empty or contains only white spaces.");
-                ANSIUtils.reset();
+                ANSIUtils.setForegroundColor(this.out, ANSIUtils.RED);
+                this.out.println("Error: string is empty or contains only white spaces.");
+                ANSIUtils.reset(this.out);
             } else {
                 correctInput = true;
             }
         }
+        wait.prompt = msg;
+        wait.commit();
         return value;
     }
 
@@ -115,20 +190,24 @@ public class ConsoleInteractionUtils {
      * @return the string entered by the user
      */
     public String readStringWithMinMaxLength(String msg, int minLength, int maxLength) {
+        GameEvents.InputWait wait = new GameEvents.InputWait();
+        wait.begin();
         String value = "";
         boolean correctInput = false;
         while (!correctInput) {
-            System.out.print(msg + ": ");
-            value = this.in.nextLine().strip().trim();
+            this.out.print(msg + ": ");
+            value = this.scanner().nextLine().strip().trim();
             if ((value.length() < minLength || value.length() > maxLength) && !value.isBlank()) {
-                ANSIUtils.setForegroundColor(ANSIUtils.RED);
-                System.out.println("Error: string is shorter than " + minLength + " characters or longer than "
+                ANSIUtils.setForegroundColor(this.out, ANSIUtils.RED);
+                this.out.println("Error: string is shorter than " + minLength + " characters or longer than "
                         + maxLength + " characters.");
-                ANSIUtils.reset();
+                ANSIUtils.reset(this.out);
             } else {
                 correctInput = true;
             }
         }
+        wait.prompt = msg;
+        wait.commit();
         return value;
     }
 
@@ -140,7 +219,20 @@ public class ConsoleInteractionUtils {
      * @return true if the grid size is valid, false otherwise
      */
     public boolean isValidGridSize(int height, int width) {
-        return height > 0 && width > 0 && height * width <= Constant.MAX_CELLS && height * width % 2 == 0;
+        return this.isValidGridSize(height, width, Constant.MAX_CELLS);
+    }
+
+    /**
+     * Check if the grid size is valid, with a maximum number of cells.
+     * 
+     * @param height   height of the grid
+     * @param width    width of the grid
+     * @param maxCells the maximum number of cells
+     * @return true if the grid size is valid, false otherwise
+     */
+    public boolean isValidGridSize(int height, int width, int maxCells) {
+        long cells = (long) height * width;
+        return height > 0 && width > 0 && cells <= maxCells && cells % 2 == 0;
     }
 
     /**
@@ -152,6 +244,17 @@ public class ConsoleInteractionUtils {
      * @return the grid size
      */
     public int[] readValidGridSize() {
+        return this.readValidGridSize(Constant.MAX_CELLS);
+    }
+
+    /**
+     * Reads a valid grid size from the user, with a maximum number of
+     * cells.
+     * 
+     * @param maxCells the maximum number of cells
+     * @return the grid size
+     */
+    public int[] readValidGridSize(int maxCells) {
         int height;
         int width;
         boolean validGridSize;
@@ -161,12 +264,12 @@ public class ConsoleInteractionUtils {
                 - width > 1,
                 - height * width < %d
                 - height * width %% 2 == 0
-                """.formatted(Constant.MAX_CELLS);
-        System.out.println(message);
+                """.formatted(maxCells);
+        this.out.println(message);
         do {
-            height = this.readIntInRange(2, Constant.MAX_CELLS / 2);
-            width = this.readIntInRange(2, Constant.MAX_CELLS / height);
-            validGridSize = isValidGridSize(height, width);
+            height = this.readIntInRange(2, maxCells / 2);
+            width = this.readIntInRange(2, maxCells / height);
+            validGridSize = isValidGridSize(height, width, maxCells);
         } while (!validGridSize);
         return new int[] { height, width };
     }
@@ -200,33 +303,89 @@ public class ConsoleInteractionUtils {
                 - col < %d
                 """, gridHeight, gridWidth);
 
-        System.out.println(message);
-        System.out.println("Insert row: ");
+        this.out.println(message);
+        this.out.println("Insert row: ");
         int x = this.readIntInRange(1, gridHeight);
-        System.out.println("Insert column: ");
+        this.out.println("Insert column: ");
         int y = this.readIntInRange(1, gridWidth);
         return new Coordinate(x, y);
     }
 
+    /**
+     * Reads a valid coordinate from the user, or a command instead of the
+     * row: one of the given letters, handed to the caller.
+     *
+     * @param gridHeight the height of the grid
+     * @param gridWidth  the width of the grid
+     * @param commands   the letters of the commands
+     * @param onCommand  what to do with a command
+     * @return the coordinate, null if a command was read
+     */
+    public Coordinate readValidCoordinate(int gridHeight, int gridWidth, String commands, IntConsumer onCommand) {
+        if (commands.isEmpty()) {
+            return this.readValidCoordinate(gridHeight, gridWidth);
+        }
+        String message = String.format("""
+                Insert row and column of the coordinate such that:
+                - row > 0,
+                - row < %d,
+                - col > 0,
+                - col < %d
+                or, instead of the row, a command: %s
+                """, gridHeight, gridWidth, String.join(", ", commands.split("")));
+
+        this.out.println(message);
+        this.out.println("Insert row: ");
+        String row = this.readIntInRangeOrCommand(1, gridHeight, commands);
+        if (commands.indexOf(row.charAt(0)) >= 0) {
+            onCommand.accept(row.charAt(0));
+            return null;
+        }
+        this.out.println("Insert column: ");
+        int y = this.readIntInRange(1, gridWidth);
+        return new Coordinate(Integer.parseInt(row), y);
+    }
+
     /**
      * Reads an integer from the user.
      */
     public void readEnterToContinue() {
-        System.out.println("Press enter to continue...");
-        this.in.nextLine();
+        this.out.println("Press enter to continue...");
+        GameEvents.InputWait wait = new GameEvents.InputWait();
+        wait.begin();
+        this.scanner().nextLine();
+        wait.prompt = "continue";
+        wait.commit();
     }
 
     /**
      * Clears the scanner.
      */
     public void clearScanner() {
-        this.in.nextLine();
+        GameEvents.InputWait wait = new GameEvents.InputWait();
+        wait.begin();
+        this.scanner().nextLine();
+        wait.prompt = "line";
+        wait.commit();
+    }
+
+    /**
+     * Get the scanner, creating it at the first read: setting it up is
+     * not needed to show the first screen.
+     *
+     * @return the scanner
+     */
+    private Scanner scanner() {
+        if (this.in == null) {
+            this.in = new Scanner(this.source);
+        }
+        return this.in;
     }
 
     /**
      * Closes the scanner.
      */
     public void closeScanner() {
-        this.in.close();
+        this.scanner().close();
     }
 }
\ No newline at end of file
@@ -56,4 +56,14 @@ public final class Constant {
      * The points for a jolly card ({@value})
      */
     public static final int JOLLY_POINTS = 20;
+
+    /**
+     * The symbol of the bomb card ({@value})
+     */
+    public static final char BOMB_SYMBOL = 'ﬁ';
+
+    /**
+     * The symbol of the jolly card ({@value})
+     */
+    public static final char JOLLY_SYMBOL = '§';
 }
\ No newline at end of file
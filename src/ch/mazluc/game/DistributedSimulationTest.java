@@ -0,0 +1,145 @@
+package ch.mazluc.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * <p>
+ * Test of a simulation spread over local worker processes.
+ *
+ * <p>
+ * Runs a simulation on {@link SimulationWorker} processes started by a
+ * {@link SimulationCoordinator}, prints its throughput, and checks that the
+ * result is the one of the same games played in this process: it must not
+ * depend on how the shards were distributed, nor on the shards reassigned
+ * after a crash (`--chaos` replaces a worker with a {@link CrashingWorker}).
+ * With `--chaos` and a single worker, no worker is left to play the
+ * shards of the crashed one, and the coordinator must fail instead of
+ * waiting forever.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.DistributedSimulationTest [games] [workers]
+ * [--chaos]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class DistributedSimulationTest {
+
+    /**
+     * Worker crashing after a number of shards, to test the reassignment.
+     *
+     * <p>
+     * Usage: `java ch.mazluc.game.DistributedSimulationTest$CrashingWorker
+     * host port failAfter`
+     */
+    public static final class CrashingWorker {
+
+        /**
+         * Private constructor to prevent instantiation,
+         * as the class is only a process entry point.
+         *
+         * @throws IllegalStateException if called
+         */
+        private CrashingWorker() {
+            throw new IllegalStateException("Test class");
+        }
+
+        /**
+         * Run the worker: play shards, then crash, with no result and no
+         * goodbye, while the next shard is sent.
+         *
+         * @param args the host and the port of the coordinator, and the
+         *             number of shards after which to crash
+         * @throws IOException if the coordinator cannot be reached
+         */
+        public static void main(String[] args) throws IOException {
+            int failAfter = Integer.parseInt(args[2]);
+            try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(SimulationWorker.HELLO);
+                out.flush();
+                for (int shards = 0; shards < failAfter; shards++) {
+                    if (!SimulationWorker.playNext(in, out)) {
+                        return;
+                    }
+                }
+                Runtime.getRuntime().halt(1);
+            }
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private DistributedSimulationTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of games and of workers, both optional, and
+     *             `--chaos` to make a worker crash
+     * @throws IOException          if the workers cannot be started
+     * @throws InterruptedException if interrupted while waiting
+     * @throws AssertionError       if the result differs from the local one,
+     *                              or is found with no worker left
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 20_000;
+        int workers = 3;
+        boolean chaos = false;
+        int positional = 0;
+        for (String arg : args) {
+            if (arg.equals("--chaos")) {
+                chaos = true;
+            } else if (positional++ == 0) {
+                games = Integer.parseInt(arg);
+            } else {
+                workers = Integer.parseInt(arg);
+            }
+        }
+        long start = System.nanoTime();
+        SimulationAggregate result;
+        long reassigned;
+        try (SimulationCoordinator coordinator = new SimulationCoordinator(0, 0, games, 500, 6, 6, 2)) {
+            if (chaos) {
+                coordinator.launchLocalWorker(CrashingWorker.class.getName(), "2");
+                coordinator.launchLocalWorkers(workers - 1);
+            } else {
+                coordinator.launchLocalWorkers(workers);
+            }
+            try {
+                result = coordinator.await();
+            } catch (IllegalStateException e) {
+                if (chaos && workers == 1) {
+                    System.out.println("no worker left after the crash: " + e.getMessage());
+                    return;
+                }
+                throw e;
+            }
+            reassigned = coordinator.getReassigned();
+        }
+        if (chaos && workers == 1) {
+            throw new AssertionError("The coordinator kept waiting with no worker left");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(result);
+        System.out.printf("%d workers, %d shards reassigned: %.2f s (%.0f games/s)%n", workers, reassigned,
+                seconds, result.getGames() / seconds);
+        SimulationAggregate local = SimulationWorker.playShard(0, games, 6, 6, 2);
+        if (!local.toString().equals(result.toString())) {
+            throw new AssertionError("Distributed result differs from the local one:\n" + local);
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * The best move and the expected outcome of every endgame state of two
+ * players, solved in advance and looked up in a memory-mapped file.
+ *
+ * <p>
+ * Every flip is seen by both players, so with a perfect memory they know
+ * the same and a state of the game, from the point of view of the player
+ * to move, is:
+ * <ul>
+ * <li>the pairs never seen;
+ * <li>the singles, pairs with one card seen and the other not;
+ * <li>the known pairs, with both cards seen;
+ * <li>whether the bomb and the jolly are still hidden.
+ * </ul>
+ * The unseen cells are interchangeable, so the outcome of a flip only
+ * depends on these counts. The value of a state is the expected score of
+ * the player to move minus the one of the other, with both playing their
+ * best, under the rules of `Game.start`: a match or the jolly gives
+ * another turn, a wrong pair passes it, the bomb leaves everything still
+ * on the grid to the other player. The pairs are worth their mean points.
+ *
+ * <p>
+ * The moves of a turn are: take a known pair, flip an unseen card
+ * (then, if it is new, another unseen one or a known one to play safe),
+ * flip a known single then an unseen card, or pass by flipping two known
+ * cards. Passing does not change the state, so when both would pass the
+ * game would never end and the value is 0. Every other move reveals a
+ * card or removes a pair: the states are solved layer by layer, by number
+ * of unseen cells, and within a layer by number of known pairs; the
+ * states of a layer are spread over all the cores.
+ *
+ * <p>
+ * The states with at most `maxPairs` pairs on the grid are indexed by a
+ * perfect ranking, so a lookup is a read at an offset of the file, which
+ * holds a float value and a byte of moves per state: the best move that
+ * is not a pass, whether passing is better, and the second flip after a
+ * new card.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * EndgameTablebase.generate(Paths.get("endgame.tb"), 93, ProbabilisticBot.MEAN_PAIR_POINTS,
+ *         Constant.JOLLY_POINTS);
+ * try (EndgameTablebase tablebase = new EndgameTablebase(Paths.get("endgame.tb"))) {
+ *     EndgameTablebase.Move move = tablebase.getMove(3, 1, 0, true, false);
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link EndgameTablebaseTest} matches a bot using a tablebase against
+ * the same bot without it.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class EndgameTablebase implements Closeable {
+
+    /**
+     * The first flip of a turn.
+     */
+    public enum Move {
+        /**
+         * The game is over.
+         */
+        NONE,
+        /**
+         * Flip a known pair.
+         */
+        TAKE_PAIR,
+        /**
+         * Flip an unseen card, then see {@link #isSecondFlipSafe}.
+         */
+        FLIP_UNSEEN,
+        /**
+         * Flip a known single, then an unseen card.
+         */
+        FLIP_KNOWN,
+        /**
+         * Flip two known cards that do not match.
+         */
+        PASS
+    }
+
+    /**
+     * The magic number of the file, "METB".
+     */
+    private static final int MAGIC = 0x4D455442;
+
+    /**
+     * The version of the layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header.
+     */
+    private static final int HEADER = 64;
+
+    /**
+     * The bits of the best first move but passing in the byte of moves.
+     */
+    private static final int MOVE_MASK = 0x07;
+
+    /**
+     * The bit set when passing is better than any other move.
+     */
+    private static final int PASS_BETTER = 0x10;
+
+    /**
+     * The bit set when the second flip after a new card should be a known
+     * card.
+     */
+    private static final int SAFE_SECOND = 0x08;
+
+    /**
+     * The moves, by ordinal.
+     */
+    private static final Move[] MOVES = Move.values();
+
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapping of the file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The most pairs on the grid of a state.
+     */
+    private final int maxPairs;
+
+    /**
+     * The number of states.
+     */
+    private final int count;
+
+    /**
+     * The offset of the moves.
+     */
+    private final int movesOffset;
+
+    /**
+     * Constructor.
+     * Maps a generated file.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be mapped or is not a
+     *                     tablebase
+     */
+    public EndgameTablebase(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+        if (this.buffer.capacity() < HEADER || this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION
+                || this.buffer.getInt(12) != count(this.buffer.getInt(8))
+                || this.buffer.capacity() != HEADER + 5L * this.buffer.getInt(12)) {
+            this.channel.close();
+            throw new IOException("Not an endgame tablebase: " + path);
+        }
+        this.maxPairs = this.buffer.getInt(8);
+        this.count = this.buffer.getInt(12);
+        this.movesOffset = HEADER + 4 * this.count;
+    }
+
+    /**
+     * Get the most pairs on the grid of a state in the tablebase.
+     *
+     * @return the number of pairs
+     */
+    public int getMaxPairs() {
+        return this.maxPairs;
+    }
+
+    /**
+     * Get the number of states in the tablebase.
+     *
+     * @return the number of states
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Get the mean points of a pair the values are computed with.
+     *
+     * @return the points
+     */
+    public double getPairPoints() {
+        return this.buffer.getDouble(16);
+    }
+
+    /**
+     * Get the points of the jolly the values are computed with.
+     *
+     * @return the points
+     */
+    public double getJollyPoints() {
+        return this.buffer.getDouble(24);
+    }
+
+    /**
+     * Check if a state is in the tablebase.
+     *
+     * @param hidden  the pairs never seen
+     * @param singles the pairs with one card seen
+     * @param known   the pairs with both cards seen
+     * @return true if the state is in the tablebase
+     */
+    public boolean covers(int hidden, int singles, int known) {
+        return hidden >= 0 && singles >= 0 && known >= 0 && hidden + singles + known <= this.maxPairs;
+    }
+
+    /**
+     * Get the expected score of the player to move minus the one of the
+     * other.
+     *
+     * @param hidden  the pairs never seen
+     * @param singles the pairs with one card seen
+     * @param known   the pairs with both cards seen
+     * @param bomb    whether the bomb is hidden
+     * @param jolly   whether the jolly is hidden
+     * @return the value
+     * @throws IndexOutOfBoundsException if the state is not covered
+     */
+    public double getValue(int hidden, int singles, int known, boolean bomb, boolean jolly) {
+        return this.buffer.getFloat(HEADER + 4 * this.checkedIndex(hidden, singles, known, bomb, jolly));
+    }
+
+    /**
+     * Get the best first flip.
+     *
+     * @param hidden  the pairs never seen
+     * @param singles the pairs with one card seen
+     * @param known   the pairs with both cards seen
+     * @param bomb    whether the bomb is hidden
+     * @param jolly   whether the jolly is hidden
+     * @return the move
+     * @throws IndexOutOfBoundsException if the state is not covered
+     */
+    public Move getMove(int hidden, int singles, int known, boolean bomb, boolean jolly) {
+        byte moves = this.buffer.get(this.movesOffset + this.checkedIndex(hidden, singles, known, bomb, jolly));
+        return (moves & PASS_BETTER) != 0 ? Move.PASS : MOVES[moves & MOVE_MASK];
+    }
+
+    /**
+     * Get the best first flip that is not a pass, for players that must
+     * make progress (two bots passing would play forever).
+     *
+     * @param hidden  the pairs never seen
+     * @param singles the pairs with one card seen
+     * @param known   the pairs with both cards seen
+     * @param bomb    whether the bomb is hidden
+     * @param jolly   whether the jolly is hidden
+     * @return the move, never {@link Move#PASS}
+     * @throws IndexOutOfBoundsException if the state is not covered
+     */
+    public Move getProgressMove(int hidden, int singles, int known, boolean bomb, boolean jolly) {
+        return MOVES[this.buffer.get(this.movesOffset + this.checkedIndex(hidden, singles, known, bomb, jolly))
+                & MOVE_MASK];
+    }
+
+    /**
+     * Check if, after a first unseen card of a new pair, the second flip
+     * should be a known card rather than an unseen one.
+     * The state is the one before the first flip.
+     *
+     * @param hidden  the pairs never seen
+     * @param singles the pairs with one card seen
+     * @param known   the pairs with both cards seen
+     * @param bomb    whether the bomb is hidden
+     * @param jolly   whether the jolly is hidden
+     * @return true to play safe
+     * @throws IndexOutOfBoundsException if the state is not covered
+     */
+    public boolean isSecondFlipSafe(int hidden, int singles, int known, boolean bomb, boolean jolly) {
+        return (this.buffer.get(this.movesOffset + this.checkedIndex(hidden, singles, known, bomb, jolly))
+                & SAFE_SECOND) != 0;
+    }
+
+    /**
+     * Unmap the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Get the index of a covered state.
+     *
+     * @param hidden  the pairs never seen
+     * @param singles the pairs with one card seen
+     * @param known   the pairs with both cards seen
+     * @param bomb    whether the bomb is hidden
+     * @param jolly   whether the jolly is hidden
+     * @return the index
+     * @throws IndexOutOfBoundsException if the state is not covered
+     */
+    private int checkedIndex(int hidden, int singles, int known, boolean bomb, boolean jolly) {
+        if (!this.covers(hidden, singles, known)) {
+            throw new IndexOutOfBoundsException("State not in the tablebase: " + hidden + " hidden, " + singles
+                    + " singles, " + known + " known");
+        }
+        return index(hidden, singles, known, bomb ? 1 : 0, jolly ? 1 : 0);
+    }
+
+    /**
+     * Rank a state among the states with as many pairs or less: the states
+     * are ordered by pairs on the grid, then by singles and known pairs,
+     * then by known pairs, then by bomb and jolly. The ranks of the states
+     * with at most `n` pairs are exactly 0 to `count(n) - 1`.
+     *
+     * @param hidden  the pairs never seen
+     * @param singles the pairs with one card seen
+     * @param known   the pairs with both cards seen
+     * @param bomb    1 if the bomb is hidden, 0 otherwise
+     * @param jolly   1 if the jolly is hidden, 0 otherwise
+     * @return the rank
+     */
+    private static int index(int hidden, int singles, int known, int bomb, int jolly) {
+        int pairs = hidden + singles + known;
+        int seen = singles + known;
+        // triples with a smaller sum, then pairs (singles, known) with a smaller sum
+        int triple = pairs * (pairs + 1) * (pairs + 2) / 6 + seen * (seen + 1) / 2 + known;
+        return triple * 4 + bomb * 2 + jolly;
+    }
+
+    /**
+     * Get the number of states with at most a number of pairs.
+     *
+     * @param maxPairs the number of pairs
+     * @return the number of states
+     */
+    private static int count(int maxPairs) {
+        return index(maxPairs + 1, 0, 0, 0, 0);
+    }
+
+    /**
+     * Solve every state with at most a number of pairs and write them to a
+     * file, replaced atomically.
+     *
+     * @param path        the file
+     * @param maxPairs    the most pairs on the grid, from 0 to
+     *                    {@value Constant#MAX_CELLS} / 2
+     * @param pairPoints  the mean points of a pair
+     * @param jollyPoints the points of the jolly
+     * @throws IOException if the file cannot be written
+     */
+    public static void generate(Path path, int maxPairs, double pairPoints, double jollyPoints) throws IOException {
+        Solver solver = new Solver(Math.max(Math.min(maxPairs, Constant.MAX_CELLS / 2), 0), pairPoints,
+                jollyPoints);
+        solver.solve();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int states = solver.values.length;
+            MappedByteBuffer map = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + 5L * states);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(8, solver.maxPairs);
+            map.putInt(12, states);
+            map.putDouble(16, pairPoints);
+            map.putDouble(24, jollyPoints);
+            ByteBuffer values = map.duplicate().position(HEADER);
+            values.asFloatBuffer().put(solver.values);
+            map.duplicate().position(HEADER + 4 * states).put(solver.moves);
+            map.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The solver of the states, in memory.
+     */
+    private static final class Solver {
+
+        /**
+         * The most pairs on the grid.
+         */
+        private final int maxPairs;
+
+        /**
+         * The mean points of a pair.
+         */
+        private final double pair;
+
+        /**
+         * The points of the jolly.
+         */
+        private final double jolly;
+
+        /**
+         * The value of every state.
+         */
+        private final float[] values;
+
+        /**
+         * The moves of every state.
+         */
+        private final byte[] moves;
+
+        /**
+         * Constructor.
+         *
+         * @param maxPairs the most pairs on the grid
+         * @param pair     the mean points of a pair
+         * @param jolly    the points of the jolly
+         */
+        private Solver(int maxPairs, double pair, double jolly) {
+            this.maxPairs = maxPairs;
+            this.pair = pair;
+            this.jolly = jolly;
+            this.values = new float[count(maxPairs)];
+            this.moves = new byte[this.values.length];
+        }
+
+        /**
+         * Solve the layers of unseen cells in order, each on all the cores.
+         */
+        private void solve() {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                for (int unseen = 0; unseen <= 2 * this.maxPairs + 2; unseen++) {
+                    int layer = unseen;
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        int first = t;
+                        futures.add(pool.submit(() -> this.solveLayer(layer, first, threads)));
+                    }
+                    for (Future<?> future : futures) {
+                        join(future);
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        /**
+         * Solve a share of a layer: the columns of states with the same
+         * hidden pairs, bomb and jolly, every column in order of known
+         * pairs, since taking a known pair stays in the layer.
+         *
+         * @param unseen the number of unseen cells of the layer
+         * @param first  the first column of the share
+         * @param step   the number of shares
+         */
+        private void solveLayer(int unseen, int first, int step) {
+            for (int column = first; column < 4 * (unseen / 2 + 1); column += step) {
+                int hidden = column / 4;
+                int bomb = column / 2 % 2;
+                int jolly = column % 2;
+                int singles = unseen - 2 * hidden - bomb - jolly;
+                if (singles < 0) {
+                    continue;
+                }
+                for (int known = 0; hidden + singles + known <= this.maxPairs; known++) {
+                    this.solveState(hidden, singles, known, bomb, jolly);
+                }
+            }
+        }
+
+        /**
+         * Solve a state, whose successors are solved.
+         *
+         * @param p the pairs never seen
+         * @param k the singles
+         * @param q the known pairs
+         * @param b 1 if the bomb is hidden
+         * @param j 1 if the jolly is hidden
+         */
+        private void solveState(int p, int k, int q, int b, int j) {
+            int u = 2 * p + k + b + j;
+            int index = index(p, k, q, b, j);
+            if (u == 0 && q == 0) {
+                this.values[index] = 0;
+                this.moves[index] = (byte) Move.NONE.ordinal();
+                return;
+            }
+            double best = Double.NEGATIVE_INFINITY;
+            Move move = Move.NONE;
+            boolean safeSecond = false;
+            if (q > 0) {
+                best = this.pair + this.value(p, k, q - 1, b, j);
+                move = Move.TAKE_PAIR;
+            }
+            // the bomb leaves all that is left to the other player
+            double boom = -(this.pair * (p + k + q) + this.jolly * j);
+            if (u > 0) {
+                double unseenSecond = 0;
+                double safe = Double.NEGATIVE_INFINITY;
+                if (p > 0) {
+                    // a new card first, its partner among the u - 1 others
+                    int v = u - 1;
+                    unseenSecond = (this.pair + this.value(p - 1, k, q, b, j)
+                            + b * -(this.pair * (p + k + q) + this.jolly * j)
+                            + j * (this.jolly + this.value(p - 1, k + 1, q, b, 0))
+                            - k * this.value(p - 1, k, q + 1, b, j)
+                            - 2 * (p - 1) * this.value(p - 2, k + 2, q, b, j)) / v;
+                    if (k + 2 * q > 0) {
+                        safe = -this.value(p - 1, k + 1, q, b, j);
+                    }
+                }
+                double second = Math.max(unseenSecond, safe);
+                double flipUnseen = (b * boom + j * (this.jolly + this.value(p, k, q, b, 0))
+                        + k * (this.pair + this.value(p, k - 1, q, b, j)) + 2 * p * second) / u;
+                if (flipUnseen > best) {
+                    best = flipUnseen;
+                    move = Move.FLIP_UNSEEN;
+                }
+                safeSecond = p > 0 && safe > unseenSecond;
+                if (k > 0) {
+                    double flipKnown = (this.pair + this.value(p, k - 1, q, b, j) + b * boom
+                            + j * (this.jolly + this.value(p, k, q, b, 0))
+                            - (k - 1) * this.value(p, k - 1, q + 1, b, j)
+                            - 2 * p * this.value(p - 1, k + 1, q, b, j)) / u;
+                    if (flipKnown > best) {
+                        best = flipKnown;
+                        move = Move.FLIP_KNOWN;
+                    }
+                }
+            }
+            // two known cards of different symbols; passing again and again never ends the game
+            boolean pass = k + q >= 2 && best < 0;
+            this.values[index] = (float) (pass ? 0 : best);
+            this.moves[index] = (byte) (move.ordinal() | (safeSecond ? SAFE_SECOND : 0) | (pass ? PASS_BETTER : 0));
+        }
+
+        /**
+         * Get the value of a solved state, 0 for the impossible ones (they
+         * only appear with a probability of 0).
+         *
+         * @param p the pairs never seen
+         * @param k the singles
+         * @param q the known pairs
+         * @param b 1 if the bomb is hidden
+         * @param j 1 if the jolly is hidden
+         * @return the value
+         */
+        private double value(int p, int k, int q, int b, int j) {
+            if (p < 0 || k < 0 || q < 0) {
+                return 0;
+            }
+            return this.values[index(p, k, q, b, j)];
+        }
+    }
+
+    /**
+     * Wait for a layer share.
+     *
+     * @param future the share
+     * @throws IllegalStateException if the share failed or the thread was
+     *                               interrupted
+     */
+    private static void join(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Layer failed", e.getCause());
+        }
+    }
+}
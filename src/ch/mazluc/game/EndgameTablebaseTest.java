@@ -0,0 +1,82 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Test of the {@link EndgameTablebase}.
+ *
+ * <p>
+ * Generates a tablebase, prints its size and the time it took, then
+ * matches a bot using it against the same bot without it, on 4x4 grids,
+ * and checks that it does not lose points on average.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.EndgameTablebaseTest [file] [maxPairs] [games]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class EndgameTablebaseTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private EndgameTablebaseTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the file, the most pairs and the number of games,
+     *             optional
+     * @throws IOException    if the file cannot be written
+     * @throws AssertionError if the tablebase bot loses points on average
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "endgame.tb");
+        int maxPairs = args.length > 1 ? Integer.parseInt(args[1]) : Constant.MAX_CELLS / 2;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        long start = System.nanoTime();
+        EndgameTablebase.generate(path, maxPairs, ProbabilisticBot.MEAN_PAIR_POINTS, Constant.JOLLY_POINTS);
+        try (EndgameTablebase tablebase = new EndgameTablebase(path)) {
+            System.out.printf("%d states up to %d pairs in %.1f ms, %d KB%n", tablebase.getCount(),
+                    tablebase.getMaxPairs(), (System.nanoTime() - start) / 1e6, Files.size(path) >> 10);
+            int pairs = Math.min(8, maxPairs);
+            System.out.printf("%d hidden pairs, bomb and jolly: %s, %.2f%n", pairs,
+                    tablebase.getMove(pairs, 0, 0, true, true), tablebase.getValue(pairs, 0, 0, true, true));
+            SplittableRandom random = new SplittableRandom(42);
+            double margin = 0;
+            int wins = 0;
+            for (int game = 0; game < games; game++) {
+                Grid grid = new Grid(4, 4, new Random(random.nextLong()));
+                grid.fill();
+                Player[] players = Simulation.players(2);
+                int seat = game % 2;
+                ProbabilisticBot[] bots = new ProbabilisticBot[2];
+                for (int i = 0; i < bots.length; i++) {
+                    bots[i] = new ProbabilisticBot(new BotParameters(Integer.MAX_VALUE, 0.5, 1.0), random.split());
+                }
+                bots[seat].setTablebase(tablebase);
+                Simulation.play(grid, players, bots);
+                int diff = players[seat].getScore() - players[1 - seat].getScore();
+                margin += diff;
+                wins += diff > 0 ? 1 : 0;
+            }
+            System.out.printf("4x4, %d games: the tablebase bot wins %.1f%%, by %.2f points on average%n", games,
+                    100.0 * wins / games, margin / games);
+            if (margin < 0) {
+                throw new AssertionError("The tablebase bot loses by " + -margin / games + " points on average");
+            }
+        }
+    }
+}
@@ -0,0 +1,705 @@
+package ch.mazluc.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Screens filled boards for fairness before a game starts.
+ *
+ * <p>
+ * A board is analyzed by playing thousands of quick rollouts on it, split
+ * in batches that run in parallel on all the cores. The rollouts do not go
+ * through the {@link GameEngine}: the board is compiled once into a few
+ * arrays (the kind of every cell and the points of every set) and the
+ * games are played on them by a simple model of the players, who remember
+ * every card seen, take the sets they know and otherwise open unseen
+ * cards. If the players opened the unseen cells uniformly at random every
+ * layout would be equivalent, so the model opens the first unseen cell in
+ * reading order with probability `scanBias`, as people scanning the grid
+ * from the top-left corner do: that is what makes a bomb or a jolly in
+ * the wrong place unfair.
+ *
+ * <p>
+ * A board is fair if the expected scores of the seats differ by at most
+ * `maxAdvantage` of the points of the board, and the bomb is hit within
+ * the first two rounds in at most `maxEarlyBombRisk` of the rollouts.
+ * {@link #generateFair} fills boards until one is fair (rejection
+ * sampling). With the defaults a 6x6 board takes a few milliseconds on a
+ * single core.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * FairnessAnalyzer analyzer = new FairnessAnalyzer(2);
+ * Grid grid = analyzer.generateFair(6, 6, BoardLayout.DEFAULT, new Random(), 20);
+ * analyzer.shutdown();
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class FairnessAnalyzer {
+
+    /**
+     * The result of the analysis of a board.
+     */
+    public static final class Report {
+
+        /**
+         * The expected score of every seat.
+         */
+        private final double[] seatScores;
+
+        /**
+         * The share of the wins of every seat; ties are split.
+         */
+        private final double[] seatWins;
+
+        /**
+         * The expected points of a board, as taken by the players.
+         */
+        private final double totalPoints;
+
+        /**
+         * The share of rollouts in which the bomb was hit early.
+         */
+        private final double earlyBombRisk;
+
+        /**
+         * Whether the board is fair.
+         */
+        private final boolean fair;
+
+        /**
+         * The distance from the limits, 1 at the limit.
+         */
+        private final double badness;
+
+        /**
+         * Constructor.
+         *
+         * @param seatScores    the expected score of every seat
+         * @param seatWins      the share of the wins of every seat
+         * @param totalPoints   the expected points of a board
+         * @param earlyBombRisk the share of rollouts with an early bomb
+         * @param maxAdvantage  the maximum advantage of a fair board
+         * @param maxRisk       the maximum early bomb risk of a fair board
+         */
+        private Report(double[] seatScores, double[] seatWins, double totalPoints, double earlyBombRisk,
+                double maxAdvantage, double maxRisk) {
+            this.seatScores = seatScores;
+            this.seatWins = seatWins;
+            this.totalPoints = totalPoints;
+            this.earlyBombRisk = earlyBombRisk;
+            this.badness = Math.max(this.getAdvantage() / maxAdvantage, earlyBombRisk / maxRisk);
+            this.fair = this.badness <= 1;
+        }
+
+        /**
+         * Get the expected score of a seat.
+         *
+         * @param seat the seat, 0-based
+         * @return the expected score
+         */
+        public double getSeatScore(int seat) {
+            return this.seatScores[seat];
+        }
+
+        /**
+         * Get the share of the wins of a seat.
+         *
+         * @param seat the seat, 0-based
+         * @return the share, from 0 to 1
+         */
+        public double getSeatWinRate(int seat) {
+            return this.seatWins[seat];
+        }
+
+        /**
+         * Get the advantage of the best seat over the worst one, as a share
+         * of the points of the board.
+         *
+         * @return the advantage, from 0 to 1
+         */
+        public double getAdvantage() {
+            double max = Double.NEGATIVE_INFINITY;
+            double min = Double.POSITIVE_INFINITY;
+            for (double score : this.seatScores) {
+                max = Math.max(max, score);
+                min = Math.min(min, score);
+            }
+            return this.totalPoints > 0 ? (max - min) / this.totalPoints : 0;
+        }
+
+        /**
+         * Get the share of rollouts in which the bomb was hit within the
+         * first two rounds.
+         *
+         * @return the risk, from 0 to 1
+         */
+        public double getEarlyBombRisk() {
+            return this.earlyBombRisk;
+        }
+
+        /**
+         * Check if the board is within the limits of the analyzer.
+         *
+         * @return true if the board is fair
+         */
+        public boolean isFair() {
+            return this.fair;
+        }
+
+        /**
+         * Get a summary of the report.
+         *
+         * @return the summary
+         */
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder(String.format("advantage %.1f%%, early bomb %.1f%%%s",
+                    100 * this.getAdvantage(), 100 * this.earlyBombRisk, this.fair ? "" : " (unfair)"));
+            for (int i = 0; i < this.seatScores.length; i++) {
+                summary.append(String.format(", seat %d: %.1f points %.0f%% wins", i + 1, this.seatScores[i],
+                        100 * this.seatWins[i]));
+            }
+            return summary.toString();
+        }
+    }
+
+    /**
+     * The default number of rollouts per board ({@value}).
+     */
+    public static final int DEFAULT_ROLLOUTS = 2000;
+
+    /**
+     * The default probability of scanning in reading order ({@value}).
+     */
+    public static final double DEFAULT_SCAN_BIAS = 0.3;
+
+    /**
+     * The default maximum advantage of a seat ({@value}).
+     */
+    public static final double DEFAULT_MAX_ADVANTAGE = 0.15;
+
+    /**
+     * The default maximum risk of an early bomb ({@value}).
+     */
+    public static final double DEFAULT_MAX_EARLY_BOMB_RISK = 0.25;
+
+    /**
+     * The number of rollouts played by a single task ({@value}).
+     */
+    private static final int BATCH_SIZE = 250;
+
+    /**
+     * Kind of an empty cell.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Kind of a bomb cell.
+     */
+    private static final int BOMB = -2;
+
+    /**
+     * Kind of a jolly cell.
+     */
+    private static final int JOLLY = -3;
+
+    /**
+     * The number of players of the games.
+     */
+    private final int players;
+
+    /**
+     * The number of rollouts per board.
+     */
+    private final int rollouts;
+
+    /**
+     * The probability that a player opens the first unseen cell in
+     * reading order rather than a random one.
+     */
+    private final double scanBias;
+
+    /**
+     * The maximum advantage of a seat, as a share of the points.
+     */
+    private final double maxAdvantage;
+
+    /**
+     * The maximum share of rollouts with an early bomb.
+     */
+    private final double maxEarlyBombRisk;
+
+    /**
+     * The executor of the batches.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * Constructor with the default limits.
+     *
+     * @param players the number of players of the games
+     */
+    public FairnessAnalyzer(int players) {
+        this(players, DEFAULT_ROLLOUTS, DEFAULT_SCAN_BIAS, DEFAULT_MAX_ADVANTAGE, DEFAULT_MAX_EARLY_BOMB_RISK);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param players          the number of players of the games
+     * @param rollouts         the number of rollouts per board
+     * @param scanBias         the probability of scanning in reading order,
+     *                         from 0 to 1
+     * @param maxAdvantage     the maximum advantage of a seat, as a share of
+     *                         the points
+     * @param maxEarlyBombRisk the maximum share of rollouts with an early
+     *                         bomb
+     */
+    public FairnessAnalyzer(int players, int rollouts, double scanBias, double maxAdvantage,
+            double maxEarlyBombRisk) {
+        this.players = Math.max(Constant.MIN_PLAYERS, Math.min(Constant.MAX_PLAYERS, players));
+        this.rollouts = Math.max(rollouts, 1);
+        this.scanBias = Math.max(0, Math.min(1, scanBias));
+        this.maxAdvantage = maxAdvantage;
+        this.maxEarlyBombRisk = maxEarlyBombRisk;
+        this.pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Analyze a filled board.
+     * The result only depends on the board and the seed.
+     *
+     * @param grid the board
+     * @param seed the seed of the rollouts
+     * @return the report
+     */
+    public Report analyze(Grid grid, long seed) {
+        Board board = new Board(grid);
+        List<Future<double[]>> futures = new ArrayList<>();
+        for (int first = 0; first < this.rollouts; first += BATCH_SIZE) {
+            int from = first;
+            int to = Math.min(first + BATCH_SIZE, this.rollouts);
+            futures.add(this.pool.submit(() -> this.playBatch(board, seed, from, to)));
+        }
+        // seat scores, seat wins, early bombs, total points
+        double[] totals = new double[2 * this.players + 2];
+        for (Future<double[]> future : futures) {
+            double[] partial = join(future);
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += partial[i];
+            }
+        }
+        double[] scores = new double[this.players];
+        double[] wins = new double[this.players];
+        for (int i = 0; i < this.players; i++) {
+            scores[i] = totals[i] / this.rollouts;
+            wins[i] = totals[this.players + i] / this.rollouts;
+        }
+        double risk = totals[2 * this.players] / this.rollouts;
+        double points = totals[2 * this.players + 1] / this.rollouts;
+        return new Report(scores, wins, points, risk, this.maxAdvantage, this.maxEarlyBombRisk);
+    }
+
+    /**
+     * Fill boards until one is fair.
+     * If none is within `maxAttempts`, the fairest one is returned.
+     *
+     * @param rows        the number of rows
+     * @param cols        the number of columns
+     * @param layout      the layout of the boards
+     * @param random      the random number generator of the boards
+     * @param maxAttempts the maximum number of boards to try
+     * @return the board
+     * @throws IllegalArgumentException if the layout does not fit in the
+     *                                  grid
+     */
+    public Grid generateFair(int rows, int cols, BoardLayout layout, Random random, int maxAttempts) {
+        Grid best = null;
+        double bestBadness = Double.POSITIVE_INFINITY;
+        for (int attempt = 0; attempt < Math.max(maxAttempts, 1); attempt++) {
+            Grid grid = new Grid(rows, cols, random);
+            grid.fill(layout);
+            Report report = this.analyze(grid, random.nextLong());
+            if (report.isFair()) {
+                return grid;
+            }
+            if (report.badness < bestBadness) {
+                best = grid;
+                bestBadness = report.badness;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Stop the executor.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Play a batch of rollouts.
+     *
+     * @param board the compiled board
+     * @param seed  the seed of the analysis
+     * @param from  the first rollout, inclusive
+     * @param to    the last rollout, exclusive
+     * @return the sums of the seat scores, of the seat wins, of the early
+     *         bombs and of the points
+     */
+    private double[] playBatch(Board board, long seed, int from, int to) {
+        Rollout rollout = new Rollout(board, this.players, this.scanBias);
+        double[] sums = new double[2 * this.players + 2];
+        int earlyTurns = 2 * this.players;
+        for (int i = from; i < to; i++) {
+            // every rollout has its own stream: the result does not depend on the batches
+            rollout.play(new SplittableRandom(seed + i * 0x9E3779B97F4A7C15L));
+            int best = Integer.MIN_VALUE;
+            int tied = 0;
+            int points = 0;
+            for (int p = 0; p < this.players; p++) {
+                int score = rollout.scores[p];
+                sums[p] += score;
+                points += score;
+                if (score > best) {
+                    best = score;
+                    tied = 1;
+                } else if (score == best) {
+                    tied++;
+                }
+            }
+            for (int p = 0; p < this.players; p++) {
+                if (rollout.scores[p] == best) {
+                    sums[this.players + p] += 1.0 / tied;
+                }
+            }
+            if (rollout.firstBombTurn >= 0 && rollout.firstBombTurn < earlyTurns) {
+                sums[2 * this.players]++;
+            }
+            sums[2 * this.players + 1] += points;
+        }
+        return sums;
+    }
+
+    /**
+     * Wait for a batch.
+     *
+     * @param future the batch
+     * @return the result of the batch
+     */
+    private static double[] join(Future<double[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch failed", e.getCause());
+        }
+    }
+
+    /**
+     * A board compiled for the rollouts.
+     */
+    private static final class Board {
+
+        /**
+         * The kind of every cell: a set (0-based), or EMPTY, BOMB, JOLLY.
+         */
+        private final int[] kinds;
+
+        /**
+         * The points of every cell.
+         */
+        private final int[] cellPoints;
+
+        /**
+         * The points of every set.
+         */
+        private final int[] setPoints;
+
+        /**
+         * The number of cards of a set.
+         */
+        private final int setSize;
+
+        /**
+         * The number of cards on the board.
+         */
+        private final int cards;
+
+        /**
+         * Constructor.
+         *
+         * @param grid the board
+         */
+        private Board(Grid grid) {
+            int cols = grid.getColSize();
+            int cells = grid.getRowSize() * cols;
+            Map<Character, Integer> sets = new HashMap<>();
+            List<Integer> points = new ArrayList<>();
+            this.kinds = new int[cells];
+            this.cellPoints = new int[cells];
+            this.setSize = grid.getLayout().getSetSize();
+            int count = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                Card card = grid.getCard(new Coordinate(cell / cols + 1, cell % cols + 1));
+                if (card == null) {
+                    this.kinds[cell] = EMPTY;
+                    continue;
+                }
+                count++;
+                this.cellPoints[cell] = card.getPoints();
+                if (card.isBomb()) {
+                    this.kinds[cell] = BOMB;
+                } else if (card.isJolly()) {
+                    this.kinds[cell] = JOLLY;
+                } else {
+                    Integer set = sets.get(card.getSymbol());
+                    if (set == null) {
+                        set = sets.size();
+                        sets.put(card.getSymbol(), set);
+                        points.add(card.getPoints());
+                    }
+                    this.kinds[cell] = set;
+                }
+            }
+            this.cards = count;
+            this.setPoints = points.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * The state of a rollout, reused by all the rollouts of a batch.
+     */
+    private static final class Rollout {
+
+        /**
+         * The board.
+         */
+        private final Board board;
+
+        /**
+         * The probability of scanning in reading order.
+         */
+        private final double scanBias;
+
+        /**
+         * The unseen cells, the first `unseenCount` are in the set.
+         */
+        private final int[] unseen;
+
+        /**
+         * The position of every cell in `unseen`, -1 if seen or empty.
+         */
+        private final int[] position;
+
+        /**
+         * The number of unseen cells.
+         */
+        private int unseenCount;
+
+        /**
+         * The first cell that may still be unseen, in reading order.
+         */
+        private int scan;
+
+        /**
+         * The number of seen cards of every set still on the board.
+         */
+        private final int[] known;
+
+        /**
+         * The sets whose cards have all been seen, not taken yet.
+         */
+        private final int[] complete;
+
+        /**
+         * The number of entries in `complete`.
+         */
+        private int completeCount;
+
+        /**
+         * The score of every seat.
+         */
+        private final int[] scores;
+
+        /**
+         * Whether every seat has hit a bomb.
+         */
+        private final boolean[] dead;
+
+        /**
+         * The turn in which the first bomb was hit, -1 if none.
+         */
+        private int firstBombTurn;
+
+        /**
+         * Constructor.
+         *
+         * @param board    the board
+         * @param players  the number of players
+         * @param scanBias the probability of scanning in reading order
+         */
+        private Rollout(Board board, int players, double scanBias) {
+            this.board = board;
+            this.scanBias = scanBias;
+            this.unseen = new int[board.kinds.length];
+            this.position = new int[board.kinds.length];
+            this.known = new int[board.setPoints.length];
+            this.complete = new int[board.setPoints.length];
+            this.scores = new int[players];
+            this.dead = new boolean[players];
+        }
+
+        /**
+         * Play a game, following the rules of the engine: a match or a
+         * jolly keeps the turn, a wrong card passes it and a bomb kills the
+         * player. The game is over when the board is empty or nobody is
+         * alive.
+         *
+         * @param random the random number generator
+         */
+        private void play(SplittableRandom random) {
+            this.reset();
+            int[] kinds = this.board.kinds;
+            int setSize = this.board.setSize;
+            int cardsLeft = this.board.cards;
+            int alive = this.scores.length;
+            int player = 0;
+            int turn = 0;
+            while (cardsLeft > 0 && alive > 0) {
+                boolean playAgain = true;
+                if (this.completeCount > 0) {
+                    int set = this.complete[--this.completeCount];
+                    this.scores[player] += this.board.setPoints[set];
+                    cardsLeft -= setSize;
+                } else {
+                    int cell = this.open(random);
+                    int set = kinds[cell];
+                    if (set < 0) {
+                        playAgain = this.hazard(player, cell, turn);
+                        cardsLeft--;
+                    } else {
+                        // the known cards of the set are flipped, then unseen ones
+                        this.known[set]++;
+                        while (this.known[set] < setSize) {
+                            int other = this.open(random);
+                            int otherSet = kinds[other];
+                            if (otherSet < 0) {
+                                playAgain = this.hazard(player, other, turn);
+                                cardsLeft--;
+                                break;
+                            } else if (otherSet != set) {
+                                if (++this.known[otherSet] == setSize) {
+                                    this.complete[this.completeCount++] = otherSet;
+                                }
+                                playAgain = false;
+                                break;
+                            }
+                            this.known[set]++;
+                        }
+                        if (this.known[set] == setSize) {
+                            this.scores[player] += this.board.setPoints[set];
+                            cardsLeft -= setSize;
+                        }
+                    }
+                }
+                turn++;
+                if (this.dead[player]) {
+                    alive--;
+                }
+                if (!playAgain && alive > 0) {
+                    do {
+                        player = (player + 1) % this.scores.length;
+                    } while (this.dead[player]);
+                }
+            }
+        }
+
+        /**
+         * Reset the state for a new game.
+         */
+        private void reset() {
+            int[] kinds = this.board.kinds;
+            this.unseenCount = 0;
+            for (int cell = 0; cell < kinds.length; cell++) {
+                if (kinds[cell] == EMPTY) {
+                    this.position[cell] = -1;
+                } else {
+                    this.position[cell] = this.unseenCount;
+                    this.unseen[this.unseenCount++] = cell;
+                }
+            }
+            this.scan = 0;
+            Arrays.fill(this.known, 0);
+            this.completeCount = 0;
+            Arrays.fill(this.scores, 0);
+            Arrays.fill(this.dead, false);
+            this.firstBombTurn = -1;
+        }
+
+        /**
+         * Open an unseen cell: the first in reading order with probability
+         * `scanBias`, a random one otherwise.
+         *
+         * @param random the random number generator
+         * @return the cell
+         */
+        private int open(SplittableRandom random) {
+            int cell;
+            if (random.nextDouble() < this.scanBias) {
+                while (this.position[this.scan] < 0) {
+                    this.scan++;
+                }
+                cell = this.scan;
+            } else {
+                cell = this.unseen[random.nextInt(this.unseenCount)];
+            }
+            int pos = this.position[cell];
+            int last = this.unseen[--this.unseenCount];
+            this.unseen[pos] = last;
+            this.position[last] = pos;
+            this.position[cell] = -1;
+            return cell;
+        }
+
+        /**
+         * Apply a bomb or a jolly.
+         *
+         * @param player the player
+         * @param cell   the cell
+         * @param turn   the turn
+         * @return true if the player keeps the turn
+         */
+        private boolean hazard(int player, int cell, int turn) {
+            if (this.board.kinds[cell] == JOLLY) {
+                this.scores[player] += this.board.cellPoints[cell];
+                return true;
+            }
+            this.dead[player] = true;
+            if (this.firstBombTurn < 0) {
+                this.firstBombTurn = turn;
+            }
+            return false;
+        }
+    }
+}
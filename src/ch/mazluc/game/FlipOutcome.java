@@ -0,0 +1,57 @@
+package ch.mazluc.game;
+
+/**
+ * <p>
+ * The outcome of flipping a card in a {@link GameEngine}.
+ * 
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public enum FlipOutcome {
+
+    /**
+     * The flip was refused: the cell is out of the grid, empty, already
+     * flipped, or the game is over. Nothing changed.
+     */
+    INVALID,
+
+    /**
+     * First card of the turn, waiting for the second one.
+     */
+    FIRST,
+
+    /**
+     * The card matches the first one, but the set is not complete yet
+     * (only with sets bigger than pairs).
+     */
+    PARTIAL,
+
+    /**
+     * The cards of the set match: the player scores and plays again.
+     */
+    MATCH,
+
+    /**
+     * The card differs from the first one: the turn passes to the next player.
+     */
+    WRONG,
+
+    /**
+     * The card is the bomb: the player is eliminated.
+     */
+    BOMB,
+
+    /**
+     * The card is the jolly: the player scores and plays again.
+     */
+    JOLLY;
+
+    /**
+     * Check if the outcome ends the turn of the player.
+     * 
+     * @return true if the turn is over
+     */
+    public boolean endsTurn() {
+        return this != INVALID && this != FIRST && this != PARTIAL;
+    }
+}
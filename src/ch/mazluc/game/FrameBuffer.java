@@ -0,0 +1,229 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A growable buffer of UTF-8 bytes, where a frame of the UI is assembled
+ * before being written at once.
+ *
+ * <p>
+ * Text is encoded as it is appended, numbers are written digit by digit
+ * and the ANSI escapes and box-drawing glyphs come already encoded from
+ * {@link ANSIUtils}, so once the buffer has grown to the size of a frame,
+ * assembling the next ones allocates nothing.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * FrameBuffer frame = new FrameBuffer();
+ * ANSIUtils.setForegroundColor(frame, ANSIUtils.RED);
+ * frame.append("score: ").append(42).newLine();
+ * ANSIUtils.reset(frame);
+ * frame.writeTo(System.out);
+ * frame.reset();
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class FrameBuffer {
+
+    /**
+     * The initial capacity, enough for the frame of a 6x6 grid ({@value}).
+     */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * The line separator of the platform, as `println` prints it.
+     */
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The bytes, the first `size` are in the frame.
+     */
+    private byte[] bytes;
+
+    /**
+     * The number of bytes in the frame.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    public FrameBuffer() {
+        this.bytes = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Empty the buffer, keeping its capacity.
+     */
+    public void reset() {
+        this.size = 0;
+    }
+
+    /**
+     * Get the number of bytes in the frame.
+     *
+     * @return the number of bytes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Append bytes.
+     *
+     * @param data the bytes
+     * @return this buffer
+     */
+    public FrameBuffer append(byte[] data) {
+        this.ensureCapacity(data.length);
+        System.arraycopy(data, 0, this.bytes, this.size, data.length);
+        this.size += data.length;
+        return this;
+    }
+
+    /**
+     * Append a character, encoded in UTF-8.
+     * Surrogates are written as they come, so pairs must be appended with
+     * {@link #append(CharSequence)}.
+     *
+     * @param c the character
+     * @return this buffer
+     */
+    public FrameBuffer append(char c) {
+        this.ensureCapacity(3);
+        if (c < 0x80) {
+            this.bytes[this.size++] = (byte) c;
+        } else if (c < 0x800) {
+            this.bytes[this.size++] = (byte) (0xC0 | c >> 6);
+            this.bytes[this.size++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            this.bytes[this.size++] = (byte) (0xE0 | c >> 12);
+            this.bytes[this.size++] = (byte) (0x80 | c >> 6 & 0x3F);
+            this.bytes[this.size++] = (byte) (0x80 | c & 0x3F);
+        }
+        return this;
+    }
+
+    /**
+     * Append text, encoded in UTF-8.
+     *
+     * @param text the text
+     * @return this buffer
+     */
+    public FrameBuffer append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, text.charAt(++i));
+                this.ensureCapacity(4);
+                this.bytes[this.size++] = (byte) (0xF0 | code >> 18);
+                this.bytes[this.size++] = (byte) (0x80 | code >> 12 & 0x3F);
+                this.bytes[this.size++] = (byte) (0x80 | code >> 6 & 0x3F);
+                this.bytes[this.size++] = (byte) (0x80 | code & 0x3F);
+            } else {
+                this.append(c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Append a number in decimal.
+     *
+     * @param value the number
+     * @return this buffer
+     */
+    public FrameBuffer append(int value) {
+        return this.append(value, 0);
+    }
+
+    /**
+     * Append a number in decimal, right aligned on a width with spaces,
+     * as `%2d` does for a width of 2.
+     *
+     * @param value the number
+     * @param width the minimum width
+     * @return this buffer
+     */
+    public FrameBuffer append(int value, int width) {
+        long magnitude = Math.abs((long) value);
+        int digits = 1;
+        for (long rest = magnitude / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int length = digits + (value < 0 ? 1 : 0);
+        this.ensureCapacity(Math.max(length, width));
+        for (int i = length; i < width; i++) {
+            this.bytes[this.size++] = ' ';
+        }
+        if (value < 0) {
+            this.bytes[this.size++] = '-';
+        }
+        for (int i = this.size + digits - 1; i >= this.size; i--) {
+            this.bytes[i] = (byte) ('0' + magnitude % 10);
+            magnitude /= 10;
+        }
+        this.size += digits;
+        return this;
+    }
+
+    /**
+     * Append the line separator of the platform.
+     *
+     * @return this buffer
+     */
+    public FrameBuffer newLine() {
+        return this.append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Write the frame, without emptying the buffer.
+     *
+     * @param out the output stream
+     */
+    public void writeTo(PrintStream out) {
+        out.write(this.bytes, 0, this.size);
+    }
+
+    /**
+     * Write the frame, without emptying the buffer.
+     *
+     * @param out the output stream
+     * @throws IOException if the frame cannot be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(this.bytes, 0, this.size);
+    }
+
+    /**
+     * Get a copy of the frame.
+     *
+     * @return the bytes of the frame
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.bytes, this.size);
+    }
+
+    /**
+     * Make room for more bytes.
+     *
+     * @param extra the number of bytes to append
+     */
+    private void ensureCapacity(int extra) {
+        if (this.size + extra > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + extra));
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package ch.mazluc.game;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Random;
 
 /**
@@ -37,12 +42,339 @@ public class Game {
      */
     private static final Random random = new Random();
 
+    /**
+     * The stream the game is printed on.
+     */
+    private final PrintStream out;
+
+    /**
+     * The random number generator the grid is filled with,
+     * null for the one shared by the grids.
+     */
+    private final Random gridRandom;
+
+    /**
+     * The buffer in which the frames are assembled.
+     */
+    private final FrameBuffer frame = new FrameBuffer();
+
+    /**
+     * The broadcaster of the frames to the spectators, if any.
+     */
+    private SpectatorBroadcaster broadcaster;
+
+    /**
+     * The latest published snapshot, null before the game starts.
+     */
+    private volatile GameSnapshot snapshot;
+
+    /**
+     * The number of started turns.
+     */
+    private int turn;
+
+    /**
+     * The terminal lines the UI needs besides the grid ({@value}).
+     */
+    private static final int UI_LINES = 16;
+
+    /**
+     * The commands panning the board by a page in line mode: up, left,
+     * down, right.
+     */
+    private static final String PAN_COMMANDS = "wasd";
+
+    /**
+     * The command undoing the last turn in line mode.
+     */
+    private static final char UNDO_COMMAND = 'u';
+
+    /**
+     * The window of the grid that fits in the terminal,
+     * null if the game is not printed on a terminal.
+     */
+    private Viewport viewport;
+
+    /**
+     * The terminal in raw mode, null to read lines with the console util.
+     */
+    private RawTerminal terminal;
+
+    /**
+     * The cell under the cursor in raw mode.
+     */
+    private Coordinate cursor = new Coordinate(1, 1);
+
+    /**
+     * Whether the players can undo the last turn.
+     */
+    private boolean undoable;
+
+    /**
+     * The journal of the changes of the game, to undo turns,
+     * null if the game cannot be undone or is not started.
+     */
+    private MoveJournal journal;
+
+    /**
+     * The state of the game at the start of every turn, the latest first.
+     */
+    private final Deque<TurnStart> turnStarts = new ArrayDeque<>();
+
+    /**
+     * Whether the player asked to undo the last turn.
+     */
+    private boolean undoRequested;
+
+    /**
+     * The state of the game at the start of a turn, before the rotation of
+     * the players: what {@link #start()} needs, besides the journaled grid
+     * and players, to play the turn again.
+     */
+    private static final class TurnStart {
+
+        /**
+         * The mark of the journal.
+         */
+        private final int mark;
+
+        /**
+         * The index of the player of the previous turn, -1 if none.
+         */
+        private final int player;
+
+        /**
+         * The number of matches in a row of the player.
+         */
+        private final int streak;
+
+        /**
+         * Whether the player of the previous turn plays again.
+         */
+        private final boolean guessed;
+
+        /**
+         * The number of started turns.
+         */
+        private final int turn;
+
+        /**
+         * The turns, matches and jollies of every player, one after the
+         * other.
+         */
+        private final int[] counters;
+
+        /**
+         * Constructor.
+         *
+         * @param mark    the mark of the journal
+         * @param player  the index of the player of the previous turn
+         * @param streak  the number of matches in a row of the player
+         * @param guessed whether the player plays again
+         * @param turn    the number of started turns
+         * @param turns   the turns of every player
+         * @param matches the matches of every player
+         * @param jollies the jollies of every player
+         */
+        private TurnStart(int mark, int player, int streak, boolean guessed, int turn, int[] turns, int[] matches,
+                int[] jollies) {
+            this.mark = mark;
+            this.player = player;
+            this.streak = streak;
+            this.guessed = guessed;
+            this.turn = turn;
+            int n = turns.length;
+            this.counters = new int[3 * n];
+            System.arraycopy(turns, 0, this.counters, 0, n);
+            System.arraycopy(matches, 0, this.counters, n, n);
+            System.arraycopy(jollies, 0, this.counters, 2 * n, n);
+        }
+
+        /**
+         * Put back the turns, matches and jollies of every player.
+         *
+         * @param turns   the turns of every player
+         * @param matches the matches of every player
+         * @param jollies the jollies of every player
+         */
+        private void restoreCounters(int[] turns, int[] matches, int[] jollies) {
+            int n = turns.length;
+            System.arraycopy(this.counters, 0, turns, 0, n);
+            System.arraycopy(this.counters, n, matches, 0, n);
+            System.arraycopy(this.counters, 2 * n, jollies, 0, n);
+        }
+    }
+
+    /**
+     * The layout the grid is filled with.
+     */
+    private BoardLayout layout = BoardLayout.DEFAULT;
+
+    /**
+     * The rules of the game.
+     */
+    private RuleSet rules = RuleSet.DEFAULT;
+
+    /**
+     * When the title was on screen (`System.nanoTime()`), 0 if not yet.
+     */
+    private long firstFrameNanos;
+
+    /**
+     * The ratings updated at the end of the game, null for none.
+     */
+    private RatingService ratings;
+
+    /**
+     * The statistics updated at the end of the game, null for none.
+     */
+    private PlayerStatsStore stats;
+
+    /**
+     * The pool the grid is taken from, null to fill it on the spot.
+     */
+    private BoardPool boardPool;
+
     /**
      * Constructor.
-     * Initializes the console interaction util.
+     * Initializes the console interaction util
+     * on `System.in` and `System.out`.
      */
     public Game() {
-        this.console = new ConsoleInteractionUtils();
+        this(System.in, System.out);
+    }
+
+    /**
+     * Constructor.
+     * Initializes the console interaction util on the given streams.
+     *
+     * @param in  the stream the user input is read from
+     * @param out the stream the game is printed on
+     */
+    public Game(InputStream in, PrintStream out) {
+        this(in, out, null);
+    }
+
+    /**
+     * Constructor.
+     * Initializes the console interaction util on the given streams
+     * and fills the grid with the given random number generator,
+     * so that a seeded generator always produces the same grid.
+     *
+     * @param in         the stream the user input is read from
+     * @param out        the stream the game is printed on
+     * @param gridRandom the random number generator of the grid, null for
+     *                   the shared one
+     */
+    public Game(InputStream in, PrintStream out, Random gridRandom) {
+        this.out = out;
+        this.gridRandom = gridRandom;
+        this.console = new ConsoleInteractionUtils(in, out);
+    }
+
+    /**
+     * Set the broadcaster that sends every frame to the spectators.
+     *
+     * @param broadcaster the broadcaster, null to stop broadcasting
+     */
+    public void setBroadcaster(SpectatorBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * Set the layout the grid is filled with by {@link #initialize()}.
+     *
+     * @param layout the layout, null for the default one
+     */
+    public void setLayout(BoardLayout layout) {
+        this.layout = layout == null ? BoardLayout.DEFAULT : layout;
+    }
+
+    /**
+     * Set the rules of the game.
+     *
+     * @param rules the rules, null for the default ones
+     */
+    public void setRules(RuleSet rules) {
+        this.rules = rules == null ? RuleSet.DEFAULT : rules;
+    }
+
+    /**
+     * Set the ratings updated with the scores when the game is over.
+     *
+     * @param ratings the ratings, null for none
+     */
+    public void setRatings(RatingService ratings) {
+        this.ratings = ratings;
+    }
+
+    /**
+     * Set the statistics updated when the game is over and shown in the
+     * leaderboard.
+     *
+     * @param stats the statistics, null for none
+     */
+    public void setStats(PlayerStatsStore stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Set the pool {@link #initialize()} takes the grid from.
+     * The pool is not used for seeded grids, nor when its layout is not
+     * the one of the game.
+     *
+     * @param boardPool the pool, null to fill the grid on the spot
+     */
+    public void setBoardPool(BoardPool boardPool) {
+        this.boardPool = boardPool;
+    }
+
+    /**
+     * Set the terminal in raw mode to read the guesses from, one key at a
+     * time: the arrow keys move a cursor over the grid and Enter or Space
+     * flips the card under it.
+     *
+     * @param terminal the terminal, null to read lines
+     */
+    public void setRawTerminal(RawTerminal terminal) {
+        this.terminal = terminal;
+    }
+
+    /**
+     * Let the players undo the last turn at the start of theirs: `u`
+     * instead of a row in line mode, the U key in raw mode. The changes
+     * of the grid and of the players are recorded in a {@link MoveJournal}
+     * from the start of the game.
+     *
+     * @param undoable whether the last turn can be undone
+     */
+    public void setUndoable(boolean undoable) {
+        this.undoable = undoable;
+    }
+
+    /**
+     * Get the latest snapshot of the game.
+     * Safe to call from any thread; a new snapshot is published every time
+     * the UI is printed and when the game is over.
+     *
+     * @return the snapshot, null before the game starts
+     */
+    public GameSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Publish a snapshot of the current state.
+     *
+     * @param currentPlayer the index of the current player
+     * @param over          whether the game is over
+     */
+    private void publishSnapshot(int currentPlayer, boolean over) {
+        GameSnapshot previous = this.snapshot;
+        long version = previous == null ? 0 : previous.getVersion() + 1;
+        // the turn in progress is not completed yet
+        int completed = over ? this.turn : Math.max(this.turn - 1, 0);
+        this.snapshot = new GameSnapshot(version, this.grid, this.players, currentPlayer, completed, over);
     }
 
     /**
@@ -60,14 +392,27 @@ public class Game {
                                     |__|__|__|_____|__|__|__|_____|__| |___  |
                                      Created by Luca Mazza © 2023      |_____|
                 """;
-        ANSIUtils.setForegroundColor(ANSIUtils.BLUE);
-        System.out.println(title);
-        ANSIUtils.reset();
-        ANSIUtils.setColor(ANSIUtils.BRIGHT_BLUE, ANSIUtils.WHITE);
-        System.out.print("\t\t\t");
+        ANSIUtils.setForegroundColor(this.out, ANSIUtils.BLUE);
+        this.out.println(title);
+        ANSIUtils.reset(this.out);
+        ANSIUtils.setColor(this.out, ANSIUtils.BRIGHT_BLUE, ANSIUtils.WHITE);
+        this.out.print("\t\t\t");
+        this.out.flush();
+        if (this.firstFrameNanos == 0) {
+            this.firstFrameNanos = System.nanoTime();
+        }
         this.console.readEnterToContinue();
-        ANSIUtils.reset();
-        ANSIUtils.clearScreen();
+        ANSIUtils.reset(this.out);
+        ANSIUtils.clearScreen(this.out);
+    }
+
+    /**
+     * Get when the first frame, the title, was on screen.
+     *
+     * @return the time (`System.nanoTime()`), 0 if not yet
+     */
+    public long getFirstFrameNanos() {
+        return this.firstFrameNanos;
     }
 
     /**
@@ -102,12 +447,12 @@ public class Game {
      * Fills the grid with cards.
      */
     public void initialize() {
-        ANSIUtils.setBold();
-        ANSIUtils.setForegroundColor(ANSIUtils.BLUE);
-        System.out.println("GAME SETTINGS: ");
-        ANSIUtils.reset();
+        ANSIUtils.setBold(this.out);
+        ANSIUtils.setForegroundColor(this.out, ANSIUtils.BLUE);
+        this.out.println("GAME SETTINGS: ");
+        ANSIUtils.reset(this.out);
         // INIT PLAYER LIST
-        int playerCount = this.console.readIntInRange(Constant.MIN_PLAYERS, Constant.MAX_PLAYERS);
+        int playerCount = this.console.readIntInRange(this.rules.getMinPlayers(), this.rules.getMaxPlayers());
         this.console.clearScanner();
         this.players = new Player[playerCount];
         // INIT PLAYER NAMES
@@ -117,10 +462,19 @@ public class Game {
             this.players[i] = new Player(name, randomColor());
         }
         // INIT GRID
-        int[] gridSize = this.console.readValidGridSize();
-        this.grid = new Grid(gridSize[0], gridSize[1]);
-        // FILL GRID
-        this.grid.fill();
+        int[] gridSize = this.console.readValidGridSize(this.rules.getMaxCells());
+        if (this.boardPool != null && this.gridRandom == null && this.boardPool.getLayout() == this.layout) {
+            this.grid = this.boardPool.take(gridSize[0], gridSize[1]);
+        } else {
+            this.grid = this.gridRandom == null ? new Grid(gridSize[0], gridSize[1])
+                    : new Grid(gridSize[0], gridSize[1], this.gridRandom);
+            // FILL GRID
+            this.grid.fill(this.layout);
+        }
+        if (this.out == System.out) {
+            this.viewport = new Viewport(this.grid.getRowSize(), this.grid.getColSize(), UI_LINES);
+            this.viewport.detectTerminalSize();
+        }
     }
 
     /**
@@ -129,12 +483,46 @@ public class Game {
      * @param currentPlayer the index of the current player
      */
     private void printUI(int currentPlayer) {
-        ANSIUtils.clearScreen();
-        ANSIUtils.setBackgroundColor(players[currentPlayer].getColor());
-        System.out
-                .println(players[currentPlayer].getName() + "'s turn (" + players[currentPlayer].getScore() + ")");
-        ANSIUtils.reset();
-        this.grid.print();
+        GameEvents.FrameRendered event = new GameEvents.FrameRendered();
+        event.begin();
+        this.publishSnapshot(currentPlayer, false);
+        this.renderUI(currentPlayer);
+        this.frame.writeTo(this.out);
+        this.out.flush();
+        event.bytes = this.frame.size();
+        event.commit();
+        if (this.broadcaster != null) {
+            this.broadcaster.publish(this.frame.toByteArray());
+        }
+    }
+
+    /**
+     * Render the UI of the game into the frame buffer.
+     * The frame is encoded once and can be written as is
+     * to the console and to every spectator.
+     *
+     * @param currentPlayer the index of the current player
+     */
+    private void renderUI(int currentPlayer) {
+        FrameBuffer frame = this.frame;
+        frame.reset();
+        ANSIUtils.clearScreen(frame);
+        ANSIUtils.setBackgroundColor(frame, players[currentPlayer].getColor());
+        frame.append(players[currentPlayer].getName()).append("'s turn (").append(players[currentPlayer].getScore())
+                .append(')').newLine();
+        ANSIUtils.reset(frame);
+        if (this.viewport == null) {
+            this.grid.print(frame);
+        } else {
+            this.grid.print(frame, this.viewport);
+            if (this.viewport.isClipped()) {
+                frame.append("rows ").append(this.viewport.getFirstRow() + 1).append('-')
+                        .append(this.viewport.getFirstRow() + this.viewport.getRowCount()).append(", columns ")
+                        .append(this.viewport.getFirstCol() + 1).append('-')
+                        .append(this.viewport.getFirstCol() + this.viewport.getColCount()).append(" of ")
+                        .append(this.grid.getRowSize()).append('x').append(this.grid.getColSize()).newLine();
+            }
+        }
     }
 
     /**
@@ -142,20 +530,33 @@ public class Game {
      */
     private void printLeaderboard() {
         sortPlayersByScore();
-        ANSIUtils.setBold();
-        ANSIUtils.setForegroundColor(ANSIUtils.BLUE);
-        System.out.println("LEADERBOARD: ");
-        ANSIUtils.reset();
-        ANSIUtils.setBackgroundColor(this.players[0].getColor());
-        System.out.printf("%-15s %2d", this.players[0].getName(), this.players[0].getScore());
-        ANSIUtils.reset();
-        ANSIUtils.setForegroundColor(ANSIUtils.YELLOW);
-        System.out.println(" ♛");
-        ANSIUtils.reset();
+        ANSIUtils.setBold(this.out);
+        ANSIUtils.setForegroundColor(this.out, ANSIUtils.BLUE);
+        this.out.println("LEADERBOARD: ");
+        ANSIUtils.reset(this.out);
+        ANSIUtils.setBackgroundColor(this.out, this.players[0].getColor());
+        this.out.printf("%-15s %2d", this.players[0].getName(), this.players[0].getScore());
+        ANSIUtils.reset(this.out);
+        ANSIUtils.setForegroundColor(this.out, ANSIUtils.YELLOW);
+        this.out.println(" ♛");
+        ANSIUtils.reset(this.out);
         for (int i = 1; i < this.players.length; i++) {
-            ANSIUtils.setBackgroundColor(this.players[i].getColor());
-            System.out.printf("%-15s %2d\n", this.players[i].getName(), this.players[i].getScore());
-            ANSIUtils.reset();
+            ANSIUtils.setBackgroundColor(this.out, this.players[i].getColor());
+            this.out.printf("%-15s %2d\n", this.players[i].getName(), this.players[i].getScore());
+            ANSIUtils.reset(this.out);
+        }
+        if (this.stats != null) {
+            this.out.println();
+            ANSIUtils.setBold(this.out);
+            ANSIUtils.setForegroundColor(this.out, ANSIUtils.BLUE);
+            this.out.println("ALL TIME: ");
+            ANSIUtils.reset(this.out);
+            for (Player player : this.players) {
+                PlayerStatsStore.Stats playerStats = this.stats.get(player.getName());
+                if (playerStats != null) {
+                    this.out.printf("%-15s %s%n", player.getName(), playerStats);
+                }
+            }
         }
         this.console.readEnterToContinue();
     }
@@ -163,126 +564,450 @@ public class Game {
     /**
      * Take a guess.
      * Asks the user for a coordinate, which is checked if it is in the bounds and
-     * if it is not null.
+     * if it is not null nor already flipped.
      * 
      * @param player the index of the player
-     * @return the card
+     * @return the card, null if the player undid the last turn
+     * @see #setUndoable(boolean)
      */
     public Card takeGuess(int player) {
+        if (this.terminal != null) {
+            Coordinate coord = this.readCursorGuess(player);
+            if (coord == null) {
+                return null;
+            }
+            this.grid.getCard(coord).flip(true);
+            return this.grid.getCard(coord);
+        }
         Coordinate coord;
         do {
-            ANSIUtils.clearScreen();
+            // the frame clears the screen
             this.printUI(player);
-            System.out.println(players[player].getName() + " guess: ");
-            coord = this.console.readValidCoordinate(this.grid.getRowSize(), this.grid.getColSize());
-        } while (!this.console.isCoordinateInBounds(coord, this.grid) || this.grid.getCard(coord) == null);
+            this.out.println(players[player].getName() + " guess: ");
+            coord = this.console.readValidCoordinate(this.grid.getRowSize(), this.grid.getColSize(),
+                    this.lineCommands(), this::runLineCommand);
+            if (this.undoRequested) {
+                this.undoRequested = false;
+                return null;
+            }
+        } while (coord == null || !this.console.isCoordinateInBounds(coord, this.grid)
+                || this.grid.getCard(coord) == null || this.grid.getCard(coord).isFlipped());
+        if (this.viewport != null) {
+            this.viewport.reveal(coord);
+        }
         this.grid.getCard(coord).flip(true);
         return this.grid.getCard(coord);
     }
 
+    /**
+     * Get the commands a player can type instead of a row, in line mode:
+     * w, a, s and d pan a board larger than the terminal by a page, u
+     * undoes the last turn.
+     *
+     * @return the letters of the commands
+     */
+    private String lineCommands() {
+        String commands = this.viewport != null && this.viewport.isClipped() ? PAN_COMMANDS : "";
+        return this.canUndoTurn() ? commands + UNDO_COMMAND : commands;
+    }
+
+    /**
+     * Check if the last turn can be undone: undo is enabled, a turn was
+     * played and the current one has no flip yet.
+     *
+     * @return true if the last turn can be undone
+     */
+    private boolean canUndoTurn() {
+        return this.journal != null && this.turnStarts.size() > 1
+                && this.journal.mark() == this.turnStarts.peek().mark;
+    }
+
+    /**
+     * Run a command typed instead of a row, in line mode.
+     *
+     * @param command the letter of the command
+     * @see #lineCommands()
+     */
+    private void runLineCommand(int command) {
+        switch (command) {
+            case 'w':
+                this.viewport.pan(-this.viewport.getRowCount(), 0);
+                break;
+            case 's':
+                this.viewport.pan(this.viewport.getRowCount(), 0);
+                break;
+            case 'a':
+                this.viewport.pan(0, -this.viewport.getColCount());
+                break;
+            case 'd':
+                this.viewport.pan(0, this.viewport.getColCount());
+                break;
+            case UNDO_COMMAND:
+                this.undoRequested = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Read a guess in raw mode.
+     * The arrow keys move the cursor, and only the cells it leaves and
+     * reaches are redrawn, unless it leaves the viewport; Enter or Space
+     * picks a card that is not flipped yet, U undoes the last turn.
+     *
+     * @param player the index of the player
+     * @return the coordinate of the card, null if the player undid the
+     *         last turn
+     * @throws IllegalStateException if the input is over
+     */
+    private Coordinate readCursorGuess(int player) {
+        this.printCursorUI(player);
+        while (true) {
+            RawTerminal.Key key = this.readKey("guess");
+            int row = this.cursor.x();
+            int col = this.cursor.y();
+            switch (key) {
+                case UP:
+                    row = Math.max(row - 1, 1);
+                    break;
+                case DOWN:
+                    row = Math.min(row + 1, this.grid.getRowSize());
+                    break;
+                case LEFT:
+                    col = Math.max(col - 1, 1);
+                    break;
+                case RIGHT:
+                    col = Math.min(col + 1, this.grid.getColSize());
+                    break;
+                case FLIP:
+                    Card card = this.grid.getCard(this.cursor);
+                    if (card != null && !card.isFlipped()) {
+                        return this.cursor;
+                    }
+                    this.out.print(ANSIUtils.BEL);
+                    this.out.flush();
+                    continue;
+                case UNDO:
+                    if (this.canUndoTurn()) {
+                        return null;
+                    }
+                    this.out.print(ANSIUtils.BEL);
+                    this.out.flush();
+                    continue;
+                default:
+                    continue;
+            }
+            Coordinate previous = this.cursor;
+            this.cursor = new Coordinate(row, col);
+            if (this.viewport != null && !this.viewport.isVisible(this.cursor)) {
+                this.viewport.reveal(this.cursor);
+                this.printCursorUI(player);
+            } else {
+                this.frame.reset();
+                this.drawCursor(previous, false);
+                this.drawCursor(this.cursor, true);
+                ANSIUtils.restoreCursor(this.frame);
+                this.frame.writeTo(this.out);
+                this.out.flush();
+            }
+        }
+    }
+
+    /**
+     * Print the UI with the cursor, for a guess in raw mode.
+     *
+     * @param player the index of the player
+     */
+    private void printCursorUI(int player) {
+        if (this.viewport != null) {
+            this.viewport.reveal(this.cursor);
+        }
+        this.printUI(player);
+        this.frame.reset();
+        this.frame.append(players[player].getName()).append(" guess: move with the arrows, flip with enter");
+        if (this.canUndoTurn()) {
+            this.frame.append(", undo the last turn with u");
+        }
+        this.frame.newLine();
+        ANSIUtils.saveCursor(this.frame);
+        this.drawCursor(this.cursor, true);
+        ANSIUtils.restoreCursor(this.frame);
+        this.frame.writeTo(this.out);
+        this.out.flush();
+    }
+
+    /**
+     * Draw or erase the cursor around a cell, without touching the card,
+     * appending to the frame buffer.
+     * The screen position follows the layout printed by `Grid.print` after
+     * `renderUI`: the cell of row r and column c of the window is on line
+     * 5 + 2r, between the columns m + 1 + 4c and m + 3 + 4c, where m is the
+     * width of the row numbers and their border.
+     *
+     * @param coord the coordinate of the cell
+     * @param on    whether to draw the cursor or erase it
+     */
+    private void drawCursor(Coordinate coord, boolean on) {
+        int row = coord.trueX() - (this.viewport == null ? 0 : this.viewport.getFirstRow());
+        int col = coord.trueY() - (this.viewport == null ? 0 : this.viewport.getFirstCol());
+        int line = 5 + 2 * row;
+        int column = Grid.marginWidth(this.grid.getRowSize()) + 1 + Viewport.CELL_WIDTH * col;
+        if (on) {
+            ANSIUtils.setBold(this.frame);
+            ANSIUtils.setForegroundColor(this.frame, ANSIUtils.BRIGHT_CYAN);
+        }
+        ANSIUtils.moveTo(this.frame, line, column);
+        this.frame.append(on ? '[' : ' ');
+        ANSIUtils.moveTo(this.frame, line, column + 2);
+        this.frame.append(on ? ']' : ' ');
+        if (on) {
+            ANSIUtils.reset(this.frame);
+        }
+    }
+
+    /**
+     * Wait for the player before going on.
+     * Waits for any key in raw mode, for Enter otherwise.
+     */
+    private void waitToContinue() {
+        if (this.terminal == null) {
+            this.console.readEnterToContinue();
+            this.console.clearScanner();
+            return;
+        }
+        this.out.println("Press any key to continue...");
+        this.out.flush();
+        this.readKey("continue");
+    }
+
+    /**
+     * Read a key press from the terminal in raw mode.
+     *
+     * @param prompt what the key is asked for, for the input wait event
+     * @return the key
+     * @throws IllegalStateException if the keyboard cannot be read
+     */
+    private RawTerminal.Key readKey(String prompt) {
+        GameEvents.InputWait wait = new GameEvents.InputWait();
+        wait.begin();
+        try {
+            return this.terminal.readKey();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the keyboard", e);
+        } finally {
+            wait.prompt = prompt;
+            wait.commit();
+        }
+    }
+
     /**
      * Start the game.
      * 
      * <p>
      * Game cycle:
      * <ul>
-     * <li>take 2 guesses
-     * <li>if the guesses are the same, the player gets 2 points and plays again
-     * <li>if the guesses are different, the player gets 0 points and the next
-     * player plays
+     * <li>take as many guesses as the cards of a set (2 for pairs)
+     * <li>if the guesses are the same, the player gets the points and plays again
+     * <li>if a guess differs from the first one, the player gets 0 points and the
+     * next player plays
      * </ul>
-     * When the grid is empty the game is over
+     * When the grid is empty, or nobody is alive, the game is over.
+     * What the bomb does and whether a match gives another turn are up to
+     * the rules, see {@link #setRules(RuleSet)}.
      * 
      */
     public void start() {
+        int setSize = this.grid.getLayout().getSetSize();
+        RuleSet.BombRule bombRule = this.rules.getBombRule();
+        RuleSet.MatchRule matchRule = this.rules.getMatchRule();
         int currentPlayer = -1;
+        int streak = 0;
         boolean lastPlayerHasGuessed = false;
-        while (!this.grid.isEmpty()) {
+        int[] turns = new int[this.players.length];
+        int[] matches = new int[this.players.length];
+        int[] jollies = new int[this.players.length];
+        if (this.undoable) {
+            this.journal = new MoveJournal(this.grid, this.players);
+        }
+        while (!this.grid.isEmpty() && this.isAnyPlayerAlive()) {
+            if (this.journal != null) {
+                this.turnStarts.push(new TurnStart(this.journal.mark(), currentPlayer, streak,
+                        lastPlayerHasGuessed, this.turn, turns, matches, jollies));
+            }
             // PLAYERS ROTATION
             if (!lastPlayerHasGuessed) {
+                streak = 0;
                 do {
                     currentPlayer = (currentPlayer + 1) % this.players.length;
                 } while (this.players[currentPlayer].isDead());
             }
 
             lastPlayerHasGuessed = false;
-            this.printUI(currentPlayer);
-            Card guess1 = this.takeGuess(currentPlayer);
-            ANSIUtils.clearScreen();
-            this.printUI(currentPlayer);
-
-            // CASE BOMB OR JOLLY FOR FIRST GUESS
-            if (guess1.isBomb()) {
-                players[currentPlayer].kill();
-                System.out.println("BOOM!");
-                this.grid.popCard(guess1);
-                this.console.readEnterToContinue();
-                this.console.clearScanner();
-                this.grid.flipAllCards();
-                continue;
-            }
-            if (guess1.isJolly()) {
-                players[currentPlayer].incrementScore(guess1.getPoints());
-                System.out.println("JOLLY!");
-                this.grid.popCard(guess1);
-                this.console.readEnterToContinue();
-                this.console.clearScanner();
-                this.grid.flipAllCards();
-                lastPlayerHasGuessed = true;
-                continue;
-            }
+            this.turn++;
+            turns[currentPlayer]++;
+            GameEvents.Turn turnEvent = new GameEvents.Turn();
+            turnEvent.begin();
+            turnEvent.turn = this.turn;
+            turnEvent.player = this.players[currentPlayer].getName();
+            // takeGuess draws the UI, with the prompt
+            Card first = null;
+            int matched = 0;
+            boolean hazard = false;
+            boolean undone = false;
+            while (matched < setSize) {
+                Card guess = this.takeGuess(currentPlayer);
+                if (guess == null) {
+                    // back to the start of the last turn, which is played again
+                    this.turnStarts.pop();
+                    TurnStart last = this.turnStarts.pop();
+                    this.journal.undoTo(last.mark);
+                    currentPlayer = last.player;
+                    streak = last.streak;
+                    lastPlayerHasGuessed = last.guessed;
+                    this.turn = last.turn;
+                    last.restoreCounters(turns, matches, jollies);
+                    undone = true;
+                    break;
+                }
+                GameEvents.Flip flipEvent = new GameEvents.Flip();
+                flipEvent.turn = this.turn;
+                flipEvent.player = turnEvent.player;
+                flipEvent.symbol = guess.getSymbol();
+                flipEvent.points = guess.getPoints();
+                flipEvent.commit();
 
-            Card guess2 = this.takeGuess(currentPlayer);
-            ANSIUtils.clearScreen();
-            this.printUI(currentPlayer);
+                // CASE BOMB OR JOLLY
+                // the flipped card is drawn by the next guess, or after the turn
+                if (guess.isBomb()) {
+                    this.printUI(currentPlayer);
+                    bombRule.explode(players[currentPlayer]);
+                    GameEvents.Bomb bombEvent = new GameEvents.Bomb();
+                    bombEvent.player = turnEvent.player;
+                    bombEvent.turn = this.turn;
+                    bombEvent.commit();
+                    this.out.println("BOOM!");
+                    this.grid.removeCard(guess);
+                    turnEvent.outcome = "BOMB";
+                    hazard = true;
+                    break;
+                }
+                if (guess.isJolly()) {
+                    this.printUI(currentPlayer);
+                    players[currentPlayer].incrementScore(this.rules.getJollyPoints());
+                    this.out.println("JOLLY!");
+                    jollies[currentPlayer]++;
+                    this.grid.removeCard(guess);
+                    turnEvent.outcome = "JOLLY";
+                    lastPlayerHasGuessed = true;
+                    hazard = true;
+                    break;
+                }
 
-            // CASE BOMB OR JOLLY FOR SECOND GUESS
-            if (guess2.isBomb()) {
-                players[currentPlayer].kill();
-                System.out.println("BOOM!");
-                this.grid.popCard(guess2);
-                this.console.readEnterToContinue();
-                this.console.clearScanner();
-                this.grid.flipAllCards();
+                // every guess is only compared with the first one
+                if (first == null) {
+                    first = guess;
+                } else if (!first.equals(guess)) {
+                    break;
+                }
+                matched++;
+            }
+            if (undone) {
                 continue;
             }
-            if (guess2.isJolly()) {
-                players[currentPlayer].incrementScore(guess2.getPoints());
-                System.out.println("JOLLY!");
-                this.grid.popCard(guess2);
-                this.console.readEnterToContinue();
-                this.console.clearScanner();
+            if (hazard) {
+                this.waitToContinue();
                 this.grid.flipAllCards();
-                lastPlayerHasGuessed = true;
+                turnEvent.commit();
                 continue;
             }
             this.printUI(currentPlayer);
 
             // CASE MATCH OR WRONG
-            if (guess1.equals(guess2)) {
-                System.out.println("MATCH!");
-                this.console.readEnterToContinue();
-                players[currentPlayer].incrementScore(guess1.getPoints());
-                this.grid.popCard(guess1);
-                this.grid.popCard(guess2);
-                lastPlayerHasGuessed = true;
+            if (matched == setSize) {
+                this.out.println("MATCH!");
+                this.waitToContinue();
+                int before = players[currentPlayer].getScore();
+                lastPlayerHasGuessed = matchRule.score(players[currentPlayer], first.getPoints(), streak++);
+                GameEvents.Match matchEvent = new GameEvents.Match();
+                matchEvent.player = turnEvent.player;
+                matchEvent.points = players[currentPlayer].getScore() - before;
+                matchEvent.commit();
+                turnEvent.outcome = "MATCH";
+                matches[currentPlayer]++;
+                this.grid.popCard(first);
             } else {
-                System.out.println("WRONG!");
-                this.console.readEnterToContinue();
+                this.out.println("WRONG!");
+                this.waitToContinue();
+                turnEvent.outcome = "WRONG";
             }
             // RESTORE GRID
-            this.console.clearScanner();
             this.grid.flipAllCards();
+            turnEvent.commit();
+        }
+        if (this.journal != null) {
+            this.journal.detach();
+            this.journal = null;
+            this.turnStarts.clear();
+        }
+        this.publishSnapshot(-1, true);
+        if (this.ratings != null) {
+            this.ratings.record(this.players);
         }
-        ANSIUtils.clearScreen();
-        ANSIUtils.setForegroundColor(ANSIUtils.BLUE);
-        ANSIUtils.setBold();
-        System.out.println("GAME OVER");
-        ANSIUtils.reset();
-        System.out.println();
+        if (this.stats != null) {
+            this.recordStats(turns, matches, jollies);
+        }
+        ANSIUtils.clearScreen(this.out);
+        ANSIUtils.setForegroundColor(this.out, ANSIUtils.BLUE);
+        ANSIUtils.setBold(this.out);
+        this.out.println("GAME OVER");
+        ANSIUtils.reset(this.out);
+        this.out.println();
         this.printLeaderboard();
     }
 
+    /**
+     * Add the game to the statistics of every player.
+     * A player wins with the highest score, ties included. A failure to
+     * save is reported on the output of the game.
+     *
+     * @param turns   the number of turns of every player
+     * @param matches the number of matches of every player
+     * @param jollies the number of jollies of every player
+     */
+    private void recordStats(int[] turns, int[] matches, int[] jollies) {
+        int best = Integer.MIN_VALUE;
+        for (Player player : this.players) {
+            best = Math.max(best, player.getScore());
+        }
+        try {
+            for (int i = 0; i < this.players.length; i++) {
+                Player player = this.players[i];
+                this.stats.record(player.getName(), player.getScore(), player.getScore() == best, turns[i],
+                        matches[i], player.isDead(), jollies[i]);
+            }
+            this.stats.force();
+        } catch (IOException e) {
+            ANSIUtils.setForegroundColor(this.out, ANSIUtils.RED);
+            this.out.println("Error saving statistics: " + e.getMessage());
+            ANSIUtils.reset(this.out);
+        }
+    }
+
+    /**
+     * Check if at least one player is alive.
+     *
+     * @return true if a player is alive
+     */
+    private boolean isAnyPlayerAlive() {
+        for (Player player : this.players) {
+            if (!player.isDead()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Destroy the game.
      * Closes the scanner.
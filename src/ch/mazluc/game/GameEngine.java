@@ -0,0 +1,723 @@
+package ch.mazluc.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Headless implementation of the rules of the game.
+ *
+ * <p>
+ * The engine applies the same rules as `Game.start`, one flip at a time,
+ * without reading or printing anything, so that the game can be driven
+ * by other front ends, bots and simulations:
+ * <ul>
+ * <li>every turn the current player flips as many cards as a set holds
+ * (two with the default layout, see {@link BoardLayout});
+ * <li>if they all match the player gets the points and plays again;
+ * <li>as soon as one differs from the first the next alive player plays;
+ * <li>the bomb eliminates the player, the jolly gives its points and the
+ * player plays again;
+ * <li>the game is over when the grid is empty (or nobody is alive).
+ * </ul>
+ * Those are the default rules: an engine can be given a {@link RuleSet}
+ * instead, whose compiled bomb and match rules it calls as they are.
+ *
+ * <p>
+ * Every card is only compared with the first one of the turn, so a turn
+ * is settled in as many steps as the cards flipped.
+ *
+ * <p>
+ * Cards revealed by a turn stay flipped until the next flip,
+ * so the result of a turn can be shown before the grid is restored.
+ *
+ * <p>
+ * Flips and turns can be undone and redone once undo is enabled with
+ * {@link #setUndoable(boolean)}: every change is recorded in a
+ * {@link MoveJournal}, so undoing a flip costs as much as the flip did.
+ * Listeners are only told about flips, not about undos.
+ *
+ * <p>
+ * After every change the engine publishes an immutable
+ * {@link GameSnapshot}, which other threads can read at any time
+ * without locking.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * GameEngine engine = new GameEngine(players, grid);
+ * FlipOutcome outcome = engine.flip(new Coordinate(1, 2));
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class GameEngine {
+
+    /**
+     * The most players an engine can journal ({@value}).
+     */
+    public static final int MAX_PLAYERS = 0xFFE;
+
+    /**
+     * The players in the game.
+     */
+    private final Player[] players;
+
+    /**
+     * The grid in the game.
+     */
+    private final Grid grid;
+
+    /**
+     * The rules of the game.
+     */
+    private final RuleSet rules;
+
+    /**
+     * What the bomb does, compiled from the rules.
+     */
+    private final RuleSet.BombRule bombRule;
+
+    /**
+     * What a match gives, compiled from the rules.
+     */
+    private final RuleSet.MatchRule matchRule;
+
+    /**
+     * The points of a jolly.
+     */
+    private final int jollyPoints;
+
+    /**
+     * The listeners of the game events.
+     */
+    private final List<GameListener> listeners = new ArrayList<>();
+
+    /**
+     * The index of the current player.
+     */
+    private int currentPlayer;
+
+    /**
+     * The first card flipped in the current turn, null if none.
+     */
+    private Card firstGuess;
+
+    /**
+     * The coordinates of the matching cards flipped in the current turn.
+     */
+    private final Coordinate[] turnCoords;
+
+    /**
+     * The number of matching cards flipped in the current turn.
+     */
+    private int turnFlips;
+
+    /**
+     * The matches the current player made in a row, up to 63.
+     */
+    private int streak;
+
+    /**
+     * Whether the cards of the last turn still have to be flipped back.
+     */
+    private boolean restorePending;
+
+    /**
+     * The number of completed turns.
+     */
+    private int turn;
+
+    /**
+     * Whether the game is over.
+     */
+    private boolean over;
+
+    /**
+     * The latest published snapshot.
+     */
+    private volatile GameSnapshot snapshot;
+
+    /**
+     * Whether a snapshot is published after every flip.
+     */
+    private boolean publishing = true;
+
+    /**
+     * The cells of the cards face up, row by row: the ones the next cover
+     * flips back.
+     */
+    private int[] shownCells = new int[8];
+
+    /**
+     * The number of cards face up.
+     */
+    private int shownCount;
+
+    /**
+     * The cells changed since the last snapshot, besides the cards face
+     * up, row by row.
+     */
+    private int[] changedCells = new int[8];
+
+    /**
+     * The number of cells changed since the last snapshot.
+     */
+    private int changedCount;
+
+    /**
+     * Whether cells the engine did not track changed since the last
+     * snapshot, which then copies the whole grid.
+     */
+    private boolean snapshotStale;
+
+    /**
+     * The journal of the changes, null if undo is disabled.
+     */
+    private MoveJournal journal;
+
+    /**
+     * The journal mark before every flip that can be undone.
+     */
+    private int[] flipMarks = new int[64];
+
+    /**
+     * The coordinate of every flip that can be undone.
+     */
+    private Coordinate[] flipCoords = new Coordinate[64];
+
+    /**
+     * The number of flips that can be undone.
+     */
+    private int flips;
+
+    /**
+     * The coordinates of the undone flips, the next one to redo last.
+     */
+    private Coordinate[] redoCoords = new Coordinate[64];
+
+    /**
+     * The number of flips that can be redone.
+     */
+    private int redos;
+
+    /**
+     * Constructor, with the default rules.
+     * The grid must be already filled.
+     *
+     * @param players the players, in turn order
+     * @param grid    the grid
+     */
+    public GameEngine(Player[] players, Grid grid) {
+        this(players, grid, RuleSet.DEFAULT);
+    }
+
+    /**
+     * Constructor.
+     * The grid must be already filled.
+     *
+     * @param players the players, in turn order
+     * @param grid    the grid
+     * @param rules   the rules, null for the default ones
+     * @throws IllegalArgumentException if there are more players than
+     *                                  {@value #MAX_PLAYERS}
+     */
+    public GameEngine(Player[] players, Grid grid, RuleSet rules) {
+        if (players.length > MAX_PLAYERS) {
+            throw new IllegalArgumentException("Too many players: " + players.length);
+        }
+        this.players = players;
+        this.grid = grid;
+        this.rules = rules == null ? RuleSet.DEFAULT : rules;
+        this.bombRule = this.rules.getBombRule();
+        this.matchRule = this.rules.getMatchRule();
+        this.jollyPoints = this.rules.getJollyPoints();
+        this.turnCoords = new Coordinate[grid.getLayout().getSetSize()];
+        this.currentPlayer = -1;
+        this.nextPlayer();
+        this.over = this.currentPlayer < 0 || grid.isEmpty();
+        this.snapshot = new GameSnapshot(0, grid, players, this.currentPlayer, this.turn, this.over);
+        this.scanShownCells();
+    }
+
+    /**
+     * Add a listener of the game events.
+     *
+     * @param listener the listener
+     */
+    public void addListener(GameListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener of the game events.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(GameListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Get the players.
+     *
+     * @return the players
+     */
+    public Player[] getPlayers() {
+        return this.players;
+    }
+
+    /**
+     * Get the grid.
+     *
+     * @return the grid
+     */
+    public Grid getGrid() {
+        return this.grid;
+    }
+
+    /**
+     * Get the rules.
+     *
+     * @return the rules
+     */
+    public RuleSet getRules() {
+        return this.rules;
+    }
+
+    /**
+     * Get the index of the current player.
+     *
+     * @return the current player, -1 if nobody is alive
+     */
+    public int getCurrentPlayer() {
+        return this.currentPlayer;
+    }
+
+    /**
+     * Get the first card flipped in the current turn.
+     *
+     * @return the card, null if the turn has not started yet
+     */
+    public Card getFirstGuess() {
+        return this.firstGuess;
+    }
+
+    /**
+     * Get the number of completed turns.
+     *
+     * @return the number of turns
+     */
+    public int getTurn() {
+        return this.turn;
+    }
+
+    /**
+     * Check if the game is over.
+     *
+     * @return true if the game is over
+     */
+    public boolean isOver() {
+        return this.over;
+    }
+
+    /**
+     * Get the latest snapshot of the game.
+     * Safe to call from any thread.
+     *
+     * @return the snapshot
+     */
+    public GameSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Enable or disable the publication of the snapshots.
+     * Headless games nobody reads from can skip the copy made at every
+     * flip; re-enabling publishes the current state at once.
+     *
+     * @param publishing whether snapshots are published
+     */
+    public void setPublishingSnapshots(boolean publishing) {
+        this.publishing = publishing;
+        if (publishing) {
+            this.publishSnapshot();
+        }
+    }
+
+    /**
+     * Enable or disable undo.
+     * Enabling starts recording the changes of the grid, of its cards and
+     * of the players; disabling stops and forgets them.
+     *
+     * @param undoable whether flips can be undone
+     */
+    public void setUndoable(boolean undoable) {
+        if (undoable && this.journal == null) {
+            this.journal = new MoveJournal(this.grid, this.players);
+            this.journal.setEngine(this);
+        } else if (!undoable && this.journal != null) {
+            this.journal.detach();
+            this.journal = null;
+            Arrays.fill(this.flipCoords, 0, this.flips, null);
+            Arrays.fill(this.redoCoords, 0, this.redos, null);
+            this.flips = 0;
+            this.redos = 0;
+        }
+    }
+
+    /**
+     * Check if a flip can be undone.
+     *
+     * @return true if there is a flip to undo
+     */
+    public boolean canUndo() {
+        return this.flips > 0;
+    }
+
+    /**
+     * Check if an undone flip can be redone.
+     *
+     * @return true if there is a flip to redo
+     */
+    public boolean canRedo() {
+        return this.redos > 0;
+    }
+
+    /**
+     * Undo the last flip.
+     *
+     * @return false if there is nothing to undo
+     */
+    public boolean undo() {
+        if (this.flips == 0) {
+            return false;
+        }
+        this.flips--;
+        this.journal.undoTo(this.flipMarks[this.flips]);
+        this.pushRedo(this.flipCoords[this.flips]);
+        this.flipCoords[this.flips] = null;
+        this.scanShownCells();
+        this.snapshotStale = true;
+        if (this.publishing) {
+            this.publishSnapshot();
+        }
+        return true;
+    }
+
+    /**
+     * Undo the flips back to the start of the turn of the last flip.
+     *
+     * @return false if there is nothing to undo
+     */
+    public boolean undoTurn() {
+        if (!this.undo()) {
+            return false;
+        }
+        while (this.turnFlips > 0 && this.undo()) {
+            // back to the first flip of the turn
+        }
+        return true;
+    }
+
+    /**
+     * Redo the last undone flip.
+     * The flip is played again, listeners included.
+     *
+     * @return the outcome, INVALID if there is nothing to redo
+     */
+    public FlipOutcome redo() {
+        if (this.redos == 0) {
+            return FlipOutcome.INVALID;
+        }
+        this.redos--;
+        Coordinate coord = this.redoCoords[this.redos];
+        this.redoCoords[this.redos] = null;
+        return this.play(coord);
+    }
+
+    /**
+     * Redo the undone flips up to the end of the next turn.
+     *
+     * @return the outcome of the last flip, INVALID if there is nothing to
+     *         redo
+     */
+    public FlipOutcome redoTurn() {
+        FlipOutcome outcome = this.redo();
+        while (outcome != FlipOutcome.INVALID && !outcome.endsTurn() && this.redos > 0) {
+            outcome = this.redo();
+        }
+        return outcome;
+    }
+
+    /**
+     * Push a coordinate on the redo stack.
+     *
+     * @param coord the coordinate
+     */
+    private void pushRedo(Coordinate coord) {
+        if (this.redos == this.redoCoords.length) {
+            this.redoCoords = Arrays.copyOf(this.redoCoords, this.redos * 2);
+        }
+        this.redoCoords[this.redos++] = coord;
+    }
+
+    /**
+     * Restore the state of the engine recorded by the journal.
+     *
+     * @param state      the packed state
+     * @param firstGuess the first guess
+     */
+    void restoreState(long state, Card firstGuess) {
+        this.turn = (int) state;
+        this.currentPlayer = (int) (state >>> 32 & 0xFFF) - 1;
+        this.turnFlips = (int) (state >>> 44 & 0xFF);
+        this.restorePending = (state >>> 52 & 1) != 0;
+        this.over = (state >>> 53 & 1) != 0;
+        this.streak = (int) (state >>> 54 & 0x3F);
+        this.firstGuess = firstGuess;
+    }
+
+    /**
+     * Restore a coordinate of the turn recorded by the journal.
+     *
+     * @param index the index
+     * @param coord the coordinate
+     */
+    void restoreTurnCoord(int index, Coordinate coord) {
+        this.turnCoords[index] = coord;
+    }
+
+    /**
+     * Pack the state of the engine for the journal, in the low 60 bits:
+     * the turn (32 bits), the current player + 1 (12), the flips of the
+     * turn (8), whether the grid is to be restored, whether the game is
+     * over and the streak (6).
+     * The journal keeps 61 bits of an entry, so the packed state must stay
+     * below bit 61.
+     *
+     * @return the packed state
+     */
+    private long packState() {
+        return (this.turn & 0xFFFFFFFFL) | (long) (this.currentPlayer + 1) << 32 | (long) this.turnFlips << 44
+                | (this.restorePending ? 1L : 0) << 52 | (this.over ? 1L : 0) << 53 | (long) this.streak << 54;
+    }
+
+    /**
+     * Set a coordinate of the turn, recording it.
+     *
+     * @param coord the coordinate
+     */
+    private void addTurnCoord(Coordinate coord) {
+        if (this.journal != null) {
+            this.journal.recordTurnCoord(this.turnFlips, this.turnCoords[this.turnFlips]);
+        }
+        this.turnCoords[this.turnFlips++] = coord;
+    }
+
+    /**
+     * Publish a snapshot of the current state.
+     * Only the cells changed since the last snapshot are copied, unless
+     * the engine lost track of them.
+     */
+    private void publishSnapshot() {
+        long version = this.snapshot.getVersion() + 1;
+        if (this.snapshotStale) {
+            this.snapshot = new GameSnapshot(version, this.grid, this.players, this.currentPlayer, this.turn,
+                    this.over);
+            this.snapshotStale = false;
+        } else {
+            for (int i = 0; i < this.shownCount; i++) {
+                this.addChangedCell(this.shownCells[i]);
+            }
+            this.snapshot = new GameSnapshot(this.snapshot, version, this.grid, this.changedCells,
+                    this.changedCount, this.players, this.currentPlayer, this.turn, this.over);
+        }
+        this.changedCount = 0;
+    }
+
+    /**
+     * Add a cell to the cells changed since the last snapshot.
+     *
+     * @param cell the index of the cell, row by row
+     */
+    private void addChangedCell(int cell) {
+        if (this.changedCount == this.changedCells.length) {
+            this.changedCells = Arrays.copyOf(this.changedCells, this.changedCount * 2);
+        }
+        this.changedCells[this.changedCount++] = cell;
+    }
+
+    /**
+     * Add a cell to the cards face up.
+     *
+     * @param cell the index of the cell, row by row
+     */
+    private void addShownCell(int cell) {
+        if (this.shownCount == this.shownCells.length) {
+            this.shownCells = Arrays.copyOf(this.shownCells, this.shownCount * 2);
+        }
+        this.shownCells[this.shownCount++] = cell;
+    }
+
+    /**
+     * Find the cards face up in the whole grid, after changes the engine
+     * did not make itself.
+     */
+    private void scanShownCells() {
+        this.shownCount = 0;
+        int cells = this.grid.getRowSize() * this.grid.getColSize();
+        for (int cell = 0; cell < cells; cell++) {
+            Card card = this.grid.getCard(cell);
+            if (card != null && card.isFlipped()) {
+                this.addShownCell(cell);
+            }
+        }
+    }
+
+    /**
+     * Flip the card at the specified coordinate for the current player.
+     *
+     * @param coord the coordinate (1-based)
+     * @return the outcome of the flip
+     */
+    public FlipOutcome flip(Coordinate coord) {
+        FlipOutcome outcome = this.play(coord);
+        if (outcome != FlipOutcome.INVALID && this.redos > 0) {
+            // a new move makes the undone ones unreachable
+            Arrays.fill(this.redoCoords, 0, this.redos, null);
+            this.redos = 0;
+        }
+        return outcome;
+    }
+
+    /**
+     * Play a flip, recording it for undo if enabled.
+     *
+     * @param coord the coordinate (1-based)
+     * @return the outcome of the flip
+     */
+    private FlipOutcome play(Coordinate coord) {
+        if (this.over || !this.isInBounds(coord)) {
+            return FlipOutcome.INVALID;
+        }
+        Card card = this.grid.getCard(coord);
+        // cards of the last turn are about to be covered again
+        if (card == null || card.isFlipped() && !this.restorePending) {
+            return FlipOutcome.INVALID;
+        }
+        if (this.journal != null) {
+            if (this.flips == this.flipMarks.length) {
+                this.flipMarks = Arrays.copyOf(this.flipMarks, this.flips * 2);
+                this.flipCoords = Arrays.copyOf(this.flipCoords, this.flips * 2);
+            }
+            this.flipMarks[this.flips] = this.journal.mark();
+            this.flipCoords[this.flips++] = coord;
+            this.journal.recordEngine(this.packState(), this.firstGuess);
+        }
+        if (this.restorePending) {
+            this.grid.flipAllCards();
+            this.restorePending = false;
+            // the covered cards change, then no card is face up
+            for (int i = 0; i < this.shownCount; i++) {
+                this.addChangedCell(this.shownCells[i]);
+            }
+            this.shownCount = 0;
+        }
+        card.flip(true);
+        this.addShownCell(coord.trueX() * this.grid.getColSize() + coord.trueY());
+        int player = this.currentPlayer;
+        FlipOutcome outcome;
+        boolean playAgain = false;
+        if (card.isBomb()) {
+            this.bombRule.explode(this.players[player]);
+            this.grid.setCard(coord, null);
+            outcome = FlipOutcome.BOMB;
+        } else if (card.isJolly()) {
+            this.players[player].incrementScore(this.jollyPoints);
+            this.grid.setCard(coord, null);
+            outcome = FlipOutcome.JOLLY;
+            playAgain = true;
+        } else if (this.firstGuess == null) {
+            this.firstGuess = card;
+            this.addTurnCoord(coord);
+            outcome = FlipOutcome.FIRST;
+        } else if (!this.firstGuess.equals(card)) {
+            outcome = FlipOutcome.WRONG;
+        } else if (this.turnFlips + 1 < this.turnCoords.length) {
+            this.addTurnCoord(coord);
+            outcome = FlipOutcome.PARTIAL;
+        } else {
+            playAgain = this.matchRule.score(this.players[player], this.firstGuess.getPoints(), this.streak);
+            this.streak = Math.min(this.streak + 1, 0x3F);
+            for (int i = 0; i < this.turnFlips; i++) {
+                this.grid.setCard(this.turnCoords[i], null);
+            }
+            this.grid.setCard(coord, null);
+            outcome = FlipOutcome.MATCH;
+        }
+        if (outcome.endsTurn()) {
+            this.endTurn(playAgain);
+        }
+        if (this.publishing) {
+            this.publishSnapshot();
+        } else {
+            // the next snapshot copies the whole grid
+            this.snapshotStale = true;
+            this.changedCount = 0;
+        }
+        for (GameListener listener : this.listeners) {
+            listener.onFlip(this, player, coord, card, outcome);
+        }
+        return outcome;
+    }
+
+    /**
+     * Check if the coordinate is in the bounds of the grid.
+     *
+     * @param coord the coordinate
+     * @return true if the coordinate is in the grid
+     */
+    private boolean isInBounds(Coordinate coord) {
+        return coord != null && coord.trueX() >= 0 && coord.trueX() < this.grid.getRowSize()
+                && coord.trueY() >= 0 && coord.trueY() < this.grid.getColSize();
+    }
+
+    /**
+     * End the turn of the current player.
+     *
+     * @param playAgain whether the current player keeps the turn
+     */
+    private void endTurn(boolean playAgain) {
+        // only the first turnFlips coordinates are used
+        this.firstGuess = null;
+        this.turnFlips = 0;
+        this.restorePending = true;
+        this.turn++;
+        if (!playAgain || this.players[this.currentPlayer].isDead()) {
+            this.streak = 0;
+            this.nextPlayer();
+        }
+        this.over = this.currentPlayer < 0 || this.grid.isEmpty();
+    }
+
+    /**
+     * Move to the next alive player.
+     * Sets the current player to -1 if nobody is alive.
+     */
+    private void nextPlayer() {
+        for (int i = 1; i <= this.players.length; i++) {
+            int candidate = (this.currentPlayer + i + this.players.length) % this.players.length;
+            if (!this.players[candidate].isDead()) {
+                this.currentPlayer = candidate;
+                return;
+            }
+        }
+        this.currentPlayer = -1;
+    }
+}
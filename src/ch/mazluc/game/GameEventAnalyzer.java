@@ -0,0 +1,183 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * <p>
+ * Turns a flight recording of game sessions into a time breakdown.
+ *
+ * <p>
+ * Reads the {@link GameEvents} of a recording and reports how the time of
+ * the session went: waiting for the players, rendering frames, generating
+ * boards, and the rest (the game logic and the JVM itself). It also counts
+ * the turns, flips, matches and bombs, and the bytes written to the
+ * screen.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * java -XX:StartFlightRecording=filename=game.jfr ch.mazluc.game.MemoryTest
+ * java ch.mazluc.game.GameEventAnalyzer game.jfr
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public final class GameEventAnalyzer {
+
+    /**
+     * The totals of an event type.
+     */
+    private static final class Totals {
+
+        /**
+         * The number of events.
+         */
+        private long count;
+
+        /**
+         * The sum of the durations, in nanoseconds.
+         */
+        private long total;
+
+        /**
+         * The longest duration, in nanoseconds.
+         */
+        private long max;
+
+        /**
+         * Add an event.
+         *
+         * @param duration the duration of the event
+         */
+        private void add(Duration duration) {
+            long nanos = duration.toNanos();
+            this.count++;
+            this.total += nanos;
+            this.max = Math.max(this.max, nanos);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a program entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private GameEventAnalyzer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Analyze a recording.
+     *
+     * @param recording the recording file
+     * @return the report
+     * @throws IOException if the recording cannot be read
+     */
+    public static String analyze(Path recording) throws IOException {
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recording);
+        Map<String, Totals> totals = new TreeMap<>();
+        Instant first = null;
+        Instant last = null;
+        long frameBytes = 0;
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (!name.startsWith(GameEvents.PREFIX)) {
+                continue;
+            }
+            name = name.substring(GameEvents.PREFIX.length());
+            totals.computeIfAbsent(name, n -> new Totals()).add(event.getDuration());
+            if (first == null || event.getStartTime().isBefore(first)) {
+                first = event.getStartTime();
+            }
+            if (last == null || event.getEndTime().isAfter(last)) {
+                last = event.getEndTime();
+            }
+            if (name.equals("FrameRendered")) {
+                frameBytes += event.getInt("bytes");
+            }
+        }
+        if (first == null) {
+            return "No game events in " + recording + System.lineSeparator();
+        }
+        long span = Duration.between(first, last).toNanos();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("session: %.1f ms%n%n", span / 1e6));
+        report.append(String.format("%-18s %8s %12s %10s %10s %7s%n", "phase", "count", "total ms", "mean ms",
+                "max ms", "share"));
+        long accounted = 0;
+        for (String[] phase : new String[][] { { "input wait", "InputWait" }, { "rendering", "FrameRendered" },
+                { "board generation", "BoardGenerated" } }) {
+            Totals phaseTotals = totals.getOrDefault(phase[1], new Totals());
+            appendPhase(report, phase[0], phaseTotals, span);
+            accounted += phaseTotals.total;
+        }
+        Totals rest = new Totals();
+        rest.total = Math.max(span - accounted, 0);
+        appendPhase(report, "logic and other", rest, span);
+        report.append(System.lineSeparator());
+        report.append(String.format("%d turns, %d flips, %d matches, %d bombs, %d frames (%.1f KB)%n",
+                count(totals, "Turn"), count(totals, "Flip"), count(totals, "Match"), count(totals, "Bomb"),
+                count(totals, "FrameRendered"), frameBytes / 1024.0));
+        Totals turns = totals.get("Turn");
+        if (turns != null) {
+            report.append(String.format("turns: %.1f ms mean, %.1f ms max%n", turns.total / 1e6 / turns.count,
+                    turns.max / 1e6));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Append a phase to the report.
+     *
+     * @param report the report
+     * @param label  the name of the phase
+     * @param totals the totals of the phase
+     * @param span   the duration of the session, in nanoseconds
+     */
+    private static void appendPhase(StringBuilder report, String label, Totals totals, long span) {
+        report.append(String.format("%-18s %8s %12.1f %10s %10s %6.1f%%%n", label,
+                totals.count > 0 ? Long.toString(totals.count) : "-", totals.total / 1e6,
+                totals.count > 0 ? String.format("%.3f", totals.total / 1e6 / totals.count) : "-",
+                totals.count > 0 ? String.format("%.3f", totals.max / 1e6) : "-",
+                span > 0 ? 100.0 * totals.total / span : 0));
+    }
+
+    /**
+     * Get the number of events of a type.
+     *
+     * @param totals the totals by type
+     * @param name   the type, without the prefix
+     * @return the number of events
+     */
+    private static long count(Map<String, Totals> totals, String name) {
+        Totals type = totals.get(name);
+        return type == null ? 0 : type.count;
+    }
+
+    /**
+     * Print the breakdown of a recording.
+     *
+     * @param args the recording file
+     * @throws IOException if the recording cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java ch.mazluc.game.GameEventAnalyzer RECORDING.jfr");
+            return;
+        }
+        System.out.print(analyze(Paths.get(args[0])));
+    }
+}
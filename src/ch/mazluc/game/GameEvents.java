@@ -0,0 +1,229 @@
+package ch.mazluc.game;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <p>
+ * Java Flight Recorder events of the game lifecycle.
+ *
+ * <p>
+ * The game, the grid and the console emit them as they go: a recording
+ * of a session (`java -XX:StartFlightRecording=filename=game.jfr ...`)
+ * then shows how long boards take to generate, turns last, frames take to
+ * render and the program waits for the players. When no recording is
+ * running an event costs a check of a flag, so they are always on;
+ * {@link GameEventAnalyzer} turns a recording into a time breakdown.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * GameEvents.FrameRendered event = new GameEvents.FrameRendered();
+ * event.begin();
+ * // render
+ * event.bytes = frame.size();
+ * event.commit();
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public final class GameEvents {
+
+    /**
+     * The prefix of the names of the events ({@value}).
+     */
+    public static final String PREFIX = "ch.mazluc.game.";
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class only holds the event types.
+     *
+     * @throws IllegalStateException if called
+     */
+    private GameEvents() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * A grid filled with cards.
+     */
+    @Name(PREFIX + "BoardGenerated")
+    @Label("Board Generated")
+    @Category({ "Memory", "Game" })
+    @Description("A grid filled with cards")
+    @StackTrace(false)
+    public static final class BoardGenerated extends Event {
+
+        /**
+         * The number of rows.
+         */
+        @Label("Rows")
+        int rows;
+
+        /**
+         * The number of columns.
+         */
+        @Label("Columns")
+        int cols;
+
+        /**
+         * The number of cards, hazards included.
+         */
+        @Label("Cards")
+        int cards;
+    }
+
+    /**
+     * A turn, from the first frame to the last key press.
+     */
+    @Name(PREFIX + "Turn")
+    @Label("Turn")
+    @Category({ "Memory", "Game" })
+    @Description("A turn, from the first frame to the last key press")
+    @StackTrace(false)
+    public static final class Turn extends Event {
+
+        /**
+         * The number of the turn.
+         */
+        @Label("Turn")
+        int turn;
+
+        /**
+         * The name of the player.
+         */
+        @Label("Player")
+        String player;
+
+        /**
+         * How the turn ended: MATCH, WRONG, BOMB or JOLLY.
+         */
+        @Label("Outcome")
+        String outcome;
+    }
+
+    /**
+     * A card flipped.
+     */
+    @Name(PREFIX + "Flip")
+    @Label("Flip")
+    @Category({ "Memory", "Game" })
+    @Description("A card flipped")
+    @StackTrace(false)
+    public static final class Flip extends Event {
+
+        /**
+         * The number of the turn.
+         */
+        @Label("Turn")
+        int turn;
+
+        /**
+         * The name of the player.
+         */
+        @Label("Player")
+        String player;
+
+        /**
+         * The symbol of the card.
+         */
+        @Label("Symbol")
+        char symbol;
+
+        /**
+         * The points of the card.
+         */
+        @Label("Points")
+        int points;
+    }
+
+    /**
+     * A set matched.
+     */
+    @Name(PREFIX + "Match")
+    @Label("Match")
+    @Category({ "Memory", "Game" })
+    @Description("A set matched")
+    @StackTrace(false)
+    public static final class Match extends Event {
+
+        /**
+         * The name of the player.
+         */
+        @Label("Player")
+        String player;
+
+        /**
+         * The points won.
+         */
+        @Label("Points")
+        int points;
+    }
+
+    /**
+     * A bomb hit.
+     */
+    @Name(PREFIX + "Bomb")
+    @Label("Bomb")
+    @Category({ "Memory", "Game" })
+    @Description("A bomb hit, the player is out")
+    @StackTrace(false)
+    public static final class Bomb extends Event {
+
+        /**
+         * The name of the player.
+         */
+        @Label("Player")
+        String player;
+
+        /**
+         * The number of the turn.
+         */
+        @Label("Turn")
+        int turn;
+    }
+
+    /**
+     * A frame of the UI rendered and written.
+     */
+    @Name(PREFIX + "FrameRendered")
+    @Label("Frame Rendered")
+    @Category({ "Memory", "Rendering" })
+    @Description("A frame of the UI rendered and written")
+    @StackTrace(false)
+    public static final class FrameRendered extends Event {
+
+        /**
+         * The size of the frame.
+         */
+        @Label("Bytes")
+        @DataAmount
+        int bytes;
+    }
+
+    /**
+     * The program waiting for the player.
+     */
+    @Name(PREFIX + "InputWait")
+    @Label("Input Wait")
+    @Category({ "Memory", "Input" })
+    @Description("The program waiting for the player")
+    @StackTrace(false)
+    public static final class InputWait extends Event {
+
+        /**
+         * What was asked.
+         */
+        @Label("Prompt")
+        String prompt;
+    }
+}
@@ -0,0 +1,26 @@
+package ch.mazluc.game;
+
+/**
+ * <p>
+ * Receives the events of a {@link GameEngine}.
+ * 
+ * <p>
+ * Listeners are called on the thread that flips the card,
+ * right after the state of the game has been updated.
+ * 
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public interface GameListener {
+
+    /**
+     * Called after every accepted flip.
+     * 
+     * @param engine  the engine
+     * @param player  the index of the player that flipped the card
+     * @param coord   the coordinate of the card
+     * @param card    the card
+     * @param outcome the outcome of the flip
+     */
+    void onFlip(GameEngine engine, int player, Coordinate coord, Card card, FlipOutcome outcome);
+}
@@ -0,0 +1,486 @@
+package ch.mazluc.game;
+
+/**
+ * <p>
+ * Immutable, versioned copy of the state of a game.
+ *
+ * <p>
+ * `Grid`, `Card` and `Player` are mutated by the thread running the game
+ * without any synchronization. After every change that thread publishes a
+ * new snapshot (see {@link GameEngine#getSnapshot()}), and other threads
+ * (renderers, spectators, metrics) read it without locks: a snapshot never
+ * changes after construction, so it is always consistent.
+ *
+ * <p>
+ * A flip changes a few cells only, so a snapshot can be built from the
+ * previous one and the cells that changed: the symbols, the flags and the
+ * names of the players are shared, and only the flags of the changed
+ * cells are read from the grid, kept in a small overlay on top of the
+ * shared flags. Once the overlay holds {@value #MAX_OVERLAY} cells, it is
+ * merged into a new copy of the flags, shared by the next snapshots.
+ *
+ * <p>
+ * ⚠️ As in `Coordinate`, the coordinates are 1-based.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public final class GameSnapshot {
+
+    /**
+     * Flag of a cell holding a card.
+     */
+    private static final byte PRESENT = 1;
+
+    /**
+     * Flag of a flipped card.
+     */
+    private static final byte FLIPPED = 2;
+
+    /**
+     * Flag of a bomb.
+     */
+    private static final byte BOMB = 4;
+
+    /**
+     * Flag of a jolly.
+     */
+    private static final byte JOLLY = 8;
+
+    /**
+     * The most cells in the overlay of a snapshot ({@value}).
+     */
+    private static final int MAX_OVERLAY = 32;
+
+    /**
+     * No overlay.
+     */
+    private static final int[] NO_CELLS = new int[0];
+
+    /**
+     * No overlay flags.
+     */
+    private static final byte[] NO_FLAGS = new byte[0];
+
+    /**
+     * The version, incremented at every change of the game.
+     */
+    private final long version;
+
+    /**
+     * The number of rows.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns.
+     */
+    private final int cols;
+
+    /**
+     * The symbol of every cell, row by row, also kept for the cards
+     * removed since; shared with the following snapshots.
+     */
+    private final char[] symbols;
+
+    /**
+     * The flags of every cell, row by row, unless the overlay has newer
+     * ones; shared with the following snapshots.
+     */
+    private final byte[] flags;
+
+    /**
+     * The cells changed since the flags were copied, possibly repeated,
+     * the latest last.
+     */
+    private final int[] overlayCells;
+
+    /**
+     * The flags of the cells of the overlay.
+     */
+    private final byte[] overlayFlags;
+
+    /**
+     * The names of the players, shared with the following snapshots.
+     */
+    private final String[] names;
+
+    /**
+     * The colors of the players, shared with the following snapshots.
+     */
+    private final int[] colors;
+
+    /**
+     * The scores of the players.
+     */
+    private final int[] scores;
+
+    /**
+     * Whether every player is dead.
+     */
+    private final boolean[] dead;
+
+    /**
+     * The index of the current player, -1 if none.
+     */
+    private final int currentPlayer;
+
+    /**
+     * The number of completed turns.
+     */
+    private final int turn;
+
+    /**
+     * Whether the game is over.
+     */
+    private final boolean over;
+
+    /**
+     * Constructor.
+     * Copies the state of the grid and of the players.
+     *
+     * @param version       the version
+     * @param grid          the grid
+     * @param players       the players
+     * @param currentPlayer the index of the current player
+     * @param turn          the number of completed turns
+     * @param over          whether the game is over
+     */
+    public GameSnapshot(long version, Grid grid, Player[] players, int currentPlayer, int turn, boolean over) {
+        this.version = version;
+        this.rows = grid.getRowSize();
+        this.cols = grid.getColSize();
+        this.symbols = new char[this.rows * this.cols];
+        this.flags = new byte[this.rows * this.cols];
+        for (int cell = 0; cell < this.flags.length; cell++) {
+            Card card = grid.getCard(cell);
+            if (card != null) {
+                this.symbols[cell] = card.getSymbol();
+                this.flags[cell] = flagsOf(card);
+            }
+        }
+        this.overlayCells = NO_CELLS;
+        this.overlayFlags = NO_FLAGS;
+        this.names = new String[players.length];
+        this.colors = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            this.names[i] = players[i].getName();
+            this.colors[i] = players[i].getColor();
+        }
+        this.scores = new int[players.length];
+        this.dead = new boolean[players.length];
+        this.copyPlayers(players);
+        this.currentPlayer = currentPlayer;
+        this.turn = turn;
+        this.over = over;
+    }
+
+    /**
+     * Constructor.
+     * Copies the state of the changed cells and of the players, and shares
+     * the rest with the previous snapshot of the same grid and players.
+     * The cells not listed must not have changed since that snapshot.
+     *
+     * @param previous      the previous snapshot
+     * @param version       the version
+     * @param grid          the grid
+     * @param cells         the indices of the changed cells, row by row,
+     *                      possibly repeated
+     * @param cellCount     the number of changed cells
+     * @param players       the players
+     * @param currentPlayer the index of the current player
+     * @param turn          the number of completed turns
+     * @param over          whether the game is over
+     */
+    public GameSnapshot(GameSnapshot previous, long version, Grid grid, int[] cells, int cellCount,
+            Player[] players, int currentPlayer, int turn, boolean over) {
+        this.version = version;
+        this.rows = previous.rows;
+        this.cols = previous.cols;
+        char[] sharedSymbols = previous.symbols;
+        int overlaySize = previous.overlayCells.length + cellCount;
+        int[] changed = new int[overlaySize];
+        byte[] changedFlags = new byte[overlaySize];
+        System.arraycopy(previous.overlayCells, 0, changed, 0, previous.overlayCells.length);
+        System.arraycopy(previous.overlayFlags, 0, changedFlags, 0, previous.overlayFlags.length);
+        for (int i = 0; i < cellCount; i++) {
+            int cell = cells[i];
+            Card card = grid.getCard(cell);
+            changed[previous.overlayCells.length + i] = cell;
+            if (card == null) {
+                continue;
+            }
+            if (card.getSymbol() != sharedSymbols[cell]) {
+                // a card moved in (a board set up by hand), the symbols are copied once
+                if (sharedSymbols == previous.symbols) {
+                    sharedSymbols = sharedSymbols.clone();
+                }
+                sharedSymbols[cell] = card.getSymbol();
+            }
+            changedFlags[previous.overlayCells.length + i] = flagsOf(card);
+        }
+        this.symbols = sharedSymbols;
+        if (overlaySize > MAX_OVERLAY) {
+            this.flags = previous.flags.clone();
+            for (int i = 0; i < overlaySize; i++) {
+                this.flags[changed[i]] = changedFlags[i];
+            }
+            this.overlayCells = NO_CELLS;
+            this.overlayFlags = NO_FLAGS;
+        } else {
+            this.flags = previous.flags;
+            this.overlayCells = changed;
+            this.overlayFlags = changedFlags;
+        }
+        this.names = previous.names;
+        this.colors = previous.colors;
+        this.scores = new int[players.length];
+        this.dead = new boolean[players.length];
+        this.copyPlayers(players);
+        this.currentPlayer = currentPlayer;
+        this.turn = turn;
+        this.over = over;
+    }
+
+    /**
+     * Copy the scores and the deaths of the players.
+     *
+     * @param players the players
+     */
+    private void copyPlayers(Player[] players) {
+        for (int i = 0; i < players.length; i++) {
+            this.scores[i] = players[i].getScore();
+            this.dead[i] = players[i].isDead();
+        }
+    }
+
+    /**
+     * Get the flags of a card.
+     *
+     * @param card the card
+     * @return the flags
+     */
+    private static byte flagsOf(Card card) {
+        return (byte) (PRESENT | (card.isFlipped() ? FLIPPED : 0) | (card.isBomb() ? BOMB : 0)
+                | (card.isJolly() ? JOLLY : 0));
+    }
+
+    /**
+     * Get the flags of a cell: the latest in the overlay, if any, else the
+     * shared ones.
+     *
+     * @param cell the index of the cell
+     * @return the flags
+     */
+    private byte flagsAt(int cell) {
+        for (int i = this.overlayCells.length - 1; i >= 0; i--) {
+            if (this.overlayCells[i] == cell) {
+                return this.overlayFlags[i];
+            }
+        }
+        return this.flags[cell];
+    }
+
+    /**
+     * Get the version.
+     * A higher version is a later state of the same game.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Get the row size of the grid.
+     *
+     * @return the row size
+     */
+    public int getRowSize() {
+        return this.rows;
+    }
+
+    /**
+     * Get the column size of the grid.
+     *
+     * @return the column size
+     */
+    public int getColSize() {
+        return this.cols;
+    }
+
+    /**
+     * Check if there is a card at the specified coordinate.
+     *
+     * @param coord the coordinate
+     * @return true if the cell holds a card
+     */
+    public boolean hasCard(Coordinate coord) {
+        return (this.flagsAt(this.cell(coord)) & PRESENT) != 0;
+    }
+
+    /**
+     * Get the symbol of the card at the specified coordinate.
+     *
+     * @param coord the coordinate
+     * @return the symbol, 0 if the cell is empty
+     */
+    public char getSymbol(Coordinate coord) {
+        int cell = this.cell(coord);
+        return (this.flagsAt(cell) & PRESENT) != 0 ? this.symbols[cell] : 0;
+    }
+
+    /**
+     * Check if the card at the specified coordinate is flipped.
+     *
+     * @param coord the coordinate
+     * @return true if the card is flipped
+     */
+    public boolean isFlipped(Coordinate coord) {
+        return (this.flagsAt(this.cell(coord)) & FLIPPED) != 0;
+    }
+
+    /**
+     * Check if the card at the specified coordinate is a bomb.
+     *
+     * @param coord the coordinate
+     * @return true if the card is a bomb
+     */
+    public boolean isBomb(Coordinate coord) {
+        return (this.flagsAt(this.cell(coord)) & BOMB) != 0;
+    }
+
+    /**
+     * Check if the card at the specified coordinate is a jolly.
+     *
+     * @param coord the coordinate
+     * @return true if the card is a jolly
+     */
+    public boolean isJolly(Coordinate coord) {
+        return (this.flagsAt(this.cell(coord)) & JOLLY) != 0;
+    }
+
+    /**
+     * Append the grid to a frame, as {@link Grid#print(FrameBuffer)} does.
+     *
+     * @param frame the frame
+     */
+    public void print(FrameBuffer frame) {
+        byte[] cellFlags = this.flags;
+        if (this.overlayCells.length > 0) {
+            // every cell is read: merge the overlay once
+            cellFlags = cellFlags.clone();
+            for (int i = 0; i < this.overlayCells.length; i++) {
+                cellFlags[this.overlayCells[i]] = this.overlayFlags[i];
+            }
+        }
+        byte[] merged = cellFlags;
+        Grid.printBoard(frame, this.rows, this.cols, 0, 0, this.rows, this.cols,
+                (target, row, col) -> this.printCell(target, merged, row, col));
+    }
+
+    /**
+     * Append the content of a cell to a frame, 3 characters wide.
+     *
+     * @param frame     the frame
+     * @param cellFlags the flags of every cell
+     * @param row       the row, 0-based
+     * @param col       the column, 0-based
+     */
+    private void printCell(FrameBuffer frame, byte[] cellFlags, int row, int col) {
+        int cell = row * this.cols + col;
+        byte flags = cellFlags[cell];
+        if ((flags & PRESENT) == 0) {
+            frame.append("   ");
+            return;
+        }
+        Grid.printCard(frame, this.symbols[cell], (flags & FLIPPED) != 0, (flags & BOMB) != 0,
+                (flags & JOLLY) != 0);
+    }
+
+    /**
+     * Get the number of players.
+     *
+     * @return the number of players
+     */
+    public int getPlayerCount() {
+        return this.names.length;
+    }
+
+    /**
+     * Get the name of a player.
+     *
+     * @param player the index of the player
+     * @return the name
+     */
+    public String getPlayerName(int player) {
+        return this.names[player];
+    }
+
+    /**
+     * Get the color of a player.
+     *
+     * @param player the index of the player
+     * @return the color
+     */
+    public int getPlayerColor(int player) {
+        return this.colors[player];
+    }
+
+    /**
+     * Get the score of a player.
+     *
+     * @param player the index of the player
+     * @return the score
+     */
+    public int getPlayerScore(int player) {
+        return this.scores[player];
+    }
+
+    /**
+     * Check if a player is dead.
+     *
+     * @param player the index of the player
+     * @return true if the player is dead
+     */
+    public boolean isPlayerDead(int player) {
+        return this.dead[player];
+    }
+
+    /**
+     * Get the index of the current player.
+     *
+     * @return the current player, -1 if none
+     */
+    public int getCurrentPlayer() {
+        return this.currentPlayer;
+    }
+
+    /**
+     * Get the number of completed turns.
+     *
+     * @return the number of turns
+     */
+    public int getTurn() {
+        return this.turn;
+    }
+
+    /**
+     * Check if the game is over.
+     *
+     * @return true if the game is over
+     */
+    public boolean isOver() {
+        return this.over;
+    }
+
+    /**
+     * Get the index of a cell.
+     *
+     * @param coord the coordinate
+     * @return the index
+     */
+    private int cell(Coordinate coord) {
+        return coord.trueX() * this.cols + coord.trueY();
+    }
+}
@@ -1,7 +1,7 @@
 package ch.mazluc.game;
 
+import java.io.PrintStream;
 import java.util.Random;
-import java.util.regex.Pattern;
 
 /**
  * <p>
@@ -23,6 +23,25 @@ import java.util.regex.Pattern;
  */
 public class Grid {
 
+    /**
+     * Appends the content of a cell to a frame, 3 characters wide.
+     */
+    @FunctionalInterface
+    public interface CellPrinter {
+
+        /**
+         * Append the content of a cell.
+         *
+         * <p>
+         * ⚠️ The row and the column are 0-based.
+         *
+         * @param frame the frame
+         * @param row   the row
+         * @param col   the column
+         */
+        void printCell(FrameBuffer frame, int row, int col);
+    }
+
     /**
      * The grid of cards.
      * It is implemented as a 2D array of cards.
@@ -34,11 +53,39 @@ public class Grid {
      */
     private final Card[][] cards;
 
+    /**
+     * The symbol of the card of every cell, row by row, 0 for an empty
+     * cell, kept along the cards so that the scans run over a primitive
+     * array with {@link BoardScans}.
+     */
+    private final short[] symbols;
+
+    /**
+     * The scans over the symbols.
+     */
+    private static final BoardScans scans = BoardScans.get();
+
+    /**
+     * The random number generator shared by the grids
+     * created without their own.
+     */
+    private static final Random sharedRandom = new Random();
+
     /**
      * The random number generator.
      * It is used to generate random cards.
      */
-    private static final Random random = new Random();
+    private final Random random;
+
+    /**
+     * The layout the grid was filled with.
+     */
+    private BoardLayout layout = BoardLayout.DEFAULT;
+
+    /**
+     * The journal recording the changes, null if none.
+     */
+    private MoveJournal journal;
 
     /**
      * Constructor.
@@ -48,11 +95,26 @@ public class Grid {
      * @param cols column size of the grid
      */
     public Grid(int rows, int cols) {
+        this(rows, cols, sharedRandom);
+    }
+
+    /**
+     * Constructor.
+     * Uses the given random number generator to fill the grid,
+     * so that a seeded generator always produces the same grid.
+     * 
+     * @param rows   row size of the grid
+     * @param cols   column size of the grid
+     * @param random the random number generator
+     */
+    public Grid(int rows, int cols, Random random) {
         if (rows <= 1 || cols <= 1) {
             rows = 2;
             cols = 2;
         }
         this.cards = new Card[rows][cols];
+        this.symbols = new short[rows * cols];
+        this.random = random;
     }
 
     /**
@@ -61,14 +123,26 @@ public class Grid {
      * @return true if the grid is empty, false otherwise
      */
     public boolean isEmpty() {
-        for (int i = 1; i <= getRowSize(); i++) {
-            for (int j = 1; j <= getColSize(); j++) {
-                if (this.getCard(new Coordinate(i, j)) != null) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return scans.indexOf(this.symbols, (short) 0, 0, false) < 0;
+    }
+
+    /**
+     * Get the number of cards in the grid.
+     *
+     * @return the number of cards
+     */
+    public int getCardCount() {
+        return this.symbols.length - scans.count(this.symbols, (short) 0);
+    }
+
+    /**
+     * Get the cells holding a card, the ones a player can still flip.
+     *
+     * @param out the cells, row by row, as long as the number of cells
+     * @return the number of cells
+     */
+    public int getOccupiedCells(int[] out) {
+        return scans.collect(this.symbols, (short) 0, false, out);
     }
 
     /**
@@ -81,6 +155,16 @@ public class Grid {
         return this.cards[coord.trueX()][coord.trueY()];
     }
 
+    /**
+     * Get the card of a cell, without allocating a coordinate.
+     *
+     * @param cell the index of the cell, row by row
+     * @return the card
+     */
+    Card getCard(int cell) {
+        return this.cards[cell / this.getColSize()][cell % this.getColSize()];
+    }
+
     /**
      * Set the card at the specified coordinate.
      * 
@@ -91,7 +175,52 @@ public class Grid {
      * @param card  the card
      */
     public void setCard(Coordinate coord, Card card) {
+        if (this.journal != null) {
+            this.journal.recordSetCard(coord.trueX() * this.getColSize() + coord.trueY(),
+                    this.cards[coord.trueX()][coord.trueY()]);
+            if (card != null) {
+                card.setJournal(this.journal);
+            }
+        }
         this.cards[coord.trueX()][coord.trueY()] = card;
+        this.symbols[coord.trueX() * this.getColSize() + coord.trueY()] = symbolOf(card);
+    }
+
+    /**
+     * Get the symbol of a card in the symbols array.
+     *
+     * @param card the card
+     * @return the symbol, 0 for no card
+     */
+    private static short symbolOf(Card card) {
+        return card == null ? 0 : (short) card.getSymbol();
+    }
+
+    /**
+     * Set the journal recording the changes of the grid and of its cards.
+     *
+     * @param journal the journal, null to stop recording
+     */
+    void setJournal(MoveJournal journal) {
+        this.journal = journal;
+        for (Card[] row : this.cards) {
+            for (Card card : row) {
+                if (card != null) {
+                    card.setJournal(journal);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restore the card of a cell, without recording it.
+     *
+     * @param cell the index of the cell, row by row
+     * @param card the card
+     */
+    void restoreCard(int cell, Card card) {
+        this.cards[cell / this.getColSize()][cell % this.getColSize()] = card;
+        this.symbols[cell] = symbolOf(card);
     }
 
     /**
@@ -119,10 +248,34 @@ public class Grid {
      * @param card the card
      */
     public void popCard(Card card) {
-        for (int i = 1; i <= getRowSize(); i++) {
-            for (int j = 1; j <= getColSize(); j++) {
-                if (this.getCard(new Coordinate(i, j)) != null && this.getCard(new Coordinate(i, j)).equals(card)) {
-                    this.setCard(new Coordinate(i, j), null);
+        if (card == null) {
+            return;
+        }
+        // equal cards have the same symbol
+        short symbol = symbolOf(card);
+        int cols = this.getColSize();
+        for (int cell = scans.indexOf(this.symbols, symbol, 0, true); cell >= 0; cell = scans
+                .indexOf(this.symbols, symbol, cell + 1, true)) {
+            if (card.equals(this.cards[cell / cols][cell % cols])) {
+                this.setCard(new Coordinate(cell / cols + 1, cell % cols + 1), null);
+            }
+        }
+    }
+
+    /**
+     * Remove this very card from the grid.
+     * Unlike {@link #popCard(Card)} other equal cards, like the other
+     * bombs, stay in the grid.
+     * Ignore the card if it is not in the grid and if it is null.
+     *
+     * @param card the card
+     */
+    public void removeCard(Card card) {
+        for (int i = 0; i < getRowSize(); i++) {
+            for (int j = 0; j < getColSize(); j++) {
+                if (card != null && this.cards[i][j] == card) {
+                    this.setCard(new Coordinate(i + 1, j + 1), null);
+                    return;
                 }
             }
         }
@@ -161,15 +314,7 @@ public class Grid {
      * @return true if the grid contains the card, false otherwise
      */
     public boolean containsCard(char card) {
-        for (int i = 1; i <= getRowSize(); i++) {
-            for (int j = 1; j <= getColSize(); j++) {
-                boolean isSet = this.getCard(new Coordinate(i, j)) != null;
-                if (isSet && this.getCard(new Coordinate(i, j)).getSymbol() == card) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return card != 0 && scans.indexOf(this.symbols, (short) card, 0, true) >= 0;
     }
 
     /**
@@ -179,9 +324,8 @@ public class Grid {
      * @return true if the character is displayable, false otherwise
      */
     public static boolean isCharacterDisplayable(char ch) {
-        String regex = "\\P{Print}";
-        String str = Character.toString(ch);
-        return !Pattern.matches(regex, str);
+        // the printable ASCII characters, all that `\P{Print}` does not match
+        return ch >= ' ' && ch <= '~';
     }
 
     /**
@@ -193,100 +337,336 @@ public class Grid {
         char randomChar;
         do {
             randomChar = (char) (random.nextInt(256));
-        } while (!isCharacterDisplayable(randomChar) || this.containsCard(randomChar) || randomChar == '!');
+        } while (!isSymbolAvailable(randomChar) || this.containsCard(randomChar));
         return randomChar;
     }
 
     /**
-     * Fill the grid with random cards.
+     * Check if a character can be the symbol of a set:
+     * displayable, not '!' and not a hazard symbol.
+     *
+     * @param ch the character
+     * @return true if the character can be used
      */
-    public void fill() {
-        for (int i = 0; i < (this.getRowSize() * this.getColSize()) - 2; i += 2) {
-            char randomChar = getRandomUniqueChar();
-            int score = random.nextInt(9) + 1;
+    private static boolean isSymbolAvailable(char ch) {
+        return isCharacterDisplayable(ch) && ch != '!'
+                && ch != Constant.BOMB_SYMBOL && ch != Constant.JOLLY_SYMBOL;
+    }
+
+    /**
+     * Get the number of distinct symbols a grid can hold,
+     * hence the maximum number of sets.
+     *
+     * @return the number of symbols
+     */
+    public static int getMaxSymbols() {
+        int count = 0;
+        for (char ch = 0; ch < 256; ch++) {
+            if (isSymbolAvailable(ch)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the layout the grid was filled with.
+     *
+     * @return the layout
+     */
+    public BoardLayout getLayout() {
+        return this.layout;
+    }
 
-            Card card1 = new Card(randomChar, score);
-            Card card2 = new Card(randomChar, score);
+    /**
+     * Fill the grid with random cards,
+     * following the {@link BoardLayout#DEFAULT default layout}.
+     */
+    public void fill() {
+        this.fill(BoardLayout.DEFAULT);
+    }
 
-            this.pushInRandomFreeCell(card1);
-            this.pushInRandomFreeCell(card2);
+    /**
+     * Fill the grid with random cards following a layout.
+     * Sets come first, then the jollies and the bombs; cells left
+     * over stay empty.
+     *
+     * @param layout the layout
+     * @throws IllegalArgumentException if the hazards do not fit in the
+     *                                  grid or there are more sets than
+     *                                  symbols
+     */
+    public void fill(BoardLayout layout) {
+        int cells = this.getRowSize() * this.getColSize();
+        int sets = layout.getSetCount(cells);
+        if (layout.getBombs() + layout.getJollies() > cells || sets > getMaxSymbols()) {
+            throw new IllegalArgumentException("The layout does not fit in the grid");
+        }
+        GameEvents.BoardGenerated event = new GameEvents.BoardGenerated();
+        event.begin();
+        this.layout = layout;
+        for (int i = 0; i < sets; i++) {
+            char randomChar = getRandomUniqueChar();
+            int score = layout.drawPoints(random);
+            for (int j = 0; j < layout.getSetSize(); j++) {
+                this.pushInRandomFreeCell(new Card(randomChar, score));
+            }
         }
-        Card bomb = new Card('ﬁ', true);
-        Card jolly = new Card('§', Constant.JOLLY_POINTS, true);
-        this.pushInRandomFreeCell(jolly);
-        this.pushInRandomFreeCell(bomb);
+        for (int i = 0; i < layout.getJollies(); i++) {
+            this.pushInRandomFreeCell(new Card(Constant.JOLLY_SYMBOL, Constant.JOLLY_POINTS, true));
+        }
+        for (int i = 0; i < layout.getBombs(); i++) {
+            this.pushInRandomFreeCell(new Card(Constant.BOMB_SYMBOL, true));
+        }
+        event.rows = this.getRowSize();
+        event.cols = this.getColSize();
+        event.cards = sets * layout.getSetSize() + layout.getJollies() + layout.getBombs();
+        event.commit();
     }
 
     /**
      * Print the grid.
      */
     public void print() {
+        this.print(System.out);
+    }
+
+    /**
+     * Print the grid on the given stream.
+     *
+     * @param out the output stream
+     */
+    public void print(PrintStream out) {
+        this.print(out, 0, 0, this.getRowSize(), this.getColSize());
+    }
+
+    /**
+     * Print the cells of the grid visible in a viewport.
+     *
+     * @param out      the output stream
+     * @param viewport the viewport
+     */
+    public void print(PrintStream out, Viewport viewport) {
+        this.print(out, viewport.getFirstRow(), viewport.getFirstCol(), viewport.getRowCount(),
+                viewport.getColCount());
+    }
+
+    /**
+     * Print a window of the grid on the given stream.
+     * The window is assembled in a frame and written at once, in UTF-8
+     * whatever the charset of the stream.
+     *
+     * <p>
+     * ⚠️ The first row and column are 0-based.
+     *
+     * @param out      the output stream
+     * @param firstRow the first row of the window
+     * @param firstCol the first column of the window
+     * @param rowCount the number of rows of the window
+     * @param colCount the number of columns of the window
+     * @see #print(FrameBuffer, int, int, int, int)
+     */
+    public void print(PrintStream out, int firstRow, int firstCol, int rowCount, int colCount) {
+        FrameBuffer frame = new FrameBuffer();
+        this.print(frame, firstRow, firstCol, rowCount, colCount);
+        frame.writeTo(out);
+    }
+
+    /**
+     * Append the grid to a frame.
+     *
+     * @param frame the frame
+     */
+    public void print(FrameBuffer frame) {
+        this.print(frame, 0, 0, this.getRowSize(), this.getColSize());
+    }
+
+    /**
+     * Append the cells of the grid visible in a viewport to a frame.
+     *
+     * @param frame    the frame
+     * @param viewport the viewport
+     */
+    public void print(FrameBuffer frame, Viewport viewport) {
+        this.print(frame, viewport.getFirstRow(), viewport.getFirstCol(), viewport.getRowCount(),
+                viewport.getColCount());
+    }
+
+    /**
+     * Append a window of the grid to a frame.
+     * Only the cells of the window are drawn, with their row and column
+     * numbers, so the work depends on the size of the window and not of
+     * the grid; nothing is allocated.
+     *
+     * <p>
+     * ⚠️ The first row and column are 0-based.
+     *
+     * @param frame    the frame
+     * @param firstRow the first row of the window
+     * @param firstCol the first column of the window
+     * @param rowCount the number of rows of the window
+     * @param colCount the number of columns of the window
+     */
+    public void print(FrameBuffer frame, int firstRow, int firstCol, int rowCount, int colCount) {
+        printBoard(frame, this.getRowSize(), this.getColSize(), firstRow, firstCol, rowCount, colCount,
+                this::printCell);
+    }
+
+    /**
+     * Append a window of a board to a frame: the column indices, then the
+     * rows between borders, each with its index.
+     * The indices are as wide as the largest of the board; column indices
+     * wider than a cell label every other column, or fewer.
+     *
+     * <p>
+     * ⚠️ The first row and the first column are 0-based.
+     *
+     * @param frame    the frame
+     * @param rows     the row size of the board
+     * @param cols     the column size of the board
+     * @param firstRow the first row of the window
+     * @param firstCol the first column of the window
+     * @param rowCount the number of rows of the window
+     * @param colCount the number of columns of the window
+     * @param cells    the printer of the cells
+     */
+    public static void printBoard(FrameBuffer frame, int rows, int cols, int firstRow, int firstCol, int rowCount,
+            int colCount, CellPrinter cells) {
+        int lastRow = Math.min(firstRow + rowCount, rows);
+        int lastCol = Math.min(firstCol + colCount, cols);
+        int width = (lastCol - firstCol) * 4;
+        int rowDigits = indexWidth(rows);
+        int colDigits = indexWidth(cols);
+        // columns per index, so that the index and a space fit
+        int step = (colDigits + 4) / 4;
         // Print indices for columns
-        System.out.print("    "); // initial space for row indices
-        for (int i = 1; i <= cards[0].length; i++) {
-            System.out.printf(" %2d ", i);
+        indent(frame, rowDigits + 2); // initial space for row indices
+        for (int i = firstCol + 1; i <= lastCol; i += step) {
+            frame.append(' ').append(i, colDigits);
+            indent(frame, step * 4 - colDigits - 1);
         }
-        System.out.println();
-        for (int i = 0; i < cards.length; i++) {
+        frame.newLine();
+        for (int i = firstRow; i < lastRow; i++) {
             // Print top border for row
-            System.out.print("    "); // initial space for row indices
-            for (int j = 0; j < cards[i].length * 4 + 1; j++) {
-                if (i == 0 && j == 0) {
-                    System.out.print("┌");
-                } else if (i == 0 && j < cards[i].length * 4 && j % 4 == 0) {
-                    System.out.print("┬");
-                } else if (i == 0 && j == cards[i].length * 4) {
-                    System.out.print("┐");
+            indent(frame, rowDigits + 2); // initial space for row indices
+            for (int j = 0; j < width + 1; j++) {
+                if (i == firstRow && j == 0) {
+                    ANSIUtils.appendGlyph(frame, '┌');
+                } else if (i == firstRow && j < width && j % 4 == 0) {
+                    ANSIUtils.appendGlyph(frame, '┬');
+                } else if (i == firstRow && j == width) {
+                    ANSIUtils.appendGlyph(frame, '┐');
                 } else if (j == 0) {
-                    System.out.print("├");
-                } else if (j == cards[i].length * 4) {
-                    System.out.print("┤");
-                } else if (j < cards[i].length * 4 && j % 4 == 0) {
-                    System.out.print("┼");
+                    ANSIUtils.appendGlyph(frame, '├');
+                } else if (j == width) {
+                    ANSIUtils.appendGlyph(frame, '┤');
+                } else if (j < width && j % 4 == 0) {
+                    ANSIUtils.appendGlyph(frame, '┼');
                 } else {
-                    System.out.print("─");
+                    ANSIUtils.appendGlyph(frame, '─');
                 }
             }
-            System.out.println();
-            System.out.printf("  %2d|", i + 1);
-            for (int j = 0; j < cards[i].length; j++) {
-                if (cards[i][j] != null) {
-                    System.out.print(" ");
-                    if (cards[i][j].isFlipped()) {
-                        if (cards[i][j].isBomb()) {
-                            ANSIUtils.setForegroundColor(ANSIUtils.RED);
-                        } else if (cards[i][j].isJolly()) {
-                            ANSIUtils.setForegroundColor(ANSIUtils.GREEN);
-                        } else {
-                            ANSIUtils.setForegroundColor(ANSIUtils.BRIGHT_YELLOW);
-                        }
-                        ANSIUtils.setBold();
-                    }
-                    cards[i][j].print();
-                    ANSIUtils.reset();
-                    System.out.print(" ");
-                } else {
-                    System.out.print("   ");
-                }
-                System.out.print("|");
+            frame.newLine();
+            frame.append("  ").append(i + 1, rowDigits).append('|');
+            for (int j = firstCol; j < lastCol; j++) {
+                cells.printCell(frame, i, j);
+                frame.append('|');
             }
-            System.out.println();
+            frame.newLine();
         }
         // Print bottom border for last row
-        System.out.print("    "); // initial space for row indices
-        for (
-
-                int i = 0; i < cards[0].length * 4 + 1; i++) {
+        indent(frame, rowDigits + 2); // initial space for row indices
+        for (int i = 0; i < width + 1; i++) {
             if (i == 0) {
-                System.out.print("└");
-            } else if (i < cards[0].length * 4 && i % 4 == 0) {
-                System.out.print("┴");
-            } else if (i == cards[0].length * 4) {
-                System.out.print("┘");
+                ANSIUtils.appendGlyph(frame, '└');
+            } else if (i < width && i % 4 == 0) {
+                ANSIUtils.appendGlyph(frame, '┴');
+            } else if (i == width) {
+                ANSIUtils.appendGlyph(frame, '┘');
+            } else {
+                ANSIUtils.appendGlyph(frame, '─');
+            }
+        }
+        frame.newLine();
+    }
+
+    /**
+     * Get the terminal columns before the first cell of a board: the row
+     * indices and the left border.
+     *
+     * @param rows the row size of the board
+     * @return the number of columns
+     */
+    public static int marginWidth(int rows) {
+        return indexWidth(rows) + 3;
+    }
+
+    /**
+     * Get the width of the indices up to a size, at least 2 digits.
+     *
+     * @param size the largest index
+     * @return the number of digits
+     */
+    private static int indexWidth(int size) {
+        return Math.max(2, Integer.toString(size).length());
+    }
+
+    /**
+     * Append spaces to a frame.
+     *
+     * @param frame the frame
+     * @param count the number of spaces
+     */
+    private static void indent(FrameBuffer frame, int count) {
+        for (int i = 0; i < count; i++) {
+            frame.append(' ');
+        }
+    }
+
+    /**
+     * Append the content of a cell to a frame, 3 characters wide.
+     *
+     * <p>
+     * ⚠️ The row and the column are 0-based.
+     *
+     * @param frame the frame
+     * @param i     the row
+     * @param j     the column
+     */
+    private void printCell(FrameBuffer frame, int i, int j) {
+        Card card = cards[i][j];
+        if (card != null) {
+            printCard(frame, card.getSymbol(), card.isFlipped(), card.isBomb(), card.isJolly());
+        } else {
+            frame.append("   ");
+        }
+    }
+
+    /**
+     * Append a card to a frame, 3 characters wide: its symbol in color
+     * when flipped, its back otherwise.
+     *
+     * @param frame   the frame
+     * @param symbol  the symbol of the card
+     * @param flipped whether the card is flipped
+     * @param bomb    whether the card is a bomb
+     * @param jolly   whether the card is a jolly
+     */
+    static void printCard(FrameBuffer frame, char symbol, boolean flipped, boolean bomb, boolean jolly) {
+        frame.append(' ');
+        if (flipped) {
+            if (bomb) {
+                ANSIUtils.setForegroundColor(frame, ANSIUtils.RED);
+            } else if (jolly) {
+                ANSIUtils.setForegroundColor(frame, ANSIUtils.GREEN);
             } else {
-                System.out.print("─");
+                ANSIUtils.setForegroundColor(frame, ANSIUtils.BRIGHT_YELLOW);
             }
+            ANSIUtils.setBold(frame);
         }
-        System.out.println();
+        // as Card.print
+        frame.append(flipped ? symbol : '!');
+        ANSIUtils.reset(frame);
+        frame.append(' ');
     }
 }
\ No newline at end of file
@@ -0,0 +1,677 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * Browser-friendly front end of the game, served over HTTP.
+ *
+ * <p>
+ * Built on the JDK embedded server (`com.sun.net.httpserver`); requests
+ * are handled on virtual threads when the runtime supports them, on a
+ * cached thread pool otherwise. Games are driven by a {@link GameEngine}.
+ *
+ * <p>
+ * Endpoints:
+ * <ul>
+ * <li>`POST /games?players=Ann,Bob&amp;rows=4&amp;cols=4`: create a game,
+ * answers with its state; an optional `rules` parameter plays a variant
+ * (see {@link RuleSet#parse(String)}), within the player and cell limits
+ * of {@link Constant};
+ * <li>`GET /games/{id}`: the state of the grid and of the players;
+ * <li>`POST /games/{id}/flip?row=1&amp;col=2`: flip a card for the current
+ * player;
+ * <li>`GET /games/{id}/events`: server-sent events, one `flip` event per
+ * accepted flip.
+ * </ul>
+ *
+ * <p>
+ * A game is dropped once its last flip is answered, or when nobody
+ * requested nor watched it for {@value #IDLE_TIMEOUT_MINUTES} minutes.
+ *
+ * <p>
+ * The state is read from the {@link GameSnapshot} of the engine, so polls
+ * never wait for flips. It is encoded with {@link JsonWriter} only when
+ * the snapshot version changes and the encoded bytes are shared by every
+ * poll until the next change, so polling costs a single buffer write.
+ *
+ * <p>
+ * The boards of the new games are filled in advance by a {@link BoardPool},
+ * which screens them for fairness in the background: a board is dealt
+ * again, up to {@value #FAIR_ATTEMPTS} times, until no seat of a game of
+ * two has an advantage (see {@link FairnessAnalyzer}).
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class HttpFrontEnd {
+
+    /**
+     * A game served by the front end.
+     */
+    private static final class Session implements GameListener {
+
+        /**
+         * The id of the game.
+         */
+        private final long id;
+
+        /**
+         * The engine of the game.
+         */
+        private final GameEngine engine;
+
+        /**
+         * The queues of the event subscribers.
+         */
+        private final List<BlockingQueue<byte[]>> subscribers = new CopyOnWriteArrayList<>();
+
+        /**
+         * The encoder of the flips, used under the session lock.
+         */
+        private final JsonWriter json = new JsonWriter(1024);
+
+        /**
+         * The latest encoded state.
+         */
+        private volatile EncodedState state;
+
+        /**
+         * When the game was last requested (`System.nanoTime()`).
+         */
+        private volatile long lastAccess = System.nanoTime();
+
+        /**
+         * Constructor.
+         *
+         * @param id     the id of the game
+         * @param engine the engine
+         */
+        private Session(long id, GameEngine engine) {
+            this.id = id;
+            this.engine = engine;
+            engine.addListener(this);
+        }
+
+        /**
+         * Get the encoded state, encoding it if it changed.
+         * Reads the snapshot of the engine, so it never waits for a flip.
+         *
+         * @return the state
+         */
+        private byte[] state() {
+            GameSnapshot snapshot = this.engine.getSnapshot();
+            EncodedState encoded = this.state;
+            if (encoded == null || encoded.version != snapshot.getVersion()) {
+                encoded = new EncodedState(snapshot.getVersion(),
+                        encodeState(new JsonWriter(1024), this.id, snapshot).toByteArray());
+                this.state = encoded;
+            }
+            return encoded.bytes;
+        }
+
+        /**
+         * Flip a card and encode the result.
+         *
+         * @param coord the coordinate
+         * @return the encoded result
+         */
+        private synchronized byte[] flip(Coordinate coord) {
+            int player = this.engine.getCurrentPlayer();
+            FlipOutcome outcome = this.engine.flip(coord);
+            JsonWriter out = this.json.reset().beginObject();
+            out.name("player").value(player);
+            out.name("outcome").value(outcome.name());
+            out.name("state");
+            encodeState(out, this.id, this.engine.getSnapshot());
+            return out.endObject().toByteArray();
+        }
+
+        /**
+         * Check if the game is over.
+         *
+         * @return true if the game is over
+         */
+        private boolean isOver() {
+            return this.engine.getSnapshot().isOver();
+        }
+
+        /**
+         * Check if nobody requested nor watches the game for a time.
+         *
+         * @param now     the current time (`System.nanoTime()`)
+         * @param timeout the time, in nanoseconds
+         * @return true if the game is idle
+         */
+        private boolean isIdle(long now, long timeout) {
+            return this.subscribers.isEmpty() && now - this.lastAccess > timeout;
+        }
+
+        @Override
+        public void onFlip(GameEngine engine, int player, Coordinate coord, Card card, FlipOutcome outcome) {
+            if (this.subscribers.isEmpty()) {
+                return;
+            }
+            JsonWriter out = new JsonWriter(128).beginObject();
+            out.name("game").value(this.id);
+            out.name("version").value(engine.getSnapshot().getVersion());
+            out.name("player").value(player);
+            out.name("row").value(coord.x());
+            out.name("col").value(coord.y());
+            out.name("symbol").value(card.getSymbol());
+            out.name("outcome").value(outcome.name());
+            out.name("over").value(engine.isOver());
+            out.endObject();
+            byte[] event = sseEvent("flip", out);
+            for (BlockingQueue<byte[]> queue : this.subscribers) {
+                if (!queue.offer(event)) {
+                    // too slow to keep up, drop it
+                    this.subscribers.remove(queue);
+                    queue.clear();
+                    queue.offer(CLOSE);
+                }
+            }
+        }
+    }
+
+    /**
+     * A state encoded for a snapshot version.
+     */
+    private static final class EncodedState {
+
+        /**
+         * The version of the snapshot.
+         */
+        private final long version;
+
+        /**
+         * The encoded state.
+         */
+        private final byte[] bytes;
+
+        /**
+         * Constructor.
+         *
+         * @param version the version of the snapshot
+         * @param bytes   the encoded state
+         */
+        private EncodedState(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The default port ({@value}).
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * The number of events buffered for a subscriber before dropping it
+     * ({@value}).
+     */
+    private static final int SUBSCRIBER_QUEUE_SIZE = 256;
+
+    /**
+     * Minutes after which a game nobody requests nor watches is dropped
+     * ({@value}).
+     */
+    public static final int IDLE_TIMEOUT_MINUTES = 30;
+
+    /**
+     * The most boards dealt to find a fair one ({@value}).
+     */
+    private static final int FAIR_ATTEMPTS = 20;
+
+    /**
+     * Seconds between two looks for idle games ({@value}).
+     */
+    private static final int SWEEP_SECONDS = 60;
+
+    /**
+     * Seconds between keep-alive comments on idle event streams ({@value}).
+     */
+    private static final int KEEP_ALIVE_SECONDS = 15;
+
+    /**
+     * Marker closing an event stream.
+     */
+    private static final byte[] CLOSE = new byte[0];
+
+    /**
+     * Keep-alive comment of the event streams.
+     */
+    private static final byte[] KEEP_ALIVE = ": keep-alive\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The games, by id.
+     */
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * The generator of the game ids.
+     */
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The executor of the requests.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The boards of the new games, filled in advance.
+     */
+    private final BoardPool boards = new BoardPool();
+
+    /**
+     * The analyzer screening the boards of the pool.
+     */
+    private final FairnessAnalyzer fairness = new FairnessAnalyzer(2);
+
+    /**
+     * The thread dropping the idle games.
+     */
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "http-session-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor.
+     * Binds the port, {@link #start()} must be called to serve.
+     *
+     * @param port the port
+     * @throws IOException if the port can not be bound
+     */
+    public HttpFrontEnd(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/games", this::handle);
+        this.boards.setFairness(this.fairness, FAIR_ATTEMPTS);
+        // the default size of a new game
+        this.boards.prewarm(4, 4, 4);
+    }
+
+    /**
+     * Start serving the requests.
+     */
+    public void start() {
+        this.server.start();
+        this.sweeper.scheduleWithFixedDelay(this::dropIdleSessions, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop serving the requests.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.sweeper.shutdownNow();
+        this.executor.shutdownNow();
+        this.boards.close();
+        this.fairness.shutdown();
+    }
+
+    /**
+     * Get the number of games served.
+     *
+     * @return the number of games
+     */
+    public int getSessionCount() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Drop the games nobody requested nor watched for
+     * {@value #IDLE_TIMEOUT_MINUTES} minutes.
+     */
+    private void dropIdleSessions() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MINUTES.toNanos(IDLE_TIMEOUT_MINUTES);
+        this.sessions.values().removeIf(session -> session.isIdle(now, timeout));
+    }
+
+    /**
+     * Get the port the server is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Create an executor running every request on a virtual thread,
+     * falling back to a cached pool on runtimes without them.
+     *
+     * @return the executor
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Route a request.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the connection fails
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            // path[0] is empty, path[1] is "games"
+            if (path.length == 2 && method.equals("POST")) {
+                this.create(exchange);
+                return;
+            }
+            Session session = path.length > 2 ? this.sessions.get(parseId(path[2])) : null;
+            if (session != null) {
+                session.lastAccess = System.nanoTime();
+            }
+            if (session == null) {
+                sendError(exchange, 404, "no such game");
+            } else if (path.length == 3 && method.equals("GET")) {
+                send(exchange, 200, session.state());
+            } else if (path.length == 4 && path[3].equals("flip") && method.equals("POST")) {
+                this.flip(exchange, session);
+            } else if (path.length == 4 && path[3].equals("events") && method.equals("GET")) {
+                this.stream(exchange, session);
+            } else {
+                sendError(exchange, 405, "unsupported request");
+            }
+        }
+    }
+
+    /**
+     * Create a game.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the connection fails
+     */
+    private void create(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        String[] names = query.getOrDefault("players", "").split(",");
+        int rows = parseInt(query.get("rows"), 4);
+        int cols = parseInt(query.get("cols"), 4);
+        RuleSet rules;
+        try {
+            rules = query.containsKey("rules") ? RuleSet.parse(query.get("rules")) : RuleSet.DEFAULT;
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "invalid rules");
+            return;
+        }
+        // the server limits are hard caps, whatever the client asks for
+        if (rules.getMinPlayers() < Constant.MIN_PLAYERS || rules.getMaxPlayers() > Constant.MAX_PLAYERS
+                || rules.getMaxCells() > Constant.MAX_CELLS) {
+            sendError(exchange, 400, "rules exceed the limits of the server");
+            return;
+        }
+        if (!rules.isValidPlayerCount(names.length)) {
+            sendError(exchange, 400, "players must be between " + rules.getMinPlayers() + " and "
+                    + rules.getMaxPlayers());
+            return;
+        }
+        if (!rules.isValidGridSize(rows, cols)) {
+            sendError(exchange, 400, "invalid grid size");
+            return;
+        }
+        Player[] players = new Player[names.length];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(names[i].strip(), ANSIUtils.RED + i % 7);
+        }
+        Grid grid = this.boards.take(rows, cols);
+        long id = this.nextId.getAndIncrement();
+        Session session = new Session(id, new GameEngine(players, grid, rules));
+        this.sessions.put(id, session);
+        exchange.getResponseHeaders().set("Location", "/games/" + id);
+        send(exchange, 201, session.state());
+    }
+
+    /**
+     * Flip a card.
+     *
+     * @param exchange the exchange
+     * @param session  the game
+     * @throws IOException if the connection fails
+     */
+    private void flip(HttpExchange exchange, Session session) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        int row = parseInt(query.get("row"), 0);
+        int col = parseInt(query.get("col"), 0);
+        byte[] result = session.flip(new Coordinate(row, col));
+        if (session.isOver()) {
+            // the result holds the final state, the event streams get the last flip
+            this.sessions.remove(session.id);
+        }
+        send(exchange, 200, result);
+    }
+
+    /**
+     * Stream the events of a game until it is over or the client leaves.
+     *
+     * @param exchange the exchange
+     * @param session  the game
+     * @throws IOException if the connection fails
+     */
+    private void stream(HttpExchange exchange, Session session) throws IOException {
+        BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_SIZE);
+        session.subscribers.add(queue);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(sseEvent("state", session.state()));
+            out.flush();
+            boolean over = session.isOver();
+            while (!over) {
+                byte[] event = queue.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                if (event == CLOSE) {
+                    break;
+                }
+                out.write(event == null ? KEEP_ALIVE : event);
+                out.flush();
+                over = event != null && session.isOver() && queue.isEmpty();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            session.subscribers.remove(queue);
+        }
+    }
+
+    /**
+     * Encode the state of a game.
+     *
+     * @param out      the encoder
+     * @param id       the id of the game
+     * @param snapshot the snapshot of the game
+     * @return the encoder
+     */
+    private static JsonWriter encodeState(JsonWriter out, long id, GameSnapshot snapshot) {
+        out.beginObject();
+        out.name("id").value(id);
+        out.name("version").value(snapshot.getVersion());
+        out.name("rows").value(snapshot.getRowSize());
+        out.name("cols").value(snapshot.getColSize());
+        out.name("turn").value(snapshot.getTurn());
+        out.name("currentPlayer").value(snapshot.getCurrentPlayer());
+        out.name("over").value(snapshot.isOver());
+        // row by row, "!" for a covered card and null for an empty cell
+        out.name("cells").beginArray();
+        for (int i = 1; i <= snapshot.getRowSize(); i++) {
+            out.beginArray();
+            for (int j = 1; j <= snapshot.getColSize(); j++) {
+                Coordinate coord = new Coordinate(i, j);
+                if (!snapshot.hasCard(coord)) {
+                    out.nullValue();
+                } else {
+                    out.value(snapshot.isFlipped(coord) ? snapshot.getSymbol(coord) : '!');
+                }
+            }
+            out.endArray();
+        }
+        out.endArray();
+        out.name("players").beginArray();
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            out.beginObject();
+            out.name("name").value(snapshot.getPlayerName(i));
+            out.name("score").value(snapshot.getPlayerScore(i));
+            out.name("dead").value(snapshot.isPlayerDead(i));
+            out.name("color").value(snapshot.getPlayerColor(i));
+            out.endObject();
+        }
+        out.endArray();
+        return out.endObject();
+    }
+
+    /**
+     * Frame a server-sent event.
+     *
+     * @param name the name of the event
+     * @param data the encoded data
+     * @return the event
+     */
+    private static byte[] sseEvent(String name, JsonWriter data) {
+        return sseEvent(name, data.toByteArray());
+    }
+
+    /**
+     * Frame a server-sent event.
+     *
+     * @param name the name of the event
+     * @param data the encoded data, on a single line
+     * @return the event
+     */
+    private static byte[] sseEvent(String name, byte[] data) {
+        byte[] head = ("event: " + name + "\ndata: ").getBytes(StandardCharsets.US_ASCII);
+        byte[] event = new byte[head.length + data.length + 2];
+        System.arraycopy(head, 0, event, 0, head.length);
+        System.arraycopy(data, 0, event, head.length, data.length);
+        event[event.length - 2] = '\n';
+        event[event.length - 1] = '\n';
+        return event;
+    }
+
+    /**
+     * Send a JSON response.
+     *
+     * @param exchange the exchange
+     * @param status   the status code
+     * @param body     the encoded body
+     * @throws IOException if the connection fails
+     */
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Send a JSON error.
+     *
+     * @param exchange the exchange
+     * @param status   the status code
+     * @param message  the message
+     * @throws IOException if the connection fails
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, new JsonWriter(64).beginObject().name("error").value(message).endObject()
+                .toByteArray());
+    }
+
+    /**
+     * Parse the query of a request.
+     *
+     * @param uri the uri of the request
+     * @return the parameters
+     */
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Parse an integer parameter.
+     *
+     * @param value        the value, may be null
+     * @param defaultValue the value if missing or invalid
+     * @return the integer
+     */
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Parse the id of a game.
+     *
+     * @param value the id
+     * @return the id, -1 if invalid
+     */
+    private static long parseId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Run the front end.
+     *
+     * @param args the port, {@value #DEFAULT_PORT} if missing
+     * @throws IOException if the port can not be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? parseInt(args[0], DEFAULT_PORT) : DEFAULT_PORT;
+        HttpFrontEnd frontEnd = new HttpFrontEnd(port);
+        frontEnd.start();
+        System.out.println("Memory listening on http://localhost:" + frontEnd.getPort() + "/games");
+    }
+}
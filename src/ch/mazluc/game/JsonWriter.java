@@ -0,0 +1,366 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Minimal streaming JSON encoder.
+ *
+ * <p>
+ * Values are encoded straight into a reusable byte buffer, without
+ * building intermediate strings: the only allocation happens when the
+ * buffer has to grow. Non-ASCII characters are written as `\\uXXXX`
+ * escapes, so the output is plain ASCII (and therefore valid UTF-8).
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * JsonWriter json = new JsonWriter(256);
+ * json.beginObject().name("score").value(12).endObject();
+ * json.writeTo(out);
+ * json.reset(); // ready for the next document
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class JsonWriter {
+
+    /**
+     * The maximum nesting depth.
+     */
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * Hexadecimal digits, for escapes.
+     */
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    /**
+     * The encoded bytes.
+     */
+    private byte[] buffer;
+
+    /**
+     * The number of bytes written.
+     */
+    private int size;
+
+    /**
+     * For every open container, whether it is still empty.
+     */
+    private final boolean[] empty = new boolean[MAX_DEPTH];
+
+    /**
+     * The current nesting depth.
+     */
+    private int depth;
+
+    /**
+     * Whether a name has just been written and its value is expected.
+     */
+    private boolean afterName;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the initial capacity of the buffer
+     */
+    public JsonWriter(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Discard the content, keeping the buffer.
+     *
+     * @return this writer
+     */
+    public JsonWriter reset() {
+        this.size = 0;
+        this.depth = 0;
+        this.afterName = false;
+        return this;
+    }
+
+    /**
+     * Get the number of bytes written.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get a copy of the bytes written.
+     *
+     * @return the bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    /**
+     * Write the bytes to a stream.
+     *
+     * @param out the stream
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(this.buffer, 0, this.size);
+    }
+
+    /**
+     * Open an object.
+     *
+     * @return this writer
+     */
+    public JsonWriter beginObject() {
+        return this.open('{');
+    }
+
+    /**
+     * Close the current object.
+     *
+     * @return this writer
+     */
+    public JsonWriter endObject() {
+        return this.close('}');
+    }
+
+    /**
+     * Open an array.
+     *
+     * @return this writer
+     */
+    public JsonWriter beginArray() {
+        return this.open('[');
+    }
+
+    /**
+     * Close the current array.
+     *
+     * @return this writer
+     */
+    public JsonWriter endArray() {
+        return this.close(']');
+    }
+
+    /**
+     * Write the name of the next member of the current object.
+     *
+     * @param name the name
+     * @return this writer
+     */
+    public JsonWriter name(String name) {
+        this.separate();
+        this.string(name);
+        this.put((byte) ':');
+        this.afterName = true;
+        return this;
+    }
+
+    /**
+     * Write a string value.
+     *
+     * @param value the value, may be null
+     * @return this writer
+     */
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return this.nullValue();
+        }
+        this.separate();
+        this.string(value);
+        return this;
+    }
+
+    /**
+     * Write a single character as a string value.
+     *
+     * @param value the character
+     * @return this writer
+     */
+    public JsonWriter value(char value) {
+        this.separate();
+        this.put((byte) '"');
+        this.character(value);
+        this.put((byte) '"');
+        return this;
+    }
+
+    /**
+     * Write an integer value.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public JsonWriter value(long value) {
+        this.separate();
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                this.ascii("-9223372036854775808");
+                return this;
+            }
+            this.put((byte) '-');
+            value = -value;
+        }
+        this.ensure(20);
+        int start = this.size;
+        do {
+            this.buffer[this.size++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = this.size - 1; i < j; i++, j--) {
+            byte tmp = this.buffer[i];
+            this.buffer[i] = this.buffer[j];
+            this.buffer[j] = tmp;
+        }
+        return this;
+    }
+
+    /**
+     * Write a boolean value.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public JsonWriter value(boolean value) {
+        this.separate();
+        this.ascii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Write a null value.
+     *
+     * @return this writer
+     */
+    public JsonWriter nullValue() {
+        this.separate();
+        this.ascii("null");
+        return this;
+    }
+
+    /**
+     * Open a container.
+     *
+     * @param bracket the opening bracket
+     * @return this writer
+     */
+    private JsonWriter open(char bracket) {
+        if (this.depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        this.separate();
+        this.put((byte) bracket);
+        this.empty[this.depth++] = true;
+        return this;
+    }
+
+    /**
+     * Close a container.
+     *
+     * @param bracket the closing bracket
+     * @return this writer
+     */
+    private JsonWriter close(char bracket) {
+        if (this.depth == 0) {
+            throw new IllegalStateException("No open JSON container");
+        }
+        this.depth--;
+        this.put((byte) bracket);
+        return this;
+    }
+
+    /**
+     * Write the separator before a value or a name, if needed.
+     */
+    private void separate() {
+        if (this.afterName) {
+            this.afterName = false;
+            return;
+        }
+        if (this.depth > 0) {
+            if (this.empty[this.depth - 1]) {
+                this.empty[this.depth - 1] = false;
+            } else {
+                this.put((byte) ',');
+            }
+        }
+    }
+
+    /**
+     * Write a quoted and escaped string.
+     *
+     * @param value the string
+     */
+    private void string(String value) {
+        this.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            this.character(value.charAt(i));
+        }
+        this.put((byte) '"');
+    }
+
+    /**
+     * Write an escaped character.
+     *
+     * @param ch the character
+     */
+    private void character(char ch) {
+        if (ch == '"' || ch == '\\') {
+            this.ensure(2);
+            this.buffer[this.size++] = '\\';
+            this.buffer[this.size++] = (byte) ch;
+        } else if (ch >= 0x20 && ch < 0x7f) {
+            this.put((byte) ch);
+        } else {
+            this.ensure(6);
+            this.buffer[this.size++] = '\\';
+            this.buffer[this.size++] = 'u';
+            this.buffer[this.size++] = HEX[(ch >> 12) & 0xf];
+            this.buffer[this.size++] = HEX[(ch >> 8) & 0xf];
+            this.buffer[this.size++] = HEX[(ch >> 4) & 0xf];
+            this.buffer[this.size++] = HEX[ch & 0xf];
+        }
+    }
+
+    /**
+     * Write an ASCII literal.
+     *
+     * @param literal the literal
+     */
+    private void ascii(String literal) {
+        this.ensure(literal.length());
+        for (int i = 0; i < literal.length(); i++) {
+            this.buffer[this.size++] = (byte) literal.charAt(i);
+        }
+    }
+
+    /**
+     * Write a single byte.
+     *
+     * @param b the byte
+     */
+    private void put(byte b) {
+        this.ensure(1);
+        this.buffer[this.size++] = b;
+    }
+
+    /**
+     * Make room for more bytes.
+     *
+     * @param extra the number of bytes needed
+     */
+    private void ensure(int extra) {
+        if (this.size + extra > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + extra));
+        }
+    }
+}
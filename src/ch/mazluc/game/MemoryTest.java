@@ -1,5 +1,17 @@
 package ch.mazluc.game;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.SplittableRandom;
+
 /**
  * <p>
  * Game execution.
@@ -40,8 +52,8 @@ package ch.mazluc.game;
  * <p>
  * Random player names:
  * <ul>
- * <li>When defining players' names the user can generate random names (uuid
- * based for now);
+ * <li>When defining players' names the user can generate random names (7
+ * random hex digits);
  * </ul>
  * 
  * <p>
@@ -51,6 +63,74 @@ package ch.mazluc.game;
  * output;
  * </ul>
  * 
+ * <p>
+ * Spectators:
+ * <ul>
+ * <li>Run with `--spectators=PORT` to let anyone watch the game live by
+ * connecting to that port (e.g. `nc localhost PORT`);
+ * <li>Run with `--bots` to watch two bots play instead, drawn on the
+ * terminal and to the spectators at most `--fps=N` times a second (30 by
+ * default), however fast they play;
+ * </ul>
+ *
+ * <p>
+ * Keyboard:
+ * <ul>
+ * <li>Run with `--raw` on Linux to move over the grid with the arrow keys
+ * and flip a card with enter, without typing coordinates;
+ * <li>Run with `--undo` to take back the last turn at the start of the
+ * next one: type `u` instead of a row, or press U with `--raw`;
+ * </ul>
+ *
+ * <p>
+ * Rules:
+ * <ul>
+ * <li>Run with `--rules="bomb=10 match=pass"` to play a variant of the
+ * rules, written as {@link RuleSet#parse(String)} reads them;
+ * </ul>
+ *
+ * <p>
+ * Replays:
+ * <ul>
+ * <li>Run with `--seed=N` to always get the same grid, and with
+ * `--record=FILE` to save the keystrokes, which `ReplayThroughputTest`
+ * can replay with the same seed;
+ * </ul>
+ *
+ * <p>
+ * Ratings:
+ * <ul>
+ * <li>Run with `--ratings=FILE` to update the Elo rating of every player
+ * name at the end of the game, kept in that file;
+ * <li>Run with `--stats=FILE` to keep the games, wins, average score,
+ * match accuracy, bombs and jollies of every player name in that file,
+ * shown with the leaderboard;
+ * </ul>
+ *
+ * <p>
+ * Startup:
+ * <ul>
+ * <li>Run with `--startup-time` to print how long the title took to show;
+ * <li>To start faster, create once a class data sharing archive of the
+ * game classes with a training run, then use it (the classes must be in
+ * a jar):
+ * 
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=memory.jsa -cp memory.jar ch.mazluc.game.MemoryTest --cds-training
+ * java -XX:SharedArchiveFile=memory.jsa -cp memory.jar ch.mazluc.game.MemoryTest
+ * </pre>
+ * </ul>
+ *
+ * <p>
+ * Profiling:
+ * <ul>
+ * <li>Run with `-XX:StartFlightRecording=filename=game.jfr` to record the
+ * game events, then `GameEventAnalyzer game.jfr` shows where the time
+ * went;
+ * <li>Compile and run with `--add-modules jdk.incubator.vector` to scan
+ * the grid with SIMD instructions (see {@link BoardScans});
+ * </ul>
+ * 
  * @author Luca Mazza
  * @version 1.0
  */
@@ -62,10 +142,267 @@ public class MemoryTest {
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        Game game = new Game();
+        long mainNanos = System.nanoTime();
+        for (String arg : args) {
+            if (arg.equals("--cds-training")) {
+                // load what a game loads, for -XX:ArchiveClassesAtExit
+                ScriptedGame.play(ScriptedGame.script(42, 2, 6, 6).getBytes(StandardCharsets.UTF_8), 42,
+                        new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (String arg : args) {
+            if (arg.equals("--bots")) {
+                watchBots(args);
+                return;
+            }
+        }
+        InputStream in = openRecorder(args);
+        Random gridRandom = null;
+        for (String arg : args) {
+            if (arg.startsWith("--seed=")) {
+                gridRandom = new Random(Long.parseLong(arg.substring("--seed=".length())));
+            }
+        }
+        Game game = new Game(in, System.out, gridRandom);
+        for (String arg : args) {
+            if (arg.startsWith("--rules=")) {
+                game.setRules(RuleSet.parse(arg.substring("--rules=".length())));
+            }
+        }
+        boolean raw = false;
+        for (String arg : args) {
+            raw |= arg.equals("--raw");
+            if (arg.equals("--undo")) {
+                game.setUndoable(true);
+            }
+        }
+        SpectatorBroadcaster broadcaster = openBroadcaster(args);
+        game.setBroadcaster(broadcaster);
+        RatingService ratings = openRatings(args);
+        game.setRatings(ratings);
+        PlayerStatsStore stats = openStats(args);
+        game.setStats(stats);
         game.printStartScreen();
+        for (String arg : args) {
+            if (arg.equals("--startup-time")) {
+                reportStartupTime(mainNanos, game.getFirstFrameNanos());
+            }
+        }
         game.initialize();
+        RawTerminal terminal = raw ? RawTerminal.open(in) : null;
+        game.setRawTerminal(terminal);
         game.start();
+        if (terminal != null) {
+            terminal.close();
+        }
         game.destroy();
+        if (ratings != null) {
+            try {
+                ratings.close();
+            } catch (IOException e) {
+                System.err.println("Error saving ratings: " + e.getMessage());
+            }
+        }
+        if (stats != null) {
+            try {
+                stats.close();
+            } catch (IOException e) {
+                System.err.println("Error saving statistics: " + e.getMessage());
+            }
+        }
+        if (broadcaster != null) {
+            try {
+                broadcaster.close();
+            } catch (IOException e) {
+                System.err.println("Error closing spectators: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Watch two bots play on a 6x6 grid, drawn by a {@link RenderScheduler}
+     * on the standard output and to the spectators, if requested by the
+     * arguments. The seed and the rules are taken from the arguments too.
+     *
+     * @param args the command line arguments
+     */
+    private static void watchBots(String[] args) {
+        long seed = System.nanoTime();
+        int fps = RenderScheduler.DEFAULT_FPS;
+        RuleSet rules = RuleSet.DEFAULT;
+        for (String arg : args) {
+            if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--fps=")) {
+                fps = Integer.parseInt(arg.substring("--fps=".length()));
+            } else if (arg.startsWith("--rules=")) {
+                rules = RuleSet.parse(arg.substring("--rules=".length()));
+            }
+        }
+        Grid grid = new Grid(6, 6, new Random(seed));
+        grid.fill();
+        GameEngine engine = new GameEngine(Simulation.players(2), grid, rules);
+        SplittableRandom random = new SplittableRandom(seed);
+        BotStrategy[] bots = new BotStrategy[2];
+        for (int i = 0; i < bots.length; i++) {
+            bots[i] = new ProbabilisticBot(0.5, 1.0, random.split());
+            bots[i].attach(engine);
+        }
+        SpectatorBroadcaster broadcaster = openBroadcaster(args);
+        try (RenderScheduler renderer = new RenderScheduler(System.out, broadcaster, fps)) {
+            engine.addListener(renderer);
+            Simulation.play(engine, bots);
+        }
+        if (broadcaster != null) {
+            try {
+                broadcaster.close();
+            } catch (IOException e) {
+                System.err.println("Error closing spectators: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Report on the standard error how long the first frame took to show,
+     * since the start of the JVM and since the start of `main`.
+     *
+     * @param mainNanos       when `main` started (`System.nanoTime()`)
+     * @param firstFrameNanos when the first frame was on screen
+     */
+    private static void reportStartupTime(long mainNanos, long firstFrameNanos) {
+        long sinceFrame = System.nanoTime() - firstFrameNanos;
+        // the start of the JVM is only known in wall clock time
+        long sinceStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.err.printf("first frame: %.1f ms after JVM start, %.1f ms after main%n",
+                sinceStart - sinceFrame / 1e6, (firstFrameNanos - mainNanos) / 1e6);
+    }
+
+    /**
+     * Open the keystroke recorder if requested by the arguments.
+     *
+     * @param args the command line arguments
+     * @return the input stream of the game, recorded or not
+     */
+    private static InputStream openRecorder(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--record=")) {
+                try {
+                    return new RecordingInputStream(System.in,
+                            Files.newOutputStream(Paths.get(arg.substring("--record=".length()))));
+                } catch (IOException e) {
+                    System.err.println("Recording disabled: " + e.getMessage());
+                }
+            }
+        }
+        return System.in;
+    }
+
+    /**
+     * Open the ratings if requested by the arguments.
+     *
+     * @param args the command line arguments
+     * @return the ratings, null if not requested or not readable
+     */
+    private static RatingService openRatings(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--ratings=")) {
+                try {
+                    return new RatingService(Paths.get(arg.substring("--ratings=".length())));
+                } catch (IOException e) {
+                    System.err.println("Ratings disabled: " + e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open the player statistics if requested by the arguments.
+     *
+     * @param args the command line arguments
+     * @return the statistics, null if not requested or not readable
+     */
+    private static PlayerStatsStore openStats(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--stats=")) {
+                try {
+                    return new PlayerStatsStore(Paths.get(arg.substring("--stats=".length())));
+                } catch (IOException e) {
+                    System.err.println("Statistics disabled: " + e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Input stream copying everything it reads to a file.
+     */
+    private static class RecordingInputStream extends FilterInputStream {
+
+        /**
+         * The stream the input is copied to.
+         */
+        private final OutputStream record;
+
+        /**
+         * Constructor.
+         *
+         * @param in     the input stream
+         * @param record the stream the input is copied to
+         */
+        RecordingInputStream(InputStream in, OutputStream record) {
+            super(in);
+            this.record = record;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                this.record.write(b);
+                this.record.flush();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                this.record.write(b, off, n);
+                this.record.flush();
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                this.record.close();
+            }
+        }
+    }
+
+    /**
+     * Open the spectator broadcaster if requested by the arguments.
+     *
+     * @param args the command line arguments
+     * @return the broadcaster, null if not requested or not available
+     */
+    private static SpectatorBroadcaster openBroadcaster(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--spectators=")) {
+                try {
+                    return new SpectatorBroadcaster(Integer.parseInt(arg.substring("--spectators=".length())));
+                } catch (IOException | NumberFormatException e) {
+                    System.err.println("Spectators disabled: " + e.getMessage());
+                }
+            }
+        }
+        return null;
     }
 }
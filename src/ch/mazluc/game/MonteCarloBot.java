@@ -0,0 +1,1221 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Bot that plays by Monte Carlo tree search over the hidden cards.
+ *
+ * <p>
+ * Every iteration deals the cards the bot has not seen yet at random,
+ * among the layouts consistent with what it has observed (the partners of
+ * the cards seen once, the pairs never seen, the bombs and the jollies
+ * left), then plays that layout down the tree, choosing the flips by UCT
+ * for whoever is to move, and plays it out with greedy perfect-memory
+ * players. The tree does not tell cells apart but what is known about
+ * them: a move is "an unseen card" or "the known card with symbol s", and
+ * the symbols are numbered in the order they are revealed, so that the
+ * same node stands for the same situation whatever the layout dealt.
+ *
+ * <p>
+ * The search runs on a pool of threads, each with a tree of its own (root
+ * parallelization), until the time budget of the move is over, and the
+ * most visited move of the merged roots is played. Every real flip, of
+ * any player, moves the roots down to the node reached, so the subtree
+ * searched so far is kept from one move and from one turn to the next.
+ * The trees and the simulated games live in arrays allocated when the bot
+ * is attached: an iteration allocates nothing.
+ *
+ * <p>
+ * The bot plays with pairs only; the number of bombs and jollies can be
+ * any.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (MonteCarloBot bot = new MonteCarloBot(200, new SplittableRandom())) {
+ *     bot.attach(engine);
+ *     engine.flip(bot.chooseFlip(engine)); // when it is the bot's turn
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link MonteCarloBotTest} plays the bot against a probabilistic bot.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class MonteCarloBot implements BotStrategy, Closeable {
+
+    /**
+     * The default time budget of a move, in milliseconds ({@value}).
+     */
+    public static final int DEFAULT_MOVE_MILLIS = 200;
+
+    /**
+     * The number of nodes of the tree of a worker ({@value}).
+     */
+    public static final int NODES_PER_WORKER = 1 << 17;
+
+    /**
+     * The exploration constant of UCT, for rewards between 0 and 1.
+     */
+    private static final double EXPLORATION = 0.7;
+
+    /**
+     * A cell never seen.
+     */
+    private static final int UNSEEN = -1;
+
+    /**
+     * A cell without card.
+     */
+    private static final int GONE = -2;
+
+    /**
+     * The move flipping an unseen card.
+     */
+    private static final int UNSEEN_MOVE = -1;
+
+    /**
+     * The outcome of flipping a bomb, and its symbol in a layout.
+     */
+    private static final int BOMB = -2;
+
+    /**
+     * The outcome of flipping a jolly, and its symbol in a layout.
+     */
+    private static final int JOLLY = -3;
+
+    /**
+     * A searcher: a tree and a game to play down it.
+     *
+     * <p>
+     * The nodes alternate: a state has one child per move tried, a move
+     * has one child per outcome seen (the symbol revealed, numbered in the
+     * order of revelation, or a bomb or a jolly). A move keeps the rewards
+     * of the player who made it.
+     *
+     * <p>
+     * The game is dealt from the observations of the bot: the symbols of
+     * the layout are numbered like the revealed ones for the cards already
+     * seen, and after them for the pairs never seen.
+     */
+    private static final class Worker {
+
+        /**
+         * The key of every node: the move, or the outcome.
+         */
+        private int[] key;
+
+        /**
+         * The first child of every node, -1 if none.
+         */
+        private int[] firstChild;
+
+        /**
+         * The next sibling of every node, -1 if none.
+         */
+        private int[] nextSibling;
+
+        /**
+         * The visits of every node.
+         */
+        private int[] visits;
+
+        /**
+         * The sum of the rewards of every move node.
+         */
+        private double[] reward;
+
+        /**
+         * The player who made the move, or who is to move in the state.
+         */
+        private byte[] mover;
+
+        /**
+         * The node arrays the tree is compacted into.
+         */
+        private int[] spareKey;
+
+        /**
+         * The first child arrays the tree is compacted into.
+         */
+        private int[] spareFirstChild;
+
+        /**
+         * The next sibling arrays the tree is compacted into.
+         */
+        private int[] spareNextSibling;
+
+        /**
+         * The visits the tree is compacted into.
+         */
+        private int[] spareVisits;
+
+        /**
+         * The rewards the tree is compacted into.
+         */
+        private double[] spareReward;
+
+        /**
+         * The movers the tree is compacted into.
+         */
+        private byte[] spareMover;
+
+        /**
+         * The old nodes to copy, while compacting.
+         */
+        private final int[] queue;
+
+        /**
+         * The copies of the queued nodes, while compacting.
+         */
+        private final int[] copies;
+
+        /**
+         * The number of nodes used.
+         */
+        private int nodeCount;
+
+        /**
+         * The root, the state of the real game.
+         */
+        private int root = -1;
+
+        /**
+         * The symbol of every cell, {@link MonteCarloBot#GONE} if empty.
+         */
+        private final int[] symbol;
+
+        /**
+         * Whether every cell has been revealed.
+         */
+        private final boolean[] known;
+
+        /**
+         * The first revealed cell of every symbol.
+         */
+        private final int[] knownFirst;
+
+        /**
+         * The second revealed cell of every symbol.
+         */
+        private final int[] knownSecond;
+
+        /**
+         * The number of revealed cells of every symbol on the grid.
+         */
+        private final int[] knownCount;
+
+        /**
+         * The points of every symbol.
+         */
+        private final int[] points;
+
+        /**
+         * The revelation number of every symbol, -1 if never revealed.
+         */
+        private final int[] revealed;
+
+        /**
+         * The symbol of every revelation number.
+         */
+        private final int[] symbolOf;
+
+        /**
+         * The unseen cells, the first `unseenCount`.
+         */
+        private final int[] unseenCells;
+
+        /**
+         * The position of every unseen cell in `unseenCells`.
+         */
+        private final int[] unseenPosition;
+
+        /**
+         * The number of unseen cells.
+         */
+        private int unseenCount;
+
+        /**
+         * The symbols with both cards revealed, some of them taken since.
+         */
+        private final int[] pairs;
+
+        /**
+         * The number of symbols in `pairs`.
+         */
+        private int pairCount;
+
+        /**
+         * The number of symbols of the layout.
+         */
+        private int symbolCount;
+
+        /**
+         * The next revelation number.
+         */
+        private int nextRevealed;
+
+        /**
+         * The cards dealt to the unseen cells.
+         */
+        private final int[] deck;
+
+        /**
+         * The moves of the current state.
+         */
+        private final int[] moves;
+
+        /**
+         * The states visited by the iteration.
+         */
+        private final int[] pathStates;
+
+        /**
+         * The moves made by the iteration.
+         */
+        private final int[] pathMoves;
+
+        /**
+         * The score of every player.
+         */
+        private final int[] scores;
+
+        /**
+         * Whether every player is alive.
+         */
+        private final boolean[] alive;
+
+        /**
+         * The reward of every player.
+         */
+        private final double[] rewards;
+
+        /**
+         * The player to move, -1 if nobody is alive.
+         */
+        private int current;
+
+        /**
+         * The first card of the turn, -1 if none.
+         */
+        private int turnFirst;
+
+        /**
+         * The number of cards on the grid.
+         */
+        private int cardsLeft;
+
+        /**
+         * Whether the game is over.
+         */
+        private boolean over;
+
+        /**
+         * The random number generator of the deals and of the playouts.
+         */
+        private final SplittableRandom random;
+
+        /**
+         * The random number generator of the points of the unseen pairs.
+         */
+        private final Random pointsRandom;
+
+        /**
+         * The number of iterations run.
+         */
+        private long iterations;
+
+        /**
+         * Constructor.
+         *
+         * @param cells   the number of cells of the grid
+         * @param players the number of players
+         * @param random  the random number generator
+         */
+        private Worker(int cells, int players, SplittableRandom random) {
+            this.key = new int[NODES_PER_WORKER];
+            this.firstChild = new int[NODES_PER_WORKER];
+            this.nextSibling = new int[NODES_PER_WORKER];
+            this.visits = new int[NODES_PER_WORKER];
+            this.reward = new double[NODES_PER_WORKER];
+            this.mover = new byte[NODES_PER_WORKER];
+            this.spareKey = new int[NODES_PER_WORKER];
+            this.spareFirstChild = new int[NODES_PER_WORKER];
+            this.spareNextSibling = new int[NODES_PER_WORKER];
+            this.spareVisits = new int[NODES_PER_WORKER];
+            this.spareReward = new double[NODES_PER_WORKER];
+            this.spareMover = new byte[NODES_PER_WORKER];
+            this.queue = new int[NODES_PER_WORKER];
+            this.copies = new int[NODES_PER_WORKER];
+            this.symbol = new int[cells];
+            this.known = new boolean[cells];
+            this.knownFirst = new int[cells];
+            this.knownSecond = new int[cells];
+            this.knownCount = new int[cells];
+            this.points = new int[cells];
+            this.revealed = new int[cells];
+            this.symbolOf = new int[cells];
+            this.unseenCells = new int[cells];
+            this.unseenPosition = new int[cells];
+            this.pairs = new int[cells];
+            this.deck = new int[cells];
+            this.moves = new int[cells + 1];
+            this.pathStates = new int[cells * 2 + 1];
+            this.pathMoves = new int[cells * 2 + 1];
+            this.scores = new int[players];
+            this.alive = new boolean[players];
+            this.rewards = new double[players];
+            this.random = random;
+            this.pointsRandom = new Random(random.nextLong());
+        }
+
+        /**
+         * Drop the tree.
+         *
+         * @param player the player to move in the new root
+         */
+        private void clear(int player) {
+            this.nodeCount = 0;
+            this.root = this.newNode(-1, 0, player);
+        }
+
+        /**
+         * Move the root down to the node reached by a real flip, or drop
+         * the tree if it was never searched.
+         *
+         * @param move    the move
+         * @param outcome the outcome
+         * @param player  the player to move after the flip
+         */
+        private void advance(int move, int outcome, int player) {
+            int child = this.root < 0 ? -1 : this.findChild(this.root, move);
+            int state = child < 0 ? -1 : this.findChild(child, outcome);
+            if (state < 0 || this.mover[state] != player) {
+                this.clear(player);
+                return;
+            }
+            this.root = state;
+            if (this.nodeCount > NODES_PER_WORKER / 2) {
+                this.compact();
+            }
+        }
+
+        /**
+         * Copy the subtree of the root to the spare arrays, breadth first,
+         * and swap them in.
+         */
+        private void compact() {
+            int count = 0;
+            int head = 0;
+            int tail = 0;
+            this.copyNode(this.root, count++);
+            this.queue[tail] = this.root;
+            this.copies[tail++] = 0;
+            while (head < tail) {
+                int node = this.queue[head];
+                int copy = this.copies[head++];
+                int previous = -1;
+                for (int child = this.firstChild[node]; child >= 0; child = this.nextSibling[child]) {
+                    int childCopy = count++;
+                    this.copyNode(child, childCopy);
+                    if (previous < 0) {
+                        this.spareFirstChild[copy] = childCopy;
+                    } else {
+                        this.spareNextSibling[previous] = childCopy;
+                    }
+                    previous = childCopy;
+                    this.queue[tail] = child;
+                    this.copies[tail++] = childCopy;
+                }
+            }
+            int[] ints = this.key;
+            this.key = this.spareKey;
+            this.spareKey = ints;
+            ints = this.firstChild;
+            this.firstChild = this.spareFirstChild;
+            this.spareFirstChild = ints;
+            ints = this.nextSibling;
+            this.nextSibling = this.spareNextSibling;
+            this.spareNextSibling = ints;
+            ints = this.visits;
+            this.visits = this.spareVisits;
+            this.spareVisits = ints;
+            double[] doubles = this.reward;
+            this.reward = this.spareReward;
+            this.spareReward = doubles;
+            byte[] bytes = this.mover;
+            this.mover = this.spareMover;
+            this.spareMover = bytes;
+            this.nodeCount = count;
+            this.root = 0;
+        }
+
+        /**
+         * Copy a node to the spare arrays, without its links.
+         *
+         * @param node the node
+         * @param copy the index of the copy
+         */
+        private void copyNode(int node, int copy) {
+            this.spareKey[copy] = this.key[node];
+            this.spareFirstChild[copy] = -1;
+            this.spareNextSibling[copy] = -1;
+            this.spareVisits[copy] = this.visits[node];
+            this.spareReward[copy] = this.reward[node];
+            this.spareMover[copy] = this.mover[node];
+        }
+
+        /**
+         * Add a node as first child of another.
+         *
+         * @param parent the parent, -1 for a root
+         * @param key    the key
+         * @param player the player who moves
+         * @return the node, -1 if the tree is full
+         */
+        private int newNode(int parent, int key, int player) {
+            if (this.nodeCount == NODES_PER_WORKER) {
+                return -1;
+            }
+            int node = this.nodeCount++;
+            this.key[node] = key;
+            this.firstChild[node] = -1;
+            this.visits[node] = 0;
+            this.reward[node] = 0;
+            this.mover[node] = (byte) player;
+            if (parent >= 0) {
+                this.nextSibling[node] = this.firstChild[parent];
+                this.firstChild[parent] = node;
+            } else {
+                this.nextSibling[node] = -1;
+            }
+            return node;
+        }
+
+        /**
+         * Find the child of a node with a key.
+         *
+         * @param node the node
+         * @param key  the key
+         * @return the child, -1 if none
+         */
+        private int findChild(int node, int key) {
+            for (int child = this.firstChild[node]; child >= 0; child = this.nextSibling[child]) {
+                if (this.key[child] == key) {
+                    return child;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Search until a deadline.
+         *
+         * @param bot      the bot, with its observations
+         * @param deadline the deadline (`System.nanoTime()`)
+         */
+        private void search(MonteCarloBot bot, long deadline) {
+            do {
+                this.iterate(bot);
+                this.iterations++;
+            } while (System.nanoTime() < deadline);
+        }
+
+        /**
+         * Run an iteration: deal, go down the tree, add a node, play out
+         * and update the nodes visited.
+         *
+         * @param bot the bot, with its observations
+         */
+        private void iterate(MonteCarloBot bot) {
+            this.deal(bot);
+            int state = this.root;
+            int leaf = state;
+            int depth = 0;
+            boolean expanded = false;
+            while (!this.over && !expanded) {
+                int count = this.listMoves();
+                int move = 0;
+                int child = -1;
+                double best = -1;
+                double log = Math.log(this.visits[state] + 1.0);
+                for (int i = 0; i < count; i++) {
+                    int candidate = this.findChild(state, this.moves[i]);
+                    if (candidate < 0) {
+                        move = this.moves[i];
+                        child = -1;
+                        break;
+                    }
+                    double value = this.reward[candidate] / this.visits[candidate]
+                            + EXPLORATION * Math.sqrt(log / this.visits[candidate]);
+                    if (value > best) {
+                        best = value;
+                        move = this.moves[i];
+                        child = candidate;
+                    }
+                }
+                if (child < 0) {
+                    child = this.newNode(state, move, this.current);
+                    expanded = true;
+                }
+                int outcome = this.flip(this.cellOf(move));
+                if (child < 0) {
+                    // the tree is full, play out from here
+                    leaf = -1;
+                    break;
+                }
+                this.pathStates[depth] = state;
+                this.pathMoves[depth++] = child;
+                int next = this.findChild(child, outcome);
+                if (next < 0) {
+                    next = this.newNode(child, outcome, this.current);
+                    expanded = true;
+                }
+                state = next;
+                leaf = next;
+                if (next < 0) {
+                    break;
+                }
+            }
+            while (!this.over) {
+                this.flip(this.playoutCell());
+            }
+            this.reward();
+            for (int i = 0; i < depth; i++) {
+                int move = this.pathMoves[i];
+                this.visits[this.pathStates[i]]++;
+                this.visits[move]++;
+                this.reward[move] += this.rewards[this.mover[move]];
+            }
+            if (leaf >= 0) {
+                this.visits[leaf]++;
+            }
+        }
+
+        /**
+         * Deal the unseen cards at random, consistently with the
+         * observations of the bot, and set up the game as it stands.
+         *
+         * @param bot the bot
+         * @throws IllegalStateException if the observations do not add up
+         */
+        private void deal(MonteCarloBot bot) {
+            int known = bot.revealedCount;
+            for (int s = 0; s < known; s++) {
+                this.knownFirst[s] = -1;
+                this.knownSecond[s] = -1;
+                this.knownCount[s] = 0;
+                this.points[s] = bot.revealedPoints[s];
+                this.revealed[s] = s;
+                this.symbolOf[s] = s;
+            }
+            this.unseenCount = 0;
+            this.cardsLeft = 0;
+            this.pairCount = 0;
+            for (int cell = 0; cell < this.symbol.length; cell++) {
+                int state = bot.cellState[cell];
+                this.known[cell] = state >= 0;
+                this.symbol[cell] = state >= 0 ? state : GONE;
+                if (state == GONE) {
+                    continue;
+                }
+                this.cardsLeft++;
+                if (state == UNSEEN) {
+                    this.unseenPosition[cell] = this.unseenCount;
+                    this.unseenCells[this.unseenCount++] = cell;
+                } else {
+                    this.reveal(state, cell);
+                }
+            }
+            int dealt = 0;
+            for (int s = 0; s < known; s++) {
+                if (this.knownCount[s] == 1) {
+                    this.deck[dealt++] = s;
+                }
+            }
+            int hidden = (this.unseenCount - dealt - bot.hiddenBombs - bot.hiddenJollies) / 2;
+            for (int s = known; s < known + hidden; s++) {
+                this.knownFirst[s] = -1;
+                this.knownSecond[s] = -1;
+                this.knownCount[s] = 0;
+                this.points[s] = bot.layout.drawPoints(this.pointsRandom);
+                this.revealed[s] = -1;
+                this.deck[dealt++] = s;
+                this.deck[dealt++] = s;
+            }
+            for (int i = 0; i < bot.hiddenBombs; i++) {
+                this.deck[dealt++] = BOMB;
+            }
+            for (int i = 0; i < bot.hiddenJollies; i++) {
+                this.deck[dealt++] = JOLLY;
+            }
+            if (dealt != this.unseenCount) {
+                throw new IllegalStateException("The observations do not match the rules");
+            }
+            for (int i = 0; i < dealt; i++) {
+                int j = i + this.random.nextInt(dealt - i);
+                int card = this.deck[j];
+                this.deck[j] = this.deck[i];
+                this.symbol[this.unseenCells[i]] = card;
+            }
+            this.symbolCount = known + hidden;
+            this.nextRevealed = known;
+            System.arraycopy(bot.scores, 0, this.scores, 0, this.scores.length);
+            System.arraycopy(bot.alive, 0, this.alive, 0, this.alive.length);
+            this.current = bot.current;
+            this.turnFirst = bot.turnFirstCell;
+            this.over = this.current < 0 || this.cardsLeft == 0;
+        }
+
+        /**
+         * Remember a revealed card.
+         *
+         * @param s    the symbol
+         * @param cell the cell
+         */
+        private void reveal(int s, int cell) {
+            if (this.knownCount[s] == 0) {
+                this.knownFirst[s] = cell;
+            } else {
+                this.knownSecond[s] = cell;
+                this.pairs[this.pairCount++] = s;
+            }
+            this.knownCount[s]++;
+        }
+
+        /**
+         * List the moves worth trying, in `moves`.
+         * A known pair is always taken, and so is the partner of the
+         * first card when it is known.
+         *
+         * @return the number of moves
+         */
+        private int listMoves() {
+            int count = 0;
+            if (this.turnFirst < 0) {
+                while (this.pairCount > 0) {
+                    int s = this.pairs[this.pairCount - 1];
+                    if (this.knownCount[s] == 2) {
+                        this.moves[0] = this.revealed[s];
+                        return 1;
+                    }
+                    this.pairCount--;
+                }
+            } else {
+                int first = this.symbol[this.turnFirst];
+                if (this.knownCount[first] == 2) {
+                    this.moves[0] = this.revealed[first];
+                    return 1;
+                }
+            }
+            if (this.unseenCount > 0) {
+                this.moves[count++] = UNSEEN_MOVE;
+            }
+            int first = this.turnFirst < 0 ? -1 : this.symbol[this.turnFirst];
+            for (int s = 0; s < this.symbolCount; s++) {
+                if (this.knownCount[s] > 0 && s != first) {
+                    this.moves[count++] = this.revealed[s];
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Get the cell flipped by a move.
+         *
+         * @param move the move
+         * @return the cell
+         */
+        private int cellOf(int move) {
+            if (move == UNSEEN_MOVE) {
+                return this.unseenCells[this.random.nextInt(this.unseenCount)];
+            }
+            int s = this.symbolOf[move];
+            int cell = this.knownFirst[s];
+            return cell != this.turnFirst && this.symbol[cell] == s ? cell : this.knownSecond[s];
+        }
+
+        /**
+         * Choose the flip of a greedy player with perfect memory: a known
+         * pair, the partner of the first card if known, otherwise an
+         * unseen card.
+         *
+         * @return the cell
+         */
+        private int playoutCell() {
+            int count = this.listMoves();
+            if (count == 1 || this.moves[0] == UNSEEN_MOVE) {
+                return this.cellOf(this.moves[0]);
+            }
+            return this.cellOf(this.moves[this.random.nextInt(count)]);
+        }
+
+        /**
+         * Flip a card, by the rules of the engine.
+         *
+         * @param cell the cell
+         * @return the outcome: the revelation number of the symbol, or
+         *         {@link MonteCarloBot#BOMB} or {@link MonteCarloBot#JOLLY}
+         */
+        private int flip(int cell) {
+            int s = this.symbol[cell];
+            if (!this.known[cell]) {
+                this.known[cell] = true;
+                int last = this.unseenCells[--this.unseenCount];
+                int position = this.unseenPosition[cell];
+                this.unseenCells[position] = last;
+                this.unseenPosition[last] = position;
+                if (s >= 0) {
+                    if (this.revealed[s] < 0) {
+                        this.revealed[s] = this.nextRevealed;
+                        this.symbolOf[this.nextRevealed++] = s;
+                    }
+                    this.reveal(s, cell);
+                }
+            }
+            if (s == BOMB) {
+                this.alive[this.current] = false;
+                this.removeCard(cell);
+                this.turnFirst = -1;
+                this.endTurn(false);
+                return BOMB;
+            }
+            if (s == JOLLY) {
+                this.scores[this.current] += Constant.JOLLY_POINTS;
+                this.removeCard(cell);
+                this.turnFirst = -1;
+                this.endTurn(true);
+                return JOLLY;
+            }
+            if (this.turnFirst < 0) {
+                this.turnFirst = cell;
+            } else if (this.symbol[this.turnFirst] == s) {
+                this.scores[this.current] += this.points[s];
+                this.removeCard(this.turnFirst);
+                this.removeCard(cell);
+                this.knownCount[s] = 0;
+                this.turnFirst = -1;
+                this.endTurn(true);
+            } else {
+                this.turnFirst = -1;
+                this.endTurn(false);
+            }
+            return this.revealed[s];
+        }
+
+        /**
+         * Remove a card from the grid.
+         *
+         * @param cell the cell
+         */
+        private void removeCard(int cell) {
+            this.symbol[cell] = GONE;
+            this.cardsLeft--;
+        }
+
+        /**
+         * End the turn, as the engine does.
+         *
+         * @param playAgain whether the player keeps the turn
+         */
+        private void endTurn(boolean playAgain) {
+            if (!playAgain || !this.alive[this.current]) {
+                int players = this.alive.length;
+                int next = -1;
+                for (int i = 1; i <= players && next < 0; i++) {
+                    int candidate = (this.current + i) % players;
+                    if (this.alive[candidate]) {
+                        next = candidate;
+                    }
+                }
+                this.current = next;
+            }
+            this.over = this.current < 0 || this.cardsLeft == 0;
+        }
+
+        /**
+         * Set the rewards of the finished game: 1 for the winner, shared by
+         * a tie, 0 for the others.
+         */
+        private void reward() {
+            int best = Integer.MIN_VALUE;
+            int winners = 0;
+            for (int score : this.scores) {
+                if (score > best) {
+                    best = score;
+                    winners = 1;
+                } else if (score == best) {
+                    winners++;
+                }
+            }
+            for (int i = 0; i < this.scores.length; i++) {
+                this.rewards[i] = this.scores[i] == best ? 1.0 / winners : 0;
+            }
+        }
+    }
+
+    /**
+     * The time budget of a move, in nanoseconds.
+     */
+    private final long moveNanos;
+
+    /**
+     * The random number generator.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The threads searching.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of threads.
+     */
+    private final int threads;
+
+    /**
+     * The searchers, one per thread.
+     */
+    private Worker[] workers = new Worker[0];
+
+    /**
+     * The layout of the grid, for the points of the unseen pairs.
+     */
+    private BoardLayout layout;
+
+    /**
+     * The number of columns of the grid.
+     */
+    private int cols;
+
+    /**
+     * The coordinate of every cell.
+     */
+    private Coordinate[] coords;
+
+    /**
+     * What is known of every cell: {@link #UNSEEN}, {@link #GONE} or the
+     * revelation number of its symbol.
+     */
+    private int[] cellState;
+
+    /**
+     * The revelation number of every symbol seen.
+     */
+    private final Map<Character, Integer> revealedSymbols = new HashMap<>();
+
+    /**
+     * The points of every symbol seen, by revelation number.
+     */
+    private int[] revealedPoints;
+
+    /**
+     * The number of symbols seen.
+     */
+    private int revealedCount;
+
+    /**
+     * The bombs not flipped yet.
+     */
+    private int hiddenBombs;
+
+    /**
+     * The jollies not flipped yet.
+     */
+    private int hiddenJollies;
+
+    /**
+     * The score of every player, when the search starts.
+     */
+    private int[] scores;
+
+    /**
+     * Whether every player is alive, when the search starts.
+     */
+    private boolean[] alive;
+
+    /**
+     * The player to move, when the search starts.
+     */
+    private int current;
+
+    /**
+     * The first card of the turn, -1 if none.
+     */
+    private int turnFirstCell = -1;
+
+    /**
+     * The visits of every move at the root, merged.
+     */
+    private int[] rootVisits;
+
+    /**
+     * The number of moves searched.
+     */
+    private long searches;
+
+    /**
+     * Constructor.
+     * Searches on as many threads as processors.
+     *
+     * @param moveMillis the time budget of a move, in milliseconds, at
+     *                   least 1
+     * @param random     the random number generator
+     */
+    public MonteCarloBot(int moveMillis, SplittableRandom random) {
+        this(moveMillis, Runtime.getRuntime().availableProcessors(), random);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param moveMillis the time budget of a move, in milliseconds, at
+     *                   least 1
+     * @param threads    the number of threads, at least 1
+     * @param random     the random number generator
+     */
+    public MonteCarloBot(int moveMillis, int threads, SplittableRandom random) {
+        this.moveNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(moveMillis, 1));
+        this.threads = Math.max(threads, 1);
+        this.random = random;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, task -> {
+            Thread thread = new Thread(task, "monte-carlo-bot-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void attach(GameEngine engine) {
+        Grid grid = engine.getGrid();
+        this.layout = grid.getLayout();
+        if (this.layout.getSetSize() != 2) {
+            throw new IllegalArgumentException("The bot only plays with pairs");
+        }
+        this.cols = grid.getColSize();
+        int cells = grid.getRowSize() * this.cols;
+        int players = engine.getPlayers().length;
+        this.coords = new Coordinate[cells];
+        this.cellState = new int[cells];
+        this.revealedPoints = new int[cells];
+        this.rootVisits = new int[cells + 1];
+        this.revealedSymbols.clear();
+        this.revealedCount = 0;
+        this.hiddenBombs = 0;
+        this.hiddenJollies = 0;
+        this.turnFirstCell = -1;
+        this.scores = new int[players];
+        this.alive = new boolean[players];
+        Arrays.fill(this.cellState, GONE);
+        for (int cell = 0; cell < cells; cell++) {
+            this.coords[cell] = new Coordinate(cell / this.cols + 1, cell % this.cols + 1);
+        }
+        int[] occupied = new int[cells];
+        int cards = grid.getOccupiedCells(occupied);
+        for (int i = 0; i < cards; i++) {
+            int cell = occupied[i];
+            Card card = grid.getCard(this.coords[cell]);
+            this.cellState[cell] = UNSEEN;
+            // how many hazards there are is part of the rules, not where they are
+            if (card.isBomb()) {
+                this.hiddenBombs++;
+            } else if (card.isJolly()) {
+                this.hiddenJollies++;
+            }
+        }
+        if (this.workers.length != this.threads || this.workers[0].symbol.length != cells
+                || this.workers[0].scores.length != players) {
+            this.workers = new Worker[this.threads];
+            for (int i = 0; i < this.threads; i++) {
+                this.workers[i] = new Worker(cells, players, this.random.split());
+            }
+        }
+        for (Worker worker : this.workers) {
+            worker.clear(engine.getCurrentPlayer());
+        }
+        engine.addListener(this);
+    }
+
+    @Override
+    public void onFlip(GameEngine engine, int player, Coordinate coord, Card card, FlipOutcome outcome) {
+        int cell = coord.trueX() * this.cols + coord.trueY();
+        int move = this.cellState[cell] == UNSEEN ? UNSEEN_MOVE : this.cellState[cell];
+        int result;
+        switch (outcome) {
+            case BOMB:
+                this.hiddenBombs--;
+                this.cellState[cell] = GONE;
+                this.turnFirstCell = -1;
+                result = BOMB;
+                break;
+            case JOLLY:
+                this.hiddenJollies--;
+                this.cellState[cell] = GONE;
+                this.turnFirstCell = -1;
+                result = JOLLY;
+                break;
+            case FIRST:
+                result = this.observe(cell, card);
+                this.turnFirstCell = cell;
+                break;
+            case MATCH:
+                result = this.observe(cell, card);
+                this.cellState[cell] = GONE;
+                this.cellState[this.turnFirstCell] = GONE;
+                this.turnFirstCell = -1;
+                break;
+            case WRONG:
+                result = this.observe(cell, card);
+                this.turnFirstCell = -1;
+                break;
+            default:
+                return;
+        }
+        for (Worker worker : this.workers) {
+            worker.advance(move, result, engine.getCurrentPlayer());
+        }
+    }
+
+    @Override
+    public Coordinate chooseFlip(GameEngine engine) {
+        Player[] players = engine.getPlayers();
+        for (int i = 0; i < players.length; i++) {
+            this.scores[i] = players[i].getScore();
+            this.alive[i] = !players[i].isDead();
+        }
+        this.current = engine.getCurrentPlayer();
+        if (engine.getFirstGuess() == null) {
+            this.turnFirstCell = -1;
+        }
+        // the moves do not depend on the deal, a single one needs no search
+        Worker lead = this.workers[0];
+        lead.deal(this);
+        if (lead.listMoves() == 1) {
+            return this.coords[lead.cellOf(lead.moves[0])];
+        }
+        for (Worker worker : this.workers) {
+            if (worker.mover[worker.root] != this.current) {
+                worker.clear(this.current);
+            }
+        }
+        long deadline = System.nanoTime() + this.moveNanos;
+        Future<?>[] futures = new Future<?>[this.workers.length];
+        for (int i = 0; i < futures.length; i++) {
+            Worker worker = this.workers[i];
+            futures[i] = this.executor.submit(() -> worker.search(this, deadline));
+        }
+        for (Future<?> future : futures) {
+            join(future);
+        }
+        this.searches++;
+        Arrays.fill(this.rootVisits, 0);
+        for (Worker worker : this.workers) {
+            for (int child = worker.firstChild[worker.root]; child >= 0; child = worker.nextSibling[child]) {
+                this.rootVisits[worker.key[child] + 1] += worker.visits[child];
+            }
+        }
+        // the search played over the game of the lead worker
+        lead.deal(this);
+        lead.listMoves();
+        int best = lead.moves[0];
+        for (int i = 0; i < this.rootVisits.length; i++) {
+            if (this.rootVisits[i] > this.rootVisits[best + 1]) {
+                best = i - 1;
+            }
+        }
+        return this.coords[lead.cellOf(best)];
+    }
+
+    /**
+     * Get the number of threads the bot searches on.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Get the number of iterations run since the bot was created.
+     *
+     * @return the number of iterations
+     */
+    public long getIterations() {
+        long total = 0;
+        for (Worker worker : this.workers) {
+            total += worker.iterations;
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of moves searched since the bot was created.
+     *
+     * @return the number of moves
+     */
+    public long getSearches() {
+        return this.searches;
+    }
+
+    /**
+     * Stop the threads.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Remember a revealed card.
+     *
+     * @param cell the cell
+     * @param card the card
+     * @return the revelation number of its symbol
+     */
+    private int observe(int cell, Card card) {
+        Integer number = this.revealedSymbols.get(card.getSymbol());
+        if (number == null) {
+            number = this.revealedCount++;
+            this.revealedSymbols.put(card.getSymbol(), number);
+            this.revealedPoints[number] = card.getPoints();
+        }
+        this.cellState[cell] = number;
+        return number;
+    }
+
+    /**
+     * Wait for a search.
+     *
+     * @param future the future of the search
+     * @throws IllegalStateException if the search failed or was interrupted
+     */
+    private static void join(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ch.mazluc.game;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Test of the {@link MonteCarloBot}.
+ *
+ * <p>
+ * Plays the bot against a probabilistic bot with perfect memory, taking
+ * turns at moving first, prints the wins and the search speed, and checks
+ * that every move ran at least one iteration.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.MonteCarloBotTest [games] [millis] [rows] [cols]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class MonteCarloBotTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private MonteCarloBotTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of games, the time budget of a move in
+     *             milliseconds, the number of rows and of columns, optional
+     * @throws AssertionError if a move was searched without iterations
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int millis = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int cols = args.length > 3 ? Integer.parseInt(args[3]) : rows;
+        SplittableRandom random = new SplittableRandom(42);
+        int wins = 0;
+        int ties = 0;
+        long margin = 0;
+        long start = System.nanoTime();
+        try (MonteCarloBot bot = new MonteCarloBot(millis, random.split())) {
+            for (int game = 0; game < games; game++) {
+                int seat = game % 2;
+                Grid grid = new Grid(rows, cols, new Random(random.nextLong()));
+                grid.fill();
+                Player[] players = Simulation.players(2);
+                BotStrategy[] bots = new BotStrategy[2];
+                bots[seat] = bot;
+                bots[1 - seat] = new ProbabilisticBot(new BotParameters(Integer.MAX_VALUE, 0.5, 1.0), random.split());
+                Simulation.play(grid, players, bots);
+                int difference = players[seat].getScore() - players[1 - seat].getScore();
+                margin += difference;
+                if (difference > 0) {
+                    wins++;
+                } else if (difference == 0) {
+                    ties++;
+                }
+            }
+            System.out.printf("%dx%d, %d ms a move on %d threads: %d wins, %d ties, %d losses in %d games, %+.1f points"
+                    + " a game%n", rows, cols, millis, bot.getThreads(), wins, ties, games - wins - ties, games,
+                    (double) margin / Math.max(games, 1));
+            System.out.printf("%d moves searched, %.0f iterations a move, %.1f s%n", bot.getSearches(),
+                    (double) bot.getIterations() / Math.max(bot.getSearches(), 1),
+                    (System.nanoTime() - start) / 1e9);
+            if (games > 0 && bot.getIterations() < bot.getSearches()) {
+                throw new AssertionError(bot.getIterations() + " iterations for " + bot.getSearches() + " moves");
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ch.mazluc.game;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Journal of the changes made to a game, to take them back.
+ *
+ * <p>
+ * Every change to the grid (`Grid.setCard`, hence `popCard`), to a card
+ * (`Card.flip`) and to a player (`Player.incrementScore`, `kill`) of an
+ * attached game appends an entry with the value it replaced: a `long`
+ * holding the kind of change and the old value, plus the changed object
+ * in a parallel array. Recording and undoing an entry are constant time,
+ * so a move can be explored and taken back on the same board instead of
+ * copying it.
+ *
+ * <p>
+ * Entries are undone in reverse order down to a mark:
+ *
+ * <pre>
+ * {@code
+ * MoveJournal journal = new MoveJournal(grid, players);
+ * int mark = journal.mark();
+ * // ... play ...
+ * journal.undoTo(mark); // grid and players are back as they were
+ * }
+ * </pre>
+ *
+ * <p>
+ * `GameEngine` builds undo and redo of flips and turns on top of it
+ * (see {@link GameEngine#setUndoable(boolean)}).
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class MoveJournal {
+
+    /**
+     * A card was set in a cell: payload the cell, ref the old card.
+     */
+    private static final int SET_CARD = 0;
+
+    /**
+     * A card was flipped: payload the old state, ref the card.
+     */
+    private static final int FLIP = 1;
+
+    /**
+     * A score changed: payload the old score, ref the player.
+     */
+    private static final int SCORE = 2;
+
+    /**
+     * A player was killed: payload the old state, ref the player.
+     */
+    private static final int KILL = 3;
+
+    /**
+     * The state of the engine changed: payload the packed state, ref the
+     * old first guess.
+     */
+    private static final int ENGINE = 4;
+
+    /**
+     * A coordinate of the turn changed: payload the index, ref the old
+     * coordinate.
+     */
+    private static final int TURN_COORD = 5;
+
+    /**
+     * The bits of the kind of an entry.
+     */
+    private static final int KIND_BITS = 3;
+
+    /**
+     * The grid.
+     */
+    private final Grid grid;
+
+    /**
+     * The players.
+     */
+    private final Player[] players;
+
+    /**
+     * The engine whose state is journaled, null if none.
+     */
+    private GameEngine engine;
+
+    /**
+     * The entries: kind and old value.
+     */
+    private long[] entries = new long[256];
+
+    /**
+     * The objects of the entries.
+     */
+    private Object[] refs = new Object[256];
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     * Attaches the journal to the grid, to its cards and to the players,
+     * which record their changes from now on.
+     *
+     * @param grid    the grid
+     * @param players the players
+     */
+    public MoveJournal(Grid grid, Player[] players) {
+        this.grid = grid;
+        this.players = players;
+        grid.setJournal(this);
+        for (Player player : players) {
+            player.setJournal(this);
+        }
+    }
+
+    /**
+     * Detach the journal: the grid, its cards and the players stop
+     * recording their changes. The entries are discarded.
+     */
+    public void detach() {
+        this.grid.setJournal(null);
+        for (Player player : this.players) {
+            player.setJournal(null);
+        }
+        this.clear();
+    }
+
+    /**
+     * Get a mark of the current position, to undo back to it.
+     *
+     * @return the mark
+     */
+    public int mark() {
+        return this.size;
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Discard the entries, keeping the current state.
+     */
+    public void clear() {
+        Arrays.fill(this.refs, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Undo the changes recorded after a mark, the latest first.
+     *
+     * @param mark the mark
+     */
+    public void undoTo(int mark) {
+        while (this.size > mark) {
+            this.size--;
+            long entry = this.entries[this.size];
+            Object ref = this.refs[this.size];
+            this.refs[this.size] = null;
+            long payload = entry >> KIND_BITS;
+            switch ((int) (entry & ((1 << KIND_BITS) - 1))) {
+                case SET_CARD:
+                    this.grid.restoreCard((int) payload, (Card) ref);
+                    break;
+                case FLIP:
+                    ((Card) ref).restoreFlipped(payload != 0);
+                    break;
+                case SCORE:
+                    ((Player) ref).restoreScore((int) payload);
+                    break;
+                case KILL:
+                    ((Player) ref).restoreDead(payload != 0);
+                    break;
+                case ENGINE:
+                    this.engine.restoreState(payload, (Card) ref);
+                    break;
+                case TURN_COORD:
+                    this.engine.restoreTurnCoord((int) payload, (Coordinate) ref);
+                    break;
+                default:
+                    throw new IllegalStateException("Corrupted journal");
+            }
+        }
+    }
+
+    /**
+     * Set the engine whose state is journaled.
+     *
+     * @param engine the engine
+     */
+    void setEngine(GameEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Record that a cell is about to change.
+     *
+     * @param cell the index of the cell, row by row
+     * @param old  the card in the cell
+     */
+    void recordSetCard(int cell, Card old) {
+        this.append(SET_CARD, cell, old);
+    }
+
+    /**
+     * Record that a card is about to be flipped.
+     *
+     * @param card the card
+     */
+    void recordFlip(Card card) {
+        this.append(FLIP, card.isFlipped() ? 1 : 0, card);
+    }
+
+    /**
+     * Record that the score of a player is about to change.
+     *
+     * @param player the player
+     */
+    void recordScore(Player player) {
+        this.append(SCORE, player.getScore(), player);
+    }
+
+    /**
+     * Record that a player is about to be killed.
+     *
+     * @param player the player
+     */
+    void recordKill(Player player) {
+        this.append(KILL, player.isDead() ? 1 : 0, player);
+    }
+
+    /**
+     * Record the state of the engine before it changes.
+     *
+     * @param state      the packed state, below bit 61
+     * @param firstGuess the first guess
+     */
+    void recordEngine(long state, Card firstGuess) {
+        this.append(ENGINE, state, firstGuess);
+    }
+
+    /**
+     * Record that a coordinate of the turn is about to change.
+     *
+     * @param index the index
+     * @param old   the coordinate
+     */
+    void recordTurnCoord(int index, Coordinate old) {
+        this.append(TURN_COORD, index, old);
+    }
+
+    /**
+     * Append an entry.
+     *
+     * @param kind    the kind
+     * @param payload the old value
+     * @param ref     the object
+     */
+    private void append(int kind, long payload, Object ref) {
+        if (this.size == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, this.size * 2);
+            this.refs = Arrays.copyOf(this.refs, this.size * 2);
+        }
+        this.entries[this.size] = payload << KIND_BITS | kind;
+        this.refs[this.size] = ref;
+        this.size++;
+    }
+}
@@ -1,6 +1,6 @@
 package ch.mazluc.game;
 
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * <p>
@@ -33,6 +33,11 @@ public class Player {
      */
     private final int color;
 
+    /**
+     * The journal recording the changes, null if none.
+     */
+    private MoveJournal journal;
+
     /**
      * Constructor.
      * Must provide a name for each player
@@ -62,7 +67,15 @@ public class Player {
      * @return the name
      */
     public static String generateName() {
-        return UUID.randomUUID().toString().substring(0, 7);
+        // 7 hex digits like the start of a random UUID, without the cost of
+        // setting up the SecureRandom behind UUID.randomUUID()
+        int bits = ThreadLocalRandom.current().nextInt(1 << 28);
+        char[] name = new char[7];
+        for (int i = name.length - 1; i >= 0; i--) {
+            name[i] = Character.forDigit(bits & 0xF, 16);
+            bits >>>= 4;
+        }
+        return new String(name);
     }
 
     /**
@@ -98,6 +111,9 @@ public class Player {
      * @param amount the amount to increment
      */
     public void incrementScore(int amount) {
+        if (this.journal != null) {
+            this.journal.recordScore(this);
+        }
         this.score += amount;
     }
 
@@ -114,6 +130,36 @@ public class Player {
      * Kill the player.
      */
     public void kill() {
+        if (this.journal != null) {
+            this.journal.recordKill(this);
+        }
         this.dead = true;
     }
+
+    /**
+     * Set the journal recording the changes.
+     *
+     * @param journal the journal, null to stop recording
+     */
+    void setJournal(MoveJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Restore the score, without recording it.
+     *
+     * @param score the score
+     */
+    void restoreScore(int score) {
+        this.score = score;
+    }
+
+    /**
+     * Restore the state of the player, without recording it.
+     *
+     * @param dead whether the player is dead
+     */
+    void restoreDead(boolean dead) {
+        this.dead = dead;
+    }
 }
@@ -0,0 +1,526 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * Historical statistics of every player, in a memory-mapped file.
+ *
+ * <p>
+ * The file is an open-addressing hash table of fixed-size records keyed
+ * by the player name (linear probing, no deletions): a lookup or an
+ * update hashes the name and reads the few records of its probe sequence
+ * straight from the mapping, so it takes constant time and only touches
+ * the pages it needs, whatever the number of players. When the table is
+ * 70% full it is rebuilt with twice the slots, into a new file that
+ * replaces the old one atomically.
+ *
+ * <p>
+ * Layout, all numbers big-endian:
+ *
+ * <pre>
+ * header (64 bytes): magic, version, capacity, count
+ * record (80 bytes): hash, name length, name (15 UTF-16 chars),
+ *                    games, wins, bombs, jollies, score, turns, matches
+ * </pre>
+ *
+ * <p>
+ * The mapping is limited to 2 GB, about 20 million players.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (PlayerStatsStore stats = new PlayerStatsStore(Paths.get("players.stats"))) {
+ *     stats.record("Luca", 42, true, 10, 6, false, 1);
+ *     PlayerStatsStore.Stats luca = stats.get("Luca");
+ * }
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class PlayerStatsStore implements Closeable {
+
+    /**
+     * The statistics of a player, as read from the store.
+     */
+    public static final class Stats {
+
+        /**
+         * The number of games played.
+         */
+        private final int games;
+
+        /**
+         * The number of games won, ties included.
+         */
+        private final int wins;
+
+        /**
+         * The number of games ended on a bomb.
+         */
+        private final int bombs;
+
+        /**
+         * The number of jollies picked up.
+         */
+        private final int jollies;
+
+        /**
+         * The sum of the scores.
+         */
+        private final long score;
+
+        /**
+         * The number of turns played.
+         */
+        private final long turns;
+
+        /**
+         * The number of turns ended with a match.
+         */
+        private final long matches;
+
+        /**
+         * Constructor.
+         *
+         * @param games   the number of games played
+         * @param wins    the number of games won
+         * @param bombs   the number of games ended on a bomb
+         * @param jollies the number of jollies picked up
+         * @param score   the sum of the scores
+         * @param turns   the number of turns played
+         * @param matches the number of turns ended with a match
+         */
+        private Stats(int games, int wins, int bombs, int jollies, long score, long turns, long matches) {
+            this.games = games;
+            this.wins = wins;
+            this.bombs = bombs;
+            this.jollies = jollies;
+            this.score = score;
+            this.turns = turns;
+            this.matches = matches;
+        }
+
+        /**
+         * Get the number of games played.
+         *
+         * @return the number of games
+         */
+        public int getGames() {
+            return this.games;
+        }
+
+        /**
+         * Get the number of games won, ties included.
+         *
+         * @return the number of wins
+         */
+        public int getWins() {
+            return this.wins;
+        }
+
+        /**
+         * Get the average score of a game.
+         *
+         * @return the average score
+         */
+        public double getAverageScore() {
+            return this.games == 0 ? 0 : (double) this.score / this.games;
+        }
+
+        /**
+         * Get the share of the turns ended with a match.
+         *
+         * @return the accuracy, from 0 to 1
+         */
+        public double getMatchAccuracy() {
+            return this.turns == 0 ? 0 : (double) this.matches / this.turns;
+        }
+
+        /**
+         * Get the number of games ended on a bomb.
+         *
+         * @return the number of bomb eliminations
+         */
+        public int getBombs() {
+            return this.bombs;
+        }
+
+        /**
+         * Get the number of jollies picked up.
+         *
+         * @return the number of jollies
+         */
+        public int getJollies() {
+            return this.jollies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d wins, %.1f avg, %.0f%% matches, %d bombs, %d jollies", this.games,
+                    this.wins, this.getAverageScore(), 100 * this.getMatchAccuracy(), this.bombs, this.jollies);
+        }
+    }
+
+    /**
+     * The longest name stored ({@value}).
+     */
+    public static final int MAX_NAME_LENGTH = 15;
+
+    /**
+     * The magic number of the file, "MSTA".
+     */
+    private static final int MAGIC = 0x4D535441;
+
+    /**
+     * The version of the layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header.
+     */
+    private static final int HEADER = 64;
+
+    /**
+     * The size of a record.
+     */
+    private static final int RECORD = 80;
+
+    /**
+     * The number of slots of a new file.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The offsets of the header fields.
+     */
+    private static final int CAPACITY_OFFSET = 8;
+
+    /**
+     * The offset of the number of records in the header.
+     */
+    private static final int COUNT_OFFSET = 12;
+
+    /**
+     * The offsets of the record fields; a hash of 0 marks an empty slot.
+     */
+    private static final int HASH = 0;
+
+    /**
+     * The offset of the name length.
+     */
+    private static final int NAME_LENGTH = 4;
+
+    /**
+     * The offset of the name.
+     */
+    private static final int NAME = 6;
+
+    /**
+     * The offset of the number of games.
+     */
+    private static final int GAMES = 36;
+
+    /**
+     * The offset of the number of wins.
+     */
+    private static final int WINS = 40;
+
+    /**
+     * The offset of the number of bomb eliminations.
+     */
+    private static final int BOMBS = 44;
+
+    /**
+     * The offset of the number of jollies.
+     */
+    private static final int JOLLIES = 48;
+
+    /**
+     * The offset of the sum of the scores.
+     */
+    private static final int SCORE = 56;
+
+    /**
+     * The offset of the number of turns.
+     */
+    private static final int TURNS = 64;
+
+    /**
+     * The offset of the number of matches.
+     */
+    private static final int MATCHES = 72;
+
+    /**
+     * The file.
+     */
+    private final Path path;
+
+    /**
+     * The channel of the file.
+     */
+    private FileChannel channel;
+
+    /**
+     * The mapping of the whole file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The number of slots, a power of 2.
+     */
+    private int capacity;
+
+    /**
+     * The number of records.
+     */
+    private int count;
+
+    /**
+     * Constructor.
+     * Opens the store, creating it if it does not exist.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be opened or is not a store
+     */
+    public PlayerStatsStore(Path path) throws IOException {
+        this.path = path;
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            create(path, INITIAL_CAPACITY).close();
+        }
+        this.map();
+    }
+
+    /**
+     * Record a finished game of a player.
+     *
+     * @param name       the name of the player
+     * @param score      the final score
+     * @param won        whether the player won, ties included
+     * @param turns      the number of turns played
+     * @param matches    the number of turns ended with a match
+     * @param eliminated whether the player hit a bomb
+     * @param jollies    the number of jollies picked up
+     * @throws IOException              if the table cannot grow
+     * @throws IllegalArgumentException if the name is empty or too long
+     */
+    public synchronized void record(String name, int score, boolean won, int turns, int matches,
+            boolean eliminated, int jollies) throws IOException {
+        int hash = hash(name);
+        int base = this.slot(name, hash);
+        if (this.buffer.getInt(base + HASH) == 0) {
+            if ((this.count + 1) * 10L > this.capacity * 7L) {
+                this.grow();
+                base = this.slot(name, hash);
+            }
+            this.buffer.putShort(base + NAME_LENGTH, (short) name.length());
+            for (int i = 0; i < name.length(); i++) {
+                this.buffer.putChar(base + NAME + 2 * i, name.charAt(i));
+            }
+            // the hash last: a slot with a hash is complete
+            this.buffer.putInt(base + HASH, hash);
+            this.buffer.putInt(COUNT_OFFSET, ++this.count);
+        }
+        this.add(base + GAMES, 1);
+        this.add(base + WINS, won ? 1 : 0);
+        this.add(base + BOMBS, eliminated ? 1 : 0);
+        this.add(base + JOLLIES, jollies);
+        this.buffer.putLong(base + SCORE, this.buffer.getLong(base + SCORE) + score);
+        this.buffer.putLong(base + TURNS, this.buffer.getLong(base + TURNS) + turns);
+        this.buffer.putLong(base + MATCHES, this.buffer.getLong(base + MATCHES) + matches);
+    }
+
+    /**
+     * Get the statistics of a player.
+     *
+     * @param name the name of the player
+     * @return the statistics, null if the player never played
+     * @throws IllegalArgumentException if the name is empty or too long
+     */
+    public synchronized Stats get(String name) {
+        int base = this.slot(name, hash(name));
+        if (this.buffer.getInt(base + HASH) == 0) {
+            return null;
+        }
+        return new Stats(this.buffer.getInt(base + GAMES), this.buffer.getInt(base + WINS),
+                this.buffer.getInt(base + BOMBS), this.buffer.getInt(base + JOLLIES),
+                this.buffer.getLong(base + SCORE), this.buffer.getLong(base + TURNS),
+                this.buffer.getLong(base + MATCHES));
+    }
+
+    /**
+     * Get the number of players.
+     *
+     * @return the number of players
+     */
+    public synchronized int size() {
+        return this.count;
+    }
+
+    /**
+     * Write the changes to the disk.
+     */
+    public synchronized void force() {
+        this.buffer.force();
+    }
+
+    /**
+     * Write the changes to the disk and close the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel != null) {
+            this.buffer.force();
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Map the file and check its header.
+     *
+     * @throws IOException if the file cannot be mapped or is not a store
+     */
+    private void map() throws IOException {
+        this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.channel.size());
+        this.capacity = this.buffer.capacity() >= HEADER ? this.buffer.getInt(CAPACITY_OFFSET) : 0;
+        if (this.buffer.capacity() < HEADER || this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION
+                || Integer.bitCount(this.capacity) != 1
+                || this.buffer.capacity() != HEADER + (long) this.capacity * RECORD) {
+            this.channel.close();
+            throw new IOException("Not a player stats file: " + this.path);
+        }
+        this.count = this.buffer.getInt(COUNT_OFFSET);
+    }
+
+    /**
+     * Rebuild the table with twice the slots, into a new file that
+     * replaces the current one.
+     *
+     * @throws IOException if the new file cannot be written
+     */
+    private void grow() throws IOException {
+        Path tmp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (FileChannel target = create(tmp, this.capacity * 2)) {
+            MappedByteBuffer next = target.map(FileChannel.MapMode.READ_WRITE, 0, target.size());
+            int mask = this.capacity * 2 - 1;
+            for (int slot = 0; slot < this.capacity; slot++) {
+                int from = HEADER + slot * RECORD;
+                int hash = this.buffer.getInt(from + HASH);
+                if (hash == 0) {
+                    continue;
+                }
+                int to = hash & mask;
+                while (next.getInt(HEADER + to * RECORD + HASH) != 0) {
+                    to = (to + 1) & mask;
+                }
+                for (int i = 0; i < RECORD; i += 8) {
+                    next.putLong(HEADER + to * RECORD + i, this.buffer.getLong(from + i));
+                }
+            }
+            next.putInt(COUNT_OFFSET, this.count);
+            next.force();
+        }
+        this.close();
+        Files.move(tmp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.map();
+    }
+
+    /**
+     * Find the slot of a name: its record, or the empty slot where it
+     * would go.
+     *
+     * @param name the name
+     * @param hash the hash of the name
+     * @return the offset of the slot
+     */
+    private int slot(String name, int hash) {
+        int mask = this.capacity - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int base = HEADER + slot * RECORD;
+            int stored = this.buffer.getInt(base + HASH);
+            if (stored == 0 || stored == hash && this.nameEquals(base, name)) {
+                return base;
+            }
+        }
+    }
+
+    /**
+     * Check if a record has a name.
+     *
+     * @param base the offset of the record
+     * @param name the name
+     * @return true if the record has the name
+     */
+    private boolean nameEquals(int base, String name) {
+        if (this.buffer.getShort(base + NAME_LENGTH) != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (this.buffer.getChar(base + NAME + 2 * i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add to an int field.
+     *
+     * @param offset the offset of the field
+     * @param delta  the value to add
+     */
+    private void add(int offset, int delta) {
+        this.buffer.putInt(offset, this.buffer.getInt(offset) + delta);
+    }
+
+    /**
+     * Hash a name, never 0.
+     *
+     * @param name the name
+     * @return the hash
+     * @throws IllegalArgumentException if the name is empty or too long
+     */
+    private static int hash(String name) {
+        if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Invalid player name length: " + name.length());
+        }
+        int h = name.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Create an empty store.
+     *
+     * @param path     the file
+     * @param capacity the number of slots, a power of 2
+     * @return the channel of the file
+     * @throws IOException if the file cannot be written
+     */
+    private static FileChannel create(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * RECORD);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(CAPACITY_OFFSET, capacity);
+        header.putInt(COUNT_OFFSET, 0);
+        return channel;
+    }
+}
@@ -0,0 +1,717 @@
+package ch.mazluc.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Bot that plays by the probabilities of the unseen cells.
+ *
+ * <p>
+ * Given what has been revealed so far, all the unseen cells are
+ * interchangeable: each one hides a bomb with probability
+ * `hiddenBombs / unseen`, the jolly with probability
+ * `hiddenJollies / unseen` and the partner of a card already seen with
+ * probability `1 / unseen`. The distribution is therefore kept as a few
+ * counters, plus the set of unseen cells and an index of the seen
+ * symbols, and every flip updates it in constant time.
+ *
+ * <p>
+ * On its turn the bot takes a known pair if there is one, otherwise it
+ * compares the expected score of the possible moves (open an unseen card,
+ * open a known card and then an unseen one, or play safe) where hitting
+ * the bomb costs the share of the remaining points the player would lose,
+ * scaled by the risk tolerance. Every decision is constant time and
+ * allocation free.
+ *
+ * <p>
+ * The bot can be given a limited memory: when it remembers more seen
+ * cards than its memory size, it forgets the oldest one, which counts
+ * again as unseen.
+ *
+ * <p>
+ * The bot plays with pairs only; the number of bombs and jollies can be
+ * any.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class ProbabilisticBot implements BotStrategy {
+
+    /**
+     * Average points of a pair, as generated by `Grid.fill` ({@value}).
+     */
+    public static final double MEAN_PAIR_POINTS = 5.0;
+
+    /**
+     * Cell never flipped.
+     */
+    private static final byte UNSEEN = 0;
+
+    /**
+     * Cell flipped at least once, still on the grid.
+     */
+    private static final byte SEEN = 1;
+
+    /**
+     * Empty cell.
+     */
+    private static final byte GONE = 2;
+
+    /**
+     * Symbol slot not used.
+     */
+    private static final byte FREE = 0;
+
+    /**
+     * Symbol seen in one cell only.
+     */
+    private static final byte SINGLE = 1;
+
+    /**
+     * Symbol seen in both its cells.
+     */
+    private static final byte PAIR = 2;
+
+    /**
+     * Symbol no longer on the grid.
+     */
+    private static final byte MATCHED = 3;
+
+    /**
+     * Symbol seen and then forgotten.
+     */
+    private static final byte FORGOTTEN = 4;
+
+    /**
+     * A set of cells with constant time add, remove and random pick.
+     */
+    private static final class CellSet {
+
+        /**
+         * The cells, the first `size` are in the set.
+         */
+        private final int[] cells;
+
+        /**
+         * The position of every cell in `cells`, -1 if absent.
+         */
+        private final int[] position;
+
+        /**
+         * The number of cells in the set.
+         */
+        private int size;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity the number of cells of the grid
+         */
+        private CellSet(int capacity) {
+            this.cells = new int[capacity];
+            this.position = new int[capacity];
+            Arrays.fill(this.position, -1);
+        }
+
+        /**
+         * Add a cell.
+         *
+         * @param cell the cell
+         */
+        private void add(int cell) {
+            if (this.position[cell] < 0) {
+                this.position[cell] = this.size;
+                this.cells[this.size++] = cell;
+            }
+        }
+
+        /**
+         * Remove a cell.
+         *
+         * @param cell the cell
+         */
+        private void remove(int cell) {
+            int pos = this.position[cell];
+            if (pos >= 0) {
+                int last = this.cells[--this.size];
+                this.cells[pos] = last;
+                this.position[last] = pos;
+                this.position[cell] = -1;
+            }
+        }
+
+        /**
+         * Pick a random cell, different from the excluded one.
+         *
+         * @param random   the random number generator
+         * @param excluded the excluded cell, -1 for none
+         * @return the cell, -1 if there is none
+         */
+        private int pick(SplittableRandom random, int excluded) {
+            boolean skip = excluded >= 0 && this.position[excluded] >= 0;
+            if ((skip ? this.size - 1 : this.size) <= 0) {
+                return -1;
+            }
+            int cell = this.cells[random.nextInt(this.size)];
+            if (cell == excluded) {
+                cell = this.cells[(this.position[cell] + 1) % this.size];
+            }
+            return cell;
+        }
+    }
+
+    /**
+     * Tolerance to the risk of hitting the bomb, from 0 (never) to 1
+     * (ignore it).
+     */
+    private final double riskTolerance;
+
+    /**
+     * Weight of the jolly points, 1 values them at face value.
+     */
+    private final double jollyPreference;
+
+    /**
+     * The maximum number of seen cards remembered.
+     */
+    private final int memorySize;
+
+    /**
+     * The random number generator, to pick among equivalent cells.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The number of columns of the grid.
+     */
+    private int cols;
+
+    /**
+     * The coordinate of every cell, so that choosing allocates nothing.
+     */
+    private Coordinate[] coords;
+
+    /**
+     * The state of every cell.
+     */
+    private byte[] cellState;
+
+    /**
+     * The symbol of every seen cell.
+     */
+    private char[] cellSymbol;
+
+    /**
+     * The unseen cells.
+     */
+    private CellSet unseen;
+
+    /**
+     * The seen cells still on the grid.
+     */
+    private CellSet seen;
+
+    /**
+     * Open addressing index of the seen symbols: the symbols.
+     */
+    private char[] symbolKeys;
+
+    /**
+     * Open addressing index of the seen symbols: the state of the symbol.
+     */
+    private byte[] symbolState;
+
+    /**
+     * Open addressing index of the seen symbols: the first cell.
+     */
+    private int[] symbolFirst;
+
+    /**
+     * Open addressing index of the seen symbols: the second cell.
+     */
+    private int[] symbolSecond;
+
+    /**
+     * The next older seen cell of every seen cell, -1 for the oldest.
+     */
+    private int[] olderCell;
+
+    /**
+     * The next newer seen cell of every seen cell, -1 for the newest.
+     */
+    private int[] newerCell;
+
+    /**
+     * The oldest remembered cell, -1 if none.
+     */
+    private int oldestCell;
+
+    /**
+     * The newest remembered cell, -1 if none.
+     */
+    private int newestCell;
+
+    /**
+     * The slots of the known pairs, some may have been matched since.
+     */
+    private int[] pairs;
+
+    /**
+     * Whether every symbol slot is in `pairs`.
+     */
+    private boolean[] pairQueued;
+
+    /**
+     * The number of entries in `pairs`.
+     */
+    private int pairCount;
+
+    /**
+     * The number of symbols seen in one cell only.
+     */
+    private int singles;
+
+    /**
+     * The number of bombs never flipped.
+     */
+    private int hiddenBombs;
+
+    /**
+     * The number of jollies never flipped.
+     */
+    private int hiddenJollies;
+
+    /**
+     * The number of cards on the grid.
+     */
+    private int cardsLeft;
+
+    /**
+     * The number of alive players.
+     */
+    private int alivePlayers;
+
+    /**
+     * The first cell flipped in the current turn, -1 if none.
+     */
+    private int turnFirstCell = -1;
+
+    /**
+     * Whether the first card of the current turn was unseen.
+     * A turn opened on a known card must reveal an unseen one,
+     * otherwise bots could pass forever.
+     */
+    private boolean turnFirstWasUnseen;
+
+    /**
+     * The solved endgames, null to always play by the probabilities.
+     */
+    private EndgameTablebase tablebase;
+
+    /**
+     * Constructor.
+     *
+     * @param riskTolerance   tolerance to the risk of the bomb, from 0 to 1
+     * @param jollyPreference weight of the jolly points
+     */
+    public ProbabilisticBot(double riskTolerance, double jollyPreference) {
+        this(riskTolerance, jollyPreference, new SplittableRandom());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param riskTolerance   tolerance to the risk of the bomb, from 0 to 1
+     * @param jollyPreference weight of the jolly points
+     * @param random          the random number generator
+     */
+    public ProbabilisticBot(double riskTolerance, double jollyPreference, SplittableRandom random) {
+        this(new BotParameters(Integer.MAX_VALUE, riskTolerance, jollyPreference), random);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parameters the parameters of the bot
+     * @param random     the random number generator
+     */
+    public ProbabilisticBot(BotParameters parameters, SplittableRandom random) {
+        this.riskTolerance = Math.max(0, Math.min(1, parameters.getRiskTolerance()));
+        this.jollyPreference = parameters.getJollyPreference();
+        this.memorySize = Math.max(parameters.getMemorySize(), 2);
+        this.random = random;
+    }
+
+    /**
+     * Play the endgames by a tablebase, when two players are alive and it
+     * covers the state; the bot never passes, though.
+     *
+     * @param tablebase the tablebase, null to always play by the
+     *                  probabilities
+     */
+    public void setTablebase(EndgameTablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    @Override
+    public void attach(GameEngine engine) {
+        Grid grid = engine.getGrid();
+        if (grid.getLayout().getSetSize() != 2) {
+            throw new IllegalArgumentException("The bot only plays with pairs");
+        }
+        int rows = grid.getRowSize();
+        this.cols = grid.getColSize();
+        int cells = rows * this.cols;
+        this.coords = new Coordinate[cells];
+        this.cellState = new byte[cells];
+        this.cellSymbol = new char[cells];
+        this.unseen = new CellSet(cells);
+        this.seen = new CellSet(cells);
+        int capacity = Integer.highestOneBit(Math.max(cells, 2) * 2);
+        this.symbolKeys = new char[capacity];
+        this.symbolState = new byte[capacity];
+        this.symbolFirst = new int[capacity];
+        this.symbolSecond = new int[capacity];
+        this.olderCell = new int[cells];
+        this.newerCell = new int[cells];
+        this.oldestCell = -1;
+        this.newestCell = -1;
+        this.pairs = new int[capacity];
+        this.pairQueued = new boolean[capacity];
+        this.pairCount = 0;
+        this.singles = 0;
+        this.hiddenBombs = 0;
+        this.hiddenJollies = 0;
+        this.cardsLeft = 0;
+        this.turnFirstCell = -1;
+        for (int cell = 0; cell < cells; cell++) {
+            this.coords[cell] = new Coordinate(cell / this.cols + 1, cell % this.cols + 1);
+        }
+        Arrays.fill(this.cellState, GONE);
+        int[] occupied = new int[cells];
+        int cards = grid.getOccupiedCells(occupied);
+        for (int i = 0; i < cards; i++) {
+            int cell = occupied[i];
+            Card card = grid.getCard(this.coords[cell]);
+            this.cellState[cell] = UNSEEN;
+            // how many hazards there are is part of the rules, not where they are
+            if (card.isBomb()) {
+                this.hiddenBombs++;
+            } else if (card.isJolly()) {
+                this.hiddenJollies++;
+            }
+            this.cardsLeft++;
+            this.unseen.add(cell);
+        }
+        int alive = 0;
+        for (Player player : engine.getPlayers()) {
+            if (!player.isDead()) {
+                alive++;
+            }
+        }
+        this.alivePlayers = alive;
+        engine.addListener(this);
+    }
+
+    @Override
+    public void onFlip(GameEngine engine, int player, Coordinate coord, Card card, FlipOutcome outcome) {
+        int cell = coord.trueX() * this.cols + coord.trueY();
+        switch (outcome) {
+            case BOMB:
+                this.hiddenBombs--;
+                this.alivePlayers--;
+                this.remove(cell);
+                this.turnFirstCell = -1;
+                break;
+            case JOLLY:
+                this.hiddenJollies--;
+                this.remove(cell);
+                this.turnFirstCell = -1;
+                break;
+            case FIRST:
+                this.turnFirstWasUnseen = this.cellState[cell] == UNSEEN;
+                this.observe(cell, card.getSymbol());
+                this.turnFirstCell = cell;
+                break;
+            case MATCH:
+                this.remove(cell);
+                this.remove(this.turnFirstCell);
+                this.turnFirstCell = -1;
+                break;
+            case WRONG:
+                this.observe(cell, card.getSymbol());
+                this.turnFirstCell = -1;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public Coordinate chooseFlip(GameEngine engine) {
+        if (engine.getFirstGuess() == null || this.turnFirstCell < 0) {
+            return this.coords[this.chooseFirst()];
+        }
+        return this.coords[this.chooseSecond(this.turnFirstCell)];
+    }
+
+    /**
+     * Choose the first card of the turn.
+     *
+     * @return the cell
+     */
+    private int chooseFirst() {
+        while (this.pairCount > 0) {
+            int slot = this.pairs[this.pairCount - 1];
+            if (this.symbolState[slot] == PAIR) {
+                return this.symbolFirst[slot];
+            }
+            this.pairQueued[slot] = false;
+            this.pairCount--;
+        }
+        int u = this.unseen.size;
+        if (u == 0) {
+            return this.seen.pick(this.random, -1);
+        }
+        if (this.seen.size == 0) {
+            return this.unseen.pick(this.random, -1);
+        }
+        if (this.isInTablebase(0)) {
+            EndgameTablebase.Move move = this.tablebase.getProgressMove(this.hiddenPairs(), this.singles, 0,
+                    this.hiddenBombs > 0, this.hiddenJollies > 0);
+            return move == EndgameTablebase.Move.FLIP_KNOWN ? this.seen.pick(this.random, -1)
+                    : this.unseen.pick(this.random, -1);
+        }
+        double cost = this.bombCost();
+        double jolly = Constant.JOLLY_POINTS * this.jollyPreference;
+        int fresh = u - this.hiddenBombs - this.hiddenJollies - this.singles;
+        // a new symbol first, then the best second flip (there is a safe one)
+        double second = u > 1 ? Math.max(this.unseenSecondValue(u - 1, this.singles + 1, cost, jolly), 0) : 0;
+        double openUnseen = (-this.hiddenBombs * cost + this.hiddenJollies * jolly
+                + this.singles * MEAN_PAIR_POINTS + fresh * second) / u;
+        // a known card first, then an unseen one
+        double openKnown = this.unseenSecondValue(u, this.singles, cost, jolly);
+        return openUnseen >= openKnown ? this.unseen.pick(this.random, -1) : this.seen.pick(this.random, -1);
+    }
+
+    /**
+     * Choose the second card of the turn.
+     *
+     * @param first the first cell of the turn
+     * @return the cell
+     */
+    private int chooseSecond(int first) {
+        int slot = this.find(this.cellSymbol[first]);
+        if (this.symbolState[slot] == PAIR) {
+            return this.symbolFirst[slot] == first ? this.symbolSecond[slot] : this.symbolFirst[slot];
+        }
+        int safe = this.seen.pick(this.random, first);
+        int u = this.unseen.size;
+        if (u == 0) {
+            return safe;
+        }
+        if (safe < 0 || !this.turnFirstWasUnseen) {
+            return this.unseen.pick(this.random, -1);
+        }
+        if (this.isInTablebase(1)) {
+            // the state before the first card, a new single now
+            return this.tablebase.isSecondFlipSafe(this.hiddenPairs() + 1, this.singles - 1, 0,
+                    this.hiddenBombs > 0, this.hiddenJollies > 0) ? safe : this.unseen.pick(this.random, -1);
+        }
+        double value = this.unseenSecondValue(u, this.singles, this.bombCost(), Constant.JOLLY_POINTS
+                * this.jollyPreference);
+        return value > 0 ? this.unseen.pick(this.random, -1) : safe;
+    }
+
+    /**
+     * Check if the tablebase covers the state: two players alive, at most
+     * one bomb and one jolly hidden and few enough pairs.
+     *
+     * @param extraPairs the pairs to add, for the state before the turn
+     * @return true if the tablebase covers the state
+     */
+    private boolean isInTablebase(int extraPairs) {
+        return this.tablebase != null && this.alivePlayers == 2 && this.hiddenBombs <= 1 && this.hiddenJollies <= 1
+                && this.tablebase.covers(this.hiddenPairs() + extraPairs, this.singles - extraPairs, 0);
+    }
+
+    /**
+     * Get the number of pairs with no card remembered.
+     *
+     * @return the number of pairs
+     */
+    private int hiddenPairs() {
+        return (this.unseen.size - this.singles - this.hiddenBombs - this.hiddenJollies) / 2;
+    }
+
+    /**
+     * Expected score of flipping an unseen card as second card, when the
+     * first one is a known single whose partner is unseen.
+     *
+     * @param u       the number of unseen cells
+     * @param singles the number of known singles, including the first card
+     * @param cost    the cost of the bomb
+     * @param jolly   the value of the jolly
+     * @return the expected score
+     */
+    private double unseenSecondValue(int u, int singles, double cost, double jolly) {
+        // revealing the partner of another single hands a pair to the next player
+        int gifts = Math.max(singles - 1, 0);
+        return (MEAN_PAIR_POINTS - this.hiddenBombs * cost + this.hiddenJollies * jolly
+                - gifts * MEAN_PAIR_POINTS) / u;
+    }
+
+    /**
+     * The cost of hitting the bomb: the share of the points still on the
+     * grid that the player would lose, scaled by the risk tolerance.
+     *
+     * @return the cost
+     */
+    private double bombCost() {
+        double share = (this.cardsLeft - this.hiddenBombs - this.hiddenJollies) / 2.0 * MEAN_PAIR_POINTS
+                / Math.max(this.alivePlayers, 1);
+        return share * (1 - this.riskTolerance);
+    }
+
+    /**
+     * Record the symbol of a flipped cell.
+     *
+     * @param cell   the cell
+     * @param symbol the symbol
+     */
+    private void observe(int cell, char symbol) {
+        if (this.cellState[cell] != UNSEEN) {
+            return;
+        }
+        this.cellState[cell] = SEEN;
+        this.cellSymbol[cell] = symbol;
+        this.unseen.remove(cell);
+        this.seen.add(cell);
+        this.link(cell);
+        int slot = this.find(symbol);
+        if (this.symbolState[slot] == FREE || this.symbolState[slot] == FORGOTTEN) {
+            this.symbolKeys[slot] = symbol;
+            this.symbolState[slot] = SINGLE;
+            this.symbolFirst[slot] = cell;
+            this.singles++;
+        } else if (this.symbolState[slot] == SINGLE) {
+            this.symbolState[slot] = PAIR;
+            this.symbolSecond[slot] = cell;
+            this.singles--;
+            if (!this.pairQueued[slot]) {
+                this.pairQueued[slot] = true;
+                this.pairs[this.pairCount++] = slot;
+            }
+        }
+        if (this.seen.size > this.memorySize) {
+            this.forgetOldest(cell);
+        }
+    }
+
+    /**
+     * Forget the oldest remembered cell, keeping the cards of the
+     * current turn.
+     *
+     * @param current the cell just observed
+     */
+    private void forgetOldest(int current) {
+        int cell = this.oldestCell;
+        while (cell >= 0 && (cell == current || cell == this.turnFirstCell)) {
+            cell = this.newerCell[cell];
+        }
+        if (cell < 0) {
+            return;
+        }
+        this.unlink(cell);
+        this.seen.remove(cell);
+        this.unseen.add(cell);
+        this.cellState[cell] = UNSEEN;
+        int slot = this.find(this.cellSymbol[cell]);
+        if (this.symbolState[slot] == SINGLE) {
+            this.symbolState[slot] = FORGOTTEN;
+            this.singles--;
+        } else if (this.symbolState[slot] == PAIR) {
+            this.symbolState[slot] = SINGLE;
+            if (this.symbolFirst[slot] == cell) {
+                this.symbolFirst[slot] = this.symbolSecond[slot];
+            }
+            this.singles++;
+        }
+    }
+
+    /**
+     * Append a cell to the remembered cells, as the newest.
+     *
+     * @param cell the cell
+     */
+    private void link(int cell) {
+        this.olderCell[cell] = this.newestCell;
+        this.newerCell[cell] = -1;
+        if (this.newestCell >= 0) {
+            this.newerCell[this.newestCell] = cell;
+        } else {
+            this.oldestCell = cell;
+        }
+        this.newestCell = cell;
+    }
+
+    /**
+     * Remove a cell from the remembered cells.
+     *
+     * @param cell the cell
+     */
+    private void unlink(int cell) {
+        int older = this.olderCell[cell];
+        int newer = this.newerCell[cell];
+        if (older >= 0) {
+            this.newerCell[older] = newer;
+        } else {
+            this.oldestCell = newer;
+        }
+        if (newer >= 0) {
+            this.olderCell[newer] = older;
+        } else {
+            this.newestCell = older;
+        }
+    }
+
+    /**
+     * Record that a cell has been emptied.
+     *
+     * @param cell the cell
+     */
+    private void remove(int cell) {
+        if (cell < 0 || this.cellState[cell] == GONE) {
+            return;
+        }
+        if (this.cellState[cell] == SEEN) {
+            this.seen.remove(cell);
+            this.unlink(cell);
+            int slot = this.find(this.cellSymbol[cell]);
+            if (this.symbolState[slot] == SINGLE) {
+                this.singles--;
+            }
+            this.symbolState[slot] = MATCHED;
+        } else {
+            this.unseen.remove(cell);
+        }
+        this.cellState[cell] = GONE;
+        this.cardsLeft--;
+    }
+
+    /**
+     * Find the slot of a symbol, or the free slot where it belongs.
+     *
+     * @param symbol the symbol
+     * @return the slot
+     */
+    private int find(char symbol) {
+        int mask = this.symbolKeys.length - 1;
+        int slot = (symbol * 0x9E3779B1) >>> 16 & mask;
+        while (this.symbolState[slot] != FREE && this.symbolKeys[slot] != symbol) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
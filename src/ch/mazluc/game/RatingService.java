@@ -0,0 +1,413 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Elo ratings of the participants of many games, humans and bots alike.
+ *
+ * <p>
+ * After every game each participant plays a virtual match against every
+ * other one: it wins if its score is higher, draws if it is the same. The
+ * rating moves by `K / (n - 1)` times the sum of the differences between
+ * the results and the expected ones, so a game of n players weighs as much
+ * as a single match whatever n.
+ *
+ * <p>
+ * Updates are lock-free: the ratings of a game are read, the changes are
+ * computed and then added to every rating with a compare-and-set, so
+ * games finished at the same time by parallel simulations never wait for
+ * each other (a concurrent game may have read a rating just before it
+ * changed, as happens with players rated between tournament rounds).
+ * Ratings can be queried at any time, and are saved periodically to a
+ * checkpoint file from which a new service resumes.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * RatingService ratings = new RatingService(Paths.get("ratings.txt"));
+ * ratings.startCheckpoints(10, TimeUnit.SECONDS);
+ * ratings.record(engine.getPlayers());
+ * double rating = ratings.getRating("Luca");
+ * ratings.close();
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class RatingService implements Closeable {
+
+    /**
+     * A participant and its rating.
+     */
+    public static final class Standing {
+
+        /**
+         * The identifier.
+         */
+        private final String id;
+
+        /**
+         * The rating.
+         */
+        private final double rating;
+
+        /**
+         * The number of rated games.
+         */
+        private final int games;
+
+        /**
+         * Constructor.
+         *
+         * @param id     the identifier
+         * @param rating the rating
+         * @param games  the number of rated games
+         */
+        private Standing(String id, double rating, int games) {
+            this.id = id;
+            this.rating = rating;
+            this.games = games;
+        }
+
+        /**
+         * Get the identifier.
+         *
+         * @return the identifier
+         */
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Get the rating.
+         *
+         * @return the rating
+         */
+        public double getRating() {
+            return this.rating;
+        }
+
+        /**
+         * Get the number of rated games.
+         *
+         * @return the number of games
+         */
+        public int getGames() {
+            return this.games;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-15s %6.1f (%d games)", this.id, this.rating, this.games);
+        }
+    }
+
+    /**
+     * The rating of a new participant ({@value}).
+     */
+    public static final double INITIAL_RATING = 1500;
+
+    /**
+     * The largest change of a rating in a game ({@value}).
+     */
+    public static final double K_FACTOR = 32;
+
+    /**
+     * The rating difference at which the expected result is 10 to 1
+     * ({@value}).
+     */
+    private static final double SCALE = 400;
+
+    /**
+     * The rating of a participant.
+     */
+    private static final class Entry {
+
+        /**
+         * The bits of the rating, as a double.
+         */
+        private final AtomicLong rating;
+
+        /**
+         * The number of rated games.
+         */
+        private final AtomicInteger games;
+
+        /**
+         * Constructor.
+         *
+         * @param rating the rating
+         * @param games  the number of rated games
+         */
+        private Entry(double rating, int games) {
+            this.rating = new AtomicLong(Double.doubleToLongBits(rating));
+            this.games = new AtomicInteger(games);
+        }
+
+        /**
+         * Get the rating.
+         *
+         * @return the rating
+         */
+        private double get() {
+            return Double.longBitsToDouble(this.rating.get());
+        }
+
+        /**
+         * Add to the rating, atomically.
+         *
+         * @param delta the change
+         */
+        private void add(double delta) {
+            long bits;
+            do {
+                bits = this.rating.get();
+            } while (!this.rating.compareAndSet(bits,
+                    Double.doubleToLongBits(Double.longBitsToDouble(bits) + delta)));
+        }
+    }
+
+    /**
+     * The participants, by identifier.
+     */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The number of games recorded by this service.
+     */
+    private final LongAdder recordedGames = new LongAdder();
+
+    /**
+     * The checkpoint file, null for none.
+     */
+    private final Path checkpoint;
+
+    /**
+     * The executor of the periodic checkpoints, null if not started.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor, without checkpoints.
+     */
+    public RatingService() {
+        this.checkpoint = null;
+    }
+
+    /**
+     * Constructor.
+     * If the checkpoint exists, the ratings are loaded from it.
+     *
+     * @param checkpoint the checkpoint file
+     * @throws IOException if the checkpoint exists but cannot be read
+     */
+    public RatingService(Path checkpoint) throws IOException {
+        this.checkpoint = checkpoint;
+        if (Files.exists(checkpoint)) {
+            for (String line : Files.readAllLines(checkpoint, StandardCharsets.UTF_8)) {
+                // rating, games, then the identifier, which may contain spaces
+                String[] fields = line.split(" ", 3);
+                if (fields.length == 3) {
+                    try {
+                        this.entries.put(fields[2],
+                                new Entry(Double.parseDouble(fields[0]), Integer.parseInt(fields[1])));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid checkpoint line: " + line, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Record a finished game.
+     *
+     * @param players the players, with their final scores
+     */
+    public void record(Player[] players) {
+        String[] ids = new String[players.length];
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            ids[i] = players[i].getName();
+            scores[i] = players[i].getScore();
+        }
+        this.record(ids, scores);
+    }
+
+    /**
+     * Record a finished game.
+     * Safe to call from any thread.
+     *
+     * @param ids    the identifiers of the participants
+     * @param scores the final scores, in the same order
+     */
+    public void record(String[] ids, int[] scores) {
+        int n = ids.length;
+        if (n < 2) {
+            return;
+        }
+        Entry[] game = new Entry[n];
+        double[] ratings = new double[n];
+        for (int i = 0; i < n; i++) {
+            game[i] = this.entries.computeIfAbsent(ids[i], id -> new Entry(INITIAL_RATING, 0));
+            ratings[i] = game[i].get();
+        }
+        double k = K_FACTOR / (n - 1);
+        for (int i = 0; i < n; i++) {
+            double delta = 0;
+            for (int j = 0; j < n; j++) {
+                if (j == i || game[j] == game[i]) {
+                    continue;
+                }
+                double expected = 1 / (1 + Math.pow(10, (ratings[j] - ratings[i]) / SCALE));
+                double result = Integer.compare(scores[i], scores[j]) / 2.0 + 0.5;
+                delta += result - expected;
+            }
+            game[i].add(k * delta);
+            game[i].games.incrementAndGet();
+        }
+        this.recordedGames.increment();
+    }
+
+    /**
+     * Get the rating of a participant.
+     *
+     * @param id the identifier
+     * @return the rating, the initial one if never rated
+     */
+    public double getRating(String id) {
+        Entry entry = this.entries.get(id);
+        return entry == null ? INITIAL_RATING : entry.get();
+    }
+
+    /**
+     * Get the number of rated games of a participant.
+     *
+     * @param id the identifier
+     * @return the number of games
+     */
+    public int getGames(String id) {
+        Entry entry = this.entries.get(id);
+        return entry == null ? 0 : entry.games.get();
+    }
+
+    /**
+     * Get the number of games recorded since the service was created.
+     *
+     * @return the number of games
+     */
+    public long getRecordedGames() {
+        return this.recordedGames.sum();
+    }
+
+    /**
+     * Get the best rated participants.
+     * Safe to call while games are recorded.
+     *
+     * @param count the maximum number of participants
+     * @return the participants, best first
+     */
+    public List<Standing> top(int count) {
+        List<Standing> standings = this.standings();
+        standings.sort(Comparator.comparingDouble(Standing::getRating).reversed());
+        return standings.subList(0, Math.min(Math.max(count, 0), standings.size()));
+    }
+
+    /**
+     * Save the ratings to the checkpoint file, atomically.
+     * Safe to call while games are recorded.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void checkpoint() throws IOException {
+        if (this.checkpoint == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        for (Standing standing : this.standings()) {
+            lines.add(String.format(Locale.ROOT, "%.6f %d %s", standing.rating, standing.games, standing.id));
+        }
+        Path tmp = this.checkpoint.resolveSibling(this.checkpoint.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, this.checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Save the ratings periodically, in the background.
+     * Failed checkpoints are reported on the standard error and retried at
+     * the next period.
+     *
+     * @param period the period
+     * @param unit   the unit of the period
+     */
+    public synchronized void startCheckpoints(long period, TimeUnit unit) {
+        if (this.scheduler != null || this.checkpoint == null) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rating-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleAtFixedRate(() -> {
+            try {
+                this.checkpoint();
+            } catch (IOException e) {
+                System.err.println("Rating checkpoint failed: " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stop the periodic checkpoints and save the ratings a last time.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            try {
+                this.scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.scheduler = null;
+        }
+        this.checkpoint();
+    }
+
+    /**
+     * Get a snapshot of all the ratings.
+     *
+     * @return the standings, in no order
+     */
+    private List<Standing> standings() {
+        List<Standing> standings = new ArrayList<>(this.entries.size());
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            standings.add(new Standing(entry.getKey(), entry.getValue().get(), entry.getValue().games.get()));
+        }
+        return standings;
+    }
+}
@@ -0,0 +1,138 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Throughput test of the {@link RatingService}.
+ *
+ * <p>
+ * Rates bots of different memory sizes with parallel simulations,
+ * printing the standings while they run, while the ratings are saved in
+ * the background. Checks that every game was recorded and that the saved
+ * ratings load back as they were. Prints the throughput in games per
+ * second. Without a file, the ratings are saved to a temporary file,
+ * deleted at the end.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.RatingSimulationTest [games] [file]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class RatingSimulationTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private RatingSimulationTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of games and the checkpoint file, both
+     *             optional
+     * @throws IOException          if the checkpoint cannot be written
+     * @throws InterruptedException if interrupted while waiting
+     * @throws AssertionError       if a game is lost or the ratings do not
+     *                              load back
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        Path file = args.length > 1 ? Paths.get(args[1]) : Files.createTempFile("ratings", ".txt");
+        try {
+            run(games, file);
+        } finally {
+            if (args.length <= 1) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Rate the bots.
+     *
+     * @param games the number of games
+     * @param file  the checkpoint file
+     * @throws IOException          if the checkpoint cannot be written
+     * @throws InterruptedException if interrupted while waiting
+     * @throws AssertionError       if a game is lost or the ratings do not
+     *                              load back
+     */
+    private static void run(int games, Path file) throws IOException, InterruptedException {
+        int[] memories = { 2, 4, 8, 16, Integer.MAX_VALUE };
+        RatingService ratings = new RatingService(file);
+        long recorded = ratings.getRecordedGames();
+        ratings.startCheckpoints(1, TimeUnit.SECONDS);
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger next = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                    SplittableRandom random = new SplittableRandom(game);
+                    int count = 2 + random.nextInt(3);
+                    String[] ids = new String[count];
+                    BotStrategy[] bots = new BotStrategy[count];
+                    int first = random.nextInt(memories.length);
+                    for (int i = 0; i < count; i++) {
+                        // distinct bots, at a random seat
+                        int memory = memories[(first + i) % memories.length];
+                        ids[i] = memory == Integer.MAX_VALUE ? "memory-all" : "memory-" + memory;
+                        bots[i] = new ProbabilisticBot(new BotParameters(memory, 0.5, 1.0), random.split());
+                    }
+                    Grid grid = new Grid(6, 6, new Random(random.nextLong()));
+                    grid.fill();
+                    Player[] players = Simulation.players(count);
+                    Simulation.play(grid, players, bots);
+                    int[] scores = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = players[i].getScore();
+                    }
+                    ratings.record(ids, scores);
+                }
+            }, "rating-simulation");
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(500);
+                System.out.printf("%d games: %s%n", ratings.getRecordedGames(), ratings.top(1));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        ratings.close();
+        System.out.printf("%d games in %.2f s (%.0f games/s), saved to %s%n", games, seconds, games / seconds,
+                file);
+        List<RatingService.Standing> standings = ratings.top(memories.length);
+        for (RatingService.Standing standing : standings) {
+            System.out.println(standing);
+        }
+        if (ratings.getRecordedGames() != recorded + games) {
+            throw new AssertionError((ratings.getRecordedGames() - recorded) + " games recorded, not " + games);
+        }
+        RatingService loaded = new RatingService(file);
+        String expected = standings.toString();
+        String actual = loaded.top(memories.length).toString();
+        loaded.close();
+        if (!expected.equals(actual)) {
+            throw new AssertionError("Saved " + expected + ", loaded " + actual);
+        }
+    }
+}
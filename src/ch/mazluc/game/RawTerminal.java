@@ -0,0 +1,244 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * The terminal in raw mode, read one key at a time.
+ *
+ * <p>
+ * By default the terminal hands the input over line by line, after Enter,
+ * and echoes it. In raw mode (`stty -icanon -echo` on the controlling
+ * terminal, Linux and other Unix systems only) every key press is
+ * available at once, so the player can move a cursor over the grid with
+ * the arrow keys (or WASD) and flip a card with Enter or Space.
+ *
+ * <p>
+ * The previous settings are restored on {@link #close()}, and on exit if
+ * the program is interrupted.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (RawTerminal terminal = RawTerminal.open(System.in)) {
+ *     RawTerminal.Key key = terminal.readKey();
+ * }
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class RawTerminal implements Closeable {
+
+    /**
+     * A key press.
+     */
+    public enum Key {
+
+        /**
+         * Arrow up, or W.
+         */
+        UP,
+
+        /**
+         * Arrow down, or S.
+         */
+        DOWN,
+
+        /**
+         * Arrow left, or A.
+         */
+        LEFT,
+
+        /**
+         * Arrow right, or D.
+         */
+        RIGHT,
+
+        /**
+         * Enter or Space.
+         */
+        FLIP,
+
+        /**
+         * U.
+         */
+        UNDO,
+
+        /**
+         * Any other key.
+         */
+        OTHER
+    }
+
+    /**
+     * The escape character starting the arrow sequences.
+     */
+    private static final int ESC = 27;
+
+    /**
+     * The controlling terminal.
+     */
+    private static final File TTY = new File("/dev/tty");
+
+    /**
+     * The input stream of the terminal.
+     */
+    private final InputStream in;
+
+    /**
+     * The settings to restore, as printed by `stty -g`.
+     */
+    private final String savedSettings;
+
+    /**
+     * The hook restoring the settings on exit.
+     */
+    private final Thread restoreHook;
+
+    /**
+     * Whether the settings have been restored.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param in            the input stream of the terminal
+     * @param savedSettings the settings to restore
+     */
+    private RawTerminal(InputStream in, String savedSettings) {
+        this.in = in;
+        this.savedSettings = savedSettings;
+        this.restoreHook = new Thread(() -> stty(this.savedSettings), "raw-terminal-restore");
+        Runtime.getRuntime().addShutdownHook(this.restoreHook);
+    }
+
+    /**
+     * Switch the controlling terminal to raw mode.
+     *
+     * @param in the input stream of the terminal, usually `System.in`
+     * @return the terminal, null if there is no terminal or it cannot be
+     *         switched
+     */
+    public static RawTerminal open(InputStream in) {
+        if (!TTY.exists()) {
+            return null;
+        }
+        String saved = stty("-g");
+        if (saved == null || saved.isEmpty() || stty("-icanon", "-echo", "min", "1") == null) {
+            return null;
+        }
+        return new RawTerminal(in, saved);
+    }
+
+    /**
+     * Read a key press, waiting for it.
+     *
+     * @return the key
+     * @throws IOException if the input cannot be read or is over
+     */
+    public Key readKey() throws IOException {
+        int c = this.read();
+        switch (c) {
+            case ESC:
+                if (this.read() != '[') {
+                    return Key.OTHER;
+                }
+                switch (this.read()) {
+                    case 'A':
+                        return Key.UP;
+                    case 'B':
+                        return Key.DOWN;
+                    case 'C':
+                        return Key.RIGHT;
+                    case 'D':
+                        return Key.LEFT;
+                    default:
+                        return Key.OTHER;
+                }
+            case 'w':
+            case 'W':
+                return Key.UP;
+            case 's':
+            case 'S':
+                return Key.DOWN;
+            case 'a':
+            case 'A':
+                return Key.LEFT;
+            case 'd':
+            case 'D':
+                return Key.RIGHT;
+            case 'u':
+            case 'U':
+                return Key.UNDO;
+            case '\n':
+            case '\r':
+            case ' ':
+                return Key.FLIP;
+            default:
+                return Key.OTHER;
+        }
+    }
+
+    /**
+     * Restore the previous settings of the terminal.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        stty(this.savedSettings);
+        try {
+            Runtime.getRuntime().removeShutdownHook(this.restoreHook);
+        } catch (IllegalStateException e) {
+            // already shutting down, the hook restores the settings again
+        }
+    }
+
+    /**
+     * Read a byte.
+     *
+     * @return the byte
+     * @throws IOException if the input cannot be read or is over
+     */
+    private int read() throws IOException {
+        int c = this.in.read();
+        if (c < 0) {
+            throw new IOException("End of input");
+        }
+        return c;
+    }
+
+    /**
+     * Run `stty` on the controlling terminal.
+     *
+     * @param args the arguments
+     * @return the output, null if it failed
+     */
+    private static String stty(String... args) {
+        String[] command = new String[args.length + 1];
+        command[0] = "stty";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            Process process = new ProcessBuilder(command).redirectInput(TTY)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim();
+            return process.waitFor() == 0 ? output : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
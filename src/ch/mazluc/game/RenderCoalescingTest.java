@@ -0,0 +1,92 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Test of the frame rate cap of the {@link RenderScheduler}.
+ *
+ * <p>
+ * Plays a bot game drawn at a capped frame rate and checks that the
+ * changes were merged into fewer frames, the last one included. The
+ * frames go to the standard output, or to the spectators with
+ * `--spectators=PORT`; the counts of changes and frames go to the
+ * standard error.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.RenderCoalescingTest [fps] [rows] [cols]
+ * [--spectators=PORT]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class RenderCoalescingTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private RenderCoalescingTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the frame rate cap, the number of rows and of columns,
+     *             optional, and `--spectators=PORT`
+     * @throws IOException    if the spectator port cannot be bound
+     * @throws AssertionError if no frame is drawn, or more frames than
+     *                        changes
+     */
+    public static void main(String[] args) throws IOException {
+        int fps = RenderScheduler.DEFAULT_FPS;
+        int rows = 6;
+        int cols = 6;
+        int port = -1;
+        int position = 0;
+        for (String arg : args) {
+            if (arg.startsWith("--spectators=")) {
+                port = Integer.parseInt(arg.substring("--spectators=".length()));
+            } else if (position == 0) {
+                fps = Integer.parseInt(arg);
+                position++;
+            } else if (position == 1) {
+                rows = Integer.parseInt(arg);
+                position++;
+            } else {
+                cols = Integer.parseInt(arg);
+            }
+        }
+        SpectatorBroadcaster broadcaster = port < 0 ? null : new SpectatorBroadcaster(port);
+        PrintStream out = broadcaster == null ? System.out : new PrintStream(OutputStream.nullOutputStream());
+        Grid grid = new Grid(rows, cols);
+        grid.fill();
+        Player[] players = Simulation.players(2);
+        BotStrategy[] bots = new BotStrategy[players.length];
+        GameEngine engine = new GameEngine(players, grid);
+        SplittableRandom random = new SplittableRandom();
+        for (int i = 0; i < bots.length; i++) {
+            bots[i] = new ProbabilisticBot(new BotParameters(Integer.MAX_VALUE, 0.5, 1.0), random.split());
+            bots[i].attach(engine);
+        }
+        long start = System.nanoTime();
+        RenderScheduler renderer = new RenderScheduler(out, broadcaster, fps);
+        engine.addListener(renderer);
+        Simulation.play(engine, bots);
+        renderer.close();
+        System.err.printf("%d changes drawn in %d frames, %.1f ms%n", renderer.getChanges(), renderer.getFrames(),
+                (System.nanoTime() - start) / 1e6);
+        if (broadcaster != null) {
+            broadcaster.close();
+        }
+        if (renderer.getFrames() < 1 || renderer.getFrames() > renderer.getChanges()) {
+            throw new AssertionError(renderer.getChanges() + " changes drawn in " + renderer.getFrames() + " frames");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Draws a game at most a given number of times per second, however fast
+ * it changes.
+ *
+ * <p>
+ * A change only marks the screen dirty, with the {@link GameSnapshot} to
+ * draw: the first change after a frame schedules the next one, no sooner
+ * than the frame interval after the last, and the changes until then are
+ * merged into it, as only the latest snapshot is drawn. A bot game then
+ * sends a terminal or a network link a few frames per second instead of
+ * one per flip. The frames are drawn from the snapshots on a thread of
+ * their own, so the game never waits for them.
+ *
+ * <p>
+ * As a {@link GameListener}, it draws the snapshots of a
+ * {@link GameEngine}, which must publish them.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (RenderScheduler renderer = new RenderScheduler(System.out, null, 30)) {
+ *     engine.addListener(renderer);
+ *     Simulation.play(engine, bots);
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * `MemoryTest --bots` draws a bot game with it, and
+ * {@link RenderCoalescingTest} checks that the changes are merged.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class RenderScheduler implements GameListener, Closeable {
+
+    /**
+     * The default frame rate cap ({@value} frames per second).
+     */
+    public static final int DEFAULT_FPS = 30;
+
+    /**
+     * The stream the frames are written to, null for none.
+     */
+    private final PrintStream out;
+
+    /**
+     * The broadcaster the frames are sent to, null for none.
+     */
+    private final SpectatorBroadcaster broadcaster;
+
+    /**
+     * The least time between two frames, in nanoseconds.
+     */
+    private final long interval;
+
+    /**
+     * The thread drawing the frames.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Whether a frame is scheduled.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * The frame buffer, guarded by this scheduler.
+     */
+    private final FrameBuffer frame = new FrameBuffer();
+
+    /**
+     * The number of changes.
+     */
+    private final LongAdder changes = new LongAdder();
+
+    /**
+     * The latest snapshot, null before the first change.
+     */
+    private volatile GameSnapshot latest;
+
+    /**
+     * When the last frame was drawn (`System.nanoTime()`).
+     */
+    private volatile long lastFrame;
+
+    /**
+     * The version of the last snapshot drawn, guarded by this scheduler.
+     */
+    private long drawnVersion = -1;
+
+    /**
+     * The number of frames drawn, guarded by this scheduler.
+     */
+    private long frames;
+
+    /**
+     * Constructor.
+     *
+     * @param out         the stream the frames are written to, null for
+     *                    none
+     * @param broadcaster the broadcaster the frames are sent to, null for
+     *                    none
+     * @param maxFps      the most frames per second, at least 1
+     */
+    public RenderScheduler(PrintStream out, SpectatorBroadcaster broadcaster, int maxFps) {
+        this.out = out;
+        this.broadcaster = broadcaster;
+        this.interval = TimeUnit.SECONDS.toNanos(1) / Math.max(maxFps, 1);
+        this.lastFrame = System.nanoTime() - this.interval;
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "render-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onFlip(GameEngine engine, int player, Coordinate coord, Card card, FlipOutcome outcome) {
+        this.markDirty(engine.getSnapshot());
+    }
+
+    /**
+     * Mark the screen dirty.
+     * The snapshot is drawn with the next frame, unless a later one comes
+     * first.
+     *
+     * @param snapshot the state to draw
+     */
+    public void markDirty(GameSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        this.latest = snapshot;
+        this.changes.increment();
+        if (this.scheduled.compareAndSet(false, true)) {
+            long delay = this.lastFrame + this.interval - System.nanoTime();
+            try {
+                this.executor.schedule(this::drawScheduled, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed, the last frame has been drawn
+                this.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Draw the latest snapshot now, if it was not drawn yet.
+     */
+    public synchronized void flush() {
+        GameSnapshot snapshot = this.latest;
+        if (snapshot == null || snapshot.getVersion() == this.drawnVersion) {
+            return;
+        }
+        GameEvents.FrameRendered event = new GameEvents.FrameRendered();
+        event.begin();
+        this.frame.reset();
+        render(this.frame, snapshot);
+        if (this.out != null) {
+            this.frame.writeTo(this.out);
+            this.out.flush();
+        }
+        event.bytes = this.frame.size();
+        event.commit();
+        if (this.broadcaster != null) {
+            this.broadcaster.publish(this.frame.toByteArray());
+        }
+        this.drawnVersion = snapshot.getVersion();
+        this.lastFrame = System.nanoTime();
+        this.frames++;
+    }
+
+    /**
+     * Get the number of changes marked.
+     *
+     * @return the number of changes
+     */
+    public long getChanges() {
+        return this.changes.sum();
+    }
+
+    /**
+     * Get the number of frames drawn.
+     *
+     * @return the number of frames
+     */
+    public synchronized long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Draw the latest snapshot and stop.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flush();
+    }
+
+    /**
+     * Draw the frame scheduled.
+     */
+    private void drawScheduled() {
+        // a change from now on schedules the next frame
+        this.scheduled.set(false);
+        this.flush();
+    }
+
+    /**
+     * Render a snapshot: the player to move, or the end of the game, the
+     * grid and the scores.
+     *
+     * @param frame    the frame
+     * @param snapshot the snapshot
+     */
+    public static void render(FrameBuffer frame, GameSnapshot snapshot) {
+        ANSIUtils.clearScreen(frame);
+        int current = snapshot.getCurrentPlayer();
+        if (snapshot.isOver() || current < 0) {
+            ANSIUtils.setForegroundColor(frame, ANSIUtils.BLUE);
+            ANSIUtils.setBold(frame);
+            frame.append("GAME OVER");
+        } else {
+            ANSIUtils.setBackgroundColor(frame, snapshot.getPlayerColor(current));
+            frame.append(snapshot.getPlayerName(current)).append("'s turn (")
+                    .append(snapshot.getPlayerScore(current)).append(')');
+        }
+        ANSIUtils.reset(frame);
+        frame.newLine();
+        snapshot.print(frame);
+        frame.append("turn ").append(snapshot.getTurn()).newLine();
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            ANSIUtils.setBackgroundColor(frame, snapshot.getPlayerColor(i));
+            frame.append(snapshot.getPlayerName(i));
+            for (int pad = snapshot.getPlayerName(i).length(); pad < 15; pad++) {
+                frame.append(' ');
+            }
+            frame.append(' ').append(snapshot.getPlayerScore(i), 2);
+            ANSIUtils.reset(frame);
+            if (snapshot.isPlayerDead(i)) {
+                frame.append(" ✝");
+            }
+            frame.newLine();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * <p>
+ * End-to-end throughput test of the interactive game.
+ *
+ * <p>
+ * Feeds a keystroke script through the same path a real user goes
+ * through (`printStartScreen`, `initialize`, `start` and the
+ * leaderboard) and discards the output, counting it. Prints the games
+ * per second and the bytes of output per game.
+ *
+ * <p>
+ * The script is either recorded with `MemoryTest --seed=N --record=FILE`
+ * and replayed with the same seed, or generated for a game of 2 players
+ * on a 6x6 grid by {@link ScriptedGame#script(long, int, int, int)}: a
+ * wrong turn, then every pair, the jolly and the bomb.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.ReplayThroughputTest [games] [seed] [script]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class ReplayThroughputTest {
+
+    /**
+     * The number of games played before measuring ({@value}).
+     */
+    private static final int WARMUP_GAMES = 50;
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private ReplayThroughputTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of games, the seed of the grid and the script
+     *             file, all optional
+     * @throws IOException if the script cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        byte[] script = args.length > 2 ? Files.readAllBytes(Paths.get(args[2]))
+                : ScriptedGame.script(seed, 2, 6, 6).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < WARMUP_GAMES; i++) {
+            play(script, seed);
+        }
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            bytes += play(script, seed);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games in %.2f s (%.0f games/s), %d bytes/game%n", games, seconds, games / seconds,
+                bytes / games);
+    }
+
+    /**
+     * Play a whole game from a script.
+     *
+     * @param script the keystrokes
+     * @param seed   the seed of the grid
+     * @return the bytes of output
+     * @throws IllegalStateException if the script ends before the game
+     */
+    public static long play(byte[] script, long seed) {
+        CountingOutputStream counter = new CountingOutputStream();
+        ScriptedGame.play(script, seed, new PrintStream(counter, false, StandardCharsets.UTF_8));
+        return counter.count;
+    }
+
+    /**
+     * Output stream discarding everything, counting the bytes.
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        /**
+         * The number of bytes written.
+         */
+        private long count;
+
+        @Override
+        public void write(int b) {
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.count += len;
+        }
+    }
+}
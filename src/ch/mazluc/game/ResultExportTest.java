@@ -0,0 +1,123 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LongSummaryStatistics;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Test of the {@link ResultExporter}.
+ *
+ * <p>
+ * Simulates games between bots, exports them, then scans the files with
+ * a {@link ColumnarReader}: checks that every game and every turn is read
+ * back, and prints the export and scan throughput and a few statistics.
+ * Without a directory, the files are written to a temporary one, deleted
+ * at the end.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.ResultExportTest [games] [directory]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class ResultExportTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private ResultExportTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of games and the output directory, both
+     *             optional
+     * @throws IOException    if the files cannot be written or read
+     * @throws AssertionError if the rows read back are not the ones
+     *                        exported
+     */
+    public static void main(String[] args) throws IOException {
+        int gameCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Path directory = args.length > 1 ? Paths.get(args[1]) : Files.createTempDirectory("result-export");
+        Path gamesPath = directory.resolve("games.mcol");
+        Path turnsPath = directory.resolve("turns.mcol");
+        try {
+            run(gameCount, gamesPath, turnsPath);
+        } finally {
+            if (args.length <= 1) {
+                Files.deleteIfExists(gamesPath);
+                Files.deleteIfExists(turnsPath);
+                Files.deleteIfExists(directory);
+            }
+        }
+    }
+
+    /**
+     * Export the games and scan the files.
+     *
+     * @param gameCount the number of games
+     * @param gamesPath the games file
+     * @param turnsPath the turns file
+     * @throws IOException    if the files cannot be written or read
+     * @throws AssertionError if the rows read back are not the ones
+     *                        exported
+     */
+    private static void run(int gameCount, Path gamesPath, Path turnsPath) throws IOException {
+        SplittableRandom random = new SplittableRandom(1);
+        BotStrategy[] bots = { new ProbabilisticBot(0.5, 1.0, random.split()),
+                new ProbabilisticBot(0.5, 1.0, random.split()) };
+        long start = System.nanoTime();
+        long turnCount;
+        try (ResultExporter exporter = new ResultExporter(gamesPath, turnsPath)) {
+            for (int i = 0; i < gameCount; i++) {
+                Grid grid = new Grid(6, 6, new Random(i));
+                grid.fill();
+                GameEngine engine = new GameEngine(Simulation.players(bots.length), grid);
+                engine.setPublishingSnapshots(false);
+                for (BotStrategy bot : bots) {
+                    bot.attach(engine);
+                }
+                exporter.beginGame(i);
+                engine.addListener(exporter);
+                Simulation.play(engine, bots);
+                exporter.endGame(engine);
+            }
+            turnCount = exporter.getTurnCount();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("exported %d games, %d turns in %.2f s (%.0f turns/s), %.2f bytes/turn%n", gameCount,
+                turnCount, seconds, turnCount / seconds, (double) Files.size(turnsPath) / turnCount);
+
+        start = System.nanoTime();
+        try (ColumnarReader games = new ColumnarReader(gamesPath);
+                ColumnarReader turns = new ColumnarReader(turnsPath)) {
+            if (games.getRowCount() != gameCount || turns.getRowCount() != turnCount) {
+                throw new AssertionError(games.getRowCount() + " games and " + turns.getRowCount()
+                        + " turns read back, " + gameCount + " and " + turnCount + " exported");
+            }
+            LongSummaryStatistics turnStats = games.summarize("turns");
+            long bombed = games.count("bombPlayer", player -> player >= 0);
+            long[] outcomes = turns.histogram("outcome", FlipOutcome.values().length);
+            seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("scanned %d turns in %.3f s (%.0f turns/s)%n", turns.getRowCount(), seconds,
+                    turns.getRowCount() / seconds);
+            System.out.printf("turns per game: %.2f avg, %d max; bomb hit in %.1f%% of the games%n",
+                    turnStats.getAverage(), turnStats.getMax(), 100.0 * bombed / games.getRowCount());
+            for (FlipOutcome outcome : FlipOutcome.values()) {
+                if (outcomes[outcome.ordinal()] > 0) {
+                    System.out.printf("%-7s %d%n", outcome, outcomes[outcome.ordinal()]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * Export of the results of simulated games in two columnar files (see
+ * {@link ColumnarWriter}):
+ * <ul>
+ * <li>games: {@link #GAME_COLUMNS}, one row per game, with the first
+ * player who hit a bomb (-1 if nobody);
+ * <li>turns: {@link #TURN_COLUMNS}, one row per turn, with its outcome
+ * (the ordinal of the {@link FlipOutcome}) and the score of the player
+ * at the end of it.
+ * </ul>
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (ResultExporter exporter = new ResultExporter(games, turns)) {
+ *     exporter.beginGame(seed);
+ *     engine.addListener(exporter);
+ *     Simulation.play(engine, bots);
+ *     exporter.endGame(engine);
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link ResultExportTest} exports bot games and scans the files.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class ResultExporter implements GameListener, Closeable {
+
+    /**
+     * The columns of the games file.
+     */
+    public static final String[] GAME_COLUMNS = { "game", "seed", "rows", "cols", "players", "turns",
+            "bombPlayer", "topScore" };
+
+    /**
+     * The columns of the turns file.
+     */
+    public static final String[] TURN_COLUMNS = { "game", "turn", "player", "outcome", "score" };
+
+    /**
+     * The writer of the games.
+     */
+    private final ColumnarWriter games;
+
+    /**
+     * The writer of the turns.
+     */
+    private final ColumnarWriter turns;
+
+    /**
+     * The row being written, reused.
+     */
+    private final long[] gameRow = new long[GAME_COLUMNS.length];
+
+    /**
+     * The row being written, reused.
+     */
+    private final long[] turnRow = new long[TURN_COLUMNS.length];
+
+    /**
+     * The number of the current game.
+     */
+    private long game = -1;
+
+    /**
+     * The seed of the current game.
+     */
+    private long seed;
+
+    /**
+     * The first player of the current game who hit a bomb, -1 if none.
+     */
+    private int bombPlayer;
+
+    /**
+     * The number of turns exported.
+     */
+    private long turnCount;
+
+    /**
+     * Constructor.
+     *
+     * @param gamesPath the games file
+     * @param turnsPath the turns file
+     * @throws IOException if the files cannot be created
+     */
+    public ResultExporter(Path gamesPath, Path turnsPath) throws IOException {
+        this.games = new ColumnarWriter(gamesPath, GAME_COLUMNS);
+        try {
+            this.turns = new ColumnarWriter(turnsPath, TURN_COLUMNS);
+        } catch (IOException e) {
+            this.games.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start exporting a new game.
+     *
+     * @param seed the seed the grid was filled with
+     */
+    public void beginGame(long seed) {
+        this.game++;
+        this.seed = seed;
+        this.bombPlayer = -1;
+    }
+
+    /**
+     * Get the number of turns exported.
+     *
+     * @return the number of turns
+     */
+    public long getTurnCount() {
+        return this.turnCount;
+    }
+
+    @Override
+    public void onFlip(GameEngine engine, int player, Coordinate coord, Card card, FlipOutcome outcome) {
+        if (!outcome.endsTurn()) {
+            return;
+        }
+        if (outcome == FlipOutcome.BOMB && this.bombPlayer < 0) {
+            this.bombPlayer = player;
+        }
+        this.turnRow[0] = this.game;
+        this.turnRow[1] = engine.getTurn();
+        this.turnRow[2] = player;
+        this.turnRow[3] = outcome.ordinal();
+        this.turnRow[4] = engine.getPlayers()[player].getScore();
+        try {
+            this.turns.writeRow(this.turnRow);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot export turn " + engine.getTurn(), e);
+        }
+        this.turnCount++;
+    }
+
+    /**
+     * Export the row of a finished game.
+     *
+     * @param engine the engine of the game
+     * @throws IOException if the file cannot be written
+     */
+    public void endGame(GameEngine engine) throws IOException {
+        int topScore = 0;
+        for (Player player : engine.getPlayers()) {
+            topScore = Math.max(topScore, player.getScore());
+        }
+        this.gameRow[0] = this.game;
+        this.gameRow[1] = this.seed;
+        this.gameRow[2] = engine.getGrid().getRowSize();
+        this.gameRow[3] = engine.getGrid().getColSize();
+        this.gameRow[4] = engine.getPlayers().length;
+        this.gameRow[5] = engine.getTurn();
+        this.gameRow[6] = this.bombPlayer;
+        this.gameRow[7] = topScore;
+        this.games.writeRow(this.gameRow);
+    }
+
+    /**
+     * Close both files.
+     *
+     * @throws IOException if a file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.games.close();
+        } finally {
+            this.turns.close();
+        }
+    }
+}
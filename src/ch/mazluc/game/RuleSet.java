@@ -0,0 +1,419 @@
+package ch.mazluc.game;
+
+import java.util.Locale;
+
+/**
+ * <p>
+ * The rules of a game, as data.
+ *
+ * <p>
+ * A rule set defines how many players can play, how large the grid can
+ * be, the points of the jolly, what the bomb does (eliminate the player,
+ * cost points, or both), whether a match gives another turn and the bonus
+ * of a streak of matches in a row. The defaults are those of
+ * {@link Constant}.
+ *
+ * <p>
+ * The rules a flip depends on are compiled once, when the rule set is
+ * created, into a {@link BombRule} and a {@link MatchRule} that only do
+ * what this rule set asks for: the engine keeps them in final fields and
+ * calls them, so a flip never looks up a rule nor branches on one, and a
+ * variant plays as fast as the default rules.
+ *
+ * <p>
+ * Rule sets are immutable and can be written to and read from a single
+ * line of text of `key=value` fields; the missing fields keep their
+ * default.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * RuleSet rules = RuleSet.parse("bomb=10 match=pass");
+ * GameEngine engine = new GameEngine(players, grid, rules);
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link RuleSetTest} compares how fast bot games are played under
+ * variants of the rules.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class RuleSet {
+
+    /**
+     * The classic rules, from {@link Constant}: the bomb eliminates the
+     * player, a match gives another turn, no streak bonus.
+     */
+    public static final RuleSet DEFAULT = new RuleSet(Constant.MIN_PLAYERS, Constant.MAX_PLAYERS,
+            Constant.MAX_CELLS, Constant.JOLLY_POINTS, true, 0, true, 0);
+
+    /**
+     * What the bomb does to the player who flips it.
+     */
+    @FunctionalInterface
+    public interface BombRule {
+
+        /**
+         * Apply the bomb to a player.
+         *
+         * @param player the player
+         */
+        void explode(Player player);
+    }
+
+    /**
+     * What a match gives to the player who makes it.
+     */
+    @FunctionalInterface
+    public interface MatchRule {
+
+        /**
+         * Score a match.
+         *
+         * @param player the player
+         * @param points the points of the set
+         * @param streak the matches the player made just before, in the
+         *               same run of turns
+         * @return true if the player plays again
+         */
+        boolean score(Player player, int points, int streak);
+    }
+
+    /**
+     * The minimum number of players.
+     */
+    private final int minPlayers;
+
+    /**
+     * The maximum number of players.
+     */
+    private final int maxPlayers;
+
+    /**
+     * The maximum number of cells of the grid.
+     */
+    private final int maxCells;
+
+    /**
+     * The points of a jolly.
+     */
+    private final int jollyPoints;
+
+    /**
+     * Whether the bomb eliminates the player.
+     */
+    private final boolean bombEliminates;
+
+    /**
+     * The points the bomb costs.
+     */
+    private final int bombPenalty;
+
+    /**
+     * Whether a match gives another turn.
+     */
+    private final boolean extraTurnOnMatch;
+
+    /**
+     * The bonus of every match before the current one in a streak.
+     */
+    private final int streakBonus;
+
+    /**
+     * The compiled bomb rule.
+     */
+    private final BombRule bombRule;
+
+    /**
+     * The compiled match rule.
+     */
+    private final MatchRule matchRule;
+
+    /**
+     * Constructor.
+     *
+     * @param minPlayers       the minimum number of players, at least 1
+     * @param maxPlayers       the maximum number of players
+     * @param maxCells         the maximum number of cells of the grid, at
+     *                         least 4
+     * @param jollyPoints      the points of a jolly
+     * @param bombEliminates   whether the bomb eliminates the player
+     * @param bombPenalty      the points the bomb costs, not negative
+     * @param extraTurnOnMatch whether a match gives another turn
+     * @param streakBonus      the bonus of every match before the current
+     *                         one in a streak, not negative
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public RuleSet(int minPlayers, int maxPlayers, int maxCells, int jollyPoints, boolean bombEliminates,
+            int bombPenalty, boolean extraTurnOnMatch, int streakBonus) {
+        if (minPlayers < 1 || maxPlayers < minPlayers || maxCells < 4 || bombPenalty < 0 || streakBonus < 0) {
+            throw new IllegalArgumentException("Invalid rules");
+        }
+        this.minPlayers = minPlayers;
+        this.maxPlayers = maxPlayers;
+        this.maxCells = maxCells;
+        this.jollyPoints = jollyPoints;
+        this.bombEliminates = bombEliminates;
+        this.bombPenalty = bombPenalty;
+        this.extraTurnOnMatch = extraTurnOnMatch;
+        this.streakBonus = streakBonus;
+        this.bombRule = compileBomb(bombEliminates, bombPenalty);
+        this.matchRule = compileMatch(extraTurnOnMatch, streakBonus);
+    }
+
+    /**
+     * Compile the bomb rule.
+     *
+     * @param eliminates whether the bomb eliminates the player
+     * @param penalty    the points the bomb costs
+     * @return the rule
+     */
+    private static BombRule compileBomb(boolean eliminates, int penalty) {
+        if (penalty == 0) {
+            return eliminates ? Player::kill : player -> {
+                // a dud
+            };
+        }
+        if (!eliminates) {
+            return player -> player.incrementScore(-penalty);
+        }
+        return player -> {
+            player.incrementScore(-penalty);
+            player.kill();
+        };
+    }
+
+    /**
+     * Compile the match rule.
+     * Without another turn there is no streak, so no bonus either.
+     *
+     * @param extraTurn whether a match gives another turn
+     * @param bonus     the bonus of every match before in a streak
+     * @return the rule
+     */
+    private static MatchRule compileMatch(boolean extraTurn, int bonus) {
+        if (!extraTurn) {
+            return (player, points, streak) -> {
+                player.incrementScore(points);
+                return false;
+            };
+        }
+        if (bonus == 0) {
+            return (player, points, streak) -> {
+                player.incrementScore(points);
+                return true;
+            };
+        }
+        return (player, points, streak) -> {
+            player.incrementScore(points + bonus * streak);
+            return true;
+        };
+    }
+
+    /**
+     * Get the minimum number of players.
+     *
+     * @return the minimum number of players
+     */
+    public int getMinPlayers() {
+        return this.minPlayers;
+    }
+
+    /**
+     * Get the maximum number of players.
+     *
+     * @return the maximum number of players
+     */
+    public int getMaxPlayers() {
+        return this.maxPlayers;
+    }
+
+    /**
+     * Get the maximum number of cells of the grid.
+     *
+     * @return the maximum number of cells
+     */
+    public int getMaxCells() {
+        return this.maxCells;
+    }
+
+    /**
+     * Get the points of a jolly.
+     *
+     * @return the points
+     */
+    public int getJollyPoints() {
+        return this.jollyPoints;
+    }
+
+    /**
+     * Check if the bomb eliminates the player.
+     *
+     * @return true if the bomb eliminates
+     */
+    public boolean isBombEliminating() {
+        return this.bombEliminates;
+    }
+
+    /**
+     * Get the points the bomb costs.
+     *
+     * @return the penalty
+     */
+    public int getBombPenalty() {
+        return this.bombPenalty;
+    }
+
+    /**
+     * Check if a match gives another turn.
+     *
+     * @return true if the player plays again after a match
+     */
+    public boolean isExtraTurnOnMatch() {
+        return this.extraTurnOnMatch;
+    }
+
+    /**
+     * Get the bonus of every match before the current one in a streak.
+     *
+     * @return the bonus
+     */
+    public int getStreakBonus() {
+        return this.streakBonus;
+    }
+
+    /**
+     * Get the compiled bomb rule.
+     *
+     * @return the rule
+     */
+    public BombRule getBombRule() {
+        return this.bombRule;
+    }
+
+    /**
+     * Get the compiled match rule.
+     *
+     * @return the rule
+     */
+    public MatchRule getMatchRule() {
+        return this.matchRule;
+    }
+
+    /**
+     * Check if a number of players can play.
+     *
+     * @param players the number of players
+     * @return true if allowed
+     */
+    public boolean isValidPlayerCount(int players) {
+        return players >= this.minPlayers && players <= this.maxPlayers;
+    }
+
+    /**
+     * Check if a grid size is allowed: at least 2 by 2, not more cells
+     * than the maximum, and an even number of them.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return true if allowed
+     */
+    public boolean isValidGridSize(int rows, int cols) {
+        long cells = (long) rows * cols;
+        return rows > 1 && cols > 1 && cells <= this.maxCells && cells % 2 == 0;
+    }
+
+    /**
+     * Parse rules written by {@link #toString()}.
+     * The fields are separated by blanks, the missing ones keep the
+     * default:
+     * <ul>
+     * <li>`players=MIN-MAX`, `cells=MAX`, `jolly=POINTS`;
+     * <li>`bomb=eliminate`, `bomb=POINTS` (the player loses the points and
+     * stays in the game) or `bomb=eliminate:POINTS`;
+     * <li>`match=again` or `match=pass`;
+     * <li>`streak=BONUS`.
+     * </ul>
+     *
+     * @param line the line
+     * @return the rules
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public static RuleSet parse(String line) {
+        int minPlayers = DEFAULT.minPlayers;
+        int maxPlayers = DEFAULT.maxPlayers;
+        int maxCells = DEFAULT.maxCells;
+        int jollyPoints = DEFAULT.jollyPoints;
+        boolean bombEliminates = DEFAULT.bombEliminates;
+        int bombPenalty = DEFAULT.bombPenalty;
+        boolean extraTurnOnMatch = DEFAULT.extraTurnOnMatch;
+        int streakBonus = DEFAULT.streakBonus;
+        try {
+            for (String field : line.strip().split("\\s+")) {
+                if (field.isEmpty()) {
+                    continue;
+                }
+                int equals = field.indexOf('=');
+                String key = equals < 0 ? field : field.substring(0, equals);
+                String value = equals < 0 ? "" : field.substring(equals + 1);
+                switch (key) {
+                    case "players":
+                        int dash = value.indexOf('-');
+                        minPlayers = Integer.parseInt(dash < 0 ? value : value.substring(0, dash));
+                        maxPlayers = dash < 0 ? minPlayers : Integer.parseInt(value.substring(dash + 1));
+                        break;
+                    case "cells":
+                        maxCells = Integer.parseInt(value);
+                        break;
+                    case "jolly":
+                        jollyPoints = Integer.parseInt(value);
+                        break;
+                    case "bomb":
+                        bombEliminates = value.startsWith("eliminate");
+                        String penalty = bombEliminates ? value.substring("eliminate".length()) : value;
+                        bombPenalty = penalty.isEmpty() ? 0
+                                : Integer.parseInt(bombEliminates ? penalty.substring(1) : penalty);
+                        break;
+                    case "match":
+                        if (!value.equals("again") && !value.equals("pass")) {
+                            throw new IllegalArgumentException("Invalid rules: " + line);
+                        }
+                        extraTurnOnMatch = value.equals("again");
+                        break;
+                    case "streak":
+                        streakBonus = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid rules: " + line);
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid rules: " + line, e);
+        }
+        return new RuleSet(minPlayers, maxPlayers, maxCells, jollyPoints, bombEliminates, bombPenalty,
+                extraTurnOnMatch, streakBonus);
+    }
+
+    /**
+     * Get the string representation of the rules, as read by
+     * {@link #parse(String)}.
+     *
+     * @return the string
+     */
+    @Override
+    public String toString() {
+        String bomb;
+        if (!this.bombEliminates) {
+            bomb = Integer.toString(this.bombPenalty);
+        } else {
+            bomb = this.bombPenalty == 0 ? "eliminate" : "eliminate:" + this.bombPenalty;
+        }
+        return String.format(Locale.ROOT, "players=%d-%d cells=%d jolly=%d bomb=%s match=%s streak=%d",
+                this.minPlayers, this.maxPlayers, this.maxCells, this.jollyPoints, bomb,
+                this.extraTurnOnMatch ? "again" : "pass", this.streakBonus);
+    }
+}
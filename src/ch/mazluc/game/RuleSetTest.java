@@ -0,0 +1,94 @@
+package ch.mazluc.game;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Test of the {@link RuleSet}.
+ *
+ * <p>
+ * Checks that the rule sets are read back from their text, then compares
+ * how fast bot games are played under the default rules and under
+ * variants of them, one variant after the other on the same grids.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.RuleSetTest [games] [rows] [cols] [rules...]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class RuleSetTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private RuleSetTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of games per rule set, the number of rows and
+     *             of columns, optional, then the rule sets to compare with
+     *             the default, one per argument
+     * @throws AssertionError if a rule set is not read back from its text
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int cols = args.length > 2 ? Integer.parseInt(args[2]) : rows;
+        RuleSet[] all;
+        if (args.length > 3) {
+            all = new RuleSet[args.length - 2];
+            all[0] = RuleSet.DEFAULT;
+            for (int i = 3; i < args.length; i++) {
+                all[i - 2] = RuleSet.parse(args[i]);
+            }
+        } else {
+            all = new RuleSet[] { RuleSet.DEFAULT, RuleSet.parse("bomb=10"), RuleSet.parse("match=pass"),
+                    RuleSet.parse("streak=2"), RuleSet.parse("bomb=eliminate:5 match=again streak=1") };
+        }
+        for (RuleSet rules : all) {
+            if (!RuleSet.parse(rules.toString()).toString().equals(rules.toString())) {
+                throw new AssertionError("Rules not read back: " + rules);
+            }
+        }
+        BotParameters parameters = new BotParameters(Integer.MAX_VALUE, 0.5, 1.0);
+        for (int round = 0; round < 3; round++) {
+            for (RuleSet rules : all) {
+                SplittableRandom random = new SplittableRandom(42);
+                long turns = 0;
+                long points = 0;
+                long start = System.nanoTime();
+                for (int game = 0; game < games; game++) {
+                    Grid grid = new Grid(rows, cols, new Random(random.nextLong()));
+                    grid.fill();
+                    Player[] players = Simulation.players(2);
+                    GameEngine engine = new GameEngine(players, grid, rules);
+                    engine.setPublishingSnapshots(false);
+                    BotStrategy[] bots = new BotStrategy[players.length];
+                    for (int i = 0; i < bots.length; i++) {
+                        bots[i] = new ProbabilisticBot(parameters, random.split());
+                        bots[i].attach(engine);
+                    }
+                    Simulation.play(engine, bots);
+                    turns += engine.getTurn();
+                    for (Player player : players) {
+                        points += player.getScore();
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                if (round == 2) {
+                    System.out.printf("%-66s %6.0f games/s %6.1f turns %6.1f points %5.0f ns/turn%n", rules,
+                            games * 1e9 / elapsed, (double) turns / games, (double) points / games,
+                            (double) elapsed / Math.max(turns, 1));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ch.mazluc.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.PrintStream;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * <p>
+ * A whole game played from a keystroke script, through the same path a
+ * real user goes through (`printStartScreen`, `initialize`, `start` and
+ * the leaderboard).
+ *
+ * <p>
+ * `MemoryTest --cds-training` plays one to load what a game loads, and
+ * {@link ReplayThroughputTest} replays scripts to measure the throughput
+ * of the game.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+final class ScriptedGame {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is a utility class and its use is
+     * only static.
+     *
+     * @throws IllegalStateException if called
+     */
+    private ScriptedGame() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Play a whole game from a script.
+     *
+     * @param script the keystrokes
+     * @param seed   the seed of the grid
+     * @param out    the stream the game is printed on
+     * @throws IllegalStateException if the script ends before the game
+     */
+    static void play(byte[] script, long seed, PrintStream out) {
+        Game game = new Game(new ByteArrayInputStream(script), out, new Random(seed));
+        try {
+            game.printStartScreen();
+            game.initialize();
+            game.start();
+        } catch (NoSuchElementException e) {
+            throw new IllegalStateException("The script ended before the game", e);
+        }
+        game.destroy();
+        out.flush();
+    }
+
+    /**
+     * Generate the script of a game.
+     * The first player makes a wrong guess, then the second one takes
+     * every pair, the jolly and finally the bomb.
+     *
+     * @param seed        the seed of the grid
+     * @param playerCount the number of players
+     * @param rows        the row size of the grid
+     * @param cols        the column size of the grid
+     * @return the keystrokes
+     */
+    static String script(long seed, int playerCount, int rows, int cols) {
+        Grid grid = new Grid(rows, cols, new Random(seed));
+        grid.fill();
+        StringBuilder script = new StringBuilder();
+        // start screen, player count and random names
+        script.append('\n').append(playerCount).append('\n');
+        script.append("\n".repeat(playerCount));
+        script.append(rows).append('\n').append(cols).append('\n');
+        Coordinate[] firstOf = new Coordinate[256];
+        StringBuilder pairs = new StringBuilder();
+        Coordinate jolly = null;
+        Coordinate bomb = null;
+        Coordinate wrong = null;
+        Coordinate other = null;
+        for (int i = 1; i <= rows; i++) {
+            for (int j = 1; j <= cols; j++) {
+                Coordinate coord = new Coordinate(i, j);
+                Card card = grid.getCard(coord);
+                if (card == null) {
+                    continue;
+                }
+                if (card.isBomb()) {
+                    bomb = coord;
+                } else if (card.isJolly()) {
+                    jolly = coord;
+                } else if (firstOf[card.getSymbol()] == null) {
+                    firstOf[card.getSymbol()] = coord;
+                    if (wrong == null) {
+                        wrong = coord;
+                    } else if (other == null) {
+                        other = coord;
+                    }
+                } else {
+                    appendTurn(pairs, firstOf[card.getSymbol()], coord);
+                }
+            }
+        }
+        if (other != null) {
+            appendTurn(script, wrong, other);
+        }
+        script.append(pairs);
+        appendTurn(script, jolly);
+        appendTurn(script, bomb);
+        // leaderboard
+        script.append('\n');
+        return script.toString();
+    }
+
+    /**
+     * Append a turn to a script: the coordinates of the guesses,
+     * then enter to continue.
+     *
+     * @param script  the script
+     * @param guesses the guesses
+     */
+    private static void appendTurn(StringBuilder script, Coordinate... guesses) {
+        for (Coordinate guess : guesses) {
+            script.append(guess.x()).append('\n').append(guess.y()).append('\n');
+        }
+        script.append('\n');
+    }
+}
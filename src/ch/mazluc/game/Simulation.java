@@ -0,0 +1,89 @@
+package ch.mazluc.game;
+
+/**
+ * <p>
+ * Headless games played by bots.
+ *
+ * <p>
+ * Nothing is printed and nothing is read: games run as fast as the
+ * engine and the bots allow, which is what tuning and analysis need.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * GameEngine engine = Simulation.play(grid, players, bots);
+ * int turns = engine.getTurn();
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public final class Simulation {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is a utility class and its use is
+     * only static.
+     * 
+     * @throws IllegalStateException if called
+     */
+    private Simulation() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Play a whole game.
+     * Every player is driven by the bot with the same index.
+     * Nobody else watches the game, so no snapshot is published.
+     *
+     * @param grid    the filled grid
+     * @param players the players
+     * @param bots    the bots, one per player
+     * @return the engine of the finished game
+     * @throws IllegalStateException if a bot chooses an invalid flip
+     */
+    public static GameEngine play(Grid grid, Player[] players, BotStrategy[] bots) {
+        GameEngine engine = new GameEngine(players, grid);
+        engine.setPublishingSnapshots(false);
+        for (BotStrategy bot : bots) {
+            bot.attach(engine);
+        }
+        return play(engine, bots);
+    }
+
+    /**
+     * Play an attached game until it is over.
+     *
+     * @param engine the engine, with the bots already attached
+     * @param bots   the bots, one per player
+     * @return the engine
+     * @throws IllegalStateException if a bot chooses an invalid flip
+     */
+    public static GameEngine play(GameEngine engine, BotStrategy[] bots) {
+        while (!engine.isOver()) {
+            int player = engine.getCurrentPlayer();
+            Coordinate coord = bots[player].chooseFlip(engine);
+            if (engine.flip(coord) == FlipOutcome.INVALID) {
+                throw new IllegalStateException("Bot " + player + " chose an invalid flip");
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Create the players of a headless game.
+     *
+     * @param count the number of players
+     * @return the players
+     */
+    public static Player[] players(int count) {
+        Player[] players = new Player[count];
+        for (int i = 0; i < count; i++) {
+            players[i] = new Player("bot" + (i + 1), ANSIUtils.RED + i % 7);
+        }
+        return players;
+    }
+}
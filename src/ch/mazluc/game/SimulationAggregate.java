@@ -0,0 +1,236 @@
+package ch.mazluc.game;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * Totals of a batch of simulated games, by seat.
+ *
+ * <p>
+ * Aggregates are what workers send back to the
+ * {@link SimulationCoordinator}: a few counters whatever the number of
+ * games, written in a compact binary form. Merging is commutative, so the
+ * totals do not depend on which worker played which games, nor in which
+ * order they reported.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class SimulationAggregate {
+
+    /**
+     * The maximum number of seats accepted when reading ({@value}).
+     */
+    public static final int MAX_SEATS = 64;
+
+    /**
+     * The number of games.
+     */
+    private long games;
+
+    /**
+     * The number of turns, over all the games.
+     */
+    private long turns;
+
+    /**
+     * The number of games in which a bomb was hit.
+     */
+    private long bombGames;
+
+    /**
+     * The number of games won by every seat; ties go to the first seat.
+     */
+    private final long[] wins;
+
+    /**
+     * The sum of the scores of every seat.
+     */
+    private final long[] scores;
+
+    /**
+     * The number of games in which every seat was eliminated.
+     */
+    private final long[] deaths;
+
+    /**
+     * Constructor.
+     * All the totals start at 0.
+     *
+     * @param seats the number of players of the games
+     */
+    public SimulationAggregate(int seats) {
+        this.wins = new long[seats];
+        this.scores = new long[seats];
+        this.deaths = new long[seats];
+    }
+
+    /**
+     * Add a finished game.
+     *
+     * @param engine the engine of the game
+     */
+    public void add(GameEngine engine) {
+        Player[] players = engine.getPlayers();
+        int winner = 0;
+        boolean bomb = false;
+        for (int i = 0; i < players.length; i++) {
+            this.scores[i] += players[i].getScore();
+            if (players[i].isDead()) {
+                this.deaths[i]++;
+                bomb = true;
+            }
+            if (players[i].getScore() > players[winner].getScore()) {
+                winner = i;
+            }
+        }
+        this.wins[winner]++;
+        this.games++;
+        this.turns += engine.getTurn();
+        this.bombGames += bomb ? 1 : 0;
+    }
+
+    /**
+     * Add the totals of another aggregate.
+     *
+     * @param other the aggregate, with the same number of seats
+     */
+    public void merge(SimulationAggregate other) {
+        this.games += other.games;
+        this.turns += other.turns;
+        this.bombGames += other.bombGames;
+        for (int i = 0; i < this.wins.length; i++) {
+            this.wins[i] += other.wins[i];
+            this.scores[i] += other.scores[i];
+            this.deaths[i] += other.deaths[i];
+        }
+    }
+
+    /**
+     * Get the number of seats.
+     *
+     * @return the number of seats
+     */
+    public int getSeats() {
+        return this.wins.length;
+    }
+
+    /**
+     * Get the number of games.
+     *
+     * @return the number of games
+     */
+    public long getGames() {
+        return this.games;
+    }
+
+    /**
+     * Get the number of turns, over all the games.
+     *
+     * @return the number of turns
+     */
+    public long getTurns() {
+        return this.turns;
+    }
+
+    /**
+     * Get the number of games in which a bomb was hit.
+     *
+     * @return the number of games
+     */
+    public long getBombGames() {
+        return this.bombGames;
+    }
+
+    /**
+     * Get the number of games won by a seat.
+     *
+     * @param seat the seat
+     * @return the number of wins
+     */
+    public long getWins(int seat) {
+        return this.wins[seat];
+    }
+
+    /**
+     * Get the sum of the scores of a seat.
+     *
+     * @param seat the seat
+     * @return the sum of the scores
+     */
+    public long getScore(int seat) {
+        return this.scores[seat];
+    }
+
+    /**
+     * Get the number of games in which a seat was eliminated.
+     *
+     * @param seat the seat
+     * @return the number of games
+     */
+    public long getDeaths(int seat) {
+        return this.deaths[seat];
+    }
+
+    /**
+     * Write the aggregate.
+     *
+     * @param out the output
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(this.wins.length);
+        out.writeLong(this.games);
+        out.writeLong(this.turns);
+        out.writeLong(this.bombGames);
+        for (int i = 0; i < this.wins.length; i++) {
+            out.writeLong(this.wins[i]);
+            out.writeLong(this.scores[i]);
+            out.writeLong(this.deaths[i]);
+        }
+    }
+
+    /**
+     * Read an aggregate written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input
+     * @return the aggregate
+     * @throws IOException if the input cannot be read or is not valid
+     */
+    public static SimulationAggregate readFrom(DataInput in) throws IOException {
+        int seats = in.readInt();
+        if (seats < 1 || seats > MAX_SEATS) {
+            throw new IOException("Invalid aggregate: " + seats + " seats");
+        }
+        SimulationAggregate aggregate = new SimulationAggregate(seats);
+        aggregate.games = in.readLong();
+        aggregate.turns = in.readLong();
+        aggregate.bombGames = in.readLong();
+        for (int i = 0; i < seats; i++) {
+            aggregate.wins[i] = in.readLong();
+            aggregate.scores[i] = in.readLong();
+            aggregate.deaths[i] = in.readLong();
+        }
+        return aggregate;
+    }
+
+    /**
+     * Get a summary of the totals.
+     *
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%d games, %.2f turns/game, bomb hit in %.1f%%%n", this.games,
+                (double) this.turns / Math.max(this.games, 1), 100.0 * this.bombGames / Math.max(this.games, 1)));
+        for (int i = 0; i < this.wins.length; i++) {
+            summary.append(String.format("seat %d: %.1f%% wins, %.2f points, %.1f%% eliminated%n", i + 1,
+                    100.0 * this.wins[i] / Math.max(this.games, 1), (double) this.scores[i] / Math.max(this.games, 1),
+                    100.0 * this.deaths[i] / Math.max(this.games, 1)));
+        }
+        return summary.toString();
+    }
+}
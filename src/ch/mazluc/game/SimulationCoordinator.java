@@ -0,0 +1,391 @@
+package ch.mazluc.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Coordinator of a simulation spread over several processes.
+ *
+ * <p>
+ * The seeds to play are split into shards, which are handed out to the
+ * {@link SimulationWorker}s connected over plain sockets, one shard per
+ * worker at a time. A worker that disconnects or does not answer in time
+ * loses its shard, which goes back to the queue for another worker. The
+ * aggregates of the shards are merged into the result; since every game
+ * only depends on its seed, the result is the same however the shards are
+ * distributed.
+ *
+ * <p>
+ * Workers can run on other hosts (they only need the address of the
+ * coordinator), or be started on this machine with
+ * {@link #launchLocalWorkers(int)}. If every worker is gone with shards
+ * left to play, waiting for the result fails instead of hanging.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * try (SimulationCoordinator coordinator = new SimulationCoordinator(0, 0, 20_000, 500, 6, 6, 2)) {
+ *     coordinator.launchLocalWorkers(3);
+ *     SimulationAggregate result = coordinator.await();
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link DistributedSimulationTest} runs one and checks its result.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class SimulationCoordinator implements Closeable {
+
+    /**
+     * The time a worker has to play a shard, in milliseconds ({@value}).
+     */
+    private static final int SHARD_TIMEOUT = 120_000;
+
+    /**
+     * The server socket the workers connect to.
+     */
+    private final ServerSocket server;
+
+    /**
+     * The shards still to hand out.
+     */
+    private final LinkedBlockingQueue<Integer> pending = new LinkedBlockingQueue<>();
+
+    /**
+     * Whether every shard is done (1) or not (0).
+     */
+    private final AtomicIntegerArray done;
+
+    /**
+     * Counts down as the shards are done.
+     */
+    private final CountDownLatch remaining;
+
+    /**
+     * The merged aggregate.
+     */
+    private final SimulationAggregate result;
+
+    /**
+     * The number of shards handed out again after a failure.
+     */
+    private final AtomicLong reassigned = new AtomicLong();
+
+    /**
+     * The seed of the first game.
+     */
+    private final long firstSeed;
+
+    /**
+     * The number of games.
+     */
+    private final long games;
+
+    /**
+     * The number of games of a shard.
+     */
+    private final int shardSize;
+
+    /**
+     * The row size of the grids.
+     */
+    private final int rows;
+
+    /**
+     * The column size of the grids.
+     */
+    private final int cols;
+
+    /**
+     * The number of players.
+     */
+    private final int players;
+
+    /**
+     * The worker processes started by this coordinator.
+     */
+    private final List<Process> processes = new ArrayList<>();
+
+    /**
+     * The number of workers connected.
+     */
+    private final AtomicInteger connected = new AtomicInteger();
+
+    /**
+     * Whether a worker ever connected.
+     */
+    private volatile boolean everConnected;
+
+    /**
+     * Constructor.
+     * Starts accepting workers at once.
+     *
+     * @param port      the port, 0 for any free one
+     * @param firstSeed the seed of the first game
+     * @param games     the number of games
+     * @param shardSize the number of games of a shard
+     * @param rows      the row size of the grids
+     * @param cols      the column size of the grids
+     * @param players   the number of players
+     * @throws IOException if the port cannot be opened
+     */
+    public SimulationCoordinator(int port, long firstSeed, long games, int shardSize, int rows, int cols,
+            int players) throws IOException {
+        int shards = (int) ((games + shardSize - 1) / shardSize);
+        this.firstSeed = firstSeed;
+        this.games = games;
+        this.shardSize = shardSize;
+        this.rows = rows;
+        this.cols = cols;
+        this.players = players;
+        this.done = new AtomicIntegerArray(shards);
+        this.remaining = new CountDownLatch(shards);
+        this.result = new SimulationAggregate(players);
+        for (int i = 0; i < shards; i++) {
+            this.pending.add(i);
+        }
+        this.server = new ServerSocket(port);
+        Thread acceptor = new Thread(this::accept, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Get the port the workers connect to.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * Get the number of shards handed out again after a failure.
+     *
+     * @return the number of reassignments
+     */
+    public long getReassigned() {
+        return this.reassigned.get();
+    }
+
+    /**
+     * Start worker processes on this machine, with the same Java and
+     * class path as this one.
+     *
+     * @param count the number of workers
+     * @throws IOException if a process cannot be started
+     */
+    public void launchLocalWorkers(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            this.launchLocalWorker(SimulationWorker.class.getName());
+        }
+    }
+
+    /**
+     * Start a worker process on this machine, with the same Java and
+     * class path as this one, given the host and the port to connect to.
+     *
+     * @param mainClass the class of the worker
+     * @param args      the arguments after the host and the port
+     * @throws IOException if the process cannot be started
+     */
+    void launchLocalWorker(String mainClass, String... args) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+                mainClass, "localhost", Integer.toString(this.getPort())));
+        command.addAll(List.of(args));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.inheritIO();
+        synchronized (this.processes) {
+            this.processes.add(builder.start());
+        }
+    }
+
+    /**
+     * Wait until every shard is done.
+     * Fails if shards are left but no worker: none is connected, none of
+     * the local ones is still running, and one at least had been started
+     * or had connected.
+     *
+     * @return the merged aggregate
+     * @throws InterruptedException  if interrupted while waiting
+     * @throws IllegalStateException if every worker is gone with shards
+     *                               left
+     */
+    public SimulationAggregate await() throws InterruptedException {
+        while (!this.remaining.await(100, TimeUnit.MILLISECONDS)) {
+            if (!this.hasWorkers() && this.remaining.getCount() > 0) {
+                throw new IllegalStateException("No worker left, " + this.remaining.getCount() + " shards to play");
+            }
+        }
+        synchronized (this.result) {
+            return this.result;
+        }
+    }
+
+    /**
+     * Check whether a worker can still play the shards left.
+     *
+     * @return false if every worker started or connected is gone
+     */
+    private boolean hasWorkers() {
+        if (this.connected.get() > 0) {
+            return true;
+        }
+        synchronized (this.processes) {
+            for (Process process : this.processes) {
+                if (process.isAlive()) {
+                    return true;
+                }
+            }
+            // a worker may have connected in between
+            return this.processes.isEmpty() && !this.everConnected || this.connected.get() > 0;
+        }
+    }
+
+    /**
+     * Stop accepting workers and stop the local ones.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+        List<Process> started;
+        synchronized (this.processes) {
+            started = new ArrayList<>(this.processes);
+        }
+        for (Process process : started) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Accept the workers, each one served by its own thread.
+     */
+    private void accept() {
+        while (!this.server.isClosed()) {
+            try {
+                Socket socket = this.server.accept();
+                Thread handler = new Thread(() -> this.serve(socket), "coordinator-worker");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // closed, or a failed connection: keep accepting if open
+            }
+        }
+    }
+
+    /**
+     * Serve a worker: hand out shards until none is left, then stop it.
+     * If the worker fails, its shard goes back to the queue.
+     *
+     * @param socket the socket of the worker
+     */
+    private void serve(Socket socket) {
+        this.connected.incrementAndGet();
+        this.everConnected = true;
+        int shard = -1;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(SHARD_TIMEOUT);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != SimulationWorker.HELLO) {
+                return;
+            }
+            while ((shard = this.nextShard()) >= 0) {
+                long first = (long) shard * this.shardSize;
+                out.writeByte(SimulationWorker.JOB);
+                out.writeLong(shard);
+                out.writeLong(this.firstSeed + first);
+                out.writeInt((int) Math.min(this.shardSize, this.games - first));
+                out.writeInt(this.rows);
+                out.writeInt(this.cols);
+                out.writeInt(this.players);
+                out.flush();
+                if (in.readByte() != SimulationWorker.RESULT || in.readLong() != shard) {
+                    throw new IOException("Unexpected answer for shard " + shard);
+                }
+                SimulationAggregate aggregate = SimulationAggregate.readFrom(in);
+                this.complete(shard, aggregate);
+                shard = -1;
+            }
+            out.writeByte(SimulationWorker.STOP);
+            out.flush();
+        } catch (IOException e) {
+            if (shard >= 0) {
+                this.reassigned.incrementAndGet();
+                this.pending.add(shard);
+            }
+        } catch (InterruptedException e) {
+            if (shard >= 0) {
+                this.pending.add(shard);
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            // after the shard is back in the queue
+            this.connected.decrementAndGet();
+        }
+    }
+
+    /**
+     * Take the next shard to hand out, waiting while some are being
+     * played, since they could fail and come back.
+     *
+     * @return the shard, -1 if every shard is done
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private int nextShard() throws InterruptedException {
+        while (this.remaining.getCount() > 0) {
+            Integer shard = this.pending.poll(100, TimeUnit.MILLISECONDS);
+            if (shard != null && this.done.get(shard) == 0) {
+                return shard;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Merge the aggregate of a shard, once.
+     *
+     * @param shard     the shard
+     * @param aggregate the aggregate
+     */
+    private void complete(int shard, SimulationAggregate aggregate) {
+        if (this.done.compareAndSet(shard, 0, 1)) {
+            synchronized (this.result) {
+                this.result.merge(aggregate);
+            }
+            this.remaining.countDown();
+        }
+    }
+}
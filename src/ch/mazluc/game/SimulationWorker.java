@@ -0,0 +1,142 @@
+package ch.mazluc.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Worker process of a distributed simulation.
+ *
+ * <p>
+ * Connects to a {@link SimulationCoordinator}, then plays the shards of
+ * seeds it is given until it is told to stop. Game `s` of a shard is
+ * played on a grid filled with `new Random(s)` by bots seeded with `s`,
+ * so every game is the same wherever it runs. The worker sends back only
+ * the {@link SimulationAggregate} of each shard.
+ *
+ * <p>
+ * Protocol, over a plain socket (all numbers big-endian):
+ *
+ * <pre>
+ * worker      HELLO
+ * coordinator JOB shard firstSeed count rows cols players | STOP
+ * worker      RESULT shard aggregate
+ * ...
+ * </pre>
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.SimulationWorker host port`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class SimulationWorker {
+
+    /**
+     * The greeting of a worker, "MWRK".
+     */
+    static final int HELLO = 0x4D57524B;
+
+    /**
+     * A shard to play.
+     */
+    static final byte JOB = 1;
+
+    /**
+     * Nothing left to play.
+     */
+    static final byte STOP = 2;
+
+    /**
+     * The aggregate of a shard.
+     */
+    static final byte RESULT = 3;
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a process entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private SimulationWorker() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Play a shard of games.
+     *
+     * @param firstSeed the seed of the first game
+     * @param count     the number of games
+     * @param rows      the row size of the grids
+     * @param cols      the column size of the grids
+     * @param players   the number of players
+     * @return the aggregate of the games
+     */
+    public static SimulationAggregate playShard(long firstSeed, int count, int rows, int cols, int players) {
+        SimulationAggregate aggregate = new SimulationAggregate(players);
+        BotStrategy[] bots = new BotStrategy[players];
+        for (int i = 0; i < count; i++) {
+            long seed = firstSeed + i;
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int j = 0; j < players; j++) {
+                bots[j] = new ProbabilisticBot(0.5, 1.0, random.split());
+            }
+            Grid grid = new Grid(rows, cols, new Random(seed));
+            grid.fill();
+            aggregate.add(Simulation.play(grid, Simulation.players(players), bots));
+        }
+        return aggregate;
+    }
+
+    /**
+     * Run the worker.
+     *
+     * @param args the host and the port of the coordinator
+     * @throws IOException if the coordinator cannot be reached
+     */
+    public static void main(String[] args) throws IOException {
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(HELLO);
+            out.flush();
+            while (playNext(in, out)) {
+                // until told to stop
+            }
+        }
+    }
+
+    /**
+     * Play the next shard the coordinator sends and send back its
+     * aggregate.
+     *
+     * @param in  the stream from the coordinator
+     * @param out the stream to the coordinator
+     * @return false if told to stop
+     * @throws IOException if the coordinator cannot be reached
+     */
+    static boolean playNext(DataInputStream in, DataOutputStream out) throws IOException {
+        if (in.readByte() != JOB) {
+            return false;
+        }
+        long shard = in.readLong();
+        long firstSeed = in.readLong();
+        int count = in.readInt();
+        int rows = in.readInt();
+        int cols = in.readInt();
+        int players = in.readInt();
+        SimulationAggregate aggregate = playShard(firstSeed, count, rows, cols, players);
+        out.writeByte(RESULT);
+        out.writeLong(shard);
+        aggregate.writeTo(out);
+        out.flush();
+        return true;
+    }
+}
@@ -0,0 +1,374 @@
+package ch.mazluc.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * <p>
+ * Broadcasts the frames of a running game to any number of spectators.
+ *
+ * <p>
+ * Every frame is handed over already encoded, so the bytes are produced
+ * once by the game and then shared (read-only) by all the spectators.
+ * Spectator sockets are served by a single thread through a non-blocking
+ * `Selector`.
+ *
+ * <p>
+ * Only the latest frame is kept: a spectator that is still writing an old
+ * frame finishes it (so the terminal never gets half an escape sequence)
+ * and then jumps straight to the newest one, skipping everything in
+ * between. No backlog is ever queued for slow clients.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * SpectatorBroadcaster broadcaster = new SpectatorBroadcaster(7070);
+ * game.setBroadcaster(broadcaster); // frames are now published
+ * // spectators connect with e.g. `nc localhost 7070`
+ * broadcaster.close();
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class SpectatorBroadcaster implements Closeable {
+
+    /**
+     * A published frame and its sequence number.
+     */
+    private static final class Frame {
+
+        /**
+         * The encoded frame, shared by every spectator.
+         */
+        private final ByteBuffer bytes;
+
+        /**
+         * The sequence number of the frame.
+         */
+        private final long sequence;
+
+        /**
+         * Constructor.
+         *
+         * @param bytes    the encoded frame
+         * @param sequence the sequence number
+         */
+        private Frame(ByteBuffer bytes, long sequence) {
+            this.bytes = bytes;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The write state of a single spectator.
+     */
+    private static final class Spectator {
+
+        /**
+         * The frame being written, a private view on the shared bytes.
+         */
+        private ByteBuffer pending;
+
+        /**
+         * The sequence number of the last frame taken.
+         */
+        private long sequence;
+    }
+
+    /**
+     * Size of the buffer used to drain what spectators send.
+     */
+    private static final int DRAIN_BUFFER_SIZE = 256;
+
+    /**
+     * The listening channel.
+     */
+    private final ServerSocketChannel server;
+
+    /**
+     * The selector serving all the channels.
+     */
+    private final Selector selector;
+
+    /**
+     * The thread running the selector loop.
+     */
+    private final Thread loop;
+
+    /**
+     * Buffer in which the input of the spectators is discarded.
+     */
+    private final ByteBuffer drain = ByteBuffer.allocate(DRAIN_BUFFER_SIZE);
+
+    /**
+     * The latest published frame, null before the first one.
+     */
+    private volatile Frame latest;
+
+    /**
+     * The number of connected spectators.
+     */
+    private volatile int spectatorCount;
+
+    /**
+     * Whether the broadcaster is running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Constructor.
+     * Binds the given port on every interface and starts serving.
+     *
+     * @param port the port spectators connect to
+     * @throws IOException if the port can not be bound
+     */
+    public SpectatorBroadcaster(int port) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(port));
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.loop = new Thread(this::run, "spectator-broadcaster");
+        this.loop.setDaemon(true);
+        this.loop.start();
+    }
+
+    /**
+     * Get the port the broadcaster is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of connected spectators.
+     *
+     * @return the number of spectators
+     */
+    public int getSpectatorCount() {
+        return this.spectatorCount;
+    }
+
+    /**
+     * Publish a new frame.
+     * The array is not copied, so it must not be modified afterwards.
+     *
+     * @param frame the encoded frame
+     */
+    public void publish(byte[] frame) {
+        Frame previous = this.latest;
+        long sequence = previous == null ? 1 : previous.sequence + 1;
+        this.latest = new Frame(ByteBuffer.wrap(frame).asReadOnlyBuffer(), sequence);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Stop serving and disconnect every spectator.
+     */
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : this.selector.keys()) {
+            key.channel().close();
+        }
+        this.selector.close();
+    }
+
+    /**
+     * The selector loop.
+     */
+    private void run() {
+        long dispatched = 0;
+        try {
+            while (this.running) {
+                this.selector.select();
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        this.accept();
+                        continue;
+                    }
+                    try {
+                        if (key.isReadable()) {
+                            this.drain(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            this.write(key);
+                        }
+                    } catch (CancelledKeyException e) {
+                        // closed under us, only this spectator is dropped
+                        this.disconnect(key);
+                    }
+                }
+                Frame frame = this.latest;
+                if (frame != null && frame.sequence != dispatched) {
+                    dispatched = frame.sequence;
+                    this.dispatch(frame);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // the selector itself failed, or was closed
+            this.running = false;
+        }
+    }
+
+    /**
+     * Accept a new spectator.
+     * The spectator immediately receives the latest frame.
+     * A connection that fails while being accepted is dropped alone; the
+     * other spectators are not affected.
+     */
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = this.server.accept();
+        } catch (IOException e) {
+            // reset before being accepted, or out of file descriptors
+            return;
+        }
+        if (channel == null) {
+            return;
+        }
+        Spectator spectator = new Spectator();
+        SelectionKey key;
+        try {
+            channel.configureBlocking(false);
+            key = channel.register(this.selector, SelectionKey.OP_READ, spectator);
+        } catch (IOException e) {
+            try {
+                channel.close();
+            } catch (IOException closeError) {
+                // the channel is gone anyway
+            }
+            return;
+        }
+        this.spectatorCount++;
+        Frame frame = this.latest;
+        if (frame != null) {
+            this.take(key, spectator, frame);
+        }
+    }
+
+    /**
+     * Hand the new frame to every spectator that is not busy.
+     * Busy spectators pick it up once their current frame is written.
+     *
+     * @param frame the new frame
+     */
+    private void dispatch(Frame frame) {
+        for (SelectionKey key : this.selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof Spectator) {
+                Spectator spectator = (Spectator) key.attachment();
+                if (spectator.pending == null) {
+                    this.take(key, spectator, frame);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start writing a frame to a spectator.
+     *
+     * @param key       the key of the spectator
+     * @param spectator the spectator
+     * @param frame     the frame
+     */
+    private void take(SelectionKey key, Spectator spectator, Frame frame) {
+        spectator.pending = frame.bytes.duplicate();
+        spectator.sequence = frame.sequence;
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Write as much of the pending frame as the socket accepts.
+     * When the frame is complete, skip to the latest one if it is newer.
+     *
+     * @param key the key of the spectator
+     */
+    private void write(SelectionKey key) {
+        Spectator spectator = (Spectator) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            channel.write(spectator.pending);
+        } catch (IOException e) {
+            this.disconnect(key);
+            return;
+        }
+        if (spectator.pending.hasRemaining()) {
+            return;
+        }
+        Frame frame = this.latest;
+        if (frame.sequence != spectator.sequence) {
+            this.take(key, spectator, frame);
+        } else {
+            spectator.pending = null;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Discard whatever the spectator sends, detecting disconnections.
+     *
+     * @param key the key of the spectator
+     */
+    private void drain(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            int read;
+            do {
+                this.drain.clear();
+                read = channel.read(this.drain);
+            } while (read > 0);
+            if (read < 0) {
+                this.disconnect(key);
+            }
+        } catch (IOException e) {
+            this.disconnect(key);
+        }
+    }
+
+    /**
+     * Drop a spectator.
+     *
+     * @param key the key of the spectator
+     */
+    private void disconnect(SelectionKey key) {
+        if (!key.isValid() && !key.channel().isOpen()) {
+            // already dropped
+            return;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // the channel is gone anyway
+        }
+        this.spectatorCount--;
+    }
+}
@@ -0,0 +1,374 @@
+package ch.mazluc.game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>
+ * Board of the "speed" variant, where all the players flip at the same
+ * time.
+ *
+ * <p>
+ * Every cell is packed in a single `int` of an `AtomicIntegerArray`:
+ *
+ * <pre>
+ * bits  0-15 symbol
+ * bits 16-20 unused
+ * bits 21-22 kind (card, bomb, jolly)
+ * bits 23-24 state (hidden, claimed, removed)
+ * bit  25    seen (revealed at least once)
+ * bits 26-31 owner (the player holding the card while claimed)
+ * </pre>
+ *
+ * <p>
+ * The points never change, so they are kept apart, in full.
+ *
+ * <p>
+ * A player reveals a card by claiming it with a compare-and-set from
+ * hidden to claimed, so a card is held by one player at a time; only the
+ * holder can release it (back to hidden) or remove it. No locks are
+ * taken, and a player never waits for another one: if a cell is taken it
+ * simply looks for another.
+ *
+ * <p>
+ * ⚠️ Cells are indexed row by row from 0, unlike `Coordinate`.
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class SpeedBoard {
+
+    /**
+     * The maximum number of players, limited by the owner bits ({@value}).
+     */
+    public static final int MAX_PLAYERS = 64;
+
+    /**
+     * Kind of a regular card.
+     */
+    private static final int KIND_CARD = 0;
+
+    /**
+     * Kind of a bomb.
+     */
+    private static final int KIND_BOMB = 1;
+
+    /**
+     * Kind of a jolly.
+     */
+    private static final int KIND_JOLLY = 2;
+
+    /**
+     * State of a covered card nobody holds.
+     */
+    private static final int HIDDEN = 0;
+
+    /**
+     * State of a card held by a player.
+     */
+    private static final int CLAIMED = 1;
+
+    /**
+     * State of an empty cell.
+     */
+    private static final int REMOVED = 2;
+
+    /**
+     * Mask of the symbol.
+     */
+    private static final int SYMBOL_MASK = 0xFFFF;
+
+    /**
+     * Shift of the kind.
+     */
+    private static final int KIND_SHIFT = 21;
+
+    /**
+     * Shift of the state.
+     */
+    private static final int STATE_SHIFT = 23;
+
+    /**
+     * Mask of the state, once shifted.
+     */
+    private static final int STATE_MASK = 0x3;
+
+    /**
+     * The seen bit.
+     */
+    private static final int SEEN = 1 << 25;
+
+    /**
+     * Shift of the owner.
+     */
+    private static final int OWNER_SHIFT = 26;
+
+    /**
+     * Bits cleared when the state and the owner change.
+     */
+    private static final int CLAIM_BITS = STATE_MASK << STATE_SHIFT | 0x3F << OWNER_SHIFT;
+
+    /**
+     * The packed cells.
+     */
+    private final AtomicIntegerArray cells;
+
+    /**
+     * The points of every cell, 0 for empty cells. Never changes.
+     */
+    private final int[] points;
+
+    /**
+     * The cell holding the other card of every pair, -1 for hazards and
+     * empty cells. Never changes.
+     */
+    private final int[] partner;
+
+    /**
+     * The number of pairs still on the board.
+     */
+    private final AtomicInteger remainingPairs;
+
+    /**
+     * The number of columns.
+     */
+    private final int cols;
+
+    /**
+     * Constructor.
+     * Copies the layout of a grid filled with pairs.
+     *
+     * @param grid the grid
+     * @throws IllegalArgumentException if the grid holds bigger sets
+     */
+    public SpeedBoard(Grid grid) {
+        if (grid.getLayout().getSetSize() != 2) {
+            throw new IllegalArgumentException("The speed variant only plays with pairs");
+        }
+        int rows = grid.getRowSize();
+        this.cols = grid.getColSize();
+        int size = rows * this.cols;
+        this.cells = new AtomicIntegerArray(size);
+        this.points = new int[size];
+        this.partner = new int[size];
+        Arrays.fill(this.partner, -1);
+        int[] firstOf = new int[SYMBOL_MASK + 1];
+        Arrays.fill(firstOf, -1);
+        int pairs = 0;
+        for (int cell = 0; cell < size; cell++) {
+            Card card = grid.getCard(new Coordinate(cell / this.cols + 1, cell % this.cols + 1));
+            if (card == null) {
+                this.cells.set(cell, REMOVED << STATE_SHIFT);
+                continue;
+            }
+            int kind = card.isBomb() ? KIND_BOMB : card.isJolly() ? KIND_JOLLY : KIND_CARD;
+            this.points[cell] = card.getPoints();
+            this.cells.set(cell, card.getSymbol() | kind << KIND_SHIFT);
+            if (kind == KIND_CARD) {
+                int first = firstOf[card.getSymbol()];
+                if (first < 0) {
+                    firstOf[card.getSymbol()] = cell;
+                } else {
+                    this.partner[first] = cell;
+                    this.partner[cell] = first;
+                    pairs++;
+                }
+            }
+        }
+        this.remainingPairs = new AtomicInteger(pairs);
+    }
+
+    /**
+     * Get the number of cells.
+     *
+     * @return the number of cells
+     */
+    public int size() {
+        return this.cells.length();
+    }
+
+    /**
+     * Get the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getColSize() {
+        return this.cols;
+    }
+
+    /**
+     * Get the number of pairs still on the board.
+     *
+     * @return the number of pairs
+     */
+    public int getRemainingPairs() {
+        return this.remainingPairs.get();
+    }
+
+    /**
+     * Try to claim a hidden card for a player, revealing it.
+     *
+     * @param cell   the cell
+     * @param player the player, less than {@value #MAX_PLAYERS}
+     * @return true if the player now holds the card
+     */
+    public boolean claim(int cell, int player) {
+        int value = this.cells.get(cell);
+        while (state(value) == HIDDEN) {
+            int claimed = (value & ~CLAIM_BITS) | CLAIMED << STATE_SHIFT | SEEN | player << OWNER_SHIFT;
+            if (this.cells.compareAndSet(cell, value, claimed)) {
+                return true;
+            }
+            value = this.cells.get(cell);
+        }
+        return false;
+    }
+
+    /**
+     * Cover again a card held by a player.
+     *
+     * @param cell   the cell
+     * @param player the player holding the card
+     * @throws IllegalStateException if the player does not hold the card
+     */
+    public void release(int cell, int player) {
+        this.transition(cell, player, HIDDEN);
+    }
+
+    /**
+     * Remove from the board a card held by a player.
+     * Pairs are removed with {@link #removePair(int, int, int)}.
+     *
+     * @param cell   the cell
+     * @param player the player holding the card
+     * @throws IllegalStateException if the player does not hold the card
+     */
+    public void remove(int cell, int player) {
+        this.transition(cell, player, REMOVED);
+    }
+
+    /**
+     * Remove a matched pair held by a player.
+     *
+     * @param first  the first cell
+     * @param second the second cell
+     * @param player the player holding both cards
+     * @return the points of the pair
+     * @throws IllegalStateException if the player does not hold the cards
+     */
+    public int removePair(int first, int second, int player) {
+        this.transition(first, player, REMOVED);
+        this.transition(second, player, REMOVED);
+        this.remainingPairs.decrementAndGet();
+        return this.getPoints(first);
+    }
+
+    /**
+     * Get the symbol of a cell.
+     *
+     * @param cell the cell
+     * @return the symbol
+     */
+    public char getSymbol(int cell) {
+        return (char) (this.cells.get(cell) & SYMBOL_MASK);
+    }
+
+    /**
+     * Get the points of a cell.
+     *
+     * @param cell the cell
+     * @return the points
+     */
+    public int getPoints(int cell) {
+        return this.points[cell];
+    }
+
+    /**
+     * Check if a cell holds the bomb.
+     *
+     * @param cell the cell
+     * @return true if the card is a bomb
+     */
+    public boolean isBomb(int cell) {
+        return (this.cells.get(cell) >>> KIND_SHIFT & 0x3) == KIND_BOMB;
+    }
+
+    /**
+     * Check if a cell holds the jolly.
+     *
+     * @param cell the cell
+     * @return true if the card is a jolly
+     */
+    public boolean isJolly(int cell) {
+        return (this.cells.get(cell) >>> KIND_SHIFT & 0x3) == KIND_JOLLY;
+    }
+
+    /**
+     * Check if a cell holds a covered card nobody holds.
+     *
+     * @param cell the cell
+     * @return true if the card is hidden
+     */
+    public boolean isHidden(int cell) {
+        return state(this.cells.get(cell)) == HIDDEN;
+    }
+
+    /**
+     * Check if a cell is empty.
+     *
+     * @param cell the cell
+     * @return true if the card has been removed
+     */
+    public boolean isRemoved(int cell) {
+        return state(this.cells.get(cell)) == REMOVED;
+    }
+
+    /**
+     * Check if the card of a cell has been revealed at least once.
+     * What has been revealed is known to every player.
+     *
+     * @param cell the cell
+     * @return true if the card has been seen
+     */
+    public boolean isSeen(int cell) {
+        return (this.cells.get(cell) & SEEN) != 0;
+    }
+
+    /**
+     * Get the cell of the other card of the pair.
+     * Players may only use it once that card has been seen.
+     *
+     * @param cell the cell
+     * @return the partner cell, -1 for hazards
+     */
+    public int getPartner(int cell) {
+        return this.partner[cell];
+    }
+
+    /**
+     * Move a card held by a player to a new state.
+     *
+     * @param cell   the cell
+     * @param player the player holding the card
+     * @param state  the new state
+     * @throws IllegalStateException if the player does not hold the card
+     */
+    private void transition(int cell, int player, int state) {
+        int value = this.cells.get(cell);
+        int held = (value & ~CLAIM_BITS) | CLAIMED << STATE_SHIFT | player << OWNER_SHIFT;
+        if (value != held || !this.cells.compareAndSet(cell, value, (value & ~CLAIM_BITS) | state << STATE_SHIFT)) {
+            throw new IllegalStateException("Player " + player + " does not hold cell " + cell);
+        }
+    }
+
+    /**
+     * Extract the state of a packed cell.
+     *
+     * @param value the packed cell
+     * @return the state
+     */
+    private static int state(int value) {
+        return value >>> STATE_SHIFT & STATE_MASK;
+    }
+}
@@ -0,0 +1,133 @@
+package ch.mazluc.game;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Stress test of the "speed" variant.
+ *
+ * <p>
+ * Plays many games with dozens of player threads on the same
+ * {@link SpeedBoard} and checks, after every game, that the lock-free
+ * claims kept the board consistent:
+ * <ul>
+ * <li>no player thread failed (a failed claim transition throws);
+ * <li>when no pair is left every card of every pair has been removed;
+ * <li>the scores add up exactly to the points removed from the board;
+ * <li>at most one player per bomb is dead.
+ * </ul>
+ * Prints the throughput in flips per second.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.SpeedBoardStressTest [games] [players]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class SpeedBoardStressTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     * 
+     * @throws IllegalStateException if called
+     */
+    private SpeedBoardStressTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the stress test.
+     *
+     * @param args the number of games and of players, both optional
+     * @throws InterruptedException if interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int playerCount = args.length > 1 ? Integer.parseInt(args[1]) : 48;
+        AtomicInteger failures = new AtomicInteger();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            failures.incrementAndGet();
+            System.err.println(thread.getName() + ": " + e);
+        });
+        long flips = 0;
+        long start = System.nanoTime();
+        for (int game = 0; game < games; game++) {
+            Grid grid = new Grid(12, 15, new Random(game));
+            grid.fill();
+            SpeedBoard board = new SpeedBoard(grid);
+            int expected = totalPoints(board);
+            SpeedGame speedGame = new SpeedGame(board, playerCount);
+            speedGame.play(game);
+            flips += speedGame.getFlips();
+            check(game, board, speedGame, playerCount, expected);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (failures.get() > 0) {
+            throw new AssertionError(failures.get() + " player threads failed");
+        }
+        System.out.printf("%d games, %d players: %d flips in %.2f s (%.0f flips/s)%n", games, playerCount,
+                flips, seconds, flips / seconds);
+    }
+
+    /**
+     * Sum the points of the pairs and of the jollies of a board.
+     *
+     * @param board the board
+     * @return the points
+     */
+    private static int totalPoints(SpeedBoard board) {
+        int points = 0;
+        for (int cell = 0; cell < board.size(); cell++) {
+            if (board.isRemoved(cell) || board.isBomb(cell)) {
+                continue;
+            }
+            // every pair counts once
+            if (board.isJolly(cell) || board.getPartner(cell) > cell) {
+                points += board.getPoints(cell);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Check the invariants of a finished game.
+     *
+     * @param game        the number of the game
+     * @param board       the board
+     * @param speedGame   the game
+     * @param playerCount the number of players
+     * @param expected    the points on the board at the start
+     * @throws AssertionError if an invariant does not hold
+     */
+    private static void check(int game, SpeedBoard board, SpeedGame speedGame, int playerCount, int expected) {
+        int left = 0;
+        int bombs = 0;
+        for (int cell = 0; cell < board.size(); cell++) {
+            if (board.isBomb(cell)) {
+                bombs++;
+            } else if (!board.isRemoved(cell)) {
+                if (!board.isHidden(cell)) {
+                    throw new AssertionError("Game " + game + ": cell " + cell + " still claimed");
+                }
+                if (board.getRemainingPairs() == 0 && !board.isJolly(cell)) {
+                    throw new AssertionError("Game " + game + ": cell " + cell + " left without pairs");
+                }
+                left += board.isJolly(cell) || board.getPartner(cell) > cell ? board.getPoints(cell) : 0;
+            }
+        }
+        int scored = 0;
+        int dead = 0;
+        for (int player = 0; player < playerCount; player++) {
+            scored += speedGame.getScore(player);
+            dead += speedGame.isDead(player) ? 1 : 0;
+        }
+        if (scored + left != expected) {
+            throw new AssertionError("Game " + game + ": scored " + scored + " + left " + left + " != " + expected);
+        }
+        if (dead > bombs) {
+            throw new AssertionError("Game " + game + ": " + dead + " dead players for " + bombs + " bombs");
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ch.mazluc.game;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * The "speed" variant of the game: nobody waits for their turn.
+ *
+ * <p>
+ * Every player runs on its own thread and keeps flipping two cards at a
+ * time on a shared {@link SpeedBoard}: the first player holding both
+ * cards of a pair scores it. The bomb eliminates whoever reveals it, the
+ * jolly gives its points. The game is over when no pair is left or
+ * nobody is alive.
+ *
+ * <p>
+ * Players use what everybody has seen: if the partner of the card they
+ * hold has already been revealed they go for it, otherwise they try
+ * another hidden card.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * SpeedGame game = new SpeedGame(new SpeedBoard(grid), 8);
+ * game.play(); // blocks until the game is over
+ * int score = game.getScore(0);
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class SpeedGame {
+
+    /**
+     * The board.
+     */
+    private final SpeedBoard board;
+
+    /**
+     * The scores of the players.
+     */
+    private final AtomicIntegerArray scores;
+
+    /**
+     * Whether every player is dead (1) or alive (0).
+     */
+    private final AtomicIntegerArray dead;
+
+    /**
+     * The number of alive players.
+     */
+    private final AtomicInteger alive;
+
+    /**
+     * The number of cards revealed, by all the players.
+     */
+    private final LongAdder flips = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param board       the board
+     * @param playerCount the number of players, at most
+     *                    {@value SpeedBoard#MAX_PLAYERS}
+     */
+    public SpeedGame(SpeedBoard board, int playerCount) {
+        if (playerCount < 1 || playerCount > SpeedBoard.MAX_PLAYERS) {
+            throw new IllegalArgumentException("Players must be between 1 and " + SpeedBoard.MAX_PLAYERS);
+        }
+        this.board = board;
+        this.scores = new AtomicIntegerArray(playerCount);
+        this.dead = new AtomicIntegerArray(playerCount);
+        this.alive = new AtomicInteger(playerCount);
+    }
+
+    /**
+     * Play the game, one thread per player, until it is over.
+     *
+     * @param seed the seed of the choices of the players
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              players
+     */
+    public void play(long seed) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Thread[] threads = new Thread[this.scores.length()];
+        for (int i = 0; i < threads.length; i++) {
+            int player = i;
+            SplittableRandom playerRandom = random.split();
+            threads[i] = new Thread(() -> this.run(player, playerRandom), "speed-player-" + i);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Play the game with a random seed.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              players
+     * @see #play(long)
+     */
+    public void play() throws InterruptedException {
+        this.play(System.nanoTime());
+    }
+
+    /**
+     * Check if the game is over.
+     *
+     * @return true if the game is over
+     */
+    public boolean isOver() {
+        return this.board.getRemainingPairs() == 0 || this.alive.get() == 0;
+    }
+
+    /**
+     * Get the score of a player.
+     *
+     * @param player the player
+     * @return the score
+     */
+    public int getScore(int player) {
+        return this.scores.get(player);
+    }
+
+    /**
+     * Check if a player is dead.
+     *
+     * @param player the player
+     * @return true if the player is dead
+     */
+    public boolean isDead(int player) {
+        return this.dead.get(player) != 0;
+    }
+
+    /**
+     * Get the number of cards revealed by all the players.
+     *
+     * @return the number of flips
+     */
+    public long getFlips() {
+        return this.flips.sum();
+    }
+
+    /**
+     * The loop of a player.
+     *
+     * @param player the player
+     * @param random the random number generator of the player
+     */
+    private void run(int player, SplittableRandom random) {
+        while (!this.isDead(player) && !this.isOver()) {
+            if (!this.turn(player, random)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Flip two cards.
+     *
+     * @param player the player
+     * @param random the random number generator of the player
+     * @return false if no card could be claimed
+     */
+    private boolean turn(int player, SplittableRandom random) {
+        int first = this.claimHidden(player, random, -1);
+        if (first < 0) {
+            return false;
+        }
+        if (this.settleHazard(first, player)) {
+            return true;
+        }
+        int partner = this.board.getPartner(first);
+        int second;
+        if (this.board.isSeen(partner) && this.board.claim(partner, player)) {
+            second = partner;
+            this.flips.increment();
+        } else {
+            second = this.claimHidden(player, random, first);
+        }
+        if (second < 0) {
+            this.board.release(first, player);
+            return false;
+        }
+        if (this.settleHazard(second, player)) {
+            this.board.release(first, player);
+        } else if (second == partner) {
+            this.scores.addAndGet(player, this.board.removePair(first, second, player));
+        } else {
+            this.board.release(first, player);
+            this.board.release(second, player);
+        }
+        return true;
+    }
+
+    /**
+     * Apply the effect of a bomb or of a jolly just claimed.
+     *
+     * @param cell   the cell
+     * @param player the player holding it
+     * @return true if the card was a hazard, now removed
+     */
+    private boolean settleHazard(int cell, int player) {
+        if (this.board.isBomb(cell)) {
+            this.board.remove(cell, player);
+            if (this.dead.compareAndSet(player, 0, 1)) {
+                this.alive.decrementAndGet();
+            }
+            return true;
+        }
+        if (this.board.isJolly(cell)) {
+            this.board.remove(cell, player);
+            this.scores.addAndGet(player, this.board.getPoints(cell));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Claim a hidden card, starting from a random cell.
+     *
+     * @param player   the player
+     * @param random   the random number generator of the player
+     * @param excluded a cell not to claim, -1 for none
+     * @return the cell, -1 if no card could be claimed
+     */
+    private int claimHidden(int player, SplittableRandom random, int excluded) {
+        int size = this.board.size();
+        int start = random.nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int cell = start + i < size ? start + i : start + i - size;
+            if (cell != excluded && this.board.isHidden(cell) && this.board.claim(cell, player)) {
+                this.flips.increment();
+                return cell;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,94 @@
+package ch.mazluc.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * <p>
+ * Throughput test of the {@link PlayerStatsStore}.
+ *
+ * <p>
+ * Records random games of many players in a new store, then reopens it
+ * and reads every player back, checking that no game was lost. Prints
+ * the games recorded and the players read per second. Without a file,
+ * the store is a temporary file, deleted at the end.
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.StatsStoreThroughputTest [players] [file]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class StatsStoreThroughputTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private StatsStoreThroughputTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of players and the file, both optional
+     * @throws IOException    if the store cannot be written
+     * @throws AssertionError if games are lost
+     */
+    public static void main(String[] args) throws IOException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Path file = args.length > 1 ? Paths.get(args[1]) : Files.createTempFile("players", ".stats");
+        try {
+            Files.deleteIfExists(file);
+            run(players, file);
+        } finally {
+            if (args.length <= 1) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Record the games and read the players back.
+     *
+     * @param players the number of players
+     * @param file    the file of the new store
+     * @throws IOException    if the store cannot be written
+     * @throws AssertionError if games are lost
+     */
+    private static void run(int players, Path file) throws IOException {
+        Random random = new Random(42);
+        int games = players * 5;
+        long start = System.nanoTime();
+        try (PlayerStatsStore store = new PlayerStatsStore(file)) {
+            for (int i = 0; i < games; i++) {
+                int turns = 5 + random.nextInt(20);
+                store.record("player" + random.nextInt(players), random.nextInt(100), random.nextBoolean(),
+                        turns, random.nextInt(turns), random.nextInt(10) == 0, random.nextInt(2));
+            }
+        }
+        double recordSeconds = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        long total = 0;
+        try (PlayerStatsStore store = new PlayerStatsStore(file)) {
+            for (int i = 0; i < players; i++) {
+                PlayerStatsStore.Stats stats = store.get("player" + i);
+                total += stats == null ? 0 : stats.getGames();
+            }
+            double readSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d players, %d games, %d MB%n", store.size(), total, Files.size(file) >> 20);
+            System.out.printf("record: %.0f games/s, lookup: %.0f players/s%n", games / recordSeconds,
+                    players / readSeconds);
+            System.out.println("player0: " + store.get("player0"));
+        }
+        if (total != games) {
+            throw new AssertionError(total + " games read back, " + games + " recorded");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ch.mazluc.game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>
+ * Regression test of undo under the rule variants.
+ *
+ * <p>
+ * Plays many games with random flips under rules with a streak bonus and
+ * a bomb penalty, so that the state of the engine the journal restores
+ * carries a streak, and checks that:
+ * <ul>
+ * <li>undoing every flip and playing it again gives the same outcome, the
+ * same scores, the same player to move and the same turn as the first
+ * time;
+ * <li>undoing a whole game brings every score back to 0, and redoing it
+ * gives the same final scores.
+ * </ul>
+ *
+ * <p>
+ * Usage: `java ch.mazluc.game.UndoReplayTest [games] [rules]`
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class UndoReplayTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private UndoReplayTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the test.
+     *
+     * @param args the number of games and the rules, both optional
+     * @throws AssertionError if a replay differs
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        RuleSet rules = RuleSet.parse(args.length > 1 ? args[1] : "streak=50 bomb=3");
+        long flips = 0;
+        for (int game = 0; game < games; game++) {
+            flips += play(game, rules);
+        }
+        System.out.printf("%d games, %d flips undone and replayed under %s%n", games, flips, rules);
+    }
+
+    /**
+     * Play a game, undoing and replaying every flip.
+     *
+     * @param game  the number of the game, the seed of its grid and flips
+     * @param rules the rules
+     * @return the number of flips
+     * @throws AssertionError if a replay differs
+     */
+    private static long play(int game, RuleSet rules) {
+        Random random = new Random(game);
+        Grid grid = new Grid(4, 6, random);
+        grid.fill();
+        Player[] players = Simulation.players(2);
+        GameEngine engine = new GameEngine(players, grid, rules);
+        engine.setPublishingSnapshots(false);
+        engine.setUndoable(true);
+        int cells = grid.getRowSize() * grid.getColSize();
+        long flips = 0;
+        while (!engine.isOver()) {
+            Coordinate coord = new Coordinate(random.nextInt(grid.getRowSize()) + 1,
+                    random.nextInt(grid.getColSize()) + 1);
+            String before = state(engine);
+            FlipOutcome outcome = engine.flip(coord);
+            if (outcome == FlipOutcome.INVALID) {
+                continue;
+            }
+            flips++;
+            String after = state(engine);
+            engine.undo();
+            check(game, "undo of " + coord, before, state(engine));
+            FlipOutcome replayed = engine.flip(coord);
+            check(game, "replay of " + coord, outcome + " " + after, replayed + " " + state(engine));
+            if (flips > cells * 50L) {
+                throw new AssertionError("Game " + game + ": no end after " + flips + " flips");
+            }
+        }
+        String end = state(engine);
+        while (engine.canUndo()) {
+            engine.undo();
+        }
+        for (Player player : players) {
+            if (player.getScore() != 0 || player.isDead()) {
+                throw new AssertionError("Game " + game + ": " + player.getName() + " not reset by undo");
+            }
+        }
+        while (engine.canRedo()) {
+            engine.redo();
+        }
+        check(game, "redo of the game", end, state(engine));
+        return flips;
+    }
+
+    /**
+     * Describe the state of a game: scores, deaths, player to move, turn.
+     *
+     * @param engine the engine
+     * @return the description
+     */
+    private static String state(GameEngine engine) {
+        Player[] players = engine.getPlayers();
+        int[] scores = new int[players.length];
+        boolean[] dead = new boolean[players.length];
+        for (int i = 0; i < players.length; i++) {
+            scores[i] = players[i].getScore();
+            dead[i] = players[i].isDead();
+        }
+        return Arrays.toString(scores) + " " + Arrays.toString(dead) + " player " + engine.getCurrentPlayer()
+                + " turn " + engine.getTurn() + (engine.isOver() ? " over" : "");
+    }
+
+    /**
+     * Check that two states are the same.
+     *
+     * @param game     the number of the game
+     * @param what     what was done
+     * @param expected the expected state
+     * @param actual   the actual state
+     * @throws AssertionError if they differ
+     */
+    private static void check(int game, String what, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError("Game " + game + ", " + what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ch.mazluc.game;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>
+ * Board scans with the SIMD instructions of the CPU.
+ *
+ * <p>
+ * Compares as many cells at once as the widest vector of the CPU holds
+ * (16 on AVX2), turns the comparison into a mask and only looks at single
+ * cells where the mask has a lane set; the tail shorter than a vector is
+ * scanned one cell at a time.
+ *
+ * <p>
+ * Needs `--add-modules jdk.incubator.vector` to compile and to run;
+ * {@link BoardScans#get()} falls back to the scalar scans without it.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * BoardScans scans = BoardScans.get();
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public final class VectorBoardScans extends BoardScans {
+
+    /**
+     * The widest vector of shorts of the CPU.
+     */
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    /**
+     * Constructor.
+     *
+     * @throws UnsupportedOperationException if the CPU has no vectors of
+     *                                       shorts
+     */
+    public VectorBoardScans() {
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No SIMD vectors of shorts");
+        }
+    }
+
+    @Override
+    public int indexOf(short[] values, short value, int from, boolean equal) {
+        int i = Math.max(from, 0);
+        // from may not be a multiple of the vector length
+        for (int last = values.length - SPECIES.length(); i <= last; i += SPECIES.length()) {
+            VectorMask<Short> mask = compare(ShortVector.fromArray(SPECIES, values, i), value, equal);
+            if (mask.anyTrue()) {
+                return i + mask.firstTrue();
+            }
+        }
+        for (; i < values.length; i++) {
+            if (values[i] == value == equal) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int count(short[] values, short value) {
+        int count = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(values.length); i < bound; i += SPECIES.length()) {
+            count += ShortVector.fromArray(SPECIES, values, i).eq(value).trueCount();
+        }
+        for (; i < values.length; i++) {
+            if (values[i] == value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int collect(short[] values, short value, boolean equal, int[] out) {
+        int count = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(values.length); i < bound; i += SPECIES.length()) {
+            long lanes = compare(ShortVector.fromArray(SPECIES, values, i), value, equal).toLong();
+            while (lanes != 0) {
+                out[count++] = i + Long.numberOfTrailingZeros(lanes);
+                lanes &= lanes - 1;
+            }
+        }
+        for (; i < values.length; i++) {
+            if (values[i] == value == equal) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compare the lanes of a vector with a value.
+     * The operators are constants, so that the JIT compiles them to single
+     * instructions.
+     *
+     * @param vector the vector
+     * @param value  the value
+     * @param equal  true for the lanes equal to the value, false for the
+     *               others
+     * @return the mask of the lanes
+     */
+    private static VectorMask<Short> compare(ShortVector vector, short value, boolean equal) {
+        return equal ? vector.compare(VectorOperators.EQ, value) : vector.compare(VectorOperators.NE, value);
+    }
+
+    @Override
+    public String getName() {
+        return "vector";
+    }
+}
@@ -0,0 +1,89 @@
+package ch.mazluc.game;
+
+import java.util.Random;
+
+/**
+ * <p>
+ * Benchmark of the {@link BoardScans}.
+ *
+ * <p>
+ * Compares the scans of {@link BoardScans#get()} with the scalar ones on
+ * a large board, half empty, and checks that they find the same cells.
+ * Prints the time of every scan.
+ *
+ * <p>
+ * Usage, with the vector scans:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d out src/ch/mazluc/game/*.java
+ * java --add-modules jdk.incubator.vector -cp out ch.mazluc.game.VectorScansTest [rows] [cols]
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class VectorScansTest {
+
+    /**
+     * Private constructor to prevent instantiation,
+     * as the class is only a test entry point.
+     *
+     * @throws IllegalStateException if called
+     */
+    private VectorScansTest() {
+        throw new IllegalStateException("Test class");
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args the number of rows and columns, optional
+     * @throws AssertionError if the scans disagree
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int cols = args.length > 1 ? Integer.parseInt(args[1]) : rows;
+        Random random = new Random(42);
+        short[] symbols = new short[rows * cols];
+        for (int i = 0; i < symbols.length; i++) {
+            // half empty, the others from the displayable symbols
+            symbols[i] = random.nextBoolean() ? 0 : (short) (' ' + random.nextInt(Grid.getMaxSymbols() - 1));
+        }
+        // a symbol only in the last cell, so that finding it scans everything
+        symbols[symbols.length - 1] = '~';
+        int[] cells = new int[symbols.length];
+        BoardScans[] all = { new BoardScans.Scalar(), BoardScans.get() };
+        long[] checks = new long[all.length];
+        System.out.printf("%dx%d board, %s scans available%n", rows, cols, BoardScans.get().getName());
+        for (int round = 0; round < 3; round++) {
+            for (int s = 0; s < all.length; s++) {
+                BoardScans scans = all[s];
+                int repeats = 50;
+                long check = 0;
+                long start = System.nanoTime();
+                for (int r = 0; r < repeats; r++) {
+                    check += scans.indexOf(symbols, (short) '~', 0, true);
+                }
+                long find = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int r = 0; r < repeats; r++) {
+                    check += scans.count(symbols, (short) 0);
+                }
+                long count = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int r = 0; r < repeats; r++) {
+                    check += scans.collect(symbols, (short) 0, false, cells);
+                }
+                long collect = System.nanoTime() - start;
+                checks[s] = check;
+                if (round == 2) {
+                    System.out.printf("%-7s find %7.1f us, count %7.1f us, collect %7.1f us%n", scans.getName(),
+                            find / 1e3 / repeats, count / 1e3 / repeats, collect / 1e3 / repeats);
+                }
+            }
+        }
+        if (checks[0] != checks[1]) {
+            throw new AssertionError("The scans disagree");
+        }
+    }
+}
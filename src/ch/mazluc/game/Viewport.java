@@ -0,0 +1,277 @@
+package ch.mazluc.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * The window of a grid that fits in the terminal.
+ *
+ * <p>
+ * A cell takes 4 columns and 2 lines of the terminal, so a large grid
+ * would overflow it. The viewport keeps the rows and columns that fit,
+ * given the terminal size and the lines the rest of the UI needs, and
+ * can be panned over the grid; only what it shows is drawn (see
+ * `Grid.print(PrintStream, Viewport)`).
+ *
+ * <p>
+ * ⚠️ As in `Grid`, the first row and column are 0-based.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * Viewport viewport = new Viewport(grid.getRowSize(), grid.getColSize(), 12);
+ * viewport.detectTerminalSize();
+ * viewport.reveal(coord); // scroll until the cell is visible
+ * grid.print(System.out, viewport);
+ * }
+ * </pre>
+ *
+ * @author Luca Mazza
+ * @version 1.0
+ */
+public class Viewport {
+
+    /**
+     * The terminal columns taken by a cell ({@value}).
+     */
+    public static final int CELL_WIDTH = 4;
+
+    /**
+     * The terminal lines taken by a cell ({@value}).
+     */
+    public static final int CELL_HEIGHT = 2;
+
+    /**
+     * The terminal lines taken by the column numbers and the last border
+     * ({@value}).
+     */
+    public static final int MARGIN_HEIGHT = 2;
+
+    /**
+     * The number of rows of the grid.
+     */
+    private final int gridRows;
+
+    /**
+     * The number of columns of the grid.
+     */
+    private final int gridCols;
+
+    /**
+     * The terminal lines the rest of the UI needs.
+     */
+    private final int reservedLines;
+
+    /**
+     * The terminal columns taken by the row numbers and the left border.
+     */
+    private final int marginWidth;
+
+    /**
+     * The number of visible rows.
+     */
+    private int rowCount;
+
+    /**
+     * The number of visible columns.
+     */
+    private int colCount;
+
+    /**
+     * The first visible row.
+     */
+    private int firstRow;
+
+    /**
+     * The first visible column.
+     */
+    private int firstCol;
+
+    /**
+     * Constructor.
+     * Starts showing the whole grid, until the terminal size is set.
+     *
+     * @param gridRows      the number of rows of the grid
+     * @param gridCols      the number of columns of the grid
+     * @param reservedLines the terminal lines the rest of the UI needs
+     */
+    public Viewport(int gridRows, int gridCols, int reservedLines) {
+        this.gridRows = gridRows;
+        this.gridCols = gridCols;
+        this.reservedLines = reservedLines;
+        this.marginWidth = Grid.marginWidth(gridRows);
+        this.rowCount = gridRows;
+        this.colCount = gridCols;
+    }
+
+    /**
+     * Set the terminal size, keeping the window in the grid.
+     * At least one cell is always visible.
+     *
+     * @param lines   the terminal lines
+     * @param columns the terminal columns
+     */
+    public void setTerminalSize(int lines, int columns) {
+        this.rowCount = Math.max(1, Math.min(this.gridRows,
+                (lines - this.reservedLines - MARGIN_HEIGHT) / CELL_HEIGHT));
+        this.colCount = Math.max(1, Math.min(this.gridCols, (columns - this.marginWidth) / CELL_WIDTH));
+        this.pan(0, 0);
+    }
+
+    /**
+     * Detect the terminal size and adapt the window.
+     * Nothing changes if the size is unknown.
+     * The detection starts a process, so it is meant to be done once,
+     * not for every frame.
+     *
+     * @return true if the size was detected
+     * @see #terminalSize()
+     */
+    public boolean detectTerminalSize() {
+        int[] size = terminalSize();
+        if (size == null) {
+            return false;
+        }
+        this.setTerminalSize(size[0], size[1]);
+        return true;
+    }
+
+    /**
+     * Detect the size of the terminal: asks `stty` about the controlling
+     * terminal, then falls back to the `LINES` and `COLUMNS` variables.
+     *
+     * @return the lines and the columns, null if unknown
+     */
+    public static int[] terminalSize() {
+        File tty = new File("/dev/tty");
+        if (tty.exists()) {
+            try {
+                Process stty = new ProcessBuilder("stty", "size").redirectInput(tty)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+                String[] size = new String(stty.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim()
+                        .split("\\s+");
+                if (stty.waitFor() == 0 && size.length == 2) {
+                    int lines = Integer.parseInt(size[0]);
+                    int columns = Integer.parseInt(size[1]);
+                    // a terminal nobody sized reports 0 0
+                    if (lines > 0 && columns > 0) {
+                        return new int[] { lines, columns };
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // not a terminal, try the environment
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int lines = parsePositive(System.getenv("LINES"));
+        int columns = parsePositive(System.getenv("COLUMNS"));
+        return lines > 0 && columns > 0 ? new int[] { lines, columns } : null;
+    }
+
+    /**
+     * Get the first visible row.
+     *
+     * @return the row, 0-based
+     */
+    public int getFirstRow() {
+        return this.firstRow;
+    }
+
+    /**
+     * Get the first visible column.
+     *
+     * @return the column, 0-based
+     */
+    public int getFirstCol() {
+        return this.firstCol;
+    }
+
+    /**
+     * Get the number of visible rows.
+     *
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Get the number of visible columns.
+     *
+     * @return the number of columns
+     */
+    public int getColCount() {
+        return this.colCount;
+    }
+
+    /**
+     * Check if part of the grid is hidden.
+     *
+     * @return true if the grid does not fit in the terminal
+     */
+    public boolean isClipped() {
+        return this.rowCount < this.gridRows || this.colCount < this.gridCols;
+    }
+
+    /**
+     * Check if a cell is visible.
+     *
+     * @param coord the coordinate (1-based)
+     * @return true if the cell is in the window
+     */
+    public boolean isVisible(Coordinate coord) {
+        return coord.trueX() >= this.firstRow && coord.trueX() < this.firstRow + this.rowCount
+                && coord.trueY() >= this.firstCol && coord.trueY() < this.firstCol + this.colCount;
+    }
+
+    /**
+     * Move the window, staying in the grid.
+     *
+     * @param rows    the rows to move down (up if negative)
+     * @param columns the columns to move right (left if negative)
+     */
+    public void pan(int rows, int columns) {
+        this.firstRow = Math.max(0, Math.min(this.firstRow + rows, this.gridRows - this.rowCount));
+        this.firstCol = Math.max(0, Math.min(this.firstCol + columns, this.gridCols - this.colCount));
+    }
+
+    /**
+     * Move the window as little as possible to show a cell.
+     *
+     * @param coord the coordinate (1-based)
+     */
+    public void reveal(Coordinate coord) {
+        int rows = 0;
+        int columns = 0;
+        if (coord.trueX() < this.firstRow) {
+            rows = coord.trueX() - this.firstRow;
+        } else if (coord.trueX() >= this.firstRow + this.rowCount) {
+            rows = coord.trueX() - this.firstRow - this.rowCount + 1;
+        }
+        if (coord.trueY() < this.firstCol) {
+            columns = coord.trueY() - this.firstCol;
+        } else if (coord.trueY() >= this.firstCol + this.colCount) {
+            columns = coord.trueY() - this.firstCol - this.colCount + 1;
+        }
+        this.pan(rows, columns);
+    }
+
+    /**
+     * Parse a positive number.
+     *
+     * @param value the text, possibly null
+     * @return the number, 0 if the text is not a positive number
+     */
+    private static int parsePositive(String value) {
+        try {
+            return value == null ? 0 : Math.max(Integer.parseInt(value.trim()), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}